@@ -30,6 +30,12 @@ public class BooleanProperty extends PropertyBase {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // the value is stored unboxed; PropertyBase.value is not used
+    //
+    private boolean booleanValue;
+    private boolean nullValue;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public BooleanProperty(String name) {
@@ -44,7 +50,14 @@ public class BooleanProperty extends PropertyBase {
 
     public BooleanProperty(String name, Boolean value, MeasureUnit mu) {
 
-        super(name, value, mu);
+        super(name, null, mu);
+        setValue(value);
+    }
+
+    public BooleanProperty(String name, boolean value) {
+
+        super(name, null);
+        setBoolean(value);
     }
 
     // Property implementation -----------------------------------------------------------------------------------------
@@ -65,10 +78,60 @@ public class BooleanProperty extends PropertyBase {
             throw new IllegalArgumentException("\"" + s + "\" cannot be converted to an BooleanProperty value");
         }
 
-        boolean b = Boolean.valueOf(s);
+        boolean b = Boolean.parseBoolean(s);
         return new BooleanProperty(getName(), b);
     }
 
+    @Override
+    public Object getValue() {
+
+        return nullValue ? null : Boolean.valueOf(booleanValue);
+    }
+
+    /**
+     * Unlike the numeric properties, which convert any Number, only Boolean values are accepted: a Boolean cannot be
+     * obtained from another type without interpretation, use fromString() to parse a String.
+     *
+     * @exception IllegalArgumentException if the value is not null and not a Boolean.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        checkNotFrozen();
+
+        if (value == null) {
+
+            this.booleanValue = false;
+            this.nullValue = true;
+        }
+        else if (value instanceof Boolean) {
+
+            setBoolean((Boolean)value);
+        }
+        else {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in a " + getClass().getSimpleName());
+        }
+    }
+
+    // PropertyBase overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isNull() {
+
+        return nullValue;
+    }
+
+    /**
+     * The value is stored unboxed.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(FIELD_BYTES + 1 + 1);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public Boolean getBoolean() {
@@ -76,6 +139,25 @@ public class BooleanProperty extends PropertyBase {
         return (Boolean)getValue();
     }
 
+    /**
+     * Allocation-free access to the value.
+     *
+     * @return the unboxed value, or false if the value is null.
+     *
+     * @see BooleanProperty#isNull()
+     */
+    public boolean booleanValue() {
+
+        return booleanValue;
+    }
+
+    public void setBoolean(boolean value) {
+
+        checkNotFrozen();
+        this.booleanValue = value;
+        this.nullValue = false;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
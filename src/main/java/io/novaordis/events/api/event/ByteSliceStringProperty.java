@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+
+/**
+ * A StringProperty whose value is a region of a byte array, usually the buffer a line was read into, so parsers do not
+ * have to copy each field into a String. The bytes are interpreted as single-byte characters (ASCII, or more precisely
+ * ISO-8859-1). The String is only built when the value is requested with getValue() or getString(), and cached.
+ * contains(), regionMatches(), contentEquals() and getCharSequence() work on the bytes directly.
+ *
+ * The referenced bytes must not change while the property is in use. The property releases them when it is frozen,
+ * as frozen events may outlive the buffer they were parsed from, or when the value is set with setValue().
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ByteSliceStringProperty extends StringProperty {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // null if the property does not reference bytes. In that case the value, if any, is held as a String
+    //
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null array or if the region is not within the array.
+     */
+    public ByteSliceStringProperty(String name, byte[] bytes, int offset, int length) {
+
+        this(name, bytes, offset, length, null);
+    }
+
+    /**
+     * @exception IllegalArgumentException on null array or if the region is not within the array.
+     */
+    public ByteSliceStringProperty(String name, byte[] bytes, int offset, int length, MeasureUnit mu) {
+
+        super(name, null, mu);
+        setSlice(bytes, offset, length);
+    }
+
+    /**
+     * References the buffer's backing array if it has an accessible one, otherwise copies the region.
+     *
+     * @param offset the absolute index of the first byte in the buffer.
+     *
+     * @exception IllegalArgumentException on null buffer or if the region is not within the buffer.
+     */
+    public ByteSliceStringProperty(String name, ByteBuffer buffer, int offset, int length) {
+
+        super(name, null, null);
+
+        if (buffer == null) {
+
+            throw new IllegalArgumentException("null buffer");
+        }
+
+        checkRegion(buffer.limit(), offset, length);
+
+        if (buffer.hasArray()) {
+
+            setSlice(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+        else {
+
+            byte[] copy = new byte[length];
+
+            for(int i = 0; i < length; i ++) {
+
+                copy[i] = buffer.get(offset + i);
+            }
+
+            setSlice(copy, 0, length);
+        }
+    }
+
+    // PropertyBase overrides ------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the String on the first invocation.
+     */
+    @Override
+    public Object getValue() {
+
+        if (value == null && bytes != null) {
+
+            value = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+
+        return value;
+    }
+
+    /**
+     * Releases the bytes.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        super.setValue(value);
+        this.bytes = null;
+    }
+
+    @Override
+    public boolean isNull() {
+
+        return bytes == null && value == null;
+    }
+
+    /**
+     * A slice is estimated as the bytes of its region, as the array is usually a buffer shared with other properties.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        long result = super.estimateRetainedBytes();
+
+        if (bytes != null && value == null) {
+
+            result += HeapFootprint.ofArray(length, 1);
+        }
+
+        return result;
+    }
+
+    // StringProperty overrides ----------------------------------------------------------------------------------------
+
+    /**
+     * @return a view of the bytes, if the String was not built yet.
+     */
+    @Override
+    public CharSequence getCharSequence() {
+
+        if (value != null || bytes == null) {
+
+            return (String)value;
+        }
+
+        return new Latin1CharSequence(bytes, offset, length);
+    }
+
+    @Override
+    public boolean contains(String s, boolean ignoreCase) {
+
+        if (s == null) {
+
+            throw new IllegalArgumentException("null string");
+        }
+
+        if (bytes == null) {
+
+            return super.contains(s, ignoreCase);
+        }
+
+        for(int i = 0; i <= length - s.length(); i ++) {
+
+            if (matches(i, s, 0, s.length(), ignoreCase)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean regionMatches(boolean ignoreCase, int toffset, String other, int ooffset, int len) {
+
+        if (bytes == null) {
+
+            return super.regionMatches(ignoreCase, toffset, other, ooffset, len);
+        }
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null string");
+        }
+
+        if (toffset < 0 || ooffset < 0 || toffset > (long)length - len || ooffset > (long)other.length() - len) {
+
+            return false;
+        }
+
+        return matches(toffset, other, ooffset, len, ignoreCase);
+    }
+
+    @Override
+    public boolean contentEquals(CharSequence cs) {
+
+        if (bytes == null) {
+
+            return super.contentEquals(cs);
+        }
+
+        if (cs == null || cs.length() != length) {
+
+            return false;
+        }
+
+        for(int i = 0; i < length; i ++) {
+
+            if ((char)(bytes[offset + i] & 0xff) != cs.charAt(i)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Makes the property reference a different region, discarding the current value. Allows parsers to reuse the
+     * instance.
+     *
+     * @exception IllegalArgumentException on null array or if the region is not within the array.
+     */
+    public void setSlice(byte[] bytes, int offset, int length) {
+
+        checkNotFrozen();
+
+        if (bytes == null) {
+
+            throw new IllegalArgumentException("null byte array");
+        }
+
+        checkRegion(bytes.length, offset, length);
+
+        this.value = null;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return true if the property references bytes, and the String has not been built yet.
+     */
+    public boolean isSlice() {
+
+        return bytes != null && value == null;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the String and releases the bytes.
+     */
+    @Override
+    void freeze() {
+
+        getValue();
+        bytes = null;
+        super.freeze();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void checkRegion(int size, int offset, int length) {
+
+        if (offset < 0 || length < 0 || offset > size - length) {
+
+            throw new IllegalArgumentException(
+                    "invalid region: offset " + offset + ", length " + length + ", size " + size);
+        }
+    }
+
+    private boolean matches(int toffset, String other, int ooffset, int len, boolean ignoreCase) {
+
+        for(int i = 0; i < len; i ++) {
+
+            char c = (char)(bytes[offset + toffset + i] & 0xff);
+            char c2 = other.charAt(ooffset + i);
+
+            if (c == c2) {
+
+                continue;
+            }
+
+            if (!ignoreCase) {
+
+                return false;
+            }
+
+            if (c < 128 && c2 < 128) {
+
+                //
+                // ASCII fast path
+                //
+
+                if ((c | 0x20) != (c2 | 0x20) || (c | 0x20) < 'a' || (c | 0x20) > 'z') {
+
+                    return false;
+                }
+
+                continue;
+            }
+
+            //
+            // same rules as String.regionMatches()
+            //
+
+            char u = Character.toUpperCase(c);
+            char u2 = Character.toUpperCase(c2);
+
+            if (u != u2 && Character.toLowerCase(u) != Character.toLowerCase(u2)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * A read-only view of a region of a byte array, one character per byte.
+     */
+    private static class Latin1CharSequence implements CharSequence {
+
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        Latin1CharSequence(byte[] bytes, int offset, int length) {
+
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+
+            if (index < 0 || index >= length) {
+
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            }
+
+            return (char)(bytes[offset + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+
+            if (start < 0 || end > length || start > end) {
+
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+            }
+
+            return new Latin1CharSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A String-Object map optimized for the small maps carried by MapProperty instances. Up to MAX_COMPACT_SIZE keys are
+ * kept in two parallel arrays, in insertion order, and looked up linearly: the key references are compared first, so
+ * lookups with the same String instances the map was populated with (literals, interned names) do not hash. Once the
+ * map grows beyond MAX_COMPACT_SIZE keys, the content is moved to a HashMap, and the map behaves as a HashMap from
+ * then on.
+ *
+ * Not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class CompactMap extends AbstractMap<String, Object> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int MAX_COMPACT_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+
+    //
+    // non-null once the map outgrew the compact representation
+    //
+    private Map<String, Object> spill;
+
+    //
+    // structural modifications (key insertions and removals, spill, clear), so the compact iterators can fail fast
+    // the way HashMap's do
+    //
+    private int modCount;
+
+    private EntrySet entrySet;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CompactMap() {
+
+        this.keys = new String[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+    }
+
+    public CompactMap(Map<String, Object> m) {
+
+        this();
+        putAll(m);
+    }
+
+    // Map implementation ----------------------------------------------------------------------------------------------
+
+    @Override
+    public int size() {
+
+        return spill != null ? spill.size() : size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        return spill != null ? spill.containsKey(key) : indexOf(key) != -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+
+        if (spill != null) {
+
+            return spill.get(key);
+        }
+
+        int i = indexOf(key);
+
+        return i == -1 ? null : values[i];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+
+        if (spill != null) {
+
+            return spill.put(key, value);
+        }
+
+        int i = indexOf(key);
+
+        if (i != -1) {
+
+            Object previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+
+        modCount ++;
+
+        if (size == MAX_COMPACT_SIZE) {
+
+            spill = new HashMap<>(MAX_COMPACT_SIZE * 4);
+
+            for(int j = 0; j < size; j ++) {
+
+                spill.put(keys[j], values[j]);
+            }
+
+            keys = null;
+            values = null;
+            size = 0;
+
+            return spill.put(key, value);
+        }
+
+        if (size == keys.length) {
+
+            int capacity = Math.min(keys.length * 2, MAX_COMPACT_SIZE);
+            String[] k = new String[capacity];
+            Object[] v = new Object[capacity];
+            System.arraycopy(keys, 0, k, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            keys = k;
+            values = v;
+        }
+
+        keys[size] = key;
+        values[size] = value;
+        size ++;
+
+        return null;
+    }
+
+    /**
+     * Merges the given map in place. If the argument is a compact CompactMap, its arrays are walked directly, without
+     * creating entries.
+     */
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+
+        if (m instanceof CompactMap && ((CompactMap)m).spill == null) {
+
+            CompactMap cm = (CompactMap)m;
+
+            for(int i = 0; i < cm.size; i ++) {
+
+                put(cm.keys[i], cm.values[i]);
+            }
+
+            return;
+        }
+
+        for(Map.Entry<? extends String, ?> e: m.entrySet()) {
+
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+
+        if (spill != null) {
+
+            return spill.remove(key);
+        }
+
+        int i = indexOf(key);
+
+        if (i == -1) {
+
+            return null;
+        }
+
+        Object previous = values[i];
+        removeAt(i);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+
+        modCount ++;
+
+        if (spill != null) {
+
+            spill = null;
+            keys = new String[INITIAL_CAPACITY];
+            values = new Object[INITIAL_CAPACITY];
+        }
+        else {
+
+            for(int i = 0; i < size; i ++) {
+
+                keys[i] = null;
+                values[i] = null;
+            }
+        }
+
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+
+        if (spill != null) {
+
+            return spill.entrySet();
+        }
+
+        if (entrySet == null) {
+
+            entrySet = new EntrySet();
+        }
+
+        return entrySet;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the content is held in the compact, array-backed representation.
+     */
+    public boolean isCompact() {
+
+        return spill == null;
+    }
+
+    /**
+     * Looks up the key starting at the given position, which is usually the position the key was found at in a
+     * previous lookup, in a map with the same layout. Used by compiled accessors, which remember where the key was
+     * found last and are likely to find it in the same position in the next event's map, with a single comparison.
+     *
+     * @param hint the position to start with. Any value is accepted.
+     *
+     * @return the position of the key, or -1 if the key is not in the map, or the map is no longer compact.
+     */
+    public int indexOf(String key, int hint) {
+
+        if (spill != null) {
+
+            return -1;
+        }
+
+        if (hint >= 0 && hint < size && (keys[hint] == key || (key != null && key.equals(keys[hint])))) {
+
+            return hint;
+        }
+
+        return indexOf(key);
+    }
+
+    /**
+     * @return an estimate of the heap bytes retained by the map, its keys and its values.
+     *
+     * @see HeapFootprint
+     */
+    public long estimateRetainedBytes() {
+
+        //
+        // 4 references and an int
+        //
+
+        long result = HeapFootprint.ofObject(4 * HeapFootprint.REFERENCE + 4);
+
+        if (spill != null) {
+
+            return result + HeapFootprint.of(spill);
+        }
+
+        result += 2 * HeapFootprint.ofArray(keys.length, HeapFootprint.REFERENCE);
+
+        for(int i = 0; i < size; i ++) {
+
+            result += HeapFootprint.of(keys[i]) + HeapFootprint.of(values[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @exception IndexOutOfBoundsException if the position does not designate a key of a compact map.
+     */
+    public Object valueAt(int index) {
+
+        if (spill != null || index < 0 || index >= size) {
+
+            throw new IndexOutOfBoundsException("invalid index: " + index);
+        }
+
+        return values[index];
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private int indexOf(Object key) {
+
+        //
+        // reference comparison first, it is very likely to succeed for keys coming from parsers
+        //
+
+        for(int i = 0; i < size; i ++) {
+
+            if (keys[i] == key) {
+
+                return i;
+            }
+        }
+
+        if (key == null) {
+
+            return -1;
+        }
+
+        for(int i = 0; i < size; i ++) {
+
+            if (key.equals(keys[i])) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void removeAt(int i) {
+
+        modCount ++;
+
+        int tail = size - i - 1;
+
+        if (tail > 0) {
+
+            System.arraycopy(keys, i + 1, keys, i, tail);
+            System.arraycopy(values, i + 1, values, i, tail);
+        }
+
+        size --;
+        keys[size] = null;
+        values[size] = null;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() {
+
+            return CompactMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+
+            CompactMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+
+            if (spill != null) {
+
+                return spill.entrySet().iterator();
+            }
+
+            return new EntryIterator();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+
+            //
+            // a concurrent modification is reported as a pending element, so the following next() throws instead of
+            // the iteration ending silently - a spill empties the arrays
+            //
+            return next < size || modCount != expectedModCount;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+
+            checkForComodification();
+
+            if (next >= size) {
+
+                throw new NoSuchElementException();
+            }
+
+            last = next ++;
+            return new Entry(last);
+        }
+
+        @Override
+        public void remove() {
+
+            if (last == -1) {
+
+                throw new IllegalStateException();
+            }
+
+            checkForComodification();
+
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+
+            if (modCount != expectedModCount) {
+
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private class Entry implements Map.Entry<String, Object> {
+
+        private final String key;
+        private int index;
+
+        Entry(int index) {
+
+            this.key = keys[index];
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+
+            if (spill == null && index < size && keys[index] == key) {
+
+                return values[index];
+            }
+
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+
+            if (spill != null) {
+
+                return spill.put(key, value);
+            }
+
+            if (index >= size || keys[index] != key) {
+
+                index = indexOf(key);
+
+                if (index == -1) {
+
+                    throw new IllegalStateException("entry no longer in map: " + key);
+                }
+            }
+
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (!(o instanceof Map.Entry)) {
+
+                return false;
+            }
+
+            Map.Entry e = (Map.Entry)o;
+            Object value = getValue();
+
+            return (key == null ? e.getKey() == null : key.equals(e.getKey())) &&
+                    (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+
+            Object value = getValue();
+
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+
+            return key + "=" + getValue();
+        }
+    }
+
+}
@@ -30,6 +30,12 @@ public class DoubleProperty extends PropertyBase {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // the value is stored unboxed; PropertyBase.value is not used
+    //
+    private double doubleValue;
+    private boolean nullValue;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public DoubleProperty(String name) {
@@ -44,7 +50,19 @@ public class DoubleProperty extends PropertyBase {
 
     public DoubleProperty(String name, Double value, MeasureUnit mu) {
 
-        super(name, value, mu);
+        super(name, null, mu);
+        setValue(value);
+    }
+
+    public DoubleProperty(String name, double value) {
+
+        this(name, value, null);
+    }
+
+    public DoubleProperty(String name, double value, MeasureUnit mu) {
+
+        super(name, null, mu);
+        setDouble(value);
     }
 
     // Property implementation -----------------------------------------------------------------------------------------
@@ -58,7 +76,7 @@ public class DoubleProperty extends PropertyBase {
     public Property fromString(String s) throws IllegalArgumentException {
 
         try {
-            double f = Double.valueOf(s);
+            double f = Double.parseDouble(s);
             return new DoubleProperty(getName(), f);
         }
         catch(Exception e) {
@@ -66,6 +84,56 @@ public class DoubleProperty extends PropertyBase {
         }
     }
 
+    @Override
+    public Object getValue() {
+
+        return nullValue ? null : Double.valueOf(doubleValue);
+    }
+
+    /**
+     * A Number value of a different type is converted with Number.doubleValue(), as if by a primitive conversion,
+     * which may lose magnitude or precision.
+     *
+     * @exception IllegalArgumentException if the value is not null and not a Number.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        checkNotFrozen();
+
+        if (value == null) {
+
+            this.doubleValue = 0;
+            this.nullValue = true;
+        }
+        else if (value instanceof Number) {
+
+            setDouble(((Number)value).doubleValue());
+        }
+        else {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in a " + getClass().getSimpleName());
+        }
+    }
+
+    // PropertyBase overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isNull() {
+
+        return nullValue;
+    }
+
+    /**
+     * The value is stored unboxed.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(FIELD_BYTES + 8 + 1);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public Double getDouble() {
@@ -73,6 +141,25 @@ public class DoubleProperty extends PropertyBase {
         return (Double)getValue();
     }
 
+    /**
+     * Allocation-free access to the value.
+     *
+     * @return the unboxed value, or 0 if the value is null.
+     *
+     * @see DoubleProperty#isNull()
+     */
+    public double doubleValue() {
+
+        return doubleValue;
+    }
+
+    public void setDouble(double value) {
+
+        checkNotFrozen();
+        this.doubleValue = value;
+        this.nullValue = false;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -17,6 +17,7 @@
 package io.novaordis.events.api.event;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *
@@ -42,6 +43,17 @@ public interface Event {
     //
     String RAW_PROPERTY_NAME = "raw";
 
+    //
+    // marks events that have already been selected by the query applied while parsing. Maintained in the event header
+    // as QUERY_ONCE_FLAG, and also exposed as a BooleanProperty.
+    //
+    String QUERY_ONCE_PROPERTY_NAME = "query-once";
+
+    //
+    // header flags
+    //
+    int QUERY_ONCE_FLAG = 0x01;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -113,6 +125,52 @@ public interface Event {
      */
     List<Property> getProperties(Class type);
 
+    /**
+     * The default implementation builds the list, the implementations should override it.
+     *
+     * @return the number of properties that would be returned by getProperties(), without building the list.
+     */
+    default int propertyCount() {
+
+        return getProperties().size();
+    }
+
+    /**
+     * Applies the action to each property, in the order in which getProperties() would return them, without copying
+     * the internal storage.
+     *
+     * The default implementation iterates over getProperties(), the implementations should override it.
+     *
+     * @exception IllegalArgumentException if the action is null.
+     */
+    default void forEachProperty(Consumer<? super Property> action) {
+
+        if (action == null) {
+
+            throw new IllegalArgumentException("null action");
+        }
+
+        List<Property> properties = getProperties();
+
+        for(int i = 0; i < properties.size(); i ++) {
+
+            action.accept(properties.get(i));
+        }
+    }
+
+    /**
+     * @return a read-only, live view of the properties, in the order in which getProperties() would return them. The
+     * view reflects subsequent changes to the event, and it is not safe to use while the event is being modified. Any
+     * attempt to modify the view throws UnsupportedOperationException. The properties themselves must not be modified
+     * via the view. Intended for efficient indexed iteration, use getProperties() when a snapshot is needed.
+     *
+     * The default implementation is a view over propertyCount() and getProperty(int).
+     */
+    default List<Property> getPropertiesView() {
+
+        return new PropertiesView(this);
+    }
+
     /**
      * Remove the specified property.
      *
@@ -297,15 +355,111 @@ public interface Event {
      */
     ListProperty getListProperty(String listPropertyName);
 
+    // Primitive accessors ---------------------------------------------------------------------------------------------
+
+    //
+    // Allocation-free alternatives to the typed property accessors, to be used on the hot path.
+    //
+
+    /**
+     * @return the value of the LongProperty with the given name, or dflt if there is no such property, if the
+     * property with the given name is not a LongProperty or if its value is null.
+     *
+     * @exception IllegalArgumentException if the name is null.
+     */
+    default long getLong(String name, long dflt) {
+
+        Property p = getProperty(name);
+
+        if (p instanceof LongProperty && !((LongProperty)p).isNull()) {
+
+            return ((LongProperty)p).longValue();
+        }
+
+        return dflt;
+    }
+
+    /**
+     * @return the value of the IntegerProperty with the given name, or dflt if there is no such property, if the
+     * property with the given name is not an IntegerProperty or if its value is null.
+     *
+     * @exception IllegalArgumentException if the name is null.
+     */
+    default int getInteger(String name, int dflt) {
+
+        Property p = getProperty(name);
+
+        if (p instanceof IntegerProperty && !((IntegerProperty)p).isNull()) {
+
+            return ((IntegerProperty)p).intValue();
+        }
+
+        return dflt;
+    }
+
+    /**
+     * @return the value of the FloatProperty with the given name, or dflt if there is no such property, if the
+     * property with the given name is not a FloatProperty or if its value is null.
+     *
+     * @exception IllegalArgumentException if the name is null.
+     */
+    default float getFloat(String name, float dflt) {
+
+        Property p = getProperty(name);
+
+        if (p instanceof FloatProperty && !((FloatProperty)p).isNull()) {
+
+            return ((FloatProperty)p).floatValue();
+        }
+
+        return dflt;
+    }
+
+    /**
+     * @return the value of the DoubleProperty with the given name, or dflt if there is no such property, if the
+     * property with the given name is not a DoubleProperty or if its value is null.
+     *
+     * @exception IllegalArgumentException if the name is null.
+     */
+    default double getDouble(String name, double dflt) {
+
+        Property p = getProperty(name);
+
+        if (p instanceof DoubleProperty && !((DoubleProperty)p).isNull()) {
+
+            return ((DoubleProperty)p).doubleValue();
+        }
+
+        return dflt;
+    }
+
+    /**
+     * @return the value of the BooleanProperty with the given name, or dflt if there is no such property, if the
+     * property with the given name is not a BooleanProperty or if its value is null.
+     *
+     * @exception IllegalArgumentException if the name is null.
+     */
+    default boolean getBoolean(String name, boolean dflt) {
+
+        Property p = getProperty(name);
+
+        if (p instanceof BooleanProperty && !((BooleanProperty)p).isNull()) {
+
+            return ((BooleanProperty)p).booleanValue();
+        }
+
+        return dflt;
+    }
+
     // Typed accessors -------------------------------------------------------------------------------------------------
 
     /**
      * @return the line number associated with this event, in case of a single-line event, or the line number of the
-     * first line of the event, in case of a multi-line event). Internally, it is maintained as a Long property with the
-     * "line-number" name.
+     * first line of the event, in case of a multi-line event). Internally, it is maintained in the event header, and
+     * it is also exposed as a Long property with the "line" name.
      *
-     * If an internal value that cannot be converted to a long is found, the method returns null, and a warning
-     * is logged.
+     * If the "line" property is set with a value that cannot be converted to a long, the method returns null, and a
+     * warning is logged.
      */
     Long getLineNumber();
 
@@ -314,6 +468,70 @@ public interface Event {
      */
     void setLineNumber(Long lineNumber);
 
+    // Header ----------------------------------------------------------------------------------------------------------
+
+    //
+    // The header holds event metadata (line number, flags) in primitive form, so it can be read without property
+    // lookups. The header information is also exposed as properties, for compatibility, and the two are kept in sync.
+    //
+
+    /**
+     * Unboxed equivalent of getLineNumber().
+     *
+     * @return the line number, or dflt if the event does not carry line number information.
+     */
+    default long getLineNumber(long dflt) {
+
+        Long lineNumber = getLineNumber();
+
+        return lineNumber == null ? dflt : lineNumber;
+    }
+
+    /**
+     * The default implementation has no header, it derives the flags from their property counterparts.
+     *
+     * @param flag one or more header flags (QUERY_ONCE_FLAG, etc.), OR-ed together.
+     *
+     * @return true if all the given flags are set.
+     */
+    default boolean hasFlag(int flag) {
+
+        int flags = 0;
+
+        if (getBoolean(QUERY_ONCE_PROPERTY_NAME, false)) {
+
+            flags |= QUERY_ONCE_FLAG;
+        }
+
+        return (flags & flag) == flag;
+    }
+
+    /**
+     * Sets or clears the given header flags. Flags that have a property counterpart (QUERY_ONCE_FLAG) also update
+     * the property.
+     *
+     * The default implementation has no header, it only updates the property counterparts, so the flags that have no
+     * property counterpart are ignored.
+     *
+     * @param flag one or more header flags (QUERY_ONCE_FLAG, etc.), OR-ed together.
+     */
+    default void setFlag(int flag, boolean value) {
+
+        if ((flag & QUERY_ONCE_FLAG) == 0) {
+
+            return;
+        }
+
+        if (value) {
+
+            setBooleanProperty(QUERY_ONCE_PROPERTY_NAME, true);
+        }
+        else {
+
+            removeBooleanProperty(QUERY_ONCE_PROPERTY_NAME);
+        }
+    }
+
     /**
      * Return the event's preferred representation or null if the event has no preferred representation.
      *
@@ -352,4 +570,18 @@ public interface Event {
      */
     String getRawRepresentation();
 
+    /**
+     * The default implementation estimates the instance as holding a single reference, to the property list.
+     *
+     * @return an estimate of the heap bytes retained by the event: the event instance, its internal structures, and
+     * its properties, including the nested maps, lists and events. Intended for sizing in-memory windows of events.
+     *
+     * @see HeapFootprint
+     * @see EventBuffer
+     */
+    default long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(HeapFootprint.REFERENCE) + HeapFootprint.of(getProperties());
+    }
+
 }
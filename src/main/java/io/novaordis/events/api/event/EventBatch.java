@@ -0,0 +1,1000 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+
+/**
+ * A columnar (struct-of-arrays) container for a batch of events, intended for bulk processing of large numbers of
+ * similar events, such as metric samples.
+ *
+ * The time is kept in a long[]. Each property name gets a column: Long, Integer, Float, Double and Boolean properties
+ * are stored in primitive arrays, String properties are dictionary-encoded, and any other property (or a property
+ * whose type, measure unit or format differs from those already in the column) is kept as is, in an object column.
+ * Each column maintains a presence bitmap and a null bitmap.
+ *
+ * The properties of a row are reported in column order, which is the order in which the property names were first
+ * encountered. The header information (line number, query-once flag) is carried by the corresponding properties.
+ * The original event classes are not preserved: rows materialize as GenericEvents or GenericTimedEvents.
+ *
+ * The current implementation is not thread safe.
+ *
+ * @see EventBatch#getRow(int)
+ * @see EventBatch#toEvents()
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/4/17
+ */
+public class EventBatch {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // marks rows without a time, consistent with the TimeQuery convention
+    //
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null list or null events.
+     */
+    public static EventBatch fromEvents(List<? extends Event> events) {
+
+        if (events == null) {
+
+            throw new IllegalArgumentException("null event list");
+        }
+
+        EventBatch b = new EventBatch(events.size());
+
+        for(Event e: events) {
+
+            b.add(e);
+        }
+
+        return b;
+    }
+
+    static boolean isSet(long[] bitmap, int i) {
+
+        return (bitmap[i >>> 6] & (1L << i)) != 0;
+    }
+
+    static void set(long[] bitmap, int i) {
+
+        bitmap[i >>> 6] |= 1L << i;
+    }
+
+    private static long[] growBitmap(long[] bitmap, int capacity) {
+
+        int words = (capacity + 63) >>> 6;
+        return bitmap.length >= words ? bitmap : Arrays.copyOf(bitmap, words);
+    }
+
+    private static boolean same(Object o, Object o2) {
+
+        return o == null ? o2 == null : o.equals(o2);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private int size;
+
+    private int capacity;
+
+    //
+    // NO_TIME for rows without a time
+    //
+    private long[] times;
+
+    private long[] timedRows;
+
+    private List<Column> columns;
+
+    private Map<String, Column> columnsByName;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public EventBatch() {
+
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity the initial number of rows. The batch grows as needed.
+     */
+    public EventBatch(int capacity) {
+
+        if (capacity < 0) {
+
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        this.capacity = Math.max(capacity, 1);
+        this.times = new long[this.capacity];
+        this.timedRows = growBitmap(new long[0], this.capacity);
+        this.columns = new ArrayList<>();
+        this.columnsByName = new HashMap<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the event as a new row. The event is not retained, but properties that end up in object columns are
+     * (shallow copy).
+     *
+     * @return the row index.
+     *
+     * @exception IllegalArgumentException on null event.
+     */
+    public int add(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        ensureCapacity(size + 1);
+
+        int row = size ++;
+
+        times[row] = NO_TIME;
+
+        if (e.isTimed()) {
+
+            set(timedRows, row);
+            times[row] = ((TimedEvent)e).getTime(NO_TIME);
+        }
+
+        List<Property> properties = e.getPropertiesView();
+
+        for(int i = 0; i < properties.size(); i ++) {
+
+            Property p = properties.get(i);
+
+            if (p instanceof TimestampProperty) {
+
+                //
+                // maintained in the time column
+                //
+
+                continue;
+            }
+
+            Column c = columnsByName.get(p.getName());
+
+            if (c == null) {
+
+                c = newColumn(p);
+                columns.add(c);
+                columnsByName.put(p.getName(), c);
+            }
+            else if (!c.accepts(p)) {
+
+                c = toObjectColumn(c);
+            }
+
+            c.ensureCapacity(capacity);
+            c.write(row, p);
+        }
+
+        return row;
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * @return true if the row was produced by a timed event.
+     *
+     * @exception IndexOutOfBoundsException on invalid rows.
+     */
+    public boolean isTimed(int row) {
+
+        checkRow(row);
+        return isSet(timedRows, row);
+    }
+
+    /**
+     * @return the time of the row, or dflt if the row has no time.
+     *
+     * @exception IndexOutOfBoundsException on invalid rows.
+     */
+    public long getTime(int row, long dflt) {
+
+        checkRow(row);
+        long t = times[row];
+        return t == NO_TIME ? dflt : t;
+    }
+
+    /**
+     * @return the backing time array, for vectorized processing. Only the first size() elements are meaningful, and
+     * rows without a time contain NO_TIME. Must not be modified.
+     */
+    public long[] getTimes() {
+
+        return times;
+    }
+
+    /**
+     * @return the columns, in the order in which the property names were first encountered. The list cannot be
+     * modified.
+     */
+    public List<Column> getColumns() {
+
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * @return the column for the given property name, or null if no row carries such property.
+     */
+    public Column getColumn(String name) {
+
+        return columnsByName.get(name);
+    }
+
+    /**
+     * @return a read-only Event view of the row. The view reads through to the columns: the primitive accessors
+     * (getLong(), getDouble(), etc.) do not allocate, while property instances are built on each access. Timed rows
+     * are exposed as TimedEvents.
+     *
+     * @exception IndexOutOfBoundsException on invalid rows.
+     */
+    public Event getRow(int row) {
+
+        checkRow(row);
+
+        return isSet(timedRows, row) ? new TimedEventBatchRow(this, row) : new EventBatchRow(this, row);
+    }
+
+    /**
+     * @return independent GenericEvent or GenericTimedEvent instances, one per row, in row order.
+     */
+    public List<Event> toEvents() {
+
+        List<Event> result = new ArrayList<>(size);
+
+        for(int row = 0; row < size; row ++) {
+
+            GenericEvent e;
+
+            if (isSet(timedRows, row)) {
+
+                GenericTimedEvent te = new GenericTimedEvent();
+
+                if (times[row] != NO_TIME) {
+
+                    te.setTime(times[row]);
+                }
+
+                e = te;
+            }
+            else {
+
+                e = new GenericEvent();
+            }
+
+            for(Column c: columns) {
+
+                if (c.isPresent(row)) {
+
+                    e.setProperty(c.toProperty(row));
+                }
+            }
+
+            result.add(e);
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventBatch[" + size + " rows, " + columns.size() + " columns]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void checkRow(int row) {
+
+        if (row < 0 || row >= size) {
+
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+    }
+
+    /**
+     * @return the internal column list, which must not be modified.
+     */
+    List<Column> columns() {
+
+        return columns;
+    }
+
+    /**
+     * @return the number of columns present on the given row.
+     */
+    int presentColumnCount(int row) {
+
+        int count = 0;
+
+        for(Column c: columns) {
+
+            if (c.isPresent(row)) {
+
+                count ++;
+            }
+        }
+
+        return count;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void ensureCapacity(int required) {
+
+        if (required <= capacity) {
+
+            return;
+        }
+
+        capacity = Math.max(required, capacity * 2);
+        times = Arrays.copyOf(times, capacity);
+        timedRows = growBitmap(timedRows, capacity);
+    }
+
+    private Column newColumn(Property p) {
+
+        String name = p.getName();
+        MeasureUnit mu = p.getMeasureUnit();
+        Class c = p.getClass();
+
+        if (p.getFormat() != null) {
+
+            return new ObjectColumn(name, p.getType(), mu);
+        }
+        else if (c == LongProperty.class) {
+
+            return new LongColumn(name, mu);
+        }
+        else if (c == IntegerProperty.class) {
+
+            return new IntegerColumn(name, mu);
+        }
+        else if (c == FloatProperty.class) {
+
+            return new FloatColumn(name, mu);
+        }
+        else if (c == DoubleProperty.class) {
+
+            return new DoubleColumn(name, mu);
+        }
+        else if (c == BooleanProperty.class) {
+
+            return new BooleanColumn(name, mu);
+        }
+        else if (c == StringProperty.class || c == ByteSliceStringProperty.class) {
+
+            return new StringColumn(name, mu);
+        }
+
+        return new ObjectColumn(name, p.getType(), mu);
+    }
+
+    /**
+     * Replaces the column with an equivalent object column, which accepts any property.
+     */
+    private Column toObjectColumn(Column c) {
+
+        ObjectColumn oc = new ObjectColumn(c.getName(), null, null);
+        oc.ensureCapacity(capacity);
+
+        for(int row = 0; row < size - 1; row ++) {
+
+            if (c.isPresent(row)) {
+
+                oc.write(row, c.toProperty(row));
+            }
+        }
+
+        columns.set(columns.indexOf(c), oc);
+        columnsByName.put(c.getName(), oc);
+
+        return oc;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * A column holds the values of a property, across all rows of the batch.
+     */
+    public static abstract class Column {
+
+        private String name;
+        private Class type;
+        private MeasureUnit measureUnit;
+
+        protected long[] present;
+        protected long[] nulls;
+
+        private Column(String name, Class type, MeasureUnit measureUnit) {
+
+            this.name = name;
+            this.type = type;
+            this.measureUnit = measureUnit;
+            this.present = new long[0];
+            this.nulls = new long[0];
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        /**
+         * @return the type of the property values, as returned by Property.getType(). May be null for object columns
+         * that hold properties of different types.
+         */
+        public Class getType() {
+
+            return type;
+        }
+
+        /**
+         * @return the measure unit shared by all values in the column. May be null.
+         */
+        public MeasureUnit getMeasureUnit() {
+
+            return measureUnit;
+        }
+
+        /**
+         * @return true if the row carries the property, even if its value is null.
+         */
+        public boolean isPresent(int row) {
+
+            return row < present.length << 6 && isSet(present, row);
+        }
+
+        /**
+         * @return true if the row does not carry the property, or the property has a null value.
+         */
+        public boolean isNull(int row) {
+
+            return !isPresent(row) || isSet(nulls, row);
+        }
+
+        /**
+         * @return a new property instance carrying the row's value, or null if the row does not carry the property.
+         */
+        public abstract Property toProperty(int row);
+
+        @Override
+        public String toString() {
+
+            return getClass().getSimpleName() + "[" + name + "]";
+        }
+
+        /**
+         * @return true if the property can be stored in this column without loss of information.
+         */
+        boolean accepts(Property p) {
+
+            return p.getFormat() == null && same(measureUnit, p.getMeasureUnit());
+        }
+
+        void ensureCapacity(int capacity) {
+
+            present = growBitmap(present, capacity);
+            nulls = growBitmap(nulls, capacity);
+            ensureValueCapacity(capacity);
+        }
+
+        abstract void ensureValueCapacity(int capacity);
+
+        /**
+         * The property must have been accepted.
+         */
+        void write(int row, Property p) {
+
+            set(present, row);
+
+            if (p instanceof PropertyBase ? ((PropertyBase)p).isNull() : p.getValue() == null) {
+
+                set(nulls, row);
+            }
+            else {
+
+                writeValue(row, p);
+            }
+        }
+
+        abstract void writeValue(int row, Property p);
+
+        <P extends PropertyBase> P withMeasureUnit(P p) {
+
+            p.setMeasureUnit(measureUnit);
+            return p;
+        }
+    }
+
+    public static class LongColumn extends Column {
+
+        private long[] values;
+
+        private LongColumn(String name, MeasureUnit mu) {
+
+            super(name, Long.class, mu);
+            this.values = new long[0];
+        }
+
+        /**
+         * @return the value, or 0 if the row does not carry the property or the value is null.
+         */
+        public long get(int row) {
+
+            return row < values.length ? values[row] : 0L;
+        }
+
+        /**
+         * @return the backing array, for vectorized processing. Must not be modified. Use the bitmaps to tell absent or
+         * null values from zero.
+         */
+        public long[] array() {
+
+            return values;
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            if (!isPresent(row)) {
+
+                return null;
+            }
+
+            return withMeasureUnit(isNull(row) ? new LongProperty(getName()) : new LongProperty(getName(), get(row)));
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            return p.getClass() == LongProperty.class && super.accepts(p);
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            if (values.length < capacity) {
+
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            values[row] = ((LongProperty)p).longValue();
+        }
+    }
+
+    public static class IntegerColumn extends Column {
+
+        private int[] values;
+
+        private IntegerColumn(String name, MeasureUnit mu) {
+
+            super(name, Integer.class, mu);
+            this.values = new int[0];
+        }
+
+        /**
+         * @return the value, or 0 if the row does not carry the property or the value is null.
+         */
+        public int get(int row) {
+
+            return row < values.length ? values[row] : 0;
+        }
+
+        /**
+         * @return the backing array, for vectorized processing. Must not be modified.
+         */
+        public int[] array() {
+
+            return values;
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            if (!isPresent(row)) {
+
+                return null;
+            }
+
+            return withMeasureUnit(
+                    isNull(row) ? new IntegerProperty(getName()) : new IntegerProperty(getName(), get(row)));
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            return p.getClass() == IntegerProperty.class && super.accepts(p);
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            if (values.length < capacity) {
+
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            values[row] = ((IntegerProperty)p).intValue();
+        }
+    }
+
+    public static class FloatColumn extends Column {
+
+        private float[] values;
+
+        private FloatColumn(String name, MeasureUnit mu) {
+
+            super(name, Float.class, mu);
+            this.values = new float[0];
+        }
+
+        /**
+         * @return the value, or 0 if the row does not carry the property or the value is null.
+         */
+        public float get(int row) {
+
+            return row < values.length ? values[row] : 0f;
+        }
+
+        /**
+         * @return the backing array, for vectorized processing. Must not be modified.
+         */
+        public float[] array() {
+
+            return values;
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            if (!isPresent(row)) {
+
+                return null;
+            }
+
+            return withMeasureUnit(isNull(row) ? new FloatProperty(getName()) : new FloatProperty(getName(), get(row)));
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            return p.getClass() == FloatProperty.class && super.accepts(p);
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            if (values.length < capacity) {
+
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            values[row] = ((FloatProperty)p).floatValue();
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+
+        private double[] values;
+
+        private DoubleColumn(String name, MeasureUnit mu) {
+
+            super(name, Double.class, mu);
+            this.values = new double[0];
+        }
+
+        /**
+         * @return the value, or 0 if the row does not carry the property or the value is null.
+         */
+        public double get(int row) {
+
+            return row < values.length ? values[row] : 0d;
+        }
+
+        /**
+         * @return the backing array, for vectorized processing. Must not be modified.
+         */
+        public double[] array() {
+
+            return values;
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            if (!isPresent(row)) {
+
+                return null;
+            }
+
+            return withMeasureUnit(
+                    isNull(row) ? new DoubleProperty(getName()) : new DoubleProperty(getName(), get(row)));
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            return p.getClass() == DoubleProperty.class && super.accepts(p);
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            if (values.length < capacity) {
+
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            values[row] = ((DoubleProperty)p).doubleValue();
+        }
+    }
+
+    /**
+     * The values are kept in a bitmap.
+     */
+    public static class BooleanColumn extends Column {
+
+        private long[] values;
+
+        private BooleanColumn(String name, MeasureUnit mu) {
+
+            super(name, Boolean.class, mu);
+            this.values = new long[0];
+        }
+
+        /**
+         * @return the value, or false if the row does not carry the property or the value is null.
+         */
+        public boolean get(int row) {
+
+            return row < values.length << 6 && isSet(values, row);
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            if (!isPresent(row)) {
+
+                return null;
+            }
+
+            return withMeasureUnit(
+                    isNull(row) ? new BooleanProperty(getName(), (Boolean)null) : new BooleanProperty(getName(),
+                            get(row)));
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            return p.getClass() == BooleanProperty.class && super.accepts(p);
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            values = growBitmap(values, capacity);
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            if (((BooleanProperty)p).booleanValue()) {
+
+                set(values, row);
+            }
+        }
+    }
+
+    /**
+     * The values are dictionary-encoded: each row holds the code of its value, and each distinct value is stored once.
+     * ByteSliceStringProperty values are stored as Strings, and read back as StringProperty instances.
+     */
+    public static class StringColumn extends Column {
+
+        private int[] codes;
+        private List<String> dictionary;
+        private Map<String, Integer> dictionaryIndex;
+
+        private StringColumn(String name, MeasureUnit mu) {
+
+            super(name, String.class, mu);
+            this.codes = new int[0];
+            this.dictionary = new ArrayList<>();
+            this.dictionaryIndex = new HashMap<>();
+        }
+
+        /**
+         * @return the value, or null if the row does not carry the property or the value is null.
+         */
+        public String get(int row) {
+
+            return isNull(row) ? null : dictionary.get(codes[row]);
+        }
+
+        /**
+         * @return the dictionary code of the row's value, or -1 if the row does not carry the property or the value is
+         * null.
+         */
+        public int getCode(int row) {
+
+            return isNull(row) ? -1 : codes[row];
+        }
+
+        /**
+         * @return the distinct values, indexed by code. The list cannot be modified.
+         */
+        public List<String> getDictionary() {
+
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            if (!isPresent(row)) {
+
+                return null;
+            }
+
+            return withMeasureUnit(new StringProperty(getName(), get(row)));
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            Class c = p.getClass();
+            return (c == StringProperty.class || c == ByteSliceStringProperty.class) && super.accepts(p);
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            if (codes.length < capacity) {
+
+                codes = Arrays.copyOf(codes, capacity);
+            }
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            String s = ((StringProperty)p).getString();
+
+            Integer code = dictionaryIndex.get(s);
+
+            if (code == null) {
+
+                code = dictionary.size();
+                dictionary.add(s);
+                dictionaryIndex.put(s, code);
+            }
+
+            codes[row] = code;
+        }
+    }
+
+    /**
+     * Keeps the original property instances. Used for property types that have no columnar representation, and for
+     * properties whose type, measure unit or format vary across rows.
+     */
+    public static class ObjectColumn extends Column {
+
+        private Property[] values;
+
+        private ObjectColumn(String name, Class type, MeasureUnit mu) {
+
+            super(name, type, mu);
+            this.values = new Property[0];
+        }
+
+        /**
+         * @return the property instance stored on the row, or null if the row does not carry the property. Unlike
+         * toProperty(), it does not allocate.
+         */
+        public Property get(int row) {
+
+            return row < values.length ? values[row] : null;
+        }
+
+        @Override
+        public Property toProperty(int row) {
+
+            return get(row);
+        }
+
+        @Override
+        boolean accepts(Property p) {
+
+            return true;
+        }
+
+        @Override
+        void ensureValueCapacity(int capacity) {
+
+            if (values.length < capacity) {
+
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        void write(int row, Property p) {
+
+            set(present, row);
+
+            if (p.getValue() == null) {
+
+                set(nulls, row);
+            }
+
+            values[row] = p;
+        }
+
+        @Override
+        void writeValue(int row, Property p) {
+
+            values[row] = p;
+        }
+    }
+
+}
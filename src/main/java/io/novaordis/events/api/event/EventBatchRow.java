@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A read-only Event view of an EventBatch row. Reads through to the batch columns: the primitive accessors do not
+ * allocate, property instances are built on each access. All mutators throw UnsupportedOperationException.
+ *
+ * @see EventBatch#getRow(int)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/4/17
+ */
+class EventBatchRow extends GenericEvent {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    protected EventBatch batch;
+
+    protected int row;
+
+    private List<Property> propertiesView;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    EventBatchRow(EventBatch batch, int row) {
+
+        this.batch = batch;
+        this.row = row;
+    }
+
+    // GenericEvent overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public Property getProperty(String name) {
+
+        if (name == null)  {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        EventBatch.Column c = batch.getColumn(name);
+
+        return c == null ? null : c.toProperty(row);
+    }
+
+    @Override
+    public Property getProperty(int i) {
+
+        if (i < 0) {
+
+            throw new IllegalArgumentException("invalid property index: " + i);
+        }
+
+        int crt = 0;
+
+        for(EventBatch.Column c: batch.columns()) {
+
+            if (!c.isPresent(row)) {
+
+                continue;
+            }
+
+            if (crt == i) {
+
+                return c.toProperty(row);
+            }
+
+            crt ++;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a list of properties built on the fly, in column order.
+     */
+    @Override
+    public List<Property> getProperties() {
+
+        List<Property> result = new ArrayList<>();
+
+        for(EventBatch.Column c: batch.columns()) {
+
+            if (c.isPresent(row)) {
+
+                result.add(c.toProperty(row));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<Property> getProperties(Class type) {
+
+        if (type == null) {
+
+            throw new IllegalArgumentException("null type");
+        }
+
+        Class<?> t = type;
+        List<Property> result = null;
+
+        for(Property p: getProperties()) {
+
+            if (t.isAssignableFrom(p.getType())) {
+
+                if (result == null) {
+
+                    result = new ArrayList<>();
+                }
+
+                result.add(p);
+            }
+        }
+
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    @Override
+    public int propertyCount() {
+
+        return batch.presentColumnCount(row);
+    }
+
+    /**
+     * The properties are built on the fly.
+     */
+    @Override
+    public void forEachProperty(Consumer<? super Property> action) {
+
+        if (action == null) {
+
+            throw new IllegalArgumentException("null action");
+        }
+
+        for(EventBatch.Column c: batch.columns()) {
+
+            if (c.isPresent(row)) {
+
+                action.accept(c.toProperty(row));
+            }
+        }
+    }
+
+    /**
+     * The properties are built on the fly, on each access.
+     */
+    @Override
+    public List<Property> getPropertiesView() {
+
+        if (propertiesView == null) {
+
+            propertiesView = new PropertiesView(this);
+        }
+
+        return propertiesView;
+    }
+
+    //
+    // the primitive accessors read the columns directly, to avoid building a Property instance
+    //
+
+    @Override
+    public long getLong(String name, long dflt) {
+
+        EventBatch.Column c = column(name);
+
+        if (c instanceof EventBatch.LongColumn && !c.isNull(row)) {
+
+            return ((EventBatch.LongColumn)c).get(row);
+        }
+
+        return c instanceof EventBatch.ObjectColumn ? super.getLong(name, dflt) : dflt;
+    }
+
+    @Override
+    public int getInteger(String name, int dflt) {
+
+        EventBatch.Column c = column(name);
+
+        if (c instanceof EventBatch.IntegerColumn && !c.isNull(row)) {
+
+            return ((EventBatch.IntegerColumn)c).get(row);
+        }
+
+        return c instanceof EventBatch.ObjectColumn ? super.getInteger(name, dflt) : dflt;
+    }
+
+    @Override
+    public float getFloat(String name, float dflt) {
+
+        EventBatch.Column c = column(name);
+
+        if (c instanceof EventBatch.FloatColumn && !c.isNull(row)) {
+
+            return ((EventBatch.FloatColumn)c).get(row);
+        }
+
+        return c instanceof EventBatch.ObjectColumn ? super.getFloat(name, dflt) : dflt;
+    }
+
+    @Override
+    public double getDouble(String name, double dflt) {
+
+        EventBatch.Column c = column(name);
+
+        if (c instanceof EventBatch.DoubleColumn && !c.isNull(row)) {
+
+            return ((EventBatch.DoubleColumn)c).get(row);
+        }
+
+        return c instanceof EventBatch.ObjectColumn ? super.getDouble(name, dflt) : dflt;
+    }
+
+    @Override
+    public boolean getBoolean(String name, boolean dflt) {
+
+        EventBatch.Column c = column(name);
+
+        if (c instanceof EventBatch.BooleanColumn && !c.isNull(row)) {
+
+            return ((EventBatch.BooleanColumn)c).get(row);
+        }
+
+        return c instanceof EventBatch.ObjectColumn ? super.getBoolean(name, dflt) : dflt;
+    }
+
+    //
+    // the header is derived from the corresponding properties
+    //
+
+    @Override
+    public Long getLineNumber() {
+
+        LongProperty p = getLongProperty(LINE_PROPERTY_NAME);
+        return p == null ? null : (Long)p.getValue();
+    }
+
+    @Override
+    public long getLineNumber(long dflt) {
+
+        return getLong(LINE_PROPERTY_NAME, dflt);
+    }
+
+    @Override
+    public boolean hasFlag(int flag) {
+
+        int flags = getBoolean(QUERY_ONCE_PROPERTY_NAME, false) ? QUERY_ONCE_FLAG : 0;
+        return (flags & flag) == flag;
+    }
+
+    //
+    // read-only
+    //
+
+    @Override
+    public Property setProperty(Property property) {
+
+        throw new UnsupportedOperationException(this + " is read-only");
+    }
+
+    @Override
+    public Property removeProperty(String name, Class type) {
+
+        throw new UnsupportedOperationException(this + " is read-only");
+    }
+
+    @Override
+    public void clearProperties() {
+
+        throw new UnsupportedOperationException(this + " is read-only");
+    }
+
+    @Override
+    public void setFlag(int flag, boolean value) {
+
+        throw new UnsupportedOperationException(this + " is read-only");
+    }
+
+    /**
+     * The row's share of the batch is estimated as the size of its properties, if they were materialized. The columns
+     * store the values more compactly, so the estimate errs on the high side.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        long result = super.estimateRetainedBytes() + HeapFootprint.align(2 * HeapFootprint.REFERENCE + 4);
+
+        for(Property p: getProperties()) {
+
+            result += p.estimateRetainedBytes();
+        }
+
+        return result;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public int getRow() {
+
+        return row;
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventBatch row " + row;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private EventBatch.Column column(String name) {
+
+        if (name == null)  {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        return batch.getColumn(name);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
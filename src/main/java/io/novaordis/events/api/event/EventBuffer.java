@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * A FIFO buffer of events that enforces a heap budget, in bytes, rather than an event count. The size of each event is
+ * estimated with Event.estimateRetainedBytes() when the event is added, and the estimate is not updated afterwards, so
+ * the buffered events must not change. GenericEvent and SchemaEvent instances are frozen in place when added (see
+ * GenericEvent#freeze()), so they cannot be modified while buffered, or afterwards; add a mutableCopy() if the caller
+ * needs to keep changing the event. Other Event implementations are buffered as they are, and must not be modified
+ * by their holders while buffered.
+ *
+ * When an event does not fit in the budget, the overflow policy decides what happens: the oldest events are dropped
+ * to make room (DROP_OLDEST), the new event is dropped (DROP_NEWEST), or the oldest events are removed to make room and
+ * passed to a spill consumer (SPILL_OLDEST), which may write them to disk, forward them downstream, etc. An event
+ * larger than the whole budget is never buffered: it is dropped, or spilled.
+ *
+ * The current implementation is not thread safe.
+ *
+ * @see Event#estimateRetainedBytes()
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class EventBuffer implements Iterable<Event> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the per-event bookkeeping: an entry holding a reference and a long, referenced from the deque
+    //
+    static final long ENTRY_OVERHEAD = HeapFootprint.ofObject(HeapFootprint.REFERENCE + 8) + HeapFootprint.REFERENCE;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param fraction the fraction of the maximum heap size (-Xmx) to use, in the (0, 1] interval.
+     *
+     * @return a budget that is the given fraction of the maximum heap size of this JVM.
+     *
+     * @exception IllegalArgumentException if the fraction is not in the (0, 1] interval.
+     */
+    public static long budgetFromMaxHeap(double fraction) {
+
+        if (!(fraction > 0d && fraction <= 1d)) {
+
+            throw new IllegalArgumentException("invalid heap fraction: " + fraction);
+        }
+
+        return Math.max(1L, (long)(Runtime.getRuntime().maxMemory() * fraction));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private long budget;
+
+    private OverflowPolicy policy;
+
+    //
+    // null unless the policy is SPILL_OLDEST
+    //
+    private Consumer<? super Event> spill;
+
+    private ArrayDeque<Entry> entries;
+
+    private long retainedBytes;
+
+    private long droppedCount;
+
+    private long spilledCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param budget the maximum number of bytes the buffered events may retain.
+     *
+     * @exception IllegalArgumentException on non-positive budget, null policy, or SPILL_OLDEST (use the constructor
+     * that takes a spill consumer).
+     */
+    public EventBuffer(long budget, OverflowPolicy policy) {
+
+        this(budget, policy, null);
+    }
+
+    /**
+     * Creates a SPILL_OLDEST buffer.
+     *
+     * @param budget the maximum number of bytes the buffered events may retain.
+     * @param spill receives, in order, the events that do not fit in the budget.
+     *
+     * @exception IllegalArgumentException on non-positive budget or null spill consumer.
+     */
+    public EventBuffer(long budget, Consumer<? super Event> spill) {
+
+        this(budget, OverflowPolicy.SPILL_OLDEST, spill);
+    }
+
+    private EventBuffer(long budget, OverflowPolicy policy, Consumer<? super Event> spill) {
+
+        if (budget <= 0) {
+
+            throw new IllegalArgumentException("invalid budget: " + budget);
+        }
+
+        if (policy == null) {
+
+            throw new IllegalArgumentException("null policy");
+        }
+
+        if (policy == OverflowPolicy.SPILL_OLDEST && spill == null) {
+
+            throw new IllegalArgumentException("null spill consumer");
+        }
+
+        this.budget = budget;
+        this.policy = policy;
+        this.spill = spill;
+        this.entries = new ArrayDeque<>();
+    }
+
+    // Iterable implementation -----------------------------------------------------------------------------------------
+
+    /**
+     * @return a read-only iterator over the buffered events, oldest first.
+     */
+    @Override
+    public Iterator<Event> iterator() {
+
+        final Iterator<Entry> i = entries.iterator();
+
+        return new Iterator<Event>() {
+
+            @Override
+            public boolean hasNext() {
+
+                return i.hasNext();
+            }
+
+            @Override
+            public Event next() {
+
+                return i.next().event;
+            }
+        };
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the event, applying the overflow policy if the event does not fit in the budget. A GenericEvent or a
+     * SchemaEvent is frozen before its size is estimated, even if it is then dropped or spilled.
+     *
+     * @return true if the event was buffered, false if it was dropped or spilled.
+     *
+     * @exception IllegalArgumentException on null event.
+     */
+    public boolean add(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        freeze(e);
+
+        long bytes = e.estimateRetainedBytes() + ENTRY_OVERHEAD;
+
+        if (bytes > budget) {
+
+            overflow(e);
+            return false;
+        }
+
+        if (retainedBytes + bytes > budget && policy == OverflowPolicy.DROP_NEWEST) {
+
+            overflow(e);
+            return false;
+        }
+
+        while(retainedBytes + bytes > budget) {
+
+            overflow(poll());
+        }
+
+        entries.addLast(new Entry(e, bytes));
+        retainedBytes += bytes;
+
+        return true;
+    }
+
+    /**
+     * Removes the oldest event.
+     *
+     * @return the oldest event, or null if the buffer is empty.
+     */
+    public Event poll() {
+
+        Entry oldest = entries.pollFirst();
+
+        if (oldest == null) {
+
+            return null;
+        }
+
+        retainedBytes -= oldest.bytes;
+
+        return oldest.event;
+    }
+
+    /**
+     * @return the oldest event, without removing it, or null if the buffer is empty.
+     */
+    public Event peek() {
+
+        Entry oldest = entries.peekFirst();
+
+        return oldest == null ? null : oldest.event;
+    }
+
+    public int size() {
+
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+
+        return entries.isEmpty();
+    }
+
+    /**
+     * Discards the buffered events. They are not counted as dropped, and they are not spilled.
+     */
+    public void clear() {
+
+        entries.clear();
+        retainedBytes = 0L;
+    }
+
+    /**
+     * @return the estimated number of bytes retained by the buffered events, including the buffer's own bookkeeping.
+     * Never exceeds the budget.
+     */
+    public long getRetainedBytes() {
+
+        return retainedBytes;
+    }
+
+    public long getBudget() {
+
+        return budget;
+    }
+
+    /**
+     * Changes the budget. If the new budget is smaller than the retained bytes, the oldest events are dropped, or
+     * spilled, until the buffer fits in the new budget, whatever the policy.
+     *
+     * @exception IllegalArgumentException on non-positive budget.
+     */
+    public void setBudget(long budget) {
+
+        if (budget <= 0) {
+
+            throw new IllegalArgumentException("invalid budget: " + budget);
+        }
+
+        this.budget = budget;
+
+        while(retainedBytes > budget) {
+
+            overflow(poll());
+        }
+    }
+
+    public OverflowPolicy getPolicy() {
+
+        return policy;
+    }
+
+    /**
+     * @return the number of events dropped because they did not fit in the budget.
+     */
+    public long getDroppedCount() {
+
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of events passed to the spill consumer.
+     */
+    public long getSpilledCount() {
+
+        return spilledCount;
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventBuffer[" + size() + " events, " + retainedBytes + "/" + budget + " bytes, " + policy + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * The size estimate is cached when the event is added, so the events that can be made immutable are frozen.
+     */
+    private static void freeze(Event e) {
+
+        if (e instanceof GenericEvent) {
+
+            ((GenericEvent)e).freeze();
+        }
+        else if (e instanceof SchemaEvent) {
+
+            ((SchemaEvent)e).freeze();
+        }
+    }
+
+    private void overflow(Event e) {
+
+        if (policy == OverflowPolicy.SPILL_OLDEST) {
+
+            spilledCount ++;
+            spill.accept(e);
+        }
+        else {
+
+            droppedCount ++;
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum OverflowPolicy {
+
+        //
+        // the oldest events are dropped to make room for the new one
+        //
+        DROP_OLDEST,
+
+        //
+        // the new event is dropped
+        //
+        DROP_NEWEST,
+
+        //
+        // the oldest events are removed to make room for the new one, and passed to the spill consumer
+        //
+        SPILL_OLDEST,
+    }
+
+    private static class Entry {
+
+        private final Event event;
+        private final long bytes;
+
+        Entry(Event event, long bytes) {
+
+            this.event = event;
+            this.bytes = bytes;
+        }
+    }
+
+}
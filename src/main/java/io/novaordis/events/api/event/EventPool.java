@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A pool of reusable events, intended to eliminate per-event allocation in parse/filter loops.
+ *
+ * Events are obtained with acquire() and returned with release() (or with recycle(), by consumers that do not know
+ * the pool). A released event is reset(), and its properties are retained for reuse by the event's typed mutators.
+ * Once an event has been released, the caller must not retain any reference to it, or to any of its properties.
+ *
+ * Frozen events are detached from their pool (see GenericEvent#freeze()), and they are not returned to it: they may
+ * be read by other threads at any time.
+ *
+ * The pool is thread-confined: it must only be used by the thread that first acquired an event from it, usually the
+ * parsing thread. A pool with a capacity of 0 does not pool anything, acquire() simply delegates to the factory.
+ *
+ * @see GenericEvent#reset()
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/3/17
+ */
+public class EventPool<E extends GenericEvent> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the event to the pool it was acquired from, if any. Intended for consumers that drop events they do not
+     * keep, and do not know whether they were pooled. The invocation is a noop for events that were not acquired from a
+     * pool, for frozen events, or if invoked on a thread other than the pool's owner thread.
+     *
+     * @return true if the event was returned to its pool.
+     *
+     * @exception IllegalStateException if the event was already released.
+     */
+    public static boolean recycle(Event e) {
+
+        if (!(e instanceof GenericEvent)) {
+
+            return false;
+        }
+
+        GenericEvent ge = (GenericEvent)e;
+
+        EventPool<?> pool = ge.getPool();
+
+        if (pool == null || pool.owner != Thread.currentThread()) {
+
+            return false;
+        }
+
+        pool.releaseInternal(ge);
+
+        return true;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Supplier<E> factory;
+
+    private int capacity;
+
+    private GenericEvent[] free;
+
+    private int size;
+
+    private Thread owner;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public EventPool(Supplier<E> factory) {
+
+        this(factory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of idle events kept by the pool. 0 disables pooling.
+     *
+     * @exception IllegalArgumentException on null factory or negative capacity.
+     */
+    public EventPool(Supplier<E> factory, int capacity) {
+
+        if (factory == null) {
+
+            throw new IllegalArgumentException("null factory");
+        }
+
+        this.factory = factory;
+        this.free = new GenericEvent[0];
+
+        setCapacity(capacity);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return an idle event, or a new one if there is no idle event in the pool. Never null.
+     *
+     * @exception IllegalStateException if invoked on a thread other than the pool's owner thread.
+     */
+    @SuppressWarnings("unchecked")
+    public E acquire() {
+
+        checkOwner();
+
+        if (size > 0) {
+
+            GenericEvent e = free[-- size];
+            free[size] = null;
+            e.setPooled(false);
+
+            //
+            // only events produced by this pool's factory carry this pool, so only they can be released into it
+            //
+            return (E)e;
+        }
+
+        E e = factory.get();
+
+        if (e == null) {
+
+            throw new IllegalStateException("the factory produced a null event");
+        }
+
+        if (capacity > 0) {
+
+            e.setPool(this);
+        }
+
+        return e;
+    }
+
+    /**
+     * Resets the event and returns it to the pool. If the pool is full, the event is discarded. Frozen events are not
+     * returned to the pool, the invocation is a noop.
+     *
+     * @exception IllegalArgumentException if the event was not acquired from this pool.
+     * @exception IllegalStateException if the event was already released, or if invoked on a thread other than the
+     * pool's owner thread.
+     */
+    public void release(E e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (e.isFrozen()) {
+
+            //
+            // detached from the pool when frozen, and possibly shared with other threads
+            //
+
+            return;
+        }
+
+        if (e.getPool() != this) {
+
+            throw new IllegalArgumentException(e + " was not acquired from " + this);
+        }
+
+        checkOwner();
+
+        releaseInternal(e);
+    }
+
+    /**
+     * @return the maximum number of idle events kept by the pool.
+     */
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    /**
+     * Changes the maximum number of idle events kept by the pool. Excess idle events are discarded.
+     *
+     * @exception IllegalArgumentException on negative capacity.
+     */
+    public void setCapacity(int capacity) {
+
+        if (capacity < 0) {
+
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        while(size > capacity) {
+
+            GenericEvent e = free[-- size];
+            free[size] = null;
+            e.setPooled(false);
+            e.setPool(null);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the number of idle events currently in the pool.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventPool[" + Integer.toHexString(System.identityHashCode(this)) + ", " + size + "/" + capacity + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void releaseInternal(GenericEvent e) {
+
+        if (e.isPooled()) {
+
+            throw new IllegalStateException(e + " was already released");
+        }
+
+        if (size == capacity) {
+
+            //
+            // full, discard
+            //
+
+            e.setPool(null);
+            return;
+        }
+
+        e.reset();
+
+        if (size == free.length) {
+
+            free = Arrays.copyOf(free, Math.min(capacity, Math.max(16, size * 2)));
+        }
+
+        free[size ++] = e;
+        e.setPooled(true);
+    }
+
+    private void checkOwner() {
+
+        Thread current = Thread.currentThread();
+
+        if (owner == null) {
+
+            owner = current;
+        }
+        else if (owner != current) {
+
+            throw new IllegalStateException(this + " is confined to thread " + owner.getName());
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -84,6 +84,20 @@ public class EventProperty extends PropertyBase {
 
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * Also freezes the nested event, if it supports it.
+     */
+    @Override
+    void freeze() {
+
+        if (value instanceof GenericEvent) {
+
+            ((GenericEvent)value).freeze();
+        }
+
+        super.freeze();
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
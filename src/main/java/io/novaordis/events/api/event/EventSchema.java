@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+
+/**
+ * The ordered list of property names, types and measure units shared by all events of a stream. Events built from a
+ * schema (SchemaEvent) only store their values. Each property gets, in addition to its slot, a storage index: Long,
+ * Integer, Float, Double and Boolean values are stored unboxed, in a long array, and the other values in an object
+ * array, both indexed by the storage index.
+ *
+ * A schema is append-only: properties can be added, but not removed or redefined. The schema must be fully defined
+ * before the events built from it are handed over to other threads; after that, it can be safely read concurrently.
+ *
+ * @see SchemaEvent
+ * @see PropertyHandle
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/2/17
+ */
+public class EventSchema {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private List<PropertyHandle> handles;
+
+    private Map<String, PropertyHandle> handlesByName;
+
+    private int primitiveCount;
+
+    private int referenceCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public EventSchema() {
+
+        this.handles = new ArrayList<>();
+        this.handlesByName = new HashMap<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @see EventSchema#addProperty(String, Class, MeasureUnit)
+     */
+    public PropertyHandle addProperty(String name, Class type) {
+
+        return addProperty(name, type, null);
+    }
+
+    /**
+     * Appends a property to the schema.
+     *
+     * @param type the type of the property values. Must be one of the types carried by the standard properties
+     *             (String, Long, Integer, Float, Double, Boolean, Date, Map, List) or an Event type.
+     *
+     * @param measureUnit may be null.
+     *
+     * @return the handle to be used to access the property on events built from this schema.
+     *
+     * @exception IllegalArgumentException on null name or type, on a name that already exists in the schema, on the
+     * name reserved for timestamps, on names maintained in the event header, or on an unsupported type.
+     */
+    public PropertyHandle addProperty(String name, Class type, MeasureUnit measureUnit) {
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null name");
+        }
+
+        if (type == null) {
+
+            throw new IllegalArgumentException("null type");
+        }
+
+        if (TimedEvent.TIME_PROPERTY_NAME.equals(name)) {
+
+            throw new IllegalArgumentException(
+                    "\"" + name + "\" is reserved for timestamps and cannot be part of a schema");
+        }
+
+        if (Event.LINE_PROPERTY_NAME.equals(name) || Event.QUERY_ONCE_PROPERTY_NAME.equals(name)) {
+
+            throw new IllegalArgumentException(
+                    "\"" + name + "\" is maintained in the event header and cannot be part of a schema");
+        }
+
+        if (handlesByName.containsKey(name)) {
+
+            throw new IllegalArgumentException("duplicate property name: " + name);
+        }
+
+        if (!isSupported(type)) {
+
+            throw new IllegalArgumentException("unsupported property type: " + type);
+        }
+
+        boolean primitive = isPrimitive(type);
+        int index = primitive ? primitiveCount ++ : referenceCount ++;
+
+        PropertyHandle h = new PropertyHandle(this, handles.size(), index, primitive, name, type, measureUnit);
+        handles.add(h);
+        handlesByName.put(name, h);
+        return h;
+    }
+
+    /**
+     * @return the handle of the property with the given name, or null if the schema does not contain such property.
+     */
+    public PropertyHandle getHandle(String name) {
+
+        return handlesByName.get(name);
+    }
+
+    /**
+     * @exception IndexOutOfBoundsException on invalid slots.
+     */
+    public PropertyHandle getHandle(int slot) {
+
+        return handles.get(slot);
+    }
+
+    /**
+     * @return the handles, in slot order. The list cannot be modified.
+     */
+    public List<PropertyHandle> getHandles() {
+
+        return Collections.unmodifiableList(handles);
+    }
+
+    public int size() {
+
+        return handles.size();
+    }
+
+    public SchemaEvent newEvent() {
+
+        return new SchemaEvent(this);
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventSchema" + handles;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of properties whose values are stored unboxed.
+     */
+    int primitiveCount() {
+
+        return primitiveCount;
+    }
+
+    /**
+     * @return the number of properties whose values are stored as references.
+     */
+    int referenceCount() {
+
+        return referenceCount;
+    }
+
+    /**
+     * Builds a standalone Property instance that carries the given value.
+     *
+     * @param value may be null.
+     */
+    static PropertyBase toProperty(PropertyHandle h, Object value) {
+
+        Class type = h.getType();
+        String name = h.getName();
+
+        PropertyBase p;
+
+        if (String.class.equals(type)) {
+
+            p = new StringProperty(name, (String)value);
+        }
+        else if (Long.class.equals(type)) {
+
+            p = new LongProperty(name, (Long)value);
+        }
+        else if (Integer.class.equals(type)) {
+
+            p = new IntegerProperty(name, (Integer)value);
+        }
+        else if (Float.class.equals(type)) {
+
+            p = new FloatProperty(name, (Float)value);
+        }
+        else if (Double.class.equals(type)) {
+
+            p = new DoubleProperty(name, (Double)value);
+        }
+        else if (Boolean.class.equals(type)) {
+
+            p = new BooleanProperty(name, (Boolean)value);
+        }
+        else if (Date.class.equals(type)) {
+
+            p = new DateProperty(name, (Date)value);
+        }
+        else if (Map.class.equals(type)) {
+
+            p = new MapProperty(name, mapValue(value));
+        }
+        else if (List.class.equals(type)) {
+
+            p = new ListProperty<>(name, (List<?>)value);
+        }
+        else {
+
+            //
+            // Event types, validated when the property was added to the schema
+            //
+
+            p = new EventProperty(name, (Event)value);
+        }
+
+        p.setMeasureUnit(h.getMeasureUnit());
+        return p;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static boolean isPrimitive(Class type) {
+
+        return Long.class.equals(type) ||
+                Integer.class.equals(type) ||
+                Float.class.equals(type) ||
+                Double.class.equals(type) ||
+                Boolean.class.equals(type);
+    }
+
+    private static boolean isSupported(Class type) {
+
+        return String.class.equals(type) ||
+                Long.class.equals(type) ||
+                Integer.class.equals(type) ||
+                Float.class.equals(type) ||
+                Double.class.equals(type) ||
+                Boolean.class.equals(type) ||
+                Date.class.equals(type) ||
+                Map.class.equals(type) ||
+                List.class.equals(type) ||
+                //noinspection unchecked
+                Event.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Map slots hold Map<String, Object> values, the same as MapProperty.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapValue(Object value) {
+
+        return (Map<String, Object>)value;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
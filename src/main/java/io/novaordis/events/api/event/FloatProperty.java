@@ -30,6 +30,12 @@ public class FloatProperty extends PropertyBase {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // the value is stored unboxed; PropertyBase.value is not used
+    //
+    private float floatValue;
+    private boolean nullValue;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public FloatProperty(String name) {
@@ -44,7 +50,19 @@ public class FloatProperty extends PropertyBase {
 
     public FloatProperty(String name, Float value, MeasureUnit mu) {
 
-        super(name, value, mu);
+        super(name, null, mu);
+        setValue(value);
+    }
+
+    public FloatProperty(String name, float value) {
+
+        this(name, value, null);
+    }
+
+    public FloatProperty(String name, float value, MeasureUnit mu) {
+
+        super(name, null, mu);
+        setFloat(value);
     }
 
     // Property implementation -----------------------------------------------------------------------------------------
@@ -58,7 +76,7 @@ public class FloatProperty extends PropertyBase {
     public Property fromString(String s) throws IllegalArgumentException {
 
         try {
-            float f = Float.valueOf(s);
+            float f = Float.parseFloat(s);
             return new FloatProperty(getName(), f);
         }
         catch(Exception e) {
@@ -66,6 +84,56 @@ public class FloatProperty extends PropertyBase {
         }
     }
 
+    @Override
+    public Object getValue() {
+
+        return nullValue ? null : Float.valueOf(floatValue);
+    }
+
+    /**
+     * A Number value of a different type is converted with Number.floatValue(), as if by a primitive conversion,
+     * which may lose magnitude or precision.
+     *
+     * @exception IllegalArgumentException if the value is not null and not a Number.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        checkNotFrozen();
+
+        if (value == null) {
+
+            this.floatValue = 0;
+            this.nullValue = true;
+        }
+        else if (value instanceof Number) {
+
+            setFloat(((Number)value).floatValue());
+        }
+        else {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in a " + getClass().getSimpleName());
+        }
+    }
+
+    // PropertyBase overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isNull() {
+
+        return nullValue;
+    }
+
+    /**
+     * The value is stored unboxed.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(FIELD_BYTES + 4 + 1);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public Float getFloat() {
@@ -73,6 +141,25 @@ public class FloatProperty extends PropertyBase {
         return (Float)getValue();
     }
 
+    /**
+     * Allocation-free access to the value.
+     *
+     * @return the unboxed value, or 0 if the value is null.
+     *
+     * @see FloatProperty#isNull()
+     */
+    public float floatValue() {
+
+        return floatValue;
+    }
+
+    public void setFloat(float value) {
+
+        checkNotFrozen();
+        this.floatValue = value;
+        this.nullValue = false;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -17,9 +17,14 @@
 package io.novaordis.events.api.event;
 
 import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,23 +36,83 @@ import io.novaordis.events.api.measure.MeasureUnit;
  *
  * It can be used as such, or it can be subclassed by more specialized events.
  *
- * The current implementation is not thread safe.
+ * The current implementation is not thread safe. However, an event can be frozen (see freeze()), after which it is
+ * immutable and can be read concurrently from multiple threads, and it can be copied without copying its properties
+ * (see snapshot() and mutableCopy()).
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 2/1/16
  */
-public class GenericEvent implements Event {
+public class GenericEvent implements Event, Cloneable {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
     private static final Logger log = LoggerFactory.getLogger(GenericEvent.class);
 
+    //
+    // the number of properties above which name lookups go through the name index. Below it, a linear scan over the
+    // property list is faster than hashing the name.
+    //
+    static final int NAME_INDEX_THRESHOLD = 8;
+
+    //
+    // the default maximum length, in characters, of the raw representation accumulated by appendRawLine()
+    //
+    public static final int DEFAULT_RAW_REPRESENTATION_LIMIT = 1024 * 1024;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
     private List<Property> properties;
 
+    //
+    // lazily created read-only view of the property list
+    //
+    private List<Property> propertiesView;
+
+    //
+    // name -> position in the property list. Built lazily when the event grows beyond NAME_INDEX_THRESHOLD
+    // properties, and maintained afterwards on every structural change. Null for small events.
+    //
+    private Map<String, Integer> nameIndex;
+
+    //
+    // type -> properties whose payload type is assignable to it, in setting order. Populated lazily by
+    // getProperties(Class) and discarded on any structural change.
+    //
+    private Map<Class, List<Property>> typeIndex;
+
+    //
+    // the header: event metadata kept in primitive form, mirrored by the LINE_PROPERTY_NAME and
+    // QUERY_ONCE_PROPERTY_NAME properties. Updated on each change of the mirrored properties.
+    //
+    private boolean hasLineNumber;
+    private long lineNumber;
+    private int flags;
+
+    //
+    // the property accumulating the raw representation, if the raw representation is built with appendRawLine().
+    // Tracked like the header, to avoid a name lookup on each appended line
+    //
+    private RawRepresentationProperty rawRepresentation;
+    private int rawRepresentationLimit = DEFAULT_RAW_REPRESENTATION_LIMIT;
+
+    //
+    // recycling state: the pool the event was acquired from, if any, whether the event is currently idle in the pool,
+    // and the properties released by the last reset(), kept in their original positions for reuse
+    //
+    private EventPool<?> pool;
+    private boolean pooled;
+    private PropertyBase[] recycled;
+
+    //
+    // a frozen event rejects all changes. A shared property list (and name index) is also referenced by a copy created
+    // with snapshot() or mutableCopy(), and it is copied before the first change
+    //
+    private boolean frozen;
+    private boolean shared;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public GenericEvent() {
@@ -121,7 +186,7 @@ public class GenericEvent implements Event {
     // Event implementation --------------------------------------------------------------------------------------------
 
     /**
-     * Returns a shallow copy of the internal storage.
+     * Returns a shallow copy of the internal storage. Lazy properties are decoded first.
      */
     @Override
     public List<Property> getProperties() {
@@ -131,11 +196,17 @@ public class GenericEvent implements Event {
             return Collections.emptyList();
         }
 
+        for(int i = 0; i < properties.size(); i ++) {
+
+            resolve(i);
+        }
+
         return new ArrayList<>(properties);
     }
 
     /**
-     * Returns a shallow copy of the internal storage.
+     * Returns a shallow copy of the internal storage, which the caller may modify. A new list is returned even if no
+     * property matches, so the result is always mutable.
      */
     @Override
     public List<Property> getProperties(Class type) {
@@ -147,33 +218,81 @@ public class GenericEvent implements Event {
 
         if (properties.isEmpty()) {
 
-            return Collections.emptyList();
+            return new ArrayList<>();
         }
 
-        List<Property> result = null;
+        if (typeIndex == null && !frozen) {
+
+            //
+            // frozen events may be read concurrently, so they do not cache
+            //
+
+            typeIndex = new HashMap<>();
+        }
+
+        List<Property> indexed = typeIndex == null ? null : typeIndex.get(type);
+
+        if (indexed == null) {
 
-        for(Property p: properties) {
+            indexed = new ArrayList<>();
 
-            //noinspection unchecked
-            if (type.isAssignableFrom(p.getType())) {
+            for(int i = 0; i < properties.size(); i ++) {
 
-                if (result == null) {
+                Property p = resolve(i);
 
-                    result = new ArrayList<>();
+                if (((Class<?>)type).isAssignableFrom(p.getType())) {
+
+                    indexed.add(p);
                 }
+            }
 
-                result.add(p);
+            if (typeIndex != null) {
+
+                typeIndex.put(type, indexed);
             }
         }
 
-        if (result != null) {
+        return new ArrayList<>(indexed);
+    }
+
+
+    @Override
+    public int propertyCount() {
+
+        return properties.size();
+    }
+
+    @Override
+    public void forEachProperty(Consumer<? super Property> action) {
 
-            return result;
+        if (action == null) {
+
+            throw new IllegalArgumentException("null action");
         }
 
-        return Collections.emptyList();
+        //
+        // indexed access, to avoid allocating an iterator
+        //
+
+        for(int i = 0; i < properties.size(); i ++) {
+
+            action.accept(resolve(i));
+        }
     }
 
+    /**
+     * Wraps the internal storage, which is not copied. Lazy properties are decoded as they are accessed.
+     */
+    @Override
+    public List<Property> getPropertiesView() {
+
+        if (propertiesView == null) {
+
+            propertiesView = new StorageView();
+        }
+
+        return propertiesView;
+    }
 
     @Override
     public Property getProperty(String name) {
@@ -183,15 +302,9 @@ public class GenericEvent implements Event {
             throw new IllegalArgumentException("null property name");
         }
 
-        for (Property p : properties) {
-
-            if (name.equals(p.getName())) {
-
-                return p;
-            }
-        }
+        int i = indexOf(name);
 
-        return null;
+        return i == -1 ? null : resolve(i);
     }
 
     @Override
@@ -207,13 +320,31 @@ public class GenericEvent implements Event {
             return null;
         }
 
-        return properties.get(i);
+        return resolve(i);
     }
 
     @Override
     public void clearProperties() {
 
-        properties.clear();
+        checkNotFrozen();
+
+        if (shared) {
+
+            properties = new ArrayList<>();
+            propertiesView = null;
+            shared = false;
+        }
+        else {
+
+            properties.clear();
+        }
+
+        nameIndex = null;
+        typeIndex = null;
+        hasLineNumber = false;
+        lineNumber = 0L;
+        flags = 0;
+        rawRepresentation = null;
     }
 
     @Override
@@ -229,34 +360,48 @@ public class GenericEvent implements Event {
             throw new IllegalArgumentException("null type");
         }
 
-        int index = -1;
+        checkNotFrozen();
 
-        for(Property p: properties) {
+        int index = indexOf(name);
 
-            index ++;
+        if (index == -1) {
 
-            if (p.getName().equals(name)) {
+            return null;
+        }
 
-                Class propertyType = p.getType();
+        Class propertyType = properties.get(index).getType();
 
-                if (propertyType == null) {
+        if (propertyType == null || !((Class<?>)type).isAssignableFrom(propertyType)) {
 
-                    continue;
-                }
+            return null;
+        }
 
-                //noinspection unchecked
-                if (type.isAssignableFrom(propertyType)) {
+        //
+        // do remove
+        //
 
-                    //
-                    // do remove
-                    //
+        beforeChange();
 
-                    return properties.remove(index);
-                }
+        Property removed = properties.remove(index);
+
+        typeIndex = null;
+        updateHeader(name, null);
+
+        if (nameIndex != null) {
+
+            nameIndex.remove(name);
+
+            //
+            // the properties that followed the removed one shifted one position to the left
+            //
+
+            for(int i = index; i < properties.size(); i ++) {
+
+                nameIndex.put(properties.get(i).getName(), i);
             }
         }
 
-        return null;
+        return removed;
     }
 
     // Convenience typed accessors/mutators ----------------------------------------------------------------------------
@@ -272,7 +417,18 @@ public class GenericEvent implements Event {
         }
         else {
 
-            return (StringProperty)setProperty(new StringProperty(name, value));
+            StringProperty p = recycledProperty(StringProperty.class, name);
+
+            if (p == null) {
+
+                p = new StringProperty(name, value);
+            }
+            else {
+
+                p.setValue(value);
+            }
+
+            return (StringProperty)setProperty(p);
         }
     }
 
@@ -351,7 +507,18 @@ public class GenericEvent implements Event {
         }
         else {
 
-            return (LongProperty)setProperty(new LongProperty(name, value));
+            LongProperty p = recycledProperty(LongProperty.class, name);
+
+            if (p == null) {
+
+                p = new LongProperty(name, value);
+            }
+            else {
+
+                p.setValue(value);
+            }
+
+            return (LongProperty)setProperty(p);
         }
     }
 
@@ -385,7 +552,18 @@ public class GenericEvent implements Event {
         }
         else {
 
-            return (IntegerProperty)setProperty(new IntegerProperty(name, value));
+            IntegerProperty p = recycledProperty(IntegerProperty.class, name);
+
+            if (p == null) {
+
+                p = new IntegerProperty(name, value);
+            }
+            else {
+
+                p.setValue(value);
+            }
+
+            return (IntegerProperty)setProperty(p);
         }
     }
 
@@ -419,7 +597,18 @@ public class GenericEvent implements Event {
         }
         else {
 
-            return (FloatProperty)setProperty(new FloatProperty(name, value));
+            FloatProperty p = recycledProperty(FloatProperty.class, name);
+
+            if (p == null) {
+
+                p = new FloatProperty(name, value);
+            }
+            else {
+
+                p.setValue(value);
+            }
+
+            return (FloatProperty)setProperty(p);
         }
     }
 
@@ -446,7 +635,18 @@ public class GenericEvent implements Event {
     @Override
     public BooleanProperty setBooleanProperty(String name, boolean value) {
 
-        return (BooleanProperty)setProperty(new BooleanProperty(name, value));
+        BooleanProperty p = recycledProperty(BooleanProperty.class, name);
+
+        if (p == null) {
+
+            p = new BooleanProperty(name, value);
+        }
+        else {
+
+            p.setBoolean(value);
+        }
+
+        return (BooleanProperty)setProperty(p);
     }
 
     @Override
@@ -504,24 +704,30 @@ public class GenericEvent implements Event {
             throw new IllegalArgumentException("timestamp property not allowed on a non-timed event");
         }
 
+        beforeChange();
+
         String propertyName = property.getName();
 
+        if (property instanceof LazyProperty &&
+                (LINE_PROPERTY_NAME.equals(propertyName) || QUERY_ONCE_PROPERTY_NAME.equals(propertyName))) {
+
+            //
+            // the header needs the value right away
+            //
+
+            property = ((LazyProperty)property).decode();
+        }
+
         //
         // look to see whether a property with the same name exists already
         //
 
-        Property existent = null;
-        int existentIndex = -1;
-
-        for(Property p: properties) {
+        int existentIndex = indexOf(propertyName);
+        Property existent = existentIndex == -1 ? null : properties.get(existentIndex);
 
-            existentIndex++;
+        if (property instanceof MapProperty && existent instanceof LazyProperty) {
 
-            if (propertyName.equals(p.getName())) {
-
-                existent = p;
-                break;
-            }
+            existent = resolve(existentIndex);
         }
 
         //
@@ -536,8 +742,22 @@ public class GenericEvent implements Event {
                 // merge instead of replacing
                 //
 
-                ((MapProperty)existent).getMap().putAll(((MapProperty) property).getMap());
-                return existent;
+                MapProperty mp = (MapProperty)existent;
+
+                if (mp.isFrozen()) {
+
+                    //
+                    // shared with a copy, merge into a private copy
+                    //
+
+                    mp = new MapProperty(propertyName, new CompactMap(mp.getMap()), mp.getMeasureUnit());
+                    mp.setFormat(existent.getFormat());
+                    properties.set(existentIndex, mp);
+                    typeIndex = null;
+                }
+
+                mp.merge((MapProperty)property);
+                return mp;
             }
         }
 
@@ -548,6 +768,8 @@ public class GenericEvent implements Event {
             //
 
             properties.set(existentIndex, property);
+            typeIndex = null;
+            updateHeader(propertyName, property);
             return existent;
         }
 
@@ -556,26 +778,27 @@ public class GenericEvent implements Event {
         //
 
         properties.add(property);
+        typeIndex = null;
+        updateHeader(propertyName, property);
+
+        if (nameIndex != null) {
+
+            nameIndex.put(propertyName, properties.size() - 1);
+        }
+
         return null;
     }
 
     @Override
     public Long getLineNumber() {
 
-        Property p = getProperty(Event.LINE_PROPERTY_NAME);
-        if (p == null) {
-
-            return null;
-        }
-
-        if (!(p instanceof LongProperty)) {
+        return hasLineNumber ? lineNumber : null;
+    }
 
-            log.warn("\"" + Event.LINE_PROPERTY_NAME + "\" exists, but it is not a Long: " + p.getValue());
-            return null;
-        }
+    @Override
+    public long getLineNumber(long dflt) {
 
-        LongProperty lp = (LongProperty)p;
-        return lp.getLong();
+        return hasLineNumber ? lineNumber : dflt;
     }
 
     @Override
@@ -591,6 +814,36 @@ public class GenericEvent implements Event {
         }
     }
 
+    @Override
+    public boolean hasFlag(int flag) {
+
+        return (flags & flag) == flag;
+    }
+
+    @Override
+    public void setFlag(int flag, boolean value) {
+
+        checkNotFrozen();
+
+        if ((flag & QUERY_ONCE_FLAG) != 0) {
+
+            //
+            // updates the header as well
+            //
+
+            if (value) {
+
+                setBooleanProperty(QUERY_ONCE_PROPERTY_NAME, true);
+            }
+            else {
+
+                removeBooleanProperty(QUERY_ONCE_PROPERTY_NAME);
+            }
+        }
+
+        flags = value ? flags | flag : flags & ~flag;
+    }
+
     @Override
     public String getRawRepresentation() {
 
@@ -604,6 +857,56 @@ public class GenericEvent implements Event {
         return sp.getString();
     }
 
+    /**
+     * A property list shared with a snapshot is counted by both events. Property names are not counted, and neither
+     * is the pool the event belongs to.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        //
+        // 7 references, 4 booleans, a long and 2 ints
+        //
+
+        long result = HeapFootprint.ofObject(7 * HeapFootprint.REFERENCE + 4 + 8 + 2 * 4);
+
+        result += HeapFootprint.of(properties);
+
+        if (nameIndex != null) {
+
+            //
+            // the positions are boxed
+            //
+
+            result += HeapFootprint.ofHashMap(nameIndex.size()) + 16L * nameIndex.size();
+        }
+
+        if (typeIndex != null) {
+
+            result += HeapFootprint.ofHashMap(typeIndex.size());
+
+            for(List<Property> l: typeIndex.values()) {
+
+                result += HeapFootprint.ofArray(l.size(), HeapFootprint.REFERENCE) + 24L;
+            }
+        }
+
+        if (recycled != null) {
+
+            result += HeapFootprint.ofArray(recycled.length, HeapFootprint.REFERENCE);
+
+            for(PropertyBase p: recycled) {
+
+                if (p != null) {
+
+                    result += p.estimateRetainedBytes();
+                }
+            }
+        }
+
+        return result;
+    }
+
     @Override
     public String getPreferredRepresentation(String fieldSeparator) {
 
@@ -630,48 +933,119 @@ public class GenericEvent implements Event {
      * API for subclasses to update their internal raw representation, for both the case of a single-line event
      * and a multi-line event. The first invocation sets the raw line representation, successive invocations append
      * successive lines to it.
+     *
+     * The lines are accumulated in a buffer, and the String representation is only built when requested, so the cost
+     * of building a multi-line raw representation is linear in its length. The raw representation is capped at
+     * getRawRepresentationLimit() characters, content beyond the limit is discarded.
      */
     public void appendRawLine(String line) {
 
-        StringProperty rawRepresentation = getStringProperty(RAW_PROPERTY_NAME);
-
-        if (rawRepresentation == null) {
+        checkNotFrozen();
 
-            rawRepresentation = new StringProperty(RAW_PROPERTY_NAME, line);
-            setProperty(rawRepresentation);
-        }
-        else {
+        if (rawRepresentation == null || rawRepresentation.isFrozen()) {
 
-            String raw = rawRepresentation.getString();
+            StringProperty existent = getStringProperty(RAW_PROPERTY_NAME);
 
-            if (raw == null) {
+            RawRepresentationProperty p =
+                    existent == null ? recycledProperty(RawRepresentationProperty.class, RAW_PROPERTY_NAME) : null;
 
-                //
-                // this is unusual, but we work around it by using the existing property instance and setting the
-                // value
-                //
+            if (p == null) {
 
-                rawRepresentation.setValue(line);
+                p = new RawRepresentationProperty(RAW_PROPERTY_NAME, rawRepresentationLimit);
             }
             else {
 
-                raw += "\n";
-                raw += line;
-                rawRepresentation.setValue(raw);
+                p.setMaxLength(rawRepresentationLimit);
+            }
+
+            if (existent != null) {
+
+                p.setValue(existent.getString());
             }
+
+            //
+            // updates rawRepresentation
+            //
+
+            setProperty(p);
         }
+
+        rawRepresentation.append(line);
+    }
+
+    /**
+     * @return the maximum length, in characters, of the raw representation accumulated by appendRawLine().
+     */
+    public int getRawRepresentationLimit() {
+
+        return rawRepresentationLimit;
+    }
+
+    /**
+     * Applies to lines appended after the invocation. The limit survives reset().
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setRawRepresentationLimit(int maxLength) {
+
+        if (maxLength < 0) {
+
+            throw new IllegalArgumentException("invalid raw representation limit: " + maxLength);
+        }
+
+        checkNotFrozen();
+
+        this.rawRepresentationLimit = maxLength;
+
+        if (rawRepresentation != null && !rawRepresentation.isFrozen()) {
+
+            rawRepresentation.setMaxLength(maxLength);
+        }
+    }
+
+    /**
+     * @return true if lines appended with appendRawLine() were truncated because the raw representation reached the
+     * limit.
+     */
+    public boolean isRawRepresentationTruncated() {
+
+        return rawRepresentation != null && rawRepresentation.isTruncated();
     }
 
     // Convenience accessors/mutators ----------------------------------------------------------------------------------
 
     public void setLongProperty(String name, long value, MeasureUnit mu) {
 
-        setProperty(new LongProperty(name, value, mu));
+        LongProperty p = recycledProperty(LongProperty.class, name);
+
+        if (p == null) {
+
+            p = new LongProperty(name, value, mu);
+        }
+        else {
+
+            p.setLong(value);
+            p.setMeasureUnit(mu);
+        }
+
+        setProperty(p);
     }
 
     public void setIntegerProperty(String name, int value, MeasureUnit mu) {
 
-        setProperty(new IntegerProperty(name, value, mu));
+        IntegerProperty p = recycledProperty(IntegerProperty.class, name);
+
+        if (p == null) {
+
+            p = new IntegerProperty(name, value, mu);
+        }
+        else {
+
+            p.setInteger(value);
+            p.setMeasureUnit(mu);
+        }
+
+        setProperty(p);
     }
 
     public <T> void setListProperty(String name, List<T> value) {
@@ -679,12 +1053,396 @@ public class GenericEvent implements Event {
         setProperty(new ListProperty<>(name, value));
     }
 
+    /**
+     * Returns the event to the state it had after no-argument construction, so the instance can be recycled: all
+     * properties and header information are discarded. The internal storage is retained. If the event was acquired
+     * from an EventPool, the discarded properties are also retained, and reused by the typed mutators
+     * (setLongProperty(), setStringProperty(), etc.) if the same properties are set in the same order, which is the
+     * usual case for events produced by a parser.
+     *
+     * The caller must make sure no references to the event, or to its properties, are retained.
+     *
+     * @see EventPool#release(GenericEvent)
+     *
+     * @exception UnsupportedOperationException if the event is frozen.
+     */
+    public void reset() {
+
+        checkNotFrozen();
+
+        if (pool != null) {
+
+            int size = properties.size();
+
+            if (recycled == null || recycled.length < size) {
+
+                recycled = new PropertyBase[size];
+            }
+            else {
+
+                Arrays.fill(recycled, size, recycled.length, null);
+            }
+
+            for(int i = 0; i < size; i ++) {
+
+                Property p = properties.get(i);
+
+                //
+                // frozen properties are shared with copies
+                //
+
+                recycled[i] = p instanceof PropertyBase && !((PropertyBase)p).isFrozen() ? (PropertyBase)p : null;
+            }
+        }
+
+        clearProperties();
+    }
+
+    /**
+     * Makes the event immutable, in place: all lazily built state is built, the properties are frozen (see
+     * PropertyBase#isFrozen()), and all subsequent changes to the event, or to its properties, fail with
+     * UnsupportedOperationException. A frozen event can be read concurrently by any number of threads, provided it is
+     * handed over to them through a thread-safe channel, such as a java.util.concurrent queue. Irreversible.
+     *
+     * Properties that are not PropertyBase instances are not frozen, and must not be modified by their holders.
+     *
+     * A frozen event may be read by other threads at any time, so it cannot be reused: if it was acquired from an
+     * EventPool, it is detached from the pool, and subsequent recycling attempts are noops.
+     *
+     * @return this event.
+     */
+    public GenericEvent freeze() {
+
+        if (frozen) {
+
+            return this;
+        }
+
+        prepareForSharing();
+        setPool(null);
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+
+        return frozen;
+    }
+
+    /**
+     * @return a frozen event with the same state as this one. If this event is frozen, the event itself. Otherwise a
+     * copy of the same class, which shares the property instances with this event: the properties are frozen, and
+     * this event remains mutable, but replaces, instead of modifying, the properties it shares with the copy.
+     *
+     * @see GenericEvent#freeze()
+     */
+    public GenericEvent snapshot() {
+
+        if (frozen) {
+
+            return this;
+        }
+
+        GenericEvent copy = copy();
+
+        //
+        // rebuild the state discarded by afterCopy()
+        //
+
+        copy.prepareForSharing();
+        copy.frozen = true;
+        return copy;
+    }
+
+    /**
+     * @return a mutable copy of the same class, which shares the property storage and the property instances with
+     * this event until the first change. The shared properties are frozen: they are replaced, not modified, by
+     * changes applied to either event. The copy is not pooled, even if this event is.
+     */
+    public GenericEvent mutableCopy() {
+
+        return copy();
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
+    EventPool<?> getPool() {
+
+        return pool;
+    }
+
+    void setPool(EventPool<?> pool) {
+
+        this.pool = pool;
+
+        if (pool == null) {
+
+            recycled = null;
+        }
+    }
+
+    boolean isPooled() {
+
+        return pooled;
+    }
+
+    void setPooled(boolean pooled) {
+
+        this.pooled = pooled;
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
+    /**
+     * Invoked before the state of the event is frozen or shared with a copy. Subclasses that build state lazily must
+     * build it here, so a frozen event is not modified by readers, and must freeze the properties they maintain
+     * outside the property list. The default implementation does nothing.
+     */
+    protected void beforeSharing() {
+    }
+
+    /**
+     * Invoked on the copy created by snapshot() or mutableCopy(), right after its fields were copied from the
+     * original. Subclasses must discard the state that references the original (views, for example) and copy the
+     * mutable state they do not want to share. The default implementation does nothing.
+     */
+    protected void afterCopy() {
+    }
+
+    /**
+     * Must be invoked by subclasses before any change of the state they maintain.
+     *
+     * @exception UnsupportedOperationException if the event is frozen.
+     */
+    protected void checkNotFrozen() {
+
+        if (frozen) {
+
+            throw new UnsupportedOperationException("frozen event");
+        }
+    }
+
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return the property released by the last reset() on the position the new property is about to be added on, if
+     * it has the given class and name, or null otherwise. The property is reset before being returned.
+     */
+    private <P extends PropertyBase> P recycledProperty(Class<P> c, String name) {
+
+        if (recycled == null) {
+
+            return null;
+        }
+
+        int i = properties.size();
+
+        if (i >= recycled.length) {
+
+            return null;
+        }
+
+        PropertyBase p = recycled[i];
+
+        if (p == null || p.getClass() != c || !p.getName().equals(name)) {
+
+            return null;
+        }
+
+        recycled[i] = null;
+        p.reset();
+        return c.cast(p);
+    }
+
+    /**
+     * Fails if the event is frozen, and copies the property storage, if it is shared with a copy.
+     */
+    private void beforeChange() {
+
+        checkNotFrozen();
+
+        if (shared) {
+
+            properties = new ArrayList<>(properties);
+            nameIndex = nameIndex == null ? null : new HashMap<>(nameIndex);
+            propertiesView = null;
+            shared = false;
+        }
+    }
+
+    /**
+     * Builds the lazy state, so the event can be read concurrently, and freezes the properties, so they can be shared.
+     */
+    private void prepareForSharing() {
+
+        for(int i = 0; i < properties.size(); i ++) {
+
+            Property p = resolve(i);
+
+            if (p instanceof PropertyBase) {
+
+                ((PropertyBase)p).freeze();
+            }
+        }
+
+        if (properties.size() > NAME_INDEX_THRESHOLD && nameIndex == null) {
+
+            buildNameIndex();
+        }
+
+        getPropertiesView();
+
+        beforeSharing();
+    }
+
+    private GenericEvent copy() {
+
+        prepareForSharing();
+
+        GenericEvent copy;
+
+        try {
+
+            copy = (GenericEvent)super.clone();
+        }
+        catch(CloneNotSupportedException e) {
+
+            throw new IllegalStateException(e);
+        }
+
+        shared = true;
+
+        copy.shared = true;
+        copy.frozen = false;
+        copy.propertiesView = null;
+        copy.typeIndex = null;
+        copy.pool = null;
+        copy.pooled = false;
+        copy.recycled = null;
+
+        copy.afterCopy();
+
+        return copy;
+    }
+
+    /**
+     * @return the property on the given position. A LazyProperty is decoded and replaced in place with the typed
+     * property, which is not a structural change.
+     */
+    private Property resolve(int i) {
+
+        Property p = properties.get(i);
+
+        if (p instanceof LazyProperty) {
+
+            p = ((LazyProperty)p).decode();
+            properties.set(i, p);
+        }
+
+        return p;
+    }
+
+    /**
+     * Keeps the header, and the raw representation reference, in sync with the properties they mirror. Must be invoked
+     * every time a property is added, replaced or removed.
+     *
+     * @param p the property currently stored under the given name, or null if the property was removed.
+     */
+    private void updateHeader(String name, Property p) {
+
+        if (LINE_PROPERTY_NAME.equals(name)) {
+
+            if (p instanceof LongProperty && !((LongProperty)p).isNull()) {
+
+                hasLineNumber = true;
+                lineNumber = ((LongProperty)p).longValue();
+                return;
+            }
+
+            if (p != null) {
+
+                log.warn("\"" + LINE_PROPERTY_NAME + "\" is not a Long, it will not be used as line number: " +
+                        p.getValue());
+            }
+
+            hasLineNumber = false;
+            lineNumber = 0L;
+        }
+        else if (QUERY_ONCE_PROPERTY_NAME.equals(name)) {
+
+            boolean queryOnce = p instanceof BooleanProperty &&
+                    !((BooleanProperty)p).isNull() && ((BooleanProperty)p).booleanValue();
+
+            flags = queryOnce ? flags | QUERY_ONCE_FLAG : flags & ~QUERY_ONCE_FLAG;
+        }
+        else if (RAW_PROPERTY_NAME.equals(name)) {
+
+            rawRepresentation = p instanceof RawRepresentationProperty ? (RawRepresentationProperty)p : null;
+        }
+    }
+
+    /**
+     * @return the position of the property with the given name in the property list, or -1 if there is no such
+     * property.
+     */
+    private int indexOf(String name) {
+
+        int size = properties.size();
+
+        if (size <= NAME_INDEX_THRESHOLD) {
+
+            for(int i = 0; i < size; i ++) {
+
+                if (name.equals(properties.get(i).getName())) {
+
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        if (nameIndex == null) {
+
+            buildNameIndex();
+        }
+
+        Integer i = nameIndex.get(name);
+
+        return i == null ? -1 : i;
+    }
+
+    private void buildNameIndex() {
+
+        int size = properties.size();
+
+        nameIndex = new HashMap<>(size * 2);
+
+        for(int i = 0; i < size; i ++) {
+
+            nameIndex.put(properties.get(i).getName(), i);
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * A read-only, live view of the internal storage, which decodes lazy properties on access. Does not dispatch to
+     * getProperty(int), so sub-classes that expose additional properties can wrap it.
+     */
+    private class StorageView extends AbstractList<Property> implements RandomAccess {
+
+        @Override
+        public Property get(int index) {
+
+            return resolve(index);
+        }
+
+        @Override
+        public int size() {
+
+            return properties.size();
+        }
+    }
+
 }
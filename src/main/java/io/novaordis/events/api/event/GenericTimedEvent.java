@@ -19,6 +19,7 @@ package io.novaordis.events.api.event;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import io.novaordis.utilities.time.Timestamp;
 import io.novaordis.utilities.time.TimestampImpl;
@@ -31,15 +32,32 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
+    public static final int UNKNOWN_TIME_ZONE_OFFSET = Integer.MIN_VALUE;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // the time is kept in the header in primitive form. A Timestamp instance is only maintained if it was explicitly
+    // provided, or if it was requested via getTimestamp(); in the latter case it is built lazily and cached.
+    //
+    private boolean hasTime;
+    private long time;
+    private int timeZoneOffsetMs;
+
     /**
      * @see Timestamp
      */
     private Timestamp timestamp;
 
+    //
+    // the property that exposes the time, built lazily and cached until the time changes
+    //
+    private TimestampProperty timestampProperty;
+
+    private List<Property> propertiesView;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public GenericTimedEvent() {
@@ -49,7 +67,10 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
 
     public GenericTimedEvent(Long timestampUTC) {
 
-        this(timestampUTC == null ? null : new TimestampImpl(timestampUTC));
+        if (timestampUTC != null) {
+
+            setTime(timestampUTC);
+        }
     }
 
     /**
@@ -57,7 +78,7 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
      */
     public GenericTimedEvent(Timestamp timestamp) {
 
-        this.timestamp = timestamp;
+        setTimestamp(timestamp);
     }
 
     /**
@@ -78,9 +99,19 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
         this(timestampUTC, Arrays.asList(properties));
     }
 
+    /**
+     * @param properties the implementation makes an internal shallow copy.
+     *
+     * @exception IllegalArgumentException if the timestamp is set both with the direct argument and with a property
+     * and the values conflict
+     */
     public GenericTimedEvent(long timestampUTC, List<Property> properties) {
 
-        this(new TimestampImpl(timestampUTC), properties);
+        super(properties);
+
+        checkConflict(timestampUTC);
+
+        setTime(timestampUTC);
     }
 
     /**
@@ -109,14 +140,9 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
             return;
         }
 
-        if (this.timestamp != null && this.timestamp.getTime() != timestamp.getTime()) {
-
-            throw new IllegalArgumentException(
-                    "conflicting timestamp values: " + timestamp + ", " + timestamp.getTime());
-        }
-
-        this.timestamp = timestamp;
+        checkConflict(timestamp.getTime());
 
+        setTimestamp(timestamp);
     }
 
     // TimedEvent implementation ---------------------------------------------------------------------------------------
@@ -127,27 +153,48 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
         return true;
     }
 
+    /**
+     * If the time was set in primitive form, the Timestamp instance is built on the first invocation, and cached.
+     */
     @Override
     public Timestamp getTimestamp() {
 
+        if (timestamp == null && hasTime) {
+
+            timestamp = new TimestampImpl(time);
+        }
+
         return timestamp;
     }
 
     @Override
     public Long getTime() {
 
-        if (timestamp == null) {
+        return hasTime ? time : null;
+    }
 
-            return null;
-        }
+    @Override
+    public long getTime(long dflt) {
 
-        return timestamp.getTime();
+        return hasTime ? time : dflt;
+    }
+
+    @Override
+    public void setTime(long time) {
+
+        setTime(time, UNKNOWN_TIME_ZONE_OFFSET);
     }
 
     @Override
     public void setTimestamp(Timestamp timestamp) {
 
+        checkNotFrozen();
+
         this.timestamp = timestamp;
+        this.timestampProperty = null;
+        this.hasTime = timestamp != null;
+        this.time = timestamp == null ? 0L : timestamp.getTime();
+        this.timeZoneOffsetMs = UNKNOWN_TIME_ZONE_OFFSET;
     }
 
     // GenericEvent overrides ------------------------------------------------------------------------------------------
@@ -169,27 +216,37 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
 
         TimestampProperty tp = (TimestampProperty)p;
 
-        Timestamp previous = timestamp;
+        Long previous = getTime();
+
+        Long value = (Long)tp.getValue();
+
+        if (value == null) {
 
-        setTimestamp(new TimestampImpl((Long)tp.getValue()));
+            setTimestamp(null);
+        }
+        else {
+
+            setTime(value);
+        }
 
         if (previous == null) {
 
             return null;
         }
 
-        return new TimestampProperty(previous.getTime());
+        return new TimestampProperty(previous);
     }
 
     /**
-     * We expose the timestamp as a dedicated property. However, if we are lacking a timestamp, we return null.
+     * We expose the timestamp as a dedicated property. However, if we are lacking a timestamp, the property has a
+     * null value. The property instance is cached and frozen: attempts to modify it fail.
      */
     @Override
     public Property getProperty(String name) {
 
         if (TimedEvent.TIME_PROPERTY_NAME.equals(name)) {
 
-            return new TimestampProperty(getTime());
+            return getTimestampProperty();
         }
 
         return super.getProperty(name);
@@ -211,7 +268,7 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
             // 0 has a special meaning for timed properties, it refers to the timestamp
             //
 
-            return new TimestampProperty(getTime());
+            return getTimestampProperty();
         }
         else {
 
@@ -228,22 +285,122 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
     @Override
     public List<Property> getProperties() {
 
-        List<Property> shallow = super.getProperties();
-
         //
         // TODO currently we do not account for the case where the timestamp is on a different position than 0
         // in the list; we will need to return to this
         //
 
-        List<Property> result = new ArrayList<>(shallow.size() + 1);
-        result.add(new TimestampProperty(getTime()));
-        result.addAll(shallow);
+        List<Property> result = new ArrayList<>(propertyCount());
+        result.add(getTimestampProperty());
+        result.addAll(super.getPropertiesView());
+
+        return result;
+    }
+
+    /**
+     * Accounts for the timestamp property.
+     */
+    @Override
+    public int propertyCount() {
+
+        return super.propertyCount() + 1;
+    }
+
+    @Override
+    public void forEachProperty(Consumer<? super Property> action) {
+
+        if (action == null) {
+
+            throw new IllegalArgumentException("null action");
+        }
+
+        action.accept(getTimestampProperty());
+
+        super.forEachProperty(action);
+    }
+
+    /**
+     * The view exposes the timestamp property on position 0, followed by the properties maintained by superclass.
+     */
+    @Override
+    public List<Property> getPropertiesView() {
+
+        if (propertiesView == null) {
+
+            propertiesView = new PropertiesView(this);
+        }
+
+        return propertiesView;
+    }
+
+    /**
+     * Also discards the time.
+     */
+    @Override
+    public void reset() {
+
+        super.reset();
+        setTimestamp(null);
+    }
+
+    @Override
+    public long estimateRetainedBytes() {
+
+        //
+        // a boolean, a long, an int and 3 references
+        //
+
+        long result = super.estimateRetainedBytes() + HeapFootprint.align(1 + 8 + 4 + 3 * HeapFootprint.REFERENCE);
+
+        if (timestamp != null) {
+
+            result += 24L;
+        }
+
+        if (timestampProperty != null) {
+
+            result += timestampProperty.estimateRetainedBytes();
+        }
 
         return result;
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * Sets the time and the offset of the time zone the time was recorded in, without allocating a Timestamp instance.
+     *
+     * @param timeZoneOffsetMs the time zone offset, in milliseconds, relative to UTC. Use UNKNOWN_TIME_ZONE_OFFSET if
+     *                         not known.
+     */
+    public void setTime(long time, int timeZoneOffsetMs) {
+
+        checkNotFrozen();
+
+        if (!hasTime || this.time != time) {
+
+            //
+            // discard the cached or explicitly provided instances, they do not reflect the new time
+            //
+
+            timestamp = null;
+            timestampProperty = null;
+        }
+
+        this.hasTime = true;
+        this.time = time;
+        this.timeZoneOffsetMs = timeZoneOffsetMs;
+    }
+
+    /**
+     * @return the offset of the time zone the time was recorded in, in milliseconds, relative to UTC, or dflt if the
+     * event has no time, or the offset is not known.
+     */
+    public int getTimeZoneOffsetMs(int dflt) {
+
+        return !hasTime || timeZoneOffsetMs == UNKNOWN_TIME_ZONE_OFFSET ? dflt : timeZoneOffsetMs;
+    }
+
     @Override
     public String toString() {
 
@@ -254,8 +411,53 @@ public class GenericTimedEvent extends GenericEvent implements TimedEvent {
 
     // Protected -------------------------------------------------------------------------------------------------------
 
+    /**
+     * Builds the cached timestamp instances and the view, and freezes the timestamp property.
+     */
+    @Override
+    protected void beforeSharing() {
+
+        getTimestamp();
+        getTimestampProperty();
+        getPropertiesView();
+    }
+
+    @Override
+    protected void afterCopy() {
+
+        propertiesView = null;
+    }
+
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * The instance is cached, and shared by all callers, so it is frozen: the time can only be changed with the
+     * event's mutators, which discard the cached instance.
+     */
+    private TimestampProperty getTimestampProperty() {
+
+        if (timestampProperty == null) {
+
+            TimestampProperty p = new TimestampProperty(getTime());
+            p.freeze();
+            timestampProperty = p;
+        }
+
+        return timestampProperty;
+    }
+
+    /**
+     * Protection against the situation when the timestamp is set with a property and as a direct argument and they
+     * have different values.
+     */
+    private void checkConflict(long time) {
+
+        if (hasTime && this.time != time) {
+
+            throw new IllegalArgumentException("conflicting timestamp values: " + this.time + ", " + time);
+        }
+    }
+
     /**
      * @throws IllegalArgumentException if no TimestampProperty exists
      */
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Heap size estimates for events, properties and the values they carry, used to implement
+ * Event.estimateRetainedBytes() and Property.estimateRetainedBytes().
+ *
+ * The estimates assume a 64-bit HotSpot JVM with compressed references: 12 byte object headers, 16 byte array headers,
+ * 4 byte references, 8 byte alignment. Strings are estimated with the Java 8 layout (a char array), which
+ * overestimates the compact strings of later JVMs. Instances shared by several events (interned strings, copy-on-write
+ * property lists, pooled or canonical instances) are counted for each event that references them, so the estimates
+ * err on the high side, which is the safe side for memory budgets.
+ *
+ * @see Event#estimateRetainedBytes()
+ * @see Property#estimateRetainedBytes()
+ * @see EventBuffer
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class HeapFootprint {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int OBJECT_HEADER = 12;
+
+    public static final int ARRAY_HEADER = 16;
+
+    public static final int REFERENCE = 4;
+
+    public static final int ALIGNMENT = 8;
+
+    //
+    // HashMap: 12 byte header, 3 references, 3 ints, 1 float. HashMap.Node: 12 byte header, 3 references, 1 int
+    //
+    private static final int HASH_MAP = 48;
+    private static final int HASH_MAP_NODE = 32;
+
+    //
+    // ArrayList: 12 byte header, 1 reference, 2 ints
+    //
+    private static final int ARRAY_LIST = 24;
+
+    //
+    // String: 12 byte header, 1 reference, 1 int
+    //
+    private static final int STRING = 24;
+
+    //
+    // used for values of unknown types
+    //
+    private static final int UNKNOWN = 16;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the estimated number of heap bytes retained by the given value, including the value itself. Events and
+     * properties are asked for their own estimate, maps and collections are estimated recursively. 0 for null.
+     */
+    public static long of(Object o) {
+
+        if (o == null) {
+
+            return 0L;
+        }
+
+        if (o instanceof String) {
+
+            return ofString(((String)o).length());
+        }
+
+        if (o instanceof Event) {
+
+            return ((Event)o).estimateRetainedBytes();
+        }
+
+        if (o instanceof Property) {
+
+            return ((Property)o).estimateRetainedBytes();
+        }
+
+        if (o instanceof Long || o instanceof Double || o instanceof Date) {
+
+            return 24L;
+        }
+
+        if (o instanceof Number || o instanceof Boolean || o instanceof Character) {
+
+            return 16L;
+        }
+
+        if (o instanceof CompactMap) {
+
+            return ((CompactMap)o).estimateRetainedBytes();
+        }
+
+        if (o instanceof Map) {
+
+            Map<?, ?> m = (Map<?, ?>)o;
+
+            long result = ofHashMap(m.size());
+
+            for(Map.Entry<?, ?> e: m.entrySet()) {
+
+                result += of(e.getKey()) + of(e.getValue());
+            }
+
+            return result;
+        }
+
+        if (o instanceof Collection) {
+
+            Collection<?> c = (Collection<?>)o;
+
+            long result = ARRAY_LIST + ofArray(c.size(), REFERENCE);
+
+            for(Object e: c) {
+
+                result += of(e);
+            }
+
+            return result;
+        }
+
+        if (o instanceof StringBuilder) {
+
+            return STRING + ofArray(((StringBuilder)o).capacity(), 2);
+        }
+
+        if (o instanceof byte[]) {
+
+            return ofArray(((byte[])o).length, 1);
+        }
+
+        return UNKNOWN;
+    }
+
+    /**
+     * @return the estimated size of a String with the given length.
+     */
+    public static long ofString(int length) {
+
+        return STRING + ofArray(length, 2);
+    }
+
+    /**
+     * @return the estimated size of an array with the given length and element size.
+     */
+    public static long ofArray(int length, int elementSize) {
+
+        return align(ARRAY_HEADER + (long)length * elementSize);
+    }
+
+    /**
+     * @return the estimated size of an object with the given total size of fields.
+     */
+    public static long ofObject(int fieldBytes) {
+
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * @return the estimated size of the structure of a HashMap with the given number of entries, excluding the keys
+     * and the values.
+     */
+    public static long ofHashMap(int size) {
+
+        if (size == 0) {
+
+            //
+            // the table is allocated lazily
+            //
+
+            return HASH_MAP;
+        }
+
+        int table = Integer.highestOneBit(Math.max(1, (int)(size / 0.75f)) - 1) << 1;
+
+        return HASH_MAP + ofArray(Math.max(16, table), REFERENCE) + (long)size * HASH_MAP_NODE;
+    }
+
+    public static long align(long size) {
+
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private HeapFootprint() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
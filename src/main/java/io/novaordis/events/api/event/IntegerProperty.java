@@ -30,6 +30,12 @@ public class IntegerProperty extends PropertyBase {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // the value is stored unboxed; PropertyBase.value is not used
+    //
+    private int intValue;
+    private boolean nullValue;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public IntegerProperty(String name) {
@@ -44,7 +50,19 @@ public class IntegerProperty extends PropertyBase {
 
     public IntegerProperty(String name, Integer value, MeasureUnit mu) {
 
-        super(name, value, mu);
+        super(name, null, mu);
+        setValue(value);
+    }
+
+    public IntegerProperty(String name, int value) {
+
+        this(name, value, null);
+    }
+
+    public IntegerProperty(String name, int value, MeasureUnit mu) {
+
+        super(name, null, mu);
+        setInteger(value);
     }
 
     // Property implementation -----------------------------------------------------------------------------------------
@@ -58,7 +76,7 @@ public class IntegerProperty extends PropertyBase {
     public Property fromString(String s) throws IllegalArgumentException {
 
         try {
-            int i = Integer.valueOf(s);
+            int i = Integer.parseInt(s);
             return new IntegerProperty(getName(), i);
         }
         catch(Exception e) {
@@ -66,6 +84,56 @@ public class IntegerProperty extends PropertyBase {
         }
     }
 
+    @Override
+    public Object getValue() {
+
+        return nullValue ? null : Integer.valueOf(intValue);
+    }
+
+    /**
+     * A Number value of a different type is converted with Number.intValue(), as if by a primitive conversion,
+     * which may lose magnitude or precision.
+     *
+     * @exception IllegalArgumentException if the value is not null and not a Number.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        checkNotFrozen();
+
+        if (value == null) {
+
+            this.intValue = 0;
+            this.nullValue = true;
+        }
+        else if (value instanceof Number) {
+
+            setInteger(((Number)value).intValue());
+        }
+        else {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in a " + getClass().getSimpleName());
+        }
+    }
+
+    // PropertyBase overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isNull() {
+
+        return nullValue;
+    }
+
+    /**
+     * The value is stored unboxed.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(FIELD_BYTES + 4 + 1);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public Integer getInteger() {
@@ -73,6 +141,25 @@ public class IntegerProperty extends PropertyBase {
         return (Integer)getValue();
     }
 
+    /**
+     * Allocation-free access to the value.
+     *
+     * @return the unboxed value, or 0 if the value is null.
+     *
+     * @see IntegerProperty#isNull()
+     */
+    public int intValue() {
+
+        return intValue;
+    }
+
+    public void setInteger(int value) {
+
+        checkNotFrozen();
+        this.intValue = value;
+        this.nullValue = false;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
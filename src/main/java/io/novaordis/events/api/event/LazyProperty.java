@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.text.Format;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+
+/**
+ * A property whose value is kept in raw form, as a region of the source it was parsed from (usually the raw line
+ * already retained by the event), and it is only converted to a typed property the first time it is needed. Events
+ * rejected by queries that do not look at the property never pay for the conversion.
+ *
+ * The conversion is performed by a PropertyFactory, with the same semantics as
+ * PropertyFactory.createInstance(String, Class, Object, Double, MeasureUnit). Conversion failures surface as
+ * IllegalArgumentExceptions on first access, instead of at parsing time.
+ *
+ * GenericEvent replaces a lazy property with its decoded counterpart when the property is accessed by name or index,
+ * so the typed accessors (getLongProperty(), etc.) work as expected. The current implementation is not thread safe.
+ *
+ * @see PropertyFactory#createLazyInstance(String, Class, CharSequence, int, int, Double, MeasureUnit)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/5/17
+ */
+public class LazyProperty implements Property {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertyFactory factory;
+
+    private String name;
+
+    //
+    // may be null, in which case the type is inferred on decoding
+    //
+    private Class type;
+
+    private CharSequence source;
+    private int start;
+    private int end;
+
+    private Double conversionFactor;
+    private MeasureUnit measureUnit;
+
+    //
+    // null until decoded. The raw form is released after decoding
+    //
+    private Property decoded;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param type may be null, in which case type heuristics apply on decoding.
+     * @param source the raw representation the value is extracted from. It is retained until the property is decoded.
+     * @param start the start offset of the value in the source, inclusive.
+     * @param end the end offset of the value in the source, exclusive.
+     * @param conversionFactor may be null.
+     * @param measureUnit may be null.
+     *
+     * @exception IllegalArgumentException on null factory, name or source, or invalid offsets.
+     */
+    public LazyProperty(PropertyFactory factory, String name, Class type, CharSequence source, int start, int end,
+                        Double conversionFactor, MeasureUnit measureUnit) {
+
+        if (factory == null) {
+
+            throw new IllegalArgumentException("null factory");
+        }
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null name");
+        }
+
+        if (source == null) {
+
+            throw new IllegalArgumentException("null source");
+        }
+
+        if (start < 0 || end < start || end > source.length()) {
+
+            throw new IllegalArgumentException(
+                    "invalid offsets [" + start + ", " + end + ") for a source of length " + source.length());
+        }
+
+        this.factory = factory;
+        this.name = name;
+        this.type = type;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.conversionFactor = conversionFactor;
+        this.measureUnit = measureUnit;
+    }
+
+    // Comparable implementation ---------------------------------------------------------------------------------------
+
+    public int compareTo(@SuppressWarnings("NullableProblems") Property o) {
+
+        if (o == null) {
+
+            throw new NullPointerException("null property");
+        }
+
+        return name.compareTo(o.getName());
+    }
+
+    // Property implementation -----------------------------------------------------------------------------------------
+
+    @Override
+    public String getName() {
+
+        return name;
+    }
+
+    @Override
+    public Object getValue() {
+
+        return decode().getValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+
+        decode().setValue(value);
+    }
+
+    /**
+     * Does not decode, unless the type was not declared and has to be inferred.
+     */
+    @Override
+    public Class getType() {
+
+        return type != null ? type : decode().getType();
+    }
+
+    @Override
+    public MeasureUnit getMeasureUnit() {
+
+        return decoded == null && type != null ? measureUnit : decode().getMeasureUnit();
+    }
+
+    @Override
+    public Format getFormat() {
+
+        return decode().getFormat();
+    }
+
+    @Override
+    public Property fromString(String s) throws IllegalArgumentException {
+
+        return decode().fromString(s);
+    }
+
+    @Override
+    public String externalizeValue() {
+
+        return decode().externalizeValue();
+    }
+
+    @Override
+    public String externalizeType() {
+
+        return getName();
+    }
+
+    /**
+     * Does not decode. The source is usually a line shared by several properties, so an undecoded property is
+     * estimated as if its region was decoded into a String.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        //
+        // 7 references and 2 ints
+        //
+
+        long result = HeapFootprint.ofObject(7 * HeapFootprint.REFERENCE + 8);
+
+        if (decoded != null) {
+
+            return result + decoded.estimateRetainedBytes();
+        }
+
+        return result + HeapFootprint.ofString(end - start);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Converts the raw value into a typed property on first invocation, and caches it.
+     *
+     * @return the typed property. Never null.
+     *
+     * @exception IllegalArgumentException if the raw value cannot be converted to the declared type.
+     */
+    public Property decode() {
+
+        if (decoded == null) {
+
+            if (String.class.equals(type)) {
+
+                //
+                // interned without building the String, if the factory has a string dictionary
+                //
+
+                decoded = factory.createStringInstance(name, source, start, end, measureUnit);
+            }
+            else {
+
+                decoded = factory.createInstance(name, type, getRawValue(), conversionFactor, measureUnit);
+            }
+
+            //
+            // the source is no longer needed
+            //
+
+            source = null;
+        }
+
+        return decoded;
+    }
+
+    public boolean isDecoded() {
+
+        return decoded != null;
+    }
+
+    /**
+     * @return the raw value, without decoding it. For a decoded property, it returns the externalized value.
+     */
+    public String getRawValue() {
+
+        if (decoded != null) {
+
+            return decoded.externalizeValue();
+        }
+
+        return source.subSequence(start, end).toString();
+    }
+
+    /**
+     * Does not trigger decoding.
+     */
+    @Override
+    public String toString() {
+
+        if (decoded != null) {
+
+            return decoded.toString();
+        }
+
+        return name + "=" + getRawValue();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -46,6 +46,12 @@ public class LineEvent extends GenericEvent {
         return s;
     }
 
+    @Override
+    public long estimateRetainedBytes() {
+
+        return super.estimateRetainedBytes() + HeapFootprint.align(HeapFootprint.REFERENCE) + HeapFootprint.of(s);
+    }
+
     @Override
     public String toString() {
 
@@ -93,6 +93,8 @@ public class ListProperty<V> extends PropertyBase {
     @Override
     public void setValue(Object value) {
 
+        checkNotFrozen();
+
         if (value == null) {
             this.value = Collections.emptyList();
         }
@@ -130,6 +132,20 @@ public class ListProperty<V> extends PropertyBase {
 
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * The list becomes read-only.
+     */
+    @Override
+    void freeze() {
+
+        if (value instanceof List && !isFrozen()) {
+
+            value = Collections.unmodifiableList((List<?>)value);
+        }
+
+        super.freeze();
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
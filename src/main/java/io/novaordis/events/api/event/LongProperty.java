@@ -30,6 +30,12 @@ public class LongProperty extends PropertyBase {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // the value is stored unboxed; PropertyBase.value is not used
+    //
+    private long longValue;
+    private boolean nullValue;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public LongProperty(String name) {
@@ -44,7 +50,19 @@ public class LongProperty extends PropertyBase {
 
     public LongProperty(String name, Long value, MeasureUnit mu) {
 
-        super(name, value, mu);
+        super(name, null, mu);
+        setValue(value);
+    }
+
+    public LongProperty(String name, long value) {
+
+        this(name, value, null);
+    }
+
+    public LongProperty(String name, long value, MeasureUnit mu) {
+
+        super(name, null, mu);
+        setLong(value);
     }
 
     // Property implementation -----------------------------------------------------------------------------------------
@@ -58,7 +76,7 @@ public class LongProperty extends PropertyBase {
     public Property fromString(String s) throws IllegalArgumentException {
 
         try {
-            long l = Long.valueOf(s);
+            long l = Long.parseLong(s);
             return new LongProperty(getName(), l);
         }
         catch(Exception e) {
@@ -66,6 +84,56 @@ public class LongProperty extends PropertyBase {
         }
     }
 
+    @Override
+    public Object getValue() {
+
+        return nullValue ? null : Long.valueOf(longValue);
+    }
+
+    /**
+     * A Number value of a different type is converted with Number.longValue(), as if by a primitive conversion,
+     * which may lose magnitude or precision.
+     *
+     * @exception IllegalArgumentException if the value is not null and not a Number.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        checkNotFrozen();
+
+        if (value == null) {
+
+            this.longValue = 0;
+            this.nullValue = true;
+        }
+        else if (value instanceof Number) {
+
+            setLong(((Number)value).longValue());
+        }
+        else {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in a " + getClass().getSimpleName());
+        }
+    }
+
+    // PropertyBase overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isNull() {
+
+        return nullValue;
+    }
+
+    /**
+     * The value is stored unboxed.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(FIELD_BYTES + 8 + 1);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public Long getLong() {
@@ -73,6 +141,25 @@ public class LongProperty extends PropertyBase {
         return (Long)getValue();
     }
 
+    /**
+     * Allocation-free access to the value.
+     *
+     * @return the unboxed value, or 0 if the value is null.
+     *
+     * @see LongProperty#isNull()
+     */
+    public long longValue() {
+
+        return longValue;
+    }
+
+    public void setLong(long value) {
+
+        checkNotFrozen();
+        this.longValue = value;
+        this.nullValue = false;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -19,11 +19,11 @@ package io.novaordis.events.api.event;
 import io.novaordis.events.api.measure.MeasureUnit;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
- * A MapProperty encapsulates a String-Object map.
+ * A MapProperty encapsulates a String-Object map. Maps created by the property are CompactMap instances, which hold
+ * small maps in arrays instead of hash tables.
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 2/1/16
@@ -39,11 +39,11 @@ public class MapProperty extends PropertyBase {
     // Constructors ----------------------------------------------------------------------------------------------------
 
     /**
-     * Creates a new inner map.
+     * Creates a new inner (compact) map.
      */
     public MapProperty(String name) {
 
-        this(name, new HashMap<>());
+        this(name, new CompactMap());
     }
 
     public MapProperty(String name, Map<String, Object> value) {
@@ -79,8 +79,7 @@ public class MapProperty extends PropertyBase {
      */
     public Map<String, Object> getMap() {
 
-        //noinspection unchecked
-        Map<String, Object> map = ( Map<String, Object>)getValue();
+        Map<String, Object> map = map();
 
         if (map == null) {
             map = Collections.emptyMap();
@@ -89,6 +88,40 @@ public class MapProperty extends PropertyBase {
         return map;
     }
 
+    /**
+     * Merges the content of the given property's map into this property's map, in place. If this property has no map,
+     * it gets a new compact map with the content of the given property's map.
+     *
+     * @exception IllegalArgumentException on null argument.
+     * @exception UnsupportedOperationException if the property is frozen.
+     */
+    public void merge(MapProperty other) {
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null map property");
+        }
+
+        checkNotFrozen();
+
+        Map<String, Object> source = other.getMap();
+
+        if (source.isEmpty()) {
+
+            return;
+        }
+
+        Map<String, Object> map = map();
+
+        if (map == null) {
+
+            setValue(new CompactMap(source));
+            return;
+        }
+
+        map.putAll(source);
+    }
+
     /**
      * Null on non-existent key (including null).
      */
@@ -98,8 +131,7 @@ public class MapProperty extends PropertyBase {
             return null;
         }
 
-        //noinspection unchecked
-        Map<String, Object> map = (Map<String, Object>)getValue();
+        Map<String, Object> map = map();
 
         if (map == null) {
             return null;
@@ -116,10 +148,33 @@ public class MapProperty extends PropertyBase {
 
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * The map becomes read-only.
+     */
+    @Override
+    void freeze() {
+
+        if (value instanceof Map && !isFrozen()) {
+
+            value = Collections.unmodifiableMap((Map<?, ?>)value);
+        }
+
+        super.freeze();
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * MapProperty values are Map<String, Object> by contract.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> map() {
+
+        return (Map<String, Object>)getValue();
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.AbstractList;
+import java.util.function.Consumer;
+
+/**
+ * A read-only, live view of the properties of an event that does not keep them in a single list. Backed by the
+ * event's propertyCount() and getProperty(int). Indexed access may not be constant time for all implementations,
+ * so forEach() is delegated to the event's forEachProperty().
+ *
+ * @see Event#getPropertiesView()
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+class PropertiesView extends AbstractList<Property> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Event event;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    PropertiesView(Event event) {
+
+        this.event = event;
+    }
+
+    // AbstractList overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public Property get(int index) {
+
+        if (index < 0 || index >= event.propertyCount()) {
+
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + event.propertyCount());
+        }
+
+        return event.getProperty(index);
+    }
+
+    @Override
+    public int size() {
+
+        return event.propertyCount();
+    }
+
+    // Iterable overrides ----------------------------------------------------------------------------------------------
+
+    @Override
+    public void forEach(Consumer<? super Property> action) {
+
+        if (action == null) {
+
+            throw new NullPointerException("null action");
+        }
+
+        event.forEachProperty(action);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
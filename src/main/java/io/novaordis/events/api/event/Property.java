@@ -103,4 +103,17 @@ public interface Property extends Comparable<Property> {
 
     String externalizeType();
 
+    /**
+     * The default implementation estimates the instance as holding a single reference, to the value.
+     *
+     * @return an estimate of the heap bytes retained by the property: the property instance and its value, including
+     * the nested maps, lists and events. The name is not counted, as property names are usually shared.
+     *
+     * @see HeapFootprint
+     */
+    default long estimateRetainedBytes() {
+
+        return HeapFootprint.ofObject(HeapFootprint.REFERENCE) + HeapFootprint.of(getValue());
+    }
+
 }
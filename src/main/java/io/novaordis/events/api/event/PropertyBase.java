@@ -28,6 +28,11 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
+    //
+    // the size of the fields declared by this class: 4 references and a boolean
+    //
+    static final int FIELD_BYTES = 4 * HeapFootprint.REFERENCE + 1;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -38,6 +43,11 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
 
     protected Object value;
 
+    //
+    // frozen properties are shared by frozen events and their copies, and reject changes
+    //
+    private boolean frozen;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     /**
@@ -109,6 +119,8 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
     @Override
     public void setValue(Object value) {
 
+        checkNotFrozen();
+
         if (value == null) {
 
             this.value = null;
@@ -134,6 +146,8 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
     @Override
     public String externalizeValue() {
 
+        Object value = getValue();
+
         if (value == null) {
 
             return null;
@@ -149,6 +163,16 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
         return getName();
     }
 
+    @Override
+    public long estimateRetainedBytes() {
+
+        //
+        // the value field is read directly, so lazily built values are not built
+        //
+
+        return HeapFootprint.ofObject(FIELD_BYTES) + HeapFootprint.of(value);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     /**
@@ -156,17 +180,43 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
      */
     public void setMeasureUnit(MeasureUnit measureUnit) {
 
+        checkNotFrozen();
         this.measureUnit = measureUnit;
     }
 
     public void setFormat(Format format) {
 
+        checkNotFrozen();
         this.format = format;
     }
 
+    /**
+     * @return true if the property carries a null value. Subclasses that store their values unboxed override this to
+     * avoid allocation.
+     */
+    public boolean isNull() {
+
+        return getValue() == null;
+    }
+
+    /**
+     * Clears the value, the measure unit and the format, so the instance can be recycled. The name is preserved.
+     *
+     * @see EventPool
+     */
+    public void reset() {
+
+        checkNotFrozen();
+        setValue(null);
+        this.measureUnit = null;
+        this.format = null;
+    }
+
     @Override
     public String toString() {
 
+        Object value = getValue();
+
         if (value == null) {
 
             return name;
@@ -175,8 +225,27 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
         return name + "=" + value;
     }
 
+    /**
+     * @return true if the property belongs to a frozen event, or to an event that shares its properties with a copy.
+     * Frozen properties cannot be modified.
+     *
+     * @see GenericEvent#freeze()
+     */
+    public boolean isFrozen() {
+
+        return frozen;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * Irreversible. Subclasses that hold mutable values override this to make the values read-only.
+     */
+    void freeze() {
+
+        this.frozen = true;
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     /**
@@ -184,9 +253,23 @@ public abstract class PropertyBase implements Property, Comparable<Property> {
      */
     protected void setName(String s) {
 
+        checkNotFrozen();
         this.name = s;
     }
 
+    /**
+     * Must be invoked by subclasses before any change.
+     *
+     * @exception UnsupportedOperationException if the property is frozen.
+     */
+    protected void checkNotFrozen() {
+
+        if (frozen) {
+
+            throw new UnsupportedOperationException("property " + name + " is frozen");
+        }
+    }
+
     // Private ---------------------------------------------------------------------------------------------------------
 
     // Inner classes ---------------------------------------------------------------------------------------------------
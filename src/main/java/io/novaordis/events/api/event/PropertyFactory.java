@@ -20,15 +20,26 @@ import io.novaordis.events.api.measure.MeasureUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Factory that creates the appropriate property instance based on type and value. If the type is not known (null), but
  * the value is known and typed, first level heuristics are applied. If the value is a String, second level heuristics
  * are applied by attempting to convert to known types.
  *
+ * String values are classified by a single-pass scanner, without relying on conversion exceptions. In addition, a
+ * factory instance remembers, per property name, the type inferred for the last TYPE_LOCK_SAMPLES values. Once the
+ * type is locked, subsequent values are only checked against that type, and the lock is released on the first value
+ * that does not match. Type locking does not change the result of the inference, only its cost, so a factory is best
+ * shared by the producers of a single stream, where a property name always designates the same column.
+ *
+ * Optionally, a factory interns the String values of the properties it creates in a StringDictionary, so repeated
+ * values (thread names, log levels, etc.) are held by one canonical instance. See setStringDictionary().
+ *
  * Must be kept thread safe.
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -40,18 +51,249 @@ public class PropertyFactory {
 
     private static final Logger log = LoggerFactory.getLogger(PropertyFactory.class);
 
+    //
+    // the number of consecutive values of the same inferred type after which the type is locked for a property name
+    //
+    public static final int TYPE_LOCK_SAMPLES = 16;
+
+    static final String TIME_FORMAT = "MM/dd/yy HH:mm:ss";
+
+    //
+    // inferred kinds
+    //
+    static final int STRING = 0;
+    static final int INTEGER = 1;
+    static final int LONG = 2;
+    static final int FLOAT = 3;
+    static final int TIMESTAMP = 4;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
-    private static final SimpleDateFormat[] TIME_FORMATS = {
+    private static final TimestampFormat TIMESTAMP_FORMAT = new TimestampFormat(TIME_FORMAT);
+
+    /**
+     * Single-pass, exception-free classification of a String value, following the precedence of the type heuristics:
+     * timestamp, float, integer, long, string.
+     */
+    static int classify(String s) {
+
+        if (isTimestamp(s)) {
+
+            return TIMESTAMP;
+        }
+
+        if (isFloat(s)) {
+
+            return FLOAT;
+        }
+
+        return integerKind(s);
+    }
+
+    /**
+     * @return true if the value has the shape of the "MM/dd/yy HH:mm:ss" timestamp format. As with SimpleDateFormat
+     * parsing, the fields may have any number of digits, and the content following the seconds is ignored.
+     */
+    static boolean isTimestamp(String s) {
+
+        int i = 0;
+        int len = s.length();
+
+        for(int field = 0; field < 6; field ++) {
+
+            int start = i;
+
+            while(i < len && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+
+                i ++;
+            }
+
+            if (i == start) {
+
+                return false;
+            }
+
+            if (field == 5) {
+
+                return true;
+            }
+
+            char expected = field < 2 ? '/' : field == 2 ? ' ' : ':';
+
+            if (i == len || s.charAt(i) != expected) {
+
+                return false;
+            }
+
+            i ++;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the value contains a decimal point and can be parsed by Float.parseFloat(). Leading and trailing
+     * whitespace is tolerated, as it is by Float.parseFloat(). Hexadecimal notation is not recognized.
+     */
+    static boolean isFloat(String s) {
+
+        int len = s.length();
+        int i = 0;
+
+        while(i < len && s.charAt(i) <= ' ') {
+
+            i ++;
+        }
+
+        while(len > i && s.charAt(len - 1) <= ' ') {
+
+            len --;
+        }
+
+        if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+
+            i ++;
+        }
+
+        int digits = 0;
+        boolean point = false;
+
+        for(; i < len; i ++) {
+
+            char c = s.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+
+                digits ++;
+            }
+            else if (c == '.' && !point) {
+
+                point = true;
+            }
+            else {
+
+                break;
+            }
+        }
+
+        if (!point || digits == 0) {
+
+            return false;
+        }
+
+        if (i < len && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+
+            i ++;
+
+            if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+
+                i ++;
+            }
+
+            int exponentDigits = 0;
+
+            while(i < len && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+
+                i ++;
+                exponentDigits ++;
+            }
+
+            if (exponentDigits == 0) {
+
+                return false;
+            }
+        }
+
+        if (i < len) {
+
+            char c = s.charAt(i);
+
+            if (c == 'f' || c == 'F' || c == 'd' || c == 'D') {
+
+                i ++;
+            }
+        }
+
+        return i == len;
+    }
+
+    /**
+     * @return INTEGER if the value can be parsed by Integer.parseInt(), LONG if it can only be parsed by
+     * Long.parseLong(), STRING otherwise.
+     */
+    static int integerKind(String s) {
+
+        int len = s.length();
+
+        if (len == 0) {
+
+            return STRING;
+        }
+
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+
+        if (first == '-' || first == '+') {
+
+            if (len == 1) {
+
+                return STRING;
+            }
+
+            negative = first == '-';
+            i = 1;
+        }
+
+        //
+        // accumulate negatively, as Long.parseLong() does, to cover Long.MIN_VALUE
+        //
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+
+        for(; i < len; i ++) {
 
-            new SimpleDateFormat("MM/dd/yy HH:mm:ss"),
-    };
+            int digit = s.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9 || result < multiplicationLimit) {
+
+                return STRING;
+            }
+
+            result *= 10;
+
+            if (result < limit + digit) {
+
+                return STRING;
+            }
+
+            result -= digit;
+        }
+
+        long value = negative ? result : -result;
+
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? INTEGER : LONG;
+    }
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // property name -> the recent inference history for the name
+    //
+    private ConcurrentMap<String, TypeLock> typeLocks;
+
+    //
+    // null if String values are not interned
+    //
+    private volatile StringDictionary stringDictionary;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public PropertyFactory() {
+
+        this.typeLocks = new ConcurrentHashMap<>();
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -95,6 +337,11 @@ public class PropertyFactory {
             // UndefinedTypeProperty instance
             //
 
+            if (value instanceof String) {
+
+                return createInferredInstance(name, (String)value);
+            }
+
             if (value != null) {
 
                 return createTypeHeuristicsInstance(name, value, conversionFactor, measureUnit);
@@ -117,135 +364,167 @@ public class PropertyFactory {
                         "cannot create a " + type + " property with a " + value.getClass().getSimpleName() + " value");
             }
 
-            result = new StringProperty(name, (String)value);
+            result = new StringProperty(name, intern((String)value));
         }
         else if (Integer.class.equals(type)) {
 
-            Integer i;
-
-            if (value == null || value instanceof Integer) {
+            if (value == null) {
 
-                i = (Integer)value;
+                result = new IntegerProperty(name);
             }
-            else if (value instanceof String) {
+            else {
 
-                try {
+                int i;
+
+                if (value instanceof Integer) {
 
-                    i = Integer.parseInt((String) value);
+                    i = (Integer)value;
                 }
-                catch(Exception e) {
+                else if (value instanceof String) {
 
-                    throw new IllegalArgumentException("cannot convert \"" + value + "\" to an integer");
+                    try {
+
+                        i = Integer.parseInt((String) value);
+                    }
+                    catch(Exception e) {
+
+                        throw new IllegalArgumentException("cannot convert \"" + value + "\" to an integer");
+                    }
                 }
-            }
-            else {
+                else {
 
-                throw new IllegalArgumentException(
-                        "cannot create a " + type + " property with a " + value.getClass().getSimpleName() + " value");
-            }
+                    throw new IllegalArgumentException(
+                            "cannot create a " + type + " property with a " + value.getClass().getSimpleName() +
+                                    " value");
+                }
 
-            if (conversionFactor != null && i != null) {
+                if (conversionFactor != null) {
 
-                i = (int)(i * conversionFactor);
-            }
+                    i = (int)(i * conversionFactor);
+                }
 
-            result = new IntegerProperty(name, i);
+                result = new IntegerProperty(name, i);
+            }
         }
         else if (Long.class.equals(type)) {
 
-            Long l;
-
-            if (value == null || value instanceof Long) {
+            if (value == null) {
 
-                l = (Long)value;
+                result = new LongProperty(name);
             }
-            else if (value instanceof String) {
+            else {
 
-                try {
+                long l;
 
-                    l = Long.parseLong((String) value);
+                if (value instanceof Long) {
+
+                    l = (Long)value;
                 }
-                catch(Exception e) {
+                else if (value instanceof String) {
 
-                    throw new IllegalArgumentException("cannot convert \"" + value + "\" to a long");
+                    try {
+
+                        l = Long.parseLong((String) value);
+                    }
+                    catch(Exception e) {
+
+                        throw new IllegalArgumentException("cannot convert \"" + value + "\" to a long");
+                    }
                 }
-            }
-            else {
+                else {
 
-                throw new IllegalArgumentException(
-                        "cannot create a " + type + " property with a " + value.getClass().getSimpleName() + " value");
-            }
+                    throw new IllegalArgumentException(
+                            "cannot create a " + type + " property with a " + value.getClass().getSimpleName() +
+                                    " value");
+                }
 
-            if (conversionFactor != null && l != null) {
+                if (conversionFactor != null) {
 
-                l = (long)(l * conversionFactor);
-            }
+                    l = (long)(l * conversionFactor);
+                }
 
-            result = new LongProperty(name, l);
+                result = new LongProperty(name, l);
+            }
         }
         else if(Double.class.equals(type)) {
 
-            Double d;
+            if (value == null) {
 
-            if (value == null || value instanceof Double) {
-
-                d = (Double)value;
+                result = new DoubleProperty(name);
             }
-            else if (value instanceof String) {
+            else {
 
-                try {
+                double d;
+
+                if (value instanceof Double) {
 
-                    d = Double.parseDouble((String) value);
+                    d = (Double)value;
                 }
-                catch(Exception e) {
+                else if (value instanceof String) {
+
+                    try {
 
-                    throw new IllegalArgumentException("cannot convert \"" + value + "\" to a double");
+                        d = Double.parseDouble((String) value);
+                    }
+                    catch(Exception e) {
+
+                        throw new IllegalArgumentException("cannot convert \"" + value + "\" to a double");
+                    }
                 }
-            }
-            else {
+                else {
 
-                throw new IllegalArgumentException(
-                        "cannot create a " + type + " property with a " + value.getClass().getSimpleName() + " value");
-            }
+                    throw new IllegalArgumentException(
+                            "cannot create a " + type + " property with a " + value.getClass().getSimpleName() +
+                                    " value");
+                }
 
-            if (conversionFactor != null && d != null) {
+                if (conversionFactor != null) {
 
-                d = d * conversionFactor;
-            }
+                    d = d * conversionFactor;
+                }
 
-            result = new DoubleProperty(name, d);
+                result = new DoubleProperty(name, d);
+            }
         }
         else if(Float.class.equals(type)) {
 
-            Float f;
-
-            if (value == null || value instanceof Float) {
+            if (value == null) {
 
-                f = (Float)value;
+                result = new FloatProperty(name);
             }
-            else if (value instanceof String) {
+            else {
 
-                try {
+                float f;
 
-                    f = Float.parseFloat((String) value);
+                if (value instanceof Float) {
+
+                    f = (Float)value;
                 }
-                catch(Exception e) {
+                else if (value instanceof String) {
 
-                    throw new IllegalArgumentException("cannot convert \"" + value + "\" to a float");
+                    try {
+
+                        f = Float.parseFloat((String) value);
+                    }
+                    catch(Exception e) {
+
+                        throw new IllegalArgumentException("cannot convert \"" + value + "\" to a float");
+                    }
                 }
-            }
-            else {
+                else {
 
-                throw new IllegalArgumentException(
-                        "cannot create a " + type + " property with a " + value.getClass().getSimpleName() + " value");
-            }
+                    throw new IllegalArgumentException(
+                            "cannot create a " + type + " property with a " + value.getClass().getSimpleName() +
+                                    " value");
+                }
 
-            if (conversionFactor != null && f != null) {
+                if (conversionFactor != null) {
 
-                f = (float)(f * conversionFactor);
-            }
+                    f = (float)(f * conversionFactor);
+                }
 
-            result = new FloatProperty(name, f);
+                result = new FloatProperty(name, f);
+            }
         }
         else if(Date.class.equals(type)) {
 
@@ -299,8 +578,120 @@ public class PropertyFactory {
         return result;
     }
 
+    /**
+     * Creates a property whose value is extracted from the given region of the source, and converted with
+     * createInstance() only when first accessed. Intended for parsers that retain the raw line anyway, and want to
+     * defer the conversion of fields most queries never look at.
+     *
+     * @param type - may be null, in which case type heuristics apply on decoding.
+     *
+     * @param start the start offset of the value in the source, inclusive.
+     *
+     * @param end the end offset of the value in the source, exclusive.
+     *
+     * @exception IllegalArgumentException on null source or invalid offsets. Conversion errors are reported on first
+     * access.
+     *
+     * @see LazyProperty
+     */
+    public LazyProperty createLazyInstance(String name, Class type, CharSequence source, int start, int end,
+                                           Double conversionFactor, MeasureUnit measureUnit) {
+
+        return new LazyProperty(this, name, type, source, start, end, conversionFactor, measureUnit);
+    }
+
+    /**
+     * Creates a StringProperty whose value is the given region of the source. If a string dictionary is installed,
+     * the value is interned, and the String is only built if the value is not in the dictionary yet.
+     *
+     * @param start the start offset of the value in the source, inclusive.
+     *
+     * @param end the end offset of the value in the source, exclusive.
+     *
+     * @exception IllegalArgumentException on null source or invalid offsets.
+     */
+    public StringProperty createStringInstance(
+            String name, CharSequence source, int start, int end, MeasureUnit measureUnit) {
+
+        if (source == null) {
+
+            throw new IllegalArgumentException("null source");
+        }
+
+        if (start < 0 || end > source.length() || start > end) {
+
+            throw new IllegalArgumentException("invalid region: " + start + ", " + end);
+        }
+
+        StringDictionary d = stringDictionary;
+
+        String value = d == null ? source.subSequence(start, end).toString() : d.intern(source, start, end);
+
+        return new StringProperty(name, value, measureUnit);
+    }
+
+    /**
+     * Creates a StringProperty whose value is the given region of the byte array, interpreted as single-byte
+     * (ISO-8859-1) characters. If a string dictionary is installed, the value is interned, and the String is only
+     * built if the value is not in the dictionary yet.
+     *
+     * @exception IllegalArgumentException on null array or invalid region.
+     *
+     * @see ByteSliceStringProperty
+     */
+    public StringProperty createStringInstance(
+            String name, byte[] bytes, int offset, int length, MeasureUnit measureUnit) {
+
+        if (bytes == null) {
+
+            throw new IllegalArgumentException("null byte array");
+        }
+
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+
+            throw new IllegalArgumentException("invalid region: offset " + offset + ", length " + length);
+        }
+
+        StringDictionary d = stringDictionary;
+
+        String value = d == null ?
+                new String(bytes, offset, length, StandardCharsets.ISO_8859_1) : d.intern(bytes, offset, length);
+
+        return new StringProperty(name, value, measureUnit);
+    }
+
+    /**
+     * @return the dictionary the String values are interned in, or null if String values are not interned.
+     */
+    public StringDictionary getStringDictionary() {
+
+        return stringDictionary;
+    }
+
+    /**
+     * Installs a dictionary to intern the values of the String properties created by this factory from then on: the
+     * properties created with a String type, the properties whose type is inferred to be String, and the properties
+     * created by createStringInstance(), including the lazy String properties. Interning is opt-in, as it only pays
+     * off for streams with repetitive values, and a dictionary is best used for a single stream.
+     *
+     * @param d null disables interning.
+     */
+    public void setStringDictionary(StringDictionary d) {
+
+        this.stringDictionary = d;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * @return the kind locked for the given property name, or STRING if the type is not locked.
+     */
+    int getLockedKind(String name) {
+
+        TypeLock lock = typeLocks.get(name);
+        return lock == null ? STRING : lock.getLockedKind();
+    }
+
     static Property createTypeHeuristicsInstance(
             String name, Object value, Double conversionFactor, MeasureUnit measureUnit) {
 
@@ -332,100 +723,167 @@ public class PropertyFactory {
         }
         else if (value instanceof String) {
 
-            //
-            // start with the most complex patterns and devolve as heuristics fail
-            //
+            String str = (String)value;
+            return createInstance(classify(str), name, str);
+        }
+        else {
 
-            String s = (String)value;
+            throw new RuntimeException(
+                    "NOT YET IMPLEMENTED: support for type inference from " + value + " (" + value.getClass() + ")");
+        }
+    }
 
-            //
-            // time
-            //
+    /**
+     * Builds the property for a value already classified as the given kind.
+     */
+    static Property createInstance(int kind, String name, String s) {
 
-            for(SimpleDateFormat f: TIME_FORMATS) {
+        switch (kind) {
 
-                try {
+            case TIMESTAMP:
+
+                long time = TIMESTAMP_FORMAT.parse(s, Long.MIN_VALUE);
 
-                    Date d = f.parse(s);
+                if (time == Long.MIN_VALUE) {
 
                     //
-                    // heuristics succeeded
+                    // shaped like a timestamp, but not a timestamp. It cannot be a number either
                     //
 
-                    return new TimestampProperty(name, d.getTime(), f);
+                    return new StringProperty(name, s);
                 }
-                catch (Exception e) {
 
-                    //
-                    // conversion failed, heuristics did not work, go to next
-                    //
-                }
-            }
+                //
+                // the format is thread safe, so all the properties share it
+                //
 
-            //
-            // float
-            //
+                return new TimestampProperty(name, time, TIMESTAMP_FORMAT);
 
-            if (s.contains(".")) {
+            case FLOAT:
 
-                try {
+                return new FloatProperty(name, Float.parseFloat(s));
 
-                    float f = Float.parseFloat(s);
+            case INTEGER:
 
-                    //
-                    // heuristics succeeded
-                    //
+                return new IntegerProperty(name, Integer.parseInt(s));
 
-                    return new FloatProperty(name, f);
+            case LONG:
 
-                }
-                catch(Exception e) {
+                return new LongProperty(name, Long.parseLong(s));
 
-                    //
-                    // conversion failed, heuristics did not work, go to next
-                    //
-                }
-            }
+            default:
+
+                return new StringProperty(name, s);
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Type inference for String values, with per-name type locking. Produces the same result as
+     * createTypeHeuristicsInstance().
+     */
+    private Property createInferredInstance(String name, String s) {
+
+        TypeLock lock = typeLocks.get(name);
+
+        if (lock == null) {
+
+            TypeLock newLock = new TypeLock();
+            lock = typeLocks.putIfAbsent(name, newLock);
+            lock = lock == null ? newLock : lock;
+        }
+
+        int kind = lock.getLockedKind();
+
+        if (kind != STRING) {
 
             //
-            // integer
+            // the kinds are mutually exclusive, so a value that matches the locked kind would have been classified
+            // the same by the full scan
             //
 
-            try {
+            int matched;
 
-                int i = Integer.parseInt(s);
+            if (kind == TIMESTAMP) {
 
-                //
-                // heuristics succeeded
-                //
-
-                return new IntegerProperty(name, i);
+                matched = isTimestamp(s) ? TIMESTAMP : STRING;
+            }
+            else if (kind == FLOAT) {
 
+                matched = isFloat(s) ? FLOAT : STRING;
             }
-            catch(Exception e) {
+            else {
 
                 //
-                // conversion failed, heuristics did not work, go to next
+                // INTEGER or LONG, integerKind() tells which
                 //
+
+                matched = integerKind(s);
             }
 
-            //
-            // catch all
-            //
+            if (matched != STRING) {
 
-            return new StringProperty(name, (String)value);
+                return createInstance(matched, name, s);
+            }
         }
-        else {
 
-            throw new RuntimeException(
-                    "NOT YET IMPLEMENTED: support for type inference from " + value + " (" + value.getClass() + ")");
-        }
+        kind = classify(s);
+        lock.record(kind);
+
+        return createInstance(kind, name, kind == STRING ? intern(s) : s);
     }
 
-    // Protected -------------------------------------------------------------------------------------------------------
+    private String intern(String s) {
 
-    // Private ---------------------------------------------------------------------------------------------------------
+        StringDictionary d = stringDictionary;
+        return d == null ? s : d.intern(s);
+    }
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * The inference history for a property name. Concurrent updates may lose samples, which only delays locking.
+     */
+    private static class TypeLock {
+
+        private volatile int lastKind = STRING;
+        private volatile int samples;
+        private volatile boolean locked;
+
+        /**
+         * @return the locked kind, or STRING if the type is not locked.
+         */
+        int getLockedKind() {
+
+            return locked ? lastKind : STRING;
+        }
+
+        /**
+         * Records the result of a full classification, which also means the locked kind, if any, did not match.
+         */
+        void record(int kind) {
+
+            if (kind == lastKind && !locked) {
+
+                if (++ samples >= TYPE_LOCK_SAMPLES && kind != STRING) {
+
+                    locked = true;
+                }
+
+                return;
+            }
+
+            //
+            // a different kind, start over
+            //
+
+            locked = false;
+            lastKind = kind;
+            samples = 1;
+        }
+    }
+
 }
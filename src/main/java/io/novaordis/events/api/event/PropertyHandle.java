@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+
+/**
+ * A pre-resolved reference to a property slot of an EventSchema. Callers resolve the handle once, by name, and then
+ * use it to read and write the value of the property on any SchemaEvent built from the same schema, without name
+ * lookups.
+ *
+ * Instances are immutable and can be safely shared between threads.
+ *
+ * @see EventSchema#getHandle(String)
+ * @see SchemaEvent#get(PropertyHandle)
+ * @see SchemaEvent#set(PropertyHandle, Object)
+ * @see SchemaEvent#getLong(PropertyHandle, long)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/2/17
+ */
+public final class PropertyHandle {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final EventSchema schema;
+    private final int slot;
+    private final int index;
+    private final boolean primitive;
+    private final String name;
+    private final Class type;
+    private final MeasureUnit measureUnit;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Handles are created by the schema.
+     *
+     * @see EventSchema#addProperty(String, Class, MeasureUnit)
+     */
+    PropertyHandle(EventSchema schema, int slot, int index, boolean primitive, String name, Class type,
+                   MeasureUnit measureUnit) {
+
+        this.schema = schema;
+        this.slot = slot;
+        this.index = index;
+        this.primitive = primitive;
+        this.name = name;
+        this.type = type;
+        this.measureUnit = measureUnit;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public EventSchema getSchema() {
+
+        return schema;
+    }
+
+    /**
+     * @return the 0-based position of the property within the schema.
+     */
+    public int getSlot() {
+
+        return slot;
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * @return the type of the values stored in this slot. Never null.
+     */
+    public Class getType() {
+
+        return type;
+    }
+
+    /**
+     * @return the measure unit. May be null.
+     */
+    public MeasureUnit getMeasureUnit() {
+
+        return measureUnit;
+    }
+
+    @Override
+    public String toString() {
+
+        return name + "[" + slot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the position of the value within the primitive storage, or within the reference storage of the event,
+     * depending on isPrimitive().
+     */
+    int getIndex() {
+
+        return index;
+    }
+
+    /**
+     * @return true if the values are stored unboxed (Long, Integer, Float, Double and Boolean slots).
+     */
+    boolean isPrimitive() {
+
+        return primitive;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+/**
+ * The raw representation of an event, accumulated line by line by GenericEvent.appendRawLine(). The lines are
+ * appended to a growable buffer, and the String value is only built when requested, and cached until the next append.
+ * Accumulating n lines is therefore linear in the total size, not quadratic.
+ *
+ * The content is capped at a maximum number of characters. Content that exceeds the cap is discarded, and the value
+ * is terminated with TRUNCATION_MARKER.
+ *
+ * @see GenericEvent#appendRawLine(String)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/5/17
+ */
+class RawRepresentationProperty extends StringProperty {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    static final String TRUNCATION_MARKER = "...";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private int maxLength;
+
+    //
+    // null until the first append
+    //
+    private StringBuilder buffer;
+
+    //
+    // true if the value was set directly, and the buffer is not in use
+    //
+    private boolean direct;
+
+    //
+    // true if the buffer changed since the value was last built
+    //
+    private boolean dirty;
+
+    private boolean truncated;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    RawRepresentationProperty(String name, int maxLength) {
+
+        super(name);
+        setMaxLength(maxLength);
+        this.direct = true;
+    }
+
+    // Overrides -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the String value on the first invocation after an append.
+     */
+    @Override
+    public Object getValue() {
+
+        if (dirty) {
+
+            value = truncated ? buffer.toString() + TRUNCATION_MARKER : buffer.toString();
+            dirty = false;
+        }
+
+        return value;
+    }
+
+    /**
+     * Discards the accumulated content.
+     */
+    @Override
+    public void setValue(Object value) {
+
+        super.setValue(value);
+
+        if (buffer != null) {
+
+            buffer.setLength(0);
+        }
+
+        direct = true;
+        dirty = false;
+        truncated = false;
+    }
+
+    @Override
+    public boolean isNull() {
+
+        return direct && value == null;
+    }
+
+    /**
+     * Includes the buffer the lines are accumulated in, at its current capacity.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        return super.estimateRetainedBytes() + HeapFootprint.of(buffer);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the String value, which is not built lazily anymore, and releases the buffer.
+     */
+    @Override
+    void freeze() {
+
+        getValue();
+        buffer = null;
+        super.freeze();
+    }
+
+    /**
+     * Appends the line, preceded by a new line if there is prior content. A null prior value is not content.
+     */
+    void append(String line) {
+
+        checkNotFrozen();
+
+        if (line == null && isNull()) {
+
+            return;
+        }
+
+        line = String.valueOf(line);
+
+        if (buffer == null) {
+
+            buffer = new StringBuilder(Math.min(maxLength, 128));
+        }
+
+        if (direct) {
+
+            //
+            // start from the value set directly, if any
+            //
+
+            String s = (String)value;
+
+            if (s != null) {
+
+                appendBounded(s);
+                appendBounded("\n");
+            }
+
+            direct = false;
+        }
+        else {
+
+            appendBounded("\n");
+        }
+
+        appendBounded(line);
+
+        dirty = true;
+    }
+
+    boolean isTruncated() {
+
+        return truncated;
+    }
+
+    int getMaxLength() {
+
+        return maxLength;
+    }
+
+    /**
+     * Applies to subsequent appends.
+     */
+    void setMaxLength(int maxLength) {
+
+        if (maxLength < 0) {
+
+            throw new IllegalArgumentException("invalid maximum length: " + maxLength);
+        }
+
+        checkNotFrozen();
+
+        this.maxLength = maxLength;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void appendBounded(String s) {
+
+        if (truncated) {
+
+            return;
+        }
+
+        int available = maxLength - buffer.length();
+
+        if (s.length() <= available) {
+
+            buffer.append(s);
+            return;
+        }
+
+        buffer.append(s, 0, available);
+        truncated = true;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
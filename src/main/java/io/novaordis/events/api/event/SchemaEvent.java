@@ -0,0 +1,1790 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A compact event whose property names, types and measure units are kept in a shared EventSchema. The event itself
+ * only stores the property values: Long, Integer, Float, Double and Boolean values unboxed, in a long array, and the
+ * other values in an object array. The line number and the flags are kept in a primitive header, as in GenericEvent.
+ *
+ * The values can be accessed in constant time, without name lookups and without boxing, via PropertyHandles resolved
+ * once from the schema. The Event API is fully supported: properties named in the schema are stored in their slots,
+ * any other property is stored in a GenericEvent allocated on first use. A Property instance returned by the Event API
+ * for a slot or for the header is created on first access and kept by the event, which from then on reads the value
+ * from it, so changes applied to the property are seen by the event, as with GenericEvent. Properties passed to
+ * setProperty() are kept the same way. Setting the value via a handle, or via a typed setter, replaces the property,
+ * and does not allocate one. The slots never accessed through the Event API carry no Property instance.
+ *
+ * The schema properties are reported in slot order, followed by the header properties (line, query-once), followed by
+ * the non-schema properties, in the order in which they were set.
+ *
+ * The current implementation is not thread safe. Frozen events can be read concurrently: they build the properties
+ * they return on the fly, and the Map values returned by get() must not be modified. The copies created by snapshot()
+ * and mutableCopy() share the schema with the original, but own a copy of the slots, and of the Map values stored in
+ * them.
+ *
+ * @see EventSchema
+ * @see PropertyHandle
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/2/17
+ */
+public class SchemaEvent implements Event {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // slot states
+    //
+
+    private static final byte ABSENT = 0;
+
+    // the value is stored in the primitive or in the reference storage
+    private static final byte VALUE = 1;
+
+    // the event carries a property with a null value
+    private static final byte NULL = 2;
+
+    // the value is carried by the Property instance kept in the bound array
+    private static final byte BOUND = 3;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private EventSchema schema;
+
+    private byte[] states;
+
+    // the number of slots that are not ABSENT, maintained by setState()
+    private int present;
+
+    private long[] primitives;
+
+    private Object[] references;
+
+    //
+    // the Property instances kept for the BOUND slots, indexed by slot. Allocated on first use
+    //
+    private Property[] bound;
+
+    //
+    // the header. A header property handed out through the Event API, or set with setProperty(), is kept, and takes
+    // precedence over the primitive fields
+    //
+    private boolean hasLineNumber;
+    private long lineNumber;
+    private Property lineProperty;
+    private boolean hasQueryOnce;
+    private int flags;
+    private Property queryOnceProperty;
+
+    //
+    // the non-schema properties. Allocated on first use
+    //
+    private GenericEvent others;
+
+    private List<Property> propertiesView;
+
+    private boolean frozen;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @see EventSchema#newEvent()
+     */
+    public SchemaEvent(EventSchema schema) {
+
+        if (schema == null) {
+
+            throw new IllegalArgumentException("null schema");
+        }
+
+        this.schema = schema;
+        this.states = new byte[schema.size()];
+        this.primitives = new long[schema.primitiveCount()];
+        this.references = new Object[schema.referenceCount()];
+    }
+
+    // Slot access -----------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the value stored in the handle's slot, or null if the event carries no such property or the property
+     * has a null value. Long, Integer, Float, Double and Boolean values are boxed, use the typed accessors to avoid
+     * that.
+     *
+     * @exception IllegalArgumentException if the handle belongs to a different schema.
+     */
+    public Object get(PropertyHandle h) {
+
+        int slot = checkHandle(h);
+
+        int state = state(slot);
+
+        if (state == VALUE) {
+
+            return h.isPrimitive() ? box(h, primitives[h.getIndex()]) : references[h.getIndex()];
+        }
+
+        if (state == BOUND) {
+
+            return bound[slot].getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if the event carries the property, even if its value is null.
+     *
+     * @exception IllegalArgumentException if the handle belongs to a different schema.
+     */
+    public boolean has(PropertyHandle h) {
+
+        int slot = checkHandle(h);
+
+        return state(slot) != ABSENT;
+    }
+
+    /**
+     * Stores the value in the handle's slot, replacing the previous property, if any.
+     *
+     * @param value may be null, in which case the event will carry a property with a null value. Use clear() to
+     *              remove the property.
+     *
+     * @exception IllegalArgumentException if the handle belongs to a different schema, or if the value type does not
+     * match the type declared in the schema.
+     */
+    public void set(PropertyHandle h, Object value) {
+
+        int slot = checkHandle(h);
+
+        checkNotFrozen();
+
+        if (value != null && !h.getType().isInstance(value)) {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in " + h.getName() + " (" +
+                            h.getType().getSimpleName() + ")");
+        }
+
+        ensureCapacity(slot);
+        release(h);
+
+        if (value == null) {
+
+            setState(slot, NULL);
+        }
+        else {
+
+            store(h, value);
+        }
+    }
+
+    /**
+     * Removes the property stored in the handle's slot, if any.
+     *
+     * @exception IllegalArgumentException if the handle belongs to a different schema.
+     */
+    public void clear(PropertyHandle h) {
+
+        int slot = checkHandle(h);
+
+        checkNotFrozen();
+
+        if (slot < states.length) {
+
+            release(h);
+            setState(slot, ABSENT);
+        }
+    }
+
+    /**
+     * @return the value stored in the handle's slot, or dflt if the event carries no such property, if the property
+     * has a null value, or if the slot is not a Long slot.
+     *
+     * @exception IllegalArgumentException if the handle belongs to a different schema.
+     */
+    public long getLong(PropertyHandle h, long dflt) {
+
+        int slot = checkHandle(h);
+
+        int state = state(slot);
+
+        if (state == VALUE && Long.class.equals(h.getType())) {
+
+            return primitives[h.getIndex()];
+        }
+
+        Object v = state == BOUND ? bound[slot].getValue() : null;
+
+        return v instanceof Long ? (Long)v : dflt;
+    }
+
+    /**
+     * @exception IllegalArgumentException if the handle belongs to a different schema, or it is not a Long slot.
+     */
+    public void setLong(PropertyHandle h, long value) {
+
+        storePrimitive(h, Long.class, value);
+    }
+
+    /**
+     * @see SchemaEvent#getLong(PropertyHandle, long)
+     */
+    public int getInteger(PropertyHandle h, int dflt) {
+
+        int slot = checkHandle(h);
+
+        int state = state(slot);
+
+        if (state == VALUE && Integer.class.equals(h.getType())) {
+
+            return (int)primitives[h.getIndex()];
+        }
+
+        Object v = state == BOUND ? bound[slot].getValue() : null;
+
+        return v instanceof Integer ? (Integer)v : dflt;
+    }
+
+    /**
+     * @exception IllegalArgumentException if the handle belongs to a different schema, or it is not an Integer slot.
+     */
+    public void setInteger(PropertyHandle h, int value) {
+
+        storePrimitive(h, Integer.class, value);
+    }
+
+    /**
+     * @see SchemaEvent#getLong(PropertyHandle, long)
+     */
+    public float getFloat(PropertyHandle h, float dflt) {
+
+        int slot = checkHandle(h);
+
+        int state = state(slot);
+
+        if (state == VALUE && Float.class.equals(h.getType())) {
+
+            return Float.intBitsToFloat((int)primitives[h.getIndex()]);
+        }
+
+        Object v = state == BOUND ? bound[slot].getValue() : null;
+
+        return v instanceof Float ? (Float)v : dflt;
+    }
+
+    /**
+     * @exception IllegalArgumentException if the handle belongs to a different schema, or it is not a Float slot.
+     */
+    public void setFloat(PropertyHandle h, float value) {
+
+        storePrimitive(h, Float.class, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * @see SchemaEvent#getLong(PropertyHandle, long)
+     */
+    public double getDouble(PropertyHandle h, double dflt) {
+
+        int slot = checkHandle(h);
+
+        int state = state(slot);
+
+        if (state == VALUE && Double.class.equals(h.getType())) {
+
+            return Double.longBitsToDouble(primitives[h.getIndex()]);
+        }
+
+        Object v = state == BOUND ? bound[slot].getValue() : null;
+
+        return v instanceof Double ? (Double)v : dflt;
+    }
+
+    /**
+     * @exception IllegalArgumentException if the handle belongs to a different schema, or it is not a Double slot.
+     */
+    public void setDouble(PropertyHandle h, double value) {
+
+        storePrimitive(h, Double.class, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @see SchemaEvent#getLong(PropertyHandle, long)
+     */
+    public boolean getBoolean(PropertyHandle h, boolean dflt) {
+
+        int slot = checkHandle(h);
+
+        int state = state(slot);
+
+        if (state == VALUE && Boolean.class.equals(h.getType())) {
+
+            return primitives[h.getIndex()] != 0L;
+        }
+
+        Object v = state == BOUND ? bound[slot].getValue() : null;
+
+        return v instanceof Boolean ? (Boolean)v : dflt;
+    }
+
+    /**
+     * @exception IllegalArgumentException if the handle belongs to a different schema, or it is not a Boolean slot.
+     */
+    public void setBoolean(PropertyHandle h, boolean value) {
+
+        storePrimitive(h, Boolean.class, value ? 1L : 0L);
+    }
+
+    // Event implementation --------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isTimed() {
+
+        return false;
+    }
+
+    /**
+     * The property instance is kept by the event, as with GenericEvent, unless it is a MapProperty that is merged
+     * into an existing one.
+     *
+     * @exception IllegalArgumentException if the property is a timestamp property, or if it is named in the schema,
+     * but its value does not match the type declared in the schema.
+     */
+    @Override
+    public Property setProperty(Property property) {
+
+        if (property == null) {
+
+            throw new IllegalArgumentException("null property");
+        }
+
+        if (property instanceof TimestampProperty) {
+
+            throw new IllegalArgumentException("timestamp property not allowed on a non-timed event");
+        }
+
+        checkNotFrozen();
+
+        String name = property.getName();
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h == null && !isHeader(name)) {
+
+            return others().setProperty(property);
+        }
+
+        if (property instanceof LazyProperty) {
+
+            //
+            // the slots and the header need the value right away
+            //
+
+            property = ((LazyProperty)property).decode();
+        }
+
+        if (h == null) {
+
+            Property existent = headerProperty(name, false);
+
+            if (LINE_PROPERTY_NAME.equals(name)) {
+
+                lineProperty = property;
+                hasLineNumber = false;
+            }
+            else {
+
+                queryOnceProperty = property;
+                hasQueryOnce = false;
+            }
+
+            return existent;
+        }
+
+        Object value = property.getValue();
+
+        if (value != null && !h.getType().isInstance(value)) {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + value.getClass().getSimpleName() + " value in " + h.getName() + " (" +
+                            h.getType().getSimpleName() + ")");
+        }
+
+        Property existent = has(h) ? property(h) : null;
+
+        if (property instanceof MapProperty && existent instanceof MapProperty &&
+                existent.getValue() != null && value != null) {
+
+            //
+            // merge instead of replacing
+            //
+
+            ((MapProperty)existent).merge((MapProperty)property);
+            return existent;
+        }
+
+        int slot = h.getSlot();
+
+        ensureCapacity(slot);
+        release(h);
+
+        if (bound == null || bound.length < states.length) {
+
+            bound = bound == null ? new Property[states.length] : Arrays.copyOf(bound, states.length);
+        }
+
+        bound[slot] = property;
+        setState(slot, BOUND);
+
+        return existent;
+    }
+
+    @Override
+    public Property getProperty(String name) {
+
+        if (name == null)  {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return has(h) ? property(h) : null;
+        }
+
+        if (isHeader(name)) {
+
+            return headerProperty(name, true);
+        }
+
+        return others == null ? null : others.getProperty(name);
+    }
+
+    /**
+     * Constant time if all schema slots are present, or if the index points past the schema properties. Otherwise
+     * the slots are scanned up to the index, so iterating over a sparse event by index is quadratic in the number of
+     * slots; use forEachProperty() instead.
+     */
+    @Override
+    public Property getProperty(int i) {
+
+        if (i < 0) {
+
+            throw new IllegalArgumentException("invalid property index: " + i);
+        }
+
+        if (i < present) {
+
+            if (present == states.length) {
+
+                //
+                // no gaps, the index is the slot
+                //
+
+                return property(schema.getHandle(i));
+            }
+
+            int crt = 0;
+
+            for(int slot = 0; ; slot ++) {
+
+                if (states[slot] == ABSENT) {
+
+                    continue;
+                }
+
+                if (crt == i) {
+
+                    return property(schema.getHandle(slot));
+                }
+
+                crt ++;
+            }
+        }
+
+        int crt = present;
+
+        if (hasLineProperty()) {
+
+            if (crt == i) {
+
+                return headerProperty(LINE_PROPERTY_NAME, true);
+            }
+
+            crt ++;
+        }
+
+        if (hasQueryOnceProperty()) {
+
+            if (crt == i) {
+
+                return headerProperty(QUERY_ONCE_PROPERTY_NAME, true);
+            }
+
+            crt ++;
+        }
+
+        return others == null ? null : others.getProperty(i - crt);
+    }
+
+    /**
+     * @return a copy of the property list, the schema properties first, in slot order.
+     */
+    @Override
+    public List<Property> getProperties() {
+
+        final List<Property> result = new ArrayList<>(propertyCount());
+
+        forEachProperty(new Consumer<Property>() {
+
+            @Override
+            public void accept(Property p) {
+
+                result.add(p);
+            }
+        });
+
+        return result;
+    }
+
+    @Override
+    public List<Property> getProperties(Class type) {
+
+        if (type == null) {
+
+            throw new IllegalArgumentException("null type");
+        }
+
+        Class<?> c = type;
+
+        List<Property> result = new ArrayList<>();
+
+        for(int slot = 0; slot < states.length; slot ++) {
+
+            if (states[slot] == ABSENT) {
+
+                continue;
+            }
+
+            Property p;
+
+            if (states[slot] == BOUND) {
+
+                p = bound[slot];
+            }
+            else {
+
+                PropertyHandle h = schema.getHandle(slot);
+
+                //
+                // the property built for the slot carries the slot type, except for events, whose property carries the
+                // type of the value, so the slots that cannot match are skipped without building their property
+                //
+
+                if (!c.isAssignableFrom(h.getType()) && !Event.class.isAssignableFrom(h.getType())) {
+
+                    continue;
+                }
+
+                p = property(h);
+            }
+
+            Class<?> t = p.getType();
+
+            if (t != null && c.isAssignableFrom(t)) {
+
+                result.add(p);
+            }
+        }
+
+        Property line = headerProperty(LINE_PROPERTY_NAME, true);
+
+        if (line != null && c.isAssignableFrom(line.getType())) {
+
+            result.add(line);
+        }
+
+        Property queryOnce = headerProperty(QUERY_ONCE_PROPERTY_NAME, true);
+
+        if (queryOnce != null && c.isAssignableFrom(queryOnce.getType())) {
+
+            result.add(queryOnce);
+        }
+
+        if (others != null) {
+
+            result.addAll(others.getProperties(type));
+        }
+
+        return result;
+    }
+
+    @Override
+    public int propertyCount() {
+
+        int count = present;
+
+        if (hasLineProperty()) {
+
+            count ++;
+        }
+
+        if (hasQueryOnceProperty()) {
+
+            count ++;
+        }
+
+        return others == null ? count : count + others.propertyCount();
+    }
+
+    @Override
+    public void forEachProperty(Consumer<? super Property> action) {
+
+        if (action == null) {
+
+            throw new IllegalArgumentException("null action");
+        }
+
+        for(int slot = 0; slot < states.length; slot ++) {
+
+            if (states[slot] != ABSENT) {
+
+                action.accept(property(schema.getHandle(slot)));
+            }
+        }
+
+        if (hasLineProperty()) {
+
+            action.accept(headerProperty(LINE_PROPERTY_NAME, true));
+        }
+
+        if (hasQueryOnceProperty()) {
+
+            action.accept(headerProperty(QUERY_ONCE_PROPERTY_NAME, true));
+        }
+
+        if (others != null) {
+
+            others.forEachProperty(action);
+        }
+    }
+
+    @Override
+    public List<Property> getPropertiesView() {
+
+        if (propertiesView == null) {
+
+            propertiesView = new PropertiesView(this);
+        }
+
+        return propertiesView;
+    }
+
+    @Override
+    public Property removeProperty(String name, Class type) {
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null name");
+        }
+
+        if (type == null) {
+
+            throw new IllegalArgumentException("null type");
+        }
+
+        checkNotFrozen();
+
+        Class<?> c = type;
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            if (!has(h)) {
+
+                return null;
+            }
+
+            Property p = state(h.getSlot()) == BOUND ? bound[h.getSlot()] : EventSchema.toProperty(h, get(h));
+
+            Class<?> t = p.getType();
+
+            if (t == null || !c.isAssignableFrom(t)) {
+
+                return null;
+            }
+
+            clear(h);
+
+            return p;
+        }
+
+        if (isHeader(name)) {
+
+            Property p = headerProperty(name, false);
+
+            Class<?> t = p == null ? null : p.getType();
+
+            if (t == null || !c.isAssignableFrom(t)) {
+
+                return null;
+            }
+
+            if (LINE_PROPERTY_NAME.equals(name)) {
+
+                setLineNumber(null);
+            }
+            else {
+
+                setFlag(QUERY_ONCE_FLAG, false);
+            }
+
+            return p;
+        }
+
+        return others == null ? null : others.removeProperty(name, type);
+    }
+
+    @Override
+    public void clearProperties() {
+
+        checkNotFrozen();
+
+        Arrays.fill(states, ABSENT);
+        present = 0;
+        Arrays.fill(references, null);
+        bound = null;
+
+        hasLineNumber = false;
+        lineNumber = 0L;
+        lineProperty = null;
+        hasQueryOnce = false;
+        flags = 0;
+        queryOnceProperty = null;
+
+        if (others != null) {
+
+            others.clearProperties();
+        }
+    }
+
+    @Override
+    public StringProperty setStringProperty(String name, String value) {
+
+        if (value == null) {
+
+            return removeStringProperty(name);
+        }
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return (StringProperty)replace(h, value);
+        }
+
+        if (isHeader(name)) {
+
+            return (StringProperty)setProperty(new StringProperty(name, value));
+        }
+
+        checkNotFrozen();
+
+        return others().setStringProperty(name, value);
+    }
+
+    @Override
+    public StringProperty getStringProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof StringProperty ? (StringProperty)p : null;
+    }
+
+    @Override
+    public StringProperty removeStringProperty(String name) {
+
+        return (StringProperty)removeProperty(name, String.class);
+    }
+
+    @Override
+    public EventProperty setEventProperty(String name, Event value) {
+
+        if (value == null) {
+
+            return removeEventProperty(name);
+        }
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return (EventProperty)replace(h, value);
+        }
+
+        return (EventProperty)setProperty(new EventProperty(name, value));
+    }
+
+    @Override
+    public EventProperty getEventProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof EventProperty ? (EventProperty)p : null;
+    }
+
+    @Override
+    public EventProperty removeEventProperty(String name) {
+
+        return (EventProperty)removeProperty(name, Event.class);
+    }
+
+    @Override
+    public LongProperty setLongProperty(String name, Long value) {
+
+        if (value == null) {
+
+            return removeLongProperty(name);
+        }
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return (LongProperty)replace(h, value);
+        }
+
+        if (LINE_PROPERTY_NAME.equals(name)) {
+
+            Property existent = headerProperty(name, false);
+            setLineNumber(value);
+            return (LongProperty)existent;
+        }
+
+        if (isHeader(name)) {
+
+            return (LongProperty)setProperty(new LongProperty(name, value));
+        }
+
+        checkNotFrozen();
+
+        return others().setLongProperty(name, value);
+    }
+
+    @Override
+    public LongProperty getLongProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof LongProperty ? (LongProperty)p : null;
+    }
+
+    @Override
+    public LongProperty removeLongProperty(String name) {
+
+        return (LongProperty)removeProperty(name, Long.class);
+    }
+
+    @Override
+    public IntegerProperty getIntegerProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof IntegerProperty ? (IntegerProperty)p : null;
+    }
+
+    @Override
+    public IntegerProperty setIntegerProperty(String name, Integer value) {
+
+        if (value == null) {
+
+            return removeIntegerProperty(name);
+        }
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return (IntegerProperty)replace(h, value);
+        }
+
+        if (isHeader(name)) {
+
+            return (IntegerProperty)setProperty(new IntegerProperty(name, value));
+        }
+
+        checkNotFrozen();
+
+        return others().setIntegerProperty(name, value);
+    }
+
+    @Override
+    public IntegerProperty removeIntegerProperty(String name) {
+
+        return (IntegerProperty)removeProperty(name, Integer.class);
+    }
+
+    @Override
+    public FloatProperty getFloatProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof FloatProperty ? (FloatProperty)p : null;
+    }
+
+    @Override
+    public FloatProperty setFloatProperty(String name, Float value) {
+
+        if (value == null) {
+
+            return removeFloatProperty(name);
+        }
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return (FloatProperty)replace(h, value);
+        }
+
+        if (isHeader(name)) {
+
+            return (FloatProperty)setProperty(new FloatProperty(name, value));
+        }
+
+        checkNotFrozen();
+
+        return others().setFloatProperty(name, value);
+    }
+
+    @Override
+    public FloatProperty removeFloatProperty(String name) {
+
+        return (FloatProperty)removeProperty(name, Float.class);
+    }
+
+    @Override
+    public BooleanProperty getBooleanProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof BooleanProperty ? (BooleanProperty)p : null;
+    }
+
+    @Override
+    public BooleanProperty setBooleanProperty(String name, boolean value) {
+
+        PropertyHandle h = schema.getHandle(name);
+
+        if (h != null) {
+
+            return (BooleanProperty)replace(h, value);
+        }
+
+        if (QUERY_ONCE_PROPERTY_NAME.equals(name)) {
+
+            Property existent = headerProperty(name, false);
+            checkNotFrozen();
+            queryOnceProperty = null;
+            hasQueryOnce = true;
+            flags = value ? flags | QUERY_ONCE_FLAG : flags & ~QUERY_ONCE_FLAG;
+            return (BooleanProperty)existent;
+        }
+
+        if (isHeader(name)) {
+
+            return (BooleanProperty)setProperty(new BooleanProperty(name, value));
+        }
+
+        checkNotFrozen();
+
+        return others().setBooleanProperty(name, value);
+    }
+
+    @Override
+    public BooleanProperty removeBooleanProperty(String name) {
+
+        return (BooleanProperty)removeProperty(name, Boolean.class);
+    }
+
+    @Override
+    public MapProperty getMapProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof MapProperty ? (MapProperty)p : null;
+    }
+
+    @Override
+    public ListProperty getListProperty(String name) {
+
+        Property p = getProperty(name);
+
+        return p instanceof ListProperty ? (ListProperty)p : null;
+    }
+
+    //
+    // the primitive accessors read the slots and the header directly, without building Property instances
+    //
+
+    @Override
+    public long getLong(String name, long dflt) {
+
+        PropertyHandle h = handle(name);
+
+        if (h != null) {
+
+            return getLong(h, dflt);
+        }
+
+        if (LINE_PROPERTY_NAME.equals(name)) {
+
+            return getLineNumber(dflt);
+        }
+
+        return others == null ? dflt : others.getLong(name, dflt);
+    }
+
+    @Override
+    public int getInteger(String name, int dflt) {
+
+        PropertyHandle h = handle(name);
+
+        if (h != null) {
+
+            return getInteger(h, dflt);
+        }
+
+        return others == null ? dflt : others.getInteger(name, dflt);
+    }
+
+    @Override
+    public float getFloat(String name, float dflt) {
+
+        PropertyHandle h = handle(name);
+
+        if (h != null) {
+
+            return getFloat(h, dflt);
+        }
+
+        return others == null ? dflt : others.getFloat(name, dflt);
+    }
+
+    @Override
+    public double getDouble(String name, double dflt) {
+
+        PropertyHandle h = handle(name);
+
+        if (h != null) {
+
+            return getDouble(h, dflt);
+        }
+
+        return others == null ? dflt : others.getDouble(name, dflt);
+    }
+
+    @Override
+    public boolean getBoolean(String name, boolean dflt) {
+
+        PropertyHandle h = handle(name);
+
+        if (h != null) {
+
+            return getBoolean(h, dflt);
+        }
+
+        if (QUERY_ONCE_PROPERTY_NAME.equals(name)) {
+
+            if (queryOnceProperty != null) {
+
+                Object v = queryOnceProperty.getValue();
+                return v instanceof Boolean ? (Boolean)v : dflt;
+            }
+
+            return hasQueryOnce ? (flags & QUERY_ONCE_FLAG) != 0 : dflt;
+        }
+
+        return others == null ? dflt : others.getBoolean(name, dflt);
+    }
+
+    @Override
+    public Long getLineNumber() {
+
+        if (lineProperty != null) {
+
+            Object v = lineProperty.getValue();
+            return v instanceof Long ? (Long)v : null;
+        }
+
+        return hasLineNumber ? lineNumber : null;
+    }
+
+    @Override
+    public long getLineNumber(long dflt) {
+
+        if (lineProperty != null) {
+
+            Object v = lineProperty.getValue();
+            return v instanceof Long ? (Long)v : dflt;
+        }
+
+        return hasLineNumber ? lineNumber : dflt;
+    }
+
+    @Override
+    public void setLineNumber(Long lineNumber) {
+
+        checkNotFrozen();
+
+        this.lineProperty = null;
+        this.hasLineNumber = lineNumber != null;
+        this.lineNumber = lineNumber == null ? 0L : lineNumber;
+    }
+
+    @Override
+    public boolean hasFlag(int flag) {
+
+        int f = flags;
+
+        if (queryOnceProperty != null) {
+
+            f = Boolean.TRUE.equals(queryOnceProperty.getValue()) ? f | QUERY_ONCE_FLAG : f & ~QUERY_ONCE_FLAG;
+        }
+
+        return (f & flag) == flag;
+    }
+
+    @Override
+    public void setFlag(int flag, boolean value) {
+
+        checkNotFrozen();
+
+        if ((flag & QUERY_ONCE_FLAG) != 0) {
+
+            //
+            // the property exists only while the flag is set
+            //
+
+            queryOnceProperty = null;
+            hasQueryOnce = value;
+        }
+
+        flags = value ? flags | flag : flags & ~flag;
+    }
+
+    @Override
+    public String getPreferredRepresentation(String fieldSeparator) {
+
+        return null;
+    }
+
+    @Override
+    public String getPreferredRepresentationHeader(String fieldSeparator) {
+
+        return null;
+    }
+
+    @Override
+    public String getRawRepresentation() {
+
+        PropertyHandle h = schema.getHandle(RAW_PROPERTY_NAME);
+
+        if (h == null) {
+
+            return others == null ? null : others.getRawRepresentation();
+        }
+
+        Object v = get(h);
+
+        return v instanceof String ? (String)v : null;
+    }
+
+    /**
+     * The schema is shared by all the events it describes, so it is not counted.
+     */
+    @Override
+    public long estimateRetainedBytes() {
+
+        //
+        // 9 references, 3 booleans, a long and an int
+        //
+
+        long result = HeapFootprint.ofObject(9 * HeapFootprint.REFERENCE + 3 + 8 + 4);
+
+        result += HeapFootprint.ofArray(states.length, 1);
+        result += HeapFootprint.ofArray(primitives.length, 8);
+        result += HeapFootprint.ofArray(references.length, HeapFootprint.REFERENCE);
+
+        for(Object v: references) {
+
+            result += HeapFootprint.of(v);
+        }
+
+        if (bound != null) {
+
+            result += HeapFootprint.ofArray(bound.length, HeapFootprint.REFERENCE);
+
+            for(Property p: bound) {
+
+                result += HeapFootprint.of(p);
+            }
+        }
+
+        result += HeapFootprint.of(lineProperty) + HeapFootprint.of(queryOnceProperty);
+
+        if (others != null) {
+
+            result += others.estimateRetainedBytes();
+        }
+
+        return result;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public EventSchema getSchema() {
+
+        return schema;
+    }
+
+    /**
+     * Makes the event immutable, in place, with the same semantics as GenericEvent#freeze().
+     *
+     * @return this event.
+     *
+     * @see GenericEvent#freeze()
+     */
+    public SchemaEvent freeze() {
+
+        if (frozen) {
+
+            return this;
+        }
+
+        if (bound != null) {
+
+            for(Property p: bound) {
+
+                freeze(p);
+            }
+        }
+
+        freeze(lineProperty);
+        freeze(queryOnceProperty);
+
+        if (others != null) {
+
+            others.freeze();
+        }
+
+        getPropertiesView();
+
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+
+        return frozen;
+    }
+
+    /**
+     * @return a frozen event with the same state as this one: the event itself if it is frozen, or a frozen copy.
+     *
+     * @see SchemaEvent#mutableCopy()
+     */
+    public SchemaEvent snapshot() {
+
+        return frozen ? this : copy().freeze();
+    }
+
+    /**
+     * @return a mutable copy that shares the schema with this event, but owns a copy of the slots, and of the Map
+     * values stored in them. The non-schema properties are copied with GenericEvent#mutableCopy().
+     */
+    public SchemaEvent mutableCopy() {
+
+        return copy();
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("SchemaEvent[");
+
+        int count = 0;
+
+        for(int slot = 0; slot < states.length; slot ++) {
+
+            if (states[slot] != ABSENT) {
+
+                PropertyHandle h = schema.getHandle(slot);
+                sb.append(count ++ == 0 ? "" : ", ").append(h.getName()).append('=').append(get(h));
+            }
+        }
+
+        if (hasLineProperty()) {
+
+            sb.append(count ++ == 0 ? "" : ", ").append(LINE_PROPERTY_NAME).append('=').append(getLineNumber());
+        }
+
+        if (hasQueryOnceProperty()) {
+
+            sb.append(count ++ == 0 ? "" : ", ").append(QUERY_ONCE_PROPERTY_NAME).append('=').
+                    append(hasFlag(QUERY_ONCE_FLAG));
+        }
+
+        if (others != null) {
+
+            for(Property p: others.getPropertiesView()) {
+
+                sb.append(count ++ == 0 ? "" : ", ").append(p);
+            }
+        }
+
+        return sb.append("]").toString();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception UnsupportedOperationException if the event is frozen.
+     */
+    protected void checkNotFrozen() {
+
+        if (frozen) {
+
+            throw new UnsupportedOperationException("frozen event");
+        }
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static boolean isHeader(String name) {
+
+        return LINE_PROPERTY_NAME.equals(name) || QUERY_ONCE_PROPERTY_NAME.equals(name);
+    }
+
+    private static void freeze(Property p) {
+
+        if (p instanceof PropertyBase) {
+
+            ((PropertyBase)p).freeze();
+        }
+    }
+
+    /**
+     * MapProperty values are Map<String, Object>, and so are the values stored in Map slots.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copyOf(Object map) {
+
+        return new CompactMap((Map<String, Object>)map);
+    }
+
+    private static Object box(PropertyHandle h, long bits) {
+
+        Class type = h.getType();
+
+        if (Long.class.equals(type)) {
+
+            return bits;
+        }
+        else if (Integer.class.equals(type)) {
+
+            return (int)bits;
+        }
+        else if (Float.class.equals(type)) {
+
+            return Float.intBitsToFloat((int)bits);
+        }
+        else if (Double.class.equals(type)) {
+
+            return Double.longBitsToDouble(bits);
+        }
+        else {
+
+            return bits != 0L;
+        }
+    }
+
+    private static long unbox(Object value) {
+
+        if (value instanceof Float) {
+
+            return Float.floatToRawIntBits((Float)value);
+        }
+        else if (value instanceof Double) {
+
+            return Double.doubleToRawLongBits((Double)value);
+        }
+        else if (value instanceof Boolean) {
+
+            return (Boolean)value ? 1L : 0L;
+        }
+        else {
+
+            return ((Number)value).longValue();
+        }
+    }
+
+    private int state(int slot) {
+
+        return slot < states.length ? states[slot] : ABSENT;
+    }
+
+    /**
+     * All slot state changes go through this method, which keeps the count of present slots.
+     */
+    private void setState(int slot, byte state) {
+
+        if (states[slot] == ABSENT) {
+
+            if (state != ABSENT) {
+
+                present ++;
+            }
+        }
+        else if (state == ABSENT) {
+
+            present --;
+        }
+
+        states[slot] = state;
+    }
+
+    /**
+     * @return the handle of the schema property with the given name, or null if the name is not part of the schema.
+     */
+    private PropertyHandle handle(String name) {
+
+        if (name == null)  {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        return schema.getHandle(name);
+    }
+
+    private int checkHandle(PropertyHandle h) {
+
+        if (h == null) {
+
+            throw new IllegalArgumentException("null handle");
+        }
+
+        if (h.getSchema() != schema) {
+
+            throw new IllegalArgumentException(h + " does not belong to the schema of this event");
+        }
+
+        return h.getSlot();
+    }
+
+    /**
+     * The schema may have grown after this event was created. The storage indexes are assigned in slot order, so the
+     * storage arrays are large enough for any slot smaller than the number of states.
+     */
+    private void ensureCapacity(int slot) {
+
+        if (slot < states.length) {
+
+            return;
+        }
+
+        states = Arrays.copyOf(states, schema.size());
+        primitives = Arrays.copyOf(primitives, schema.primitiveCount());
+        references = Arrays.copyOf(references, schema.referenceCount());
+    }
+
+    /**
+     * Stores a non-null value, which was already checked against the type declared in the schema.
+     */
+    private void store(PropertyHandle h, Object value) {
+
+        if (h.isPrimitive()) {
+
+            primitives[h.getIndex()] = unbox(value);
+        }
+        else {
+
+            references[h.getIndex()] = value;
+        }
+
+        setState(h.getSlot(), VALUE);
+    }
+
+    private void storePrimitive(PropertyHandle h, Class type, long bits) {
+
+        int slot = checkHandle(h);
+
+        checkNotFrozen();
+
+        if (!type.equals(h.getType())) {
+
+            throw new IllegalArgumentException(
+                    "cannot store a " + type.getSimpleName() + " value in " + h.getName() + " (" +
+                            h.getType().getSimpleName() + ")");
+        }
+
+        ensureCapacity(slot);
+        release(h);
+
+        primitives[h.getIndex()] = bits;
+        setState(slot, VALUE);
+    }
+
+    /**
+     * Drops the references the slot holds, if any, without changing its state.
+     */
+    private void release(PropertyHandle h) {
+
+        if (!h.isPrimitive()) {
+
+            references[h.getIndex()] = null;
+        }
+
+        if (bound != null && h.getSlot() < bound.length) {
+
+            bound[h.getSlot()] = null;
+        }
+    }
+
+    /**
+     * Replaces the slot's property with the value, as the typed setters do.
+     *
+     * @return the replaced property, if any.
+     */
+    private Property replace(PropertyHandle h, Object value) {
+
+        Property existent = null;
+
+        if (has(h)) {
+
+            existent = state(h.getSlot()) == BOUND ? bound[h.getSlot()] : EventSchema.toProperty(h, get(h));
+        }
+
+        set(h, value);
+
+        return existent;
+    }
+
+    /**
+     * @return the property stored in the slot, which must not be ABSENT. The property is built on first access and
+     * kept by the event, so changes applied to it are seen by the event, except for frozen events, for which the
+     * property is built on each access, and frozen.
+     */
+    private Property property(PropertyHandle h) {
+
+        int slot = h.getSlot();
+
+        if (states[slot] == BOUND) {
+
+            return bound[slot];
+        }
+
+        PropertyBase p = EventSchema.toProperty(h, get(h));
+
+        if (frozen) {
+
+            p.freeze();
+            return p;
+        }
+
+        release(h);
+
+        if (bound == null || bound.length < states.length) {
+
+            bound = bound == null ? new Property[states.length] : Arrays.copyOf(bound, states.length);
+        }
+
+        bound[slot] = p;
+        setState(slot, BOUND);
+
+        return p;
+    }
+
+    private boolean hasLineProperty() {
+
+        return lineProperty != null || hasLineNumber;
+    }
+
+    private boolean hasQueryOnceProperty() {
+
+        return queryOnceProperty != null || hasQueryOnce;
+    }
+
+    /**
+     * @param keep whether to keep the property built from the primitive header, so changes applied to it are seen by
+     *             the event. Ignored for frozen events, which build a frozen property on each access.
+     *
+     * @return the header property with the given name, or null if the event does not carry it.
+     */
+    private Property headerProperty(String name, boolean keep) {
+
+        PropertyBase p;
+
+        if (LINE_PROPERTY_NAME.equals(name)) {
+
+            if (lineProperty != null || !hasLineNumber) {
+
+                return lineProperty;
+            }
+
+            p = new LongProperty(LINE_PROPERTY_NAME, lineNumber);
+        }
+        else {
+
+            if (queryOnceProperty != null || !hasQueryOnce) {
+
+                return queryOnceProperty;
+            }
+
+            p = new BooleanProperty(QUERY_ONCE_PROPERTY_NAME, (flags & QUERY_ONCE_FLAG) != 0);
+        }
+
+        if (frozen) {
+
+            p.freeze();
+        }
+        else if (keep) {
+
+            if (LINE_PROPERTY_NAME.equals(name)) {
+
+                lineProperty = p;
+                hasLineNumber = false;
+            }
+            else {
+
+                queryOnceProperty = p;
+                hasQueryOnce = false;
+            }
+        }
+
+        return p;
+    }
+
+    private GenericEvent others() {
+
+        if (others == null) {
+
+            others = new GenericEvent();
+        }
+
+        return others;
+    }
+
+    private SchemaEvent copy() {
+
+        SchemaEvent copy = new SchemaEvent(schema);
+
+        copy.states = states.clone();
+        copy.present = present;
+        copy.primitives = primitives.clone();
+        copy.references = references.clone();
+
+        for(int slot = 0; slot < states.length; slot ++) {
+
+            PropertyHandle h = schema.getHandle(slot);
+
+            if (states[slot] == BOUND) {
+
+                //
+                // the copy does not share the property instances
+                //
+
+                Object v = bound[slot].getValue();
+
+                if (v == null) {
+
+                    copy.setState(slot, NULL);
+                }
+                else {
+
+                    copy.store(h, v);
+                }
+            }
+
+            if (copy.states[slot] == VALUE && !h.isPrimitive() && copy.references[h.getIndex()] instanceof Map) {
+
+                copy.references[h.getIndex()] = copyOf(copy.references[h.getIndex()]);
+            }
+        }
+
+        copy.hasLineNumber = hasLineNumber;
+        copy.lineNumber = lineNumber;
+        copy.hasQueryOnce = hasQueryOnce;
+        copy.flags = flags;
+
+        if (lineProperty != null) {
+
+            Object v = lineProperty.getValue();
+
+            if (v instanceof Long) {
+
+                copy.hasLineNumber = true;
+                copy.lineNumber = (Long)v;
+            }
+            else {
+
+                //
+                // not representable in the header, shared frozen, as GenericEvent shares its properties with copies
+                //
+
+                freeze(lineProperty);
+                copy.lineProperty = lineProperty;
+            }
+        }
+
+        if (queryOnceProperty != null) {
+
+            Object v = queryOnceProperty.getValue();
+
+            if (v instanceof Boolean) {
+
+                copy.hasQueryOnce = true;
+                copy.flags = (Boolean)v ? copy.flags | QUERY_ONCE_FLAG : copy.flags & ~QUERY_ONCE_FLAG;
+            }
+            else {
+
+                freeze(queryOnceProperty);
+                copy.queryOnceProperty = queryOnceProperty;
+            }
+        }
+
+        copy.others = others == null ? null : others.mutableCopy();
+
+        return copy;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -67,6 +67,86 @@ public class StringProperty extends PropertyBase {
         return (String)getValue();
     }
 
+    /**
+     * @return the value as a CharSequence, or null if the value is null. Subclasses that do not hold the value as a
+     * String may return a view, which avoids building the String.
+     *
+     * @see ByteSliceStringProperty
+     */
+    public CharSequence getCharSequence() {
+
+        return getString();
+    }
+
+    /**
+     * @return true if the value contains the given string. A null value contains nothing.
+     *
+     * @exception IllegalArgumentException on null string.
+     */
+    public boolean contains(String s, boolean ignoreCase) {
+
+        if (s == null) {
+
+            throw new IllegalArgumentException("null string");
+        }
+
+        String value = getString();
+
+        if (value == null) {
+
+            return false;
+        }
+
+        if (!ignoreCase) {
+
+            return value.contains(s);
+        }
+
+        //
+        // case-insensitive matching is done in place, without lower-casing copies
+        //
+
+        int length = s.length();
+
+        for(int i = 0; i <= value.length() - length; i ++) {
+
+            if (value.regionMatches(true, i, s, 0, length)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Same semantics as String.regionMatches(). A null value matches nothing.
+     *
+     * @exception IllegalArgumentException on null string.
+     */
+    public boolean regionMatches(boolean ignoreCase, int toffset, String other, int ooffset, int len) {
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null string");
+        }
+
+        String value = getString();
+
+        return value != null && value.regionMatches(ignoreCase, toffset, other, ooffset, len);
+    }
+
+    /**
+     * @return true if the value is equal, character by character, to the given sequence. A null value is equal to
+     * nothing, not even null.
+     */
+    public boolean contentEquals(CharSequence cs) {
+
+        String value = getString();
+
+        return value != null && cs != null && value.contentEquals(cs);
+    }
+
     @Override
     public String toString() {
 
@@ -17,6 +17,7 @@
 package io.novaordis.events.api.event;
 
 import io.novaordis.utilities.time.Timestamp;
+import io.novaordis.utilities.time.TimestampImpl;
 
 /**
  * https://kb.novaordis.com/index.php/Events-api_Concepts#Timed_Event
@@ -40,6 +41,29 @@ public interface TimedEvent extends Event {
      */
     Long getTime();
 
+    /**
+     * Unboxed equivalent of getTime().
+     *
+     * @return the universal time (UTC) in milliseconds, or dflt if the event has no timestamp.
+     */
+    default long getTime(long dflt) {
+
+        Long time = getTime();
+
+        return time == null ? dflt : time;
+    }
+
+    /**
+     * Sets the universal time (UTC) in milliseconds. The implementations should not allocate a Timestamp instance
+     * unless one is requested via getTimestamp().
+     *
+     * The default implementation does allocate a Timestamp instance.
+     */
+    default void setTime(long time) {
+
+        setTimestamp(new TimestampImpl(time));
+    }
+
     Timestamp getTimestamp();
 
     void setTimestamp(Timestamp timestamp);
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import io.novaordis.utilities.time.Timestamp;
+import io.novaordis.utilities.time.TimestampImpl;
+
+/**
+ * A read-only TimedEvent view of an EventBatch row. As for GenericTimedEvent, the timestamp is exposed as a property,
+ * on position 0.
+ *
+ * @see EventBatch#getRow(int)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/4/17
+ */
+class TimedEventBatchRow extends EventBatchRow implements TimedEvent {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    TimedEventBatchRow(EventBatch batch, int row) {
+
+        super(batch, row);
+    }
+
+    // TimedEvent implementation ---------------------------------------------------------------------------------------
+
+    @Override
+    public Long getTime() {
+
+        long t = getTime(EventBatch.NO_TIME);
+        return t == EventBatch.NO_TIME ? null : t;
+    }
+
+    @Override
+    public long getTime(long dflt) {
+
+        return batch.getTime(row, dflt);
+    }
+
+    @Override
+    public void setTime(long time) {
+
+        throw new UnsupportedOperationException(this + " is read-only");
+    }
+
+    @Override
+    public Timestamp getTimestamp() {
+
+        Long t = getTime();
+        return t == null ? null : new TimestampImpl(t);
+    }
+
+    @Override
+    public void setTimestamp(Timestamp timestamp) {
+
+        throw new UnsupportedOperationException(this + " is read-only");
+    }
+
+    // EventBatchRow overrides -----------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isTimed() {
+
+        return true;
+    }
+
+    @Override
+    public Property getProperty(String name) {
+
+        if (TimedEvent.TIME_PROPERTY_NAME.equals(name)) {
+
+            return new TimestampProperty(getTime());
+        }
+
+        return super.getProperty(name);
+    }
+
+    @Override
+    public Property getProperty(int i) {
+
+        if (i < 0) {
+
+            throw new IllegalArgumentException("invalid property index: " + i);
+        }
+        else if (i == 0) {
+
+            return new TimestampProperty(getTime());
+        }
+
+        return super.getProperty(i - 1);
+    }
+
+    @Override
+    public List<Property> getProperties() {
+
+        List<Property> result = new ArrayList<>(propertyCount());
+        result.add(new TimestampProperty(getTime()));
+        result.addAll(super.getProperties());
+        return result;
+    }
+
+    @Override
+    public int propertyCount() {
+
+        return super.propertyCount() + 1;
+    }
+
+    @Override
+    public void forEachProperty(Consumer<? super Property> action) {
+
+        if (action == null) {
+
+            throw new IllegalArgumentException("null action");
+        }
+
+        action.accept(new TimestampProperty(getTime()));
+
+        super.forEachProperty(action);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "EventBatch timed row " + row;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * An immutable, thread-safe timestamp format, with the parsing semantics of a lenient SimpleDateFormat with the same
+ * pattern, in the default time zone at the time of construction.
+ *
+ * Patterns made of fixed-width numeric fields (yy or yyyy, MM, dd, HH, mm, ss, SSS) and literal separators, such as
+ * "MM/dd/yy HH:mm:ss,SSS", are parsed on a fast path that reads the digits at fixed positions. The epoch value of the
+ * date/hour/minute prefix is cached, as consecutive log lines almost always share it, so parsing a timestamp within the
+ * same minute as the previous one does not allocate. Values the fast path cannot handle with certainty (variable-width
+ * fields, out-of-range seconds, ambiguous two-digit years) are delegated to a thread-confined SimpleDateFormat.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimestampFormat {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final char LITERAL = 0;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String pattern;
+
+    private final TimeZone timeZone;
+
+    //
+    // the pattern, compiled for the fast path. Null if the pattern is not supported by the fast path
+    //
+    private final char[] fieldTypes;
+    private final int[] fieldOffsets;
+    private final int[] fieldWidths;
+    private final char[] literals;
+    private final int length;
+
+    //
+    // two-digit years are resolved within 80 years before and 20 years after the construction, as SimpleDateFormat
+    // does. Dates in the start year itself are delegated to SimpleDateFormat
+    //
+    private final int centuryStartYear;
+
+    private final ThreadLocal<SimpleDateFormat> simpleDateFormats;
+
+    //
+    // immutable, replaced on miss
+    //
+    private volatile Prefix lastPrefix;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null or invalid patterns.
+     */
+    public TimestampFormat(String pattern) {
+
+        if (pattern == null) {
+
+            throw new IllegalArgumentException("null pattern");
+        }
+
+        //
+        // validates the pattern
+        //
+
+        new SimpleDateFormat(pattern);
+
+        this.pattern = pattern;
+        this.timeZone = TimeZone.getDefault();
+
+        Calendar c = new GregorianCalendar(timeZone);
+        this.centuryStartYear = c.get(Calendar.YEAR) - 80;
+
+        this.simpleDateFormats = new ThreadLocal<SimpleDateFormat>() {
+
+            @Override
+            protected SimpleDateFormat initialValue() {
+
+                return toSimpleDateFormat();
+            }
+        };
+
+        //
+        // compile the fast path
+        //
+
+        List<Character> types = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+
+        boolean supported = true;
+
+        for(int i = 0; i < pattern.length() && supported; ) {
+
+            char c0 = pattern.charAt(i);
+            int j = i + 1;
+
+            if ((c0 >= 'a' && c0 <= 'z') || (c0 >= 'A' && c0 <= 'Z')) {
+
+                while(j < pattern.length() && pattern.charAt(j) == c0) {
+
+                    j ++;
+                }
+
+                int width = j - i;
+
+                supported = isFastPathField(c0, width);
+                types.add(c0);
+                widths.add(width);
+            }
+            else if (c0 == '\'') {
+
+                supported = false;
+            }
+            else {
+
+                types.add(LITERAL);
+                widths.add(1);
+            }
+
+            i = j;
+        }
+
+        if (!supported) {
+
+            this.fieldTypes = null;
+            this.fieldOffsets = null;
+            this.fieldWidths = null;
+            this.literals = null;
+            this.length = 0;
+            return;
+        }
+
+        int n = types.size();
+
+        this.fieldTypes = new char[n];
+        this.fieldOffsets = new int[n];
+        this.fieldWidths = new int[n];
+        this.literals = new char[n];
+
+        int offset = 0;
+
+        for(int i = 0; i < n; i ++) {
+
+            fieldTypes[i] = types.get(i);
+            fieldWidths[i] = widths.get(i);
+            fieldOffsets[i] = offset;
+
+            if (fieldTypes[i] == LITERAL) {
+
+                literals[i] = pattern.charAt(offset);
+            }
+
+            offset += fieldWidths[i];
+        }
+
+        this.length = offset;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the timestamp at the beginning of the given character sequence. As with SimpleDateFormat, the content
+     * following the timestamp is ignored.
+     *
+     * @return the POSIX time in milliseconds, or dflt if the sequence does not start with a timestamp in this format.
+     *
+     * @exception IllegalArgumentException on null sequence.
+     */
+    public long parse(CharSequence s, long dflt) {
+
+        if (s == null) {
+
+            throw new IllegalArgumentException("null timestamp");
+        }
+
+        if (fieldTypes != null) {
+
+            long t = parseFast(s);
+
+            if (t != Long.MIN_VALUE) {
+
+                return t;
+            }
+        }
+
+        Date d = simpleDateFormats.get().parse(s.toString(), new ParsePosition(0));
+
+        return d == null ? dflt : d.getTime();
+    }
+
+    /**
+     * @return the timestamp formatted according to the pattern. Thread safe.
+     */
+    public String format(long time) {
+
+        return simpleDateFormats.get().format(new Date(time));
+    }
+
+    public String toPattern() {
+
+        return pattern;
+    }
+
+    /**
+     * @return a new, independent SimpleDateFormat instance with the same pattern and time zone.
+     */
+    public SimpleDateFormat toSimpleDateFormat() {
+
+        SimpleDateFormat f = new SimpleDateFormat(pattern);
+        f.setTimeZone(timeZone);
+        return f;
+    }
+
+    /**
+     * @return true if the pattern can be parsed on the fixed-position fast path.
+     */
+    public boolean isFastPathEnabled() {
+
+        return fieldTypes != null;
+    }
+
+    @Override
+    public String toString() {
+
+        return pattern;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static boolean isFastPathField(char c, int width) {
+
+        switch (c) {
+
+            case 'y':
+                return width == 2 || width == 4;
+            case 'M':
+            case 'd':
+            case 'H':
+            case 'm':
+            case 's':
+                return width == 2;
+            case 'S':
+                return width == 3;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the POSIX time, or Long.MIN_VALUE if the sequence cannot be handled with certainty on the fast path.
+     */
+    private long parseFast(CharSequence s) {
+
+        if (s.length() < length) {
+
+            return Long.MIN_VALUE;
+        }
+
+        if (s.length() > length) {
+
+            //
+            // a digit following the last field would be consumed by SimpleDateFormat
+            //
+
+            char next = s.charAt(length);
+
+            if (next >= '0' && next <= '9' && fieldTypes[fieldTypes.length - 1] != LITERAL) {
+
+                return Long.MIN_VALUE;
+            }
+        }
+
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millisecond = 0;
+
+        for(int i = 0; i < fieldTypes.length; i ++) {
+
+            char type = fieldTypes[i];
+            int offset = fieldOffsets[i];
+
+            if (type == LITERAL) {
+
+                if (s.charAt(offset) != literals[i]) {
+
+                    return Long.MIN_VALUE;
+                }
+
+                continue;
+            }
+
+            int width = fieldWidths[i];
+            int value = 0;
+
+            for(int j = offset; j < offset + width; j ++) {
+
+                int digit = s.charAt(j) - '0';
+
+                if (digit < 0 || digit > 9) {
+
+                    return Long.MIN_VALUE;
+                }
+
+                value = value * 10 + digit;
+            }
+
+            if (i + 1 < fieldTypes.length && fieldTypes[i + 1] != LITERAL) {
+
+                //
+                // adjacent numeric fields, SimpleDateFormat would not split them the same way
+                //
+
+                return Long.MIN_VALUE;
+            }
+
+            switch (type) {
+
+                case 'y':
+
+                    if (width == 2) {
+
+                        value += centuryStartYear / 100 * 100;
+
+                        if (value < centuryStartYear) {
+
+                            value += 100;
+                        }
+
+                        if (value == centuryStartYear) {
+
+                            return Long.MIN_VALUE;
+                        }
+                    }
+
+                    year = value;
+                    break;
+
+                case 'M':
+                    month = value;
+                    break;
+                case 'd':
+                    day = value;
+                    break;
+                case 'H':
+                    hour = value;
+                    break;
+                case 'm':
+                    minute = value;
+                    break;
+                case 's':
+                    second = value;
+                    break;
+                default:
+                    millisecond = value;
+            }
+        }
+
+        if (second > 59) {
+
+            //
+            // may roll over a time zone transition
+            //
+
+            return Long.MIN_VALUE;
+        }
+
+        Prefix p = lastPrefix;
+
+        if (p == null || !p.matches(year, month, day, hour, minute)) {
+
+            Calendar c = new GregorianCalendar(timeZone);
+            c.clear();
+            c.set(year, month - 1, day, hour, minute, 0);
+
+            p = new Prefix(year, month, day, hour, minute, c.getTimeInMillis());
+            lastPrefix = p;
+        }
+
+        return p.epoch + second * 1000L + millisecond;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * The epoch value of the start of a minute.
+     */
+    private static class Prefix {
+
+        private final int year;
+        private final int month;
+        private final int day;
+        private final int hour;
+        private final int minute;
+        private final long epoch;
+
+        Prefix(int year, int month, int day, int hour, int minute, long epoch) {
+
+            this.year = year;
+            this.month = month;
+            this.day = day;
+            this.hour = hour;
+            this.minute = minute;
+            this.epoch = epoch;
+        }
+
+        boolean matches(int year, int month, int day, int hour, int minute) {
+
+            return this.minute == minute && this.hour == hour && this.day == day && this.month == month &&
+                    this.year == year;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package io.novaordis.events.api.event;
 
+import java.text.Format;
 import java.text.SimpleDateFormat;
 
 /**
@@ -34,16 +35,21 @@ public class TimestampProperty extends PropertyBase {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    //
+    // immutable and thread safe, so it is shared by all the properties created with it
+    //
+    private TimestampFormat timestampFormat;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public TimestampProperty(Long time) {
 
-        this(TimedEvent.TIME_PROPERTY_NAME, time, null);
+        this(TimedEvent.TIME_PROPERTY_NAME, time, (SimpleDateFormat)null);
     }
 
     public TimestampProperty(String name, Long time) {
 
-        this(name, time, null);
+        this(name, time, (SimpleDateFormat)null);
     }
 
     public TimestampProperty(String name, Long time, SimpleDateFormat format) {
@@ -51,6 +57,17 @@ public class TimestampProperty extends PropertyBase {
         super(name, time, format);
     }
 
+    /**
+     * Package protected, so the existing constructor invocations with a null format are not ambiguous.
+     *
+     * @param format a shared format. No SimpleDateFormat instance is created unless getFormat() is invoked.
+     */
+    TimestampProperty(String name, Long time, TimestampFormat format) {
+
+        super(name, time, (Format)null);
+        this.timestampFormat = format;
+    }
+
     // Property implementation -----------------------------------------------------------------------------------------
 
     @Override
@@ -73,8 +90,62 @@ public class TimestampProperty extends PropertyBase {
         }
     }
 
+    /**
+     * If the property was created with a TimestampFormat, returns a new, independent SimpleDateFormat instance on each
+     * invocation.
+     */
+    @Override
+    public Format getFormat() {
+
+        Format format = super.getFormat();
+
+        if (format == null && timestampFormat != null) {
+
+            return timestampFormat.toSimpleDateFormat();
+        }
+
+        return format;
+    }
+
+    @Override
+    public String externalizeValue() {
+
+        if (timestampFormat == null) {
+
+            return super.externalizeValue();
+        }
+
+        Object value = getValue();
+
+        return value == null ? null : timestampFormat.format((Long)value);
+    }
+
+    @Override
+    public long estimateRetainedBytes() {
+
+        //
+        // the timestamp format is shared, so it is not accounted for
+        //
+
+        return HeapFootprint.ofObject(FIELD_BYTES + HeapFootprint.REFERENCE) + HeapFootprint.of(value);
+    }
+
     // PropertyBase overrides ------------------------------------------------------------------------------------------
 
+    @Override
+    public void setFormat(Format format) {
+
+        super.setFormat(format);
+        this.timestampFormat = null;
+    }
+
+    @Override
+    public void reset() {
+
+        super.reset();
+        this.timestampFormat = null;
+    }
+
     /**
      * Exposed setName() publicly, because we may need to "normalize" the property name after creation.
      */
@@ -86,6 +157,14 @@ public class TimestampProperty extends PropertyBase {
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return the shared format the property was created with, or null.
+     */
+    public TimestampFormat getTimestampFormat() {
+
+        return timestampFormat;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -16,12 +16,18 @@
 
 package io.novaordis.events.api.metric.os;
 
+import io.novaordis.events.api.event.FloatProperty;
+import io.novaordis.events.api.event.LongProperty;
+import io.novaordis.events.api.event.Property;
 import io.novaordis.utilities.parsing.PreParsedContent;
 
 /**
  * A container for the extracted property value, and also for the entire pre-parsed reading. This is an optimization,
  * to avoid parsing the same raw content twice.
  *
+ * Values computed as primitives are kept unboxed, and stored as such in the primitive properties, see
+ * setValueOn(Property).
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 9/11/17
  */
@@ -36,6 +42,13 @@ public class InternalMetricReadingContainer {
     private Object propertyValue;
     private PreParsedContent preParsedContent;
 
+    //
+    // long.class or float.class if the value was provided in primitive form, null otherwise
+    //
+    private Class primitiveType;
+    private long longValue;
+    private float floatValue;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public InternalMetricReadingContainer(Object propertyValue, PreParsedContent preParsedContent) {
@@ -44,13 +57,68 @@ public class InternalMetricReadingContainer {
         this.preParsedContent = preParsedContent;
     }
 
+    public InternalMetricReadingContainer(long propertyValue, PreParsedContent preParsedContent) {
+
+        this.primitiveType = long.class;
+        this.longValue = propertyValue;
+        this.preParsedContent = preParsedContent;
+    }
+
+    public InternalMetricReadingContainer(float propertyValue, PreParsedContent preParsedContent) {
+
+        this.primitiveType = float.class;
+        this.floatValue = propertyValue;
+        this.preParsedContent = preParsedContent;
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * A value provided in primitive form is boxed by this invocation, use setValueOn(Property) to avoid it.
+     */
     public Object getPropertyValue() {
 
+        if (long.class.equals(primitiveType)) {
+
+            return longValue;
+        }
+
+        if (float.class.equals(primitiveType)) {
+
+            return floatValue;
+        }
+
         return propertyValue;
     }
 
+    /**
+     * Allocation-free equivalent of getPropertyValue() != null.
+     */
+    public boolean hasPropertyValue() {
+
+        return primitiveType != null || propertyValue != null;
+    }
+
+    /**
+     * Stores the value in the given property. A primitive value is stored without boxing if the property stores its
+     * value unboxed, with the same type.
+     */
+    public void setValueOn(Property p) {
+
+        if (long.class.equals(primitiveType) && p instanceof LongProperty) {
+
+            ((LongProperty)p).setLong(longValue);
+        }
+        else if (float.class.equals(primitiveType) && p instanceof FloatProperty) {
+
+            ((FloatProperty)p).setFloat(floatValue);
+        }
+        else {
+
+            p.setValue(getPropertyValue());
+        }
+    }
+
     public PreParsedContent getPreParsedContent() {
 
         return preParsedContent;
@@ -189,9 +189,7 @@ public abstract class OSMetricDefinitionBase extends MetricDefinitionBase implem
             // the method must always return a non-null value, if null is seen here, it is an implementation error
             //
 
-            Object value = mrc ==  null ? null : mrc.getPropertyValue();
-
-            if (value == null) {
+            if (mrc == null || !mrc.hasPropertyValue()) {
 
                 log.warn(getClass().getName() + ".parseSourceFileContent(...) incorrectly implemented for " +
                         osType + ", it returns null");
@@ -200,7 +198,8 @@ public abstract class OSMetricDefinitionBase extends MetricDefinitionBase implem
             if (log.isTraceEnabled()) {
 
                 log.trace(this + " computed based on current reading " +
-                        (lastReading == null ? "only" : "and previous reading") + ", computed value: " + value);
+                        (lastReading == null ? "only" : "and previous reading") + ", computed value: " +
+                        (mrc == null ? null : mrc.getPropertyValue()));
             }
 
             this.lastReading = mrc ==  null ? null : mrc.getPreParsedContent();
@@ -210,7 +209,14 @@ public abstract class OSMetricDefinitionBase extends MetricDefinitionBase implem
                 log.trace(this + " stored reading " + lastReading);
             }
 
-            result.setValue(value);
+            if (mrc != null) {
+
+                //
+                // the values computed in primitive form are not boxed
+                //
+
+                mrc.setValueOn(result);
+            }
         }
         catch(ParsingException e) {
 
@@ -282,9 +288,7 @@ public abstract class OSMetricDefinitionBase extends MetricDefinitionBase implem
             // the method must always return a non-null value, if null is seen here, it is an implementation error
             //
 
-            Object value = mrc ==  null ? null : mrc.getPropertyValue();
-
-            if (value == null) {
+            if (mrc == null || !mrc.hasPropertyValue()) {
 
                 log.warn(getClass().getName() + ".parseCommandOutput(...) incorrectly implemented for " +
                         osType + ", it returns null");
@@ -293,7 +297,8 @@ public abstract class OSMetricDefinitionBase extends MetricDefinitionBase implem
             if (log.isTraceEnabled()) {
 
                 log.trace(this + " computed based on current reading " +
-                        (lastReading == null ? "only" : "and previous reading") + ", computed value: " + value);
+                        (lastReading == null ? "only" : "and previous reading") + ", computed value: " +
+                        (mrc == null ? null : mrc.getPropertyValue()));
             }
 
             //
@@ -307,7 +312,14 @@ public abstract class OSMetricDefinitionBase extends MetricDefinitionBase implem
                 log.trace(this + " stored reading " + lastReading);
             }
 
-            result.setValue(value);
+            if (mrc != null) {
+
+                //
+                // the values computed in primitive form are not boxed
+                //
+
+                mrc.setValueOn(result);
+            }
         }
         catch(Exception e) {
 
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps a checkpoint file current, in the background. The parsing thread hands over checkpoints with update(), which
+ * does not perform I/O, and a writer thread periodically writes the latest checkpoint, if it changed since the last
+ * write. A checkpoint is written to a temporary file, forced to the storage device, and atomically renamed over the
+ * checkpoint file, so a crash leaves either the previous or the new checkpoint in place, never a partial one.
+ *
+ * Taking a checkpoint has a cost (the parser serializes its state), so the parsing thread should only take one when
+ * isDue() returns true.
+ *
+ * close() writes the latest checkpoint before returning.
+ *
+ * @see ParserCheckpoint
+ * @see FileFollower#setCheckpointWriter(CheckpointWriter)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class CheckpointWriter implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_INTERVAL_MS = 1000L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the checkpoint stored in the file, or null if the file does not exist.
+     *
+     * @exception IllegalArgumentException on null file, or if the file does not contain a valid checkpoint.
+     */
+    public static ParserCheckpoint read(File file) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        try {
+
+            return ParserCheckpoint.fromByteArray(Files.readAllBytes(file.toPath()));
+        }
+        catch(NoSuchFileException e) {
+
+            return null;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File file;
+    private final long intervalNanos;
+
+    private final Thread writer;
+
+    private volatile ParserCheckpoint latest;
+
+    //
+    // the last checkpoint written, only accessed while holding the instance lock
+    //
+    private ParserCheckpoint written;
+
+    private volatile long lastUpdateNanos;
+
+    private volatile long writeCount;
+
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CheckpointWriter(File file) {
+
+        this(file, DEFAULT_INTERVAL_MS);
+    }
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param intervalMs the interval between writes.
+     *
+     * @exception IllegalArgumentException on null file, or invalid interval.
+     */
+    public CheckpointWriter(File file, long intervalMs) {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        if (intervalMs <= 0) {
+
+            throw new IllegalArgumentException("invalid interval: " + intervalMs + " ms");
+        }
+
+        this.file = file;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+
+        //
+        // the first checkpoint is due immediately
+        //
+
+        this.lastUpdateNanos = System.nanoTime() - intervalNanos;
+
+        this.writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                while(!closed) {
+
+                    LockSupport.parkNanos(this, intervalNanos);
+
+                    try {
+
+                        write();
+                    }
+                    catch(IOException e) {
+
+                        //
+                        // the next write may succeed, the failure is reported by close() if it does not
+                        //
+
+                        failure = e;
+                    }
+                }
+            }
+        }, "events-checkpoint-writer");
+
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Stops the writer thread, and writes the latest checkpoint. Redundant invocations do nothing.
+     *
+     * @exception IOException if the latest checkpoint cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+
+            return;
+        }
+
+        closed = true;
+
+        LockSupport.unpark(writer);
+
+        try {
+
+            writer.join();
+        }
+        catch(InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        write();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Hands over the latest checkpoint, to be written by the writer thread. Does not perform I/O.
+     *
+     * @exception IllegalArgumentException on null checkpoint.
+     * @exception IllegalStateException if the writer was closed.
+     */
+    public void update(ParserCheckpoint checkpoint) {
+
+        if (checkpoint == null) {
+
+            throw new IllegalArgumentException("null checkpoint");
+        }
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        latest = checkpoint;
+        lastUpdateNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true if the checkpoint interval elapsed since the last update(). The parsing thread uses it to decide
+     * whether to take a new checkpoint.
+     */
+    public boolean isDue() {
+
+        return System.nanoTime() - lastUpdateNanos >= intervalNanos;
+    }
+
+    /**
+     * @return the latest checkpoint handed over, written or not. May be null.
+     */
+    public ParserCheckpoint getLatest() {
+
+        return latest;
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    /**
+     * @return the number of checkpoints written to the file.
+     */
+    public long getWriteCount() {
+
+        return writeCount;
+    }
+
+    /**
+     * @return the failure of the most recent background write that failed, or null.
+     */
+    public IOException getFailure() {
+
+        return failure;
+    }
+
+    public boolean isClosed() {
+
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+
+        return "CheckpointWriter[" + file + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the content of the file atomically, and durably: the content is written to a temporary file in the
+     * same directory, which is synced and then renamed over the target.
+     */
+    static void write(Path target, byte[] content) throws IOException {
+
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try(FileChannel ch = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+
+            while(buffer.hasRemaining()) {
+
+                ch.write(buffer);
+            }
+
+            ch.force(true);
+        }
+
+        try {
+
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException e) {
+
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the latest checkpoint, if it changed since the last write.
+     */
+    private synchronized void write() throws IOException {
+
+        ParserCheckpoint c = latest;
+
+        if (c == null || c == written) {
+
+            return;
+        }
+
+        write(file.toPath(), c.toByteArray());
+
+        written = c;
+        failure = null;
+        writeCount ++;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
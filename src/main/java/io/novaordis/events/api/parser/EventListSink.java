@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+
+/**
+ * An EventSink that accumulates the events in a list, and translates the end of the stream into an EndOfStreamEvent,
+ * appended to the list. Adapts the push contract to the list-returning Parser API. The sink can be reused: drain()
+ * hands over the accumulated events and empties the sink.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class EventListSink implements EventSink {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private List<Event> events;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public EventListSink() {
+
+        this.events = new ArrayList<>();
+    }
+
+    // EventSink implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null event.
+     */
+    @Override
+    public void emit(Event event) {
+
+        if (event == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        events.add(event);
+    }
+
+    @Override
+    public void endOfStream() {
+
+        events.add(new EndOfStreamEvent());
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the accumulated events, in a list that is not used by the sink afterwards, and empties the sink. The
+     * empty and single event lists are immutable, and do not copy the accumulated events.
+     */
+    public List<Event> drain() {
+
+        int size = events.size();
+
+        if (size == 0) {
+
+            return Collections.emptyList();
+        }
+
+        List<Event> result;
+
+        if (size == 1) {
+
+            result = Collections.singletonList(events.get(0));
+        }
+        else {
+
+            result = new ArrayList<>(events);
+        }
+
+        events.clear();
+
+        return result;
+    }
+
+    /**
+     * @return a read-only view of the accumulated events.
+     */
+    public List<Event> getEvents() {
+
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Discards the accumulated events.
+     */
+    public void clear() {
+
+        events.clear();
+    }
+
+    public int size() {
+
+        return events.size();
+    }
+
+    public boolean isEmpty() {
+
+        return events.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventListSink[" + events.size() + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * The push alternative to returning lists of events: a parser emits each event into the sink as soon as it is
+ * complete, and signals the end of the stream when it is closed, without allocating intermediate lists.
+ *
+ * @see Parser#parse(String, io.novaordis.events.query.Query, EventSink)
+ * @see Parser#close(EventSink)
+ * @see EventListSink
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public interface EventSink {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Receives an event, in stream order. Never invoked with an EndOfStreamEvent, see endOfStream().
+     */
+    void emit(Event event);
+
+    /**
+     * Invoked once, when the parser is closed, after the last event was emitted. Sinks that need an in-band marker
+     * may translate the invocation into an EndOfStreamEvent.
+     */
+    void endOfStream();
+
+}
@@ -0,0 +1,721 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * Follows a growing file, the way "tail -F" does, and feeds the new lines to a parser that is kept open across file
+ * growth, rotations and truncations. The parser counts all lines it was fed, so its line numbers continue across
+ * rotations.
+ *
+ * A line is only passed to the parser after its '\n' was written, so a line that is being written is never split.
+ * A '\r' preceding '\n' is removed. The charset must encode '\n' as the single byte 0x0A.
+ *
+ * Rotation is detected by the file key (the inode, on Unix): when the path refers to a new file, the rest of the
+ * rotated file is read, and the new file is followed from its beginning. Truncation is detected by the size: when the
+ * file is shorter than the current position, the file is followed from its beginning.
+ *
+ * follow() polls the file with an adaptive interval: the interval is reset to the minimum when new content is found,
+ * and doubled after each empty poll, up to the maximum. The maximum bounds the latency between a line being written
+ * and its events being delivered, without busy-spinning on an idle file.
+ *
+ * The parsing can be resumed after a restart: resume() positions a new follower, with a new parser, at a checkpoint
+ * taken by a previous follower. An installed CheckpointWriter keeps a checkpoint file current while following. The
+ * checkpoints carry a checksum of the file content that precedes their position, so a follower does not resume in the
+ * middle of a different file that replaced the original one at the same path.
+ *
+ * poll() and follow() must be invoked from a single thread, which is also the thread the events are delivered on.
+ * close() may be invoked from any thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class FileFollower implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_MIN_POLL_INTERVAL_MS = 1L;
+
+    public static final long DEFAULT_MAX_POLL_INTERVAL_MS = 32L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File file;
+    private final Parser parser;
+    private final Query query;
+
+    private final EventSink sink;
+
+    private Charset charset;
+
+    private long minPollInterval;
+    private long maxPollInterval;
+
+    private FileChannel channel;
+
+    //
+    // the key of the file the channel was opened on, null if the file system does not provide keys
+    //
+    private Object fileKey;
+
+    //
+    // the offset of the next byte to read from the channel
+    //
+    private long readPosition;
+
+    private final ByteBuffer buffer;
+
+    //
+    // the bytes of the line being written, read before its '\n'
+    //
+    private byte[] pending;
+    private int pendingLength;
+
+    //
+    // the offset to start reading the file at, when it is first opened, set by resume()
+    //
+    private long startPosition;
+
+    //
+    // the checksum of the content that precedes startPosition, recorded in the checkpoint, or NO_CHECKSUM
+    //
+    private long startChecksum;
+
+    private CheckpointWriter checkpointWriter;
+
+    private long rotationCount;
+    private long truncationCount;
+
+    private volatile boolean closed;
+    private volatile Thread following;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param query passed to the parser. May be null.
+     *
+     * @exception IllegalArgumentException on null file, parser or consumer.
+     */
+    public FileFollower(File file, Parser parser, Query query, final Consumer<? super Event> consumer) {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        if (parser == null) {
+
+            throw new IllegalArgumentException("null parser");
+        }
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("null consumer");
+        }
+
+        this.file = file;
+        this.parser = parser;
+        this.query = query;
+        this.charset = StandardCharsets.UTF_8;
+        this.minPollInterval = DEFAULT_MIN_POLL_INTERVAL_MS;
+        this.maxPollInterval = DEFAULT_MAX_POLL_INTERVAL_MS;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.pending = new byte[256];
+        this.startChecksum = ParserCheckpoint.NO_CHECKSUM;
+
+        this.sink = new EventSink() {
+
+            @Override
+            public void emit(Event event) {
+
+                consumer.accept(event);
+            }
+
+            @Override
+            public void endOfStream() {
+
+                consumer.accept(new EndOfStreamEvent());
+            }
+        };
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Stops following: a follow() loop in progress returns after the current poll. The line being written, if any, is
+     * passed to the parser, and the parser is closed, which delivers the remaining events and an EndOfStreamEvent.
+     * If follow() is in progress, this happens on the following thread, otherwise on the calling thread. Redundant
+     * invocations do nothing.
+     */
+    @Override
+    public void close() throws IOException {
+
+        Thread t;
+
+        synchronized(this) {
+
+            if (closed) {
+
+                return;
+            }
+
+            //
+            // follow() checks closed and claims following under the same monitor, so either it has not started, and
+            // will not start, or it is in progress and will complete the close when it sees closed
+            //
+
+            closed = true;
+            t = following;
+        }
+
+        if (t != null) {
+
+            //
+            // the following thread completes the close
+            //
+
+            LockSupport.unpark(t);
+            return;
+        }
+
+        complete();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the content added to the file since the last invocation, handling rotation and truncation, and parses the
+     * complete lines. Does not block. If the file does not exist, nothing happens.
+     *
+     * @return the number of lines passed to the parser.
+     *
+     * @exception IllegalStateException if the follower was closed.
+     */
+    public long poll() throws IOException, ParsingException {
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        long lines = 0;
+
+        if (channel == null && !open()) {
+
+            return 0;
+        }
+
+        lines += readAvailable();
+
+        //
+        // at the end of the channel, check whether the path still refers to the same file, with the same content
+        //
+
+        BasicFileAttributes attributes = attributes();
+
+        if (attributes == null) {
+
+            //
+            // the file was moved, and was not re-created yet
+            //
+
+            return lines;
+        }
+
+        Object key = attributes.fileKey();
+
+        if (key != null && fileKey != null && !key.equals(fileKey)) {
+
+            //
+            // rotation: the rest of the rotated file may have been written after the last read
+            //
+
+            lines += readAvailable();
+            lines += flushPending();
+
+            closeChannel();
+            rotationCount ++;
+
+            if (open()) {
+
+                lines += readAvailable();
+            }
+        }
+        else if (attributes.size() < readPosition) {
+
+            //
+            // truncation
+            //
+
+            lines += flushPending();
+
+            readPosition = 0;
+            truncationCount ++;
+
+            lines += readAvailable();
+        }
+
+        CheckpointWriter w = checkpointWriter;
+
+        if (lines > 0 && w != null && w.isDue()) {
+
+            w.update(checkpoint());
+        }
+
+        return lines;
+    }
+
+    /**
+     * Polls the file until the follower is closed, waiting between empty polls. Closes the parser before returning.
+     *
+     * @exception IllegalStateException if the follower was closed, or another thread is following.
+     */
+    public void follow() throws IOException, ParsingException {
+
+        synchronized(this) {
+
+            if (closed) {
+
+                throw new IllegalStateException(this + " is closed");
+            }
+
+            if (following != null) {
+
+                throw new IllegalStateException(this + " is already being followed");
+            }
+
+            following = Thread.currentThread();
+        }
+
+        try {
+
+            long interval = minPollInterval;
+
+            while(!closed) {
+
+                if (poll() > 0) {
+
+                    interval = minPollInterval;
+                    continue;
+                }
+
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(interval));
+
+                if (Thread.interrupted()) {
+
+                    closed = true;
+                    Thread.currentThread().interrupt();
+                }
+
+                interval = Math.min(interval * 2, maxPollInterval);
+            }
+        }
+        catch(IllegalStateException e) {
+
+            //
+            // closed between the loop check and poll()
+            //
+
+            if (!closed) {
+
+                throw e;
+            }
+        }
+        finally {
+
+            boolean completing;
+
+            synchronized(this) {
+
+                following = null;
+
+                //
+                // if closed, close() left the completion to this thread
+                //
+
+                completing = closed;
+            }
+
+            if (completing) {
+
+                complete();
+            }
+        }
+    }
+
+    /**
+     * Takes a checkpoint of the parser, at the current position, which includes the checksum of the content of the file
+     * that precedes the position. Must be invoked from the polling thread, between polls.
+     *
+     * @exception IllegalStateException if the parser does not support checkpoints.
+     *
+     * @see Parser#checkpoint(long)
+     */
+    public ParserCheckpoint checkpoint() throws IOException {
+
+        long position = getPosition();
+
+        ParserCheckpoint c = parser.checkpoint(position);
+
+        if (channel == null || position == 0) {
+
+            return c;
+        }
+
+        return new ParserCheckpoint(position, c.getLineNumber(), c.getState(), TimeIndex.checksum(channel, position));
+    }
+
+    /**
+     * Resumes from a checkpoint taken by a previous follower of the same file: the parser's state is restored, and
+     * the file is read starting at the checkpoint position. If the file is shorter than the checkpoint position, it
+     * is considered truncated, and it is read from its beginning. If the checkpoint carries a checksum, and the content
+     * of the file that precedes the position does not match it, the file is considered replaced (rotated), and it is
+     * also read from its beginning. Must be invoked before the first poll.
+     *
+     * @exception IllegalArgumentException on null checkpoint, or if the parser cannot restore the state.
+     * @exception IllegalStateException if the follower already polled the file, or the parser already processed lines.
+     */
+    public void resume(ParserCheckpoint checkpoint) {
+
+        if (checkpoint == null) {
+
+            throw new IllegalArgumentException("null checkpoint");
+        }
+
+        if (channel != null || closed) {
+
+            throw new IllegalStateException(this + " already started");
+        }
+
+        parser.restore(checkpoint);
+        startPosition = checkpoint.getPosition();
+        startChecksum = checkpoint.getChecksum();
+    }
+
+    /**
+     * After each poll that parsed lines, if the writer's interval elapsed, a checkpoint is taken and handed over to
+     * the writer. The writer is not closed by the follower.
+     *
+     * @param writer may be null, which disables checkpointing.
+     */
+    public void setCheckpointWriter(CheckpointWriter writer) {
+
+        this.checkpointWriter = writer;
+    }
+
+    public CheckpointWriter getCheckpointWriter() {
+
+        return checkpointWriter;
+    }
+
+    /**
+     * @param min the interval after a poll that found new content. Must be at least 1 ms.
+     * @param max the longest interval between polls, it bounds the latency on an idle file.
+     *
+     * @exception IllegalArgumentException on invalid intervals.
+     */
+    public void setPollInterval(long min, long max) {
+
+        if (min < 1 || max < min) {
+
+            throw new IllegalArgumentException("invalid poll interval: " + min + " - " + max + " ms");
+        }
+
+        this.minPollInterval = min;
+        this.maxPollInterval = max;
+    }
+
+    public long getMinPollInterval() {
+
+        return minPollInterval;
+    }
+
+    public long getMaxPollInterval() {
+
+        return maxPollInterval;
+    }
+
+    /**
+     * @exception IllegalArgumentException on null charset.
+     */
+    public void setCharset(Charset charset) {
+
+        if (charset == null) {
+
+            throw new IllegalArgumentException("null charset");
+        }
+
+        this.charset = charset;
+    }
+
+    public Charset getCharset() {
+
+        return charset;
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    public Parser getParser() {
+
+        return parser;
+    }
+
+    /**
+     * @return the offset, in the file currently followed, of the first byte that was not passed to the parser yet:
+     * the beginning of the line being written, if any. The position the follower would resume from.
+     */
+    public long getPosition() {
+
+        return readPosition - pendingLength;
+    }
+
+    /**
+     * @return the number of rotations detected since the follower was created.
+     */
+    public long getRotationCount() {
+
+        return rotationCount;
+    }
+
+    /**
+     * @return the number of truncations detected since the follower was created.
+     */
+    public long getTruncationCount() {
+
+        return truncationCount;
+    }
+
+    public boolean isClosed() {
+
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+
+        return "FileFollower[" + file + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return false if the file does not exist.
+     */
+    private boolean open() throws IOException {
+
+        try {
+
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch(NoSuchFileException e) {
+
+            return false;
+        }
+
+        BasicFileAttributes attributes = attributes();
+        fileKey = attributes == null ? null : attributes.fileKey();
+        readPosition = 0;
+
+        if (startPosition > 0) {
+
+            if (attributes == null || attributes.size() < startPosition) {
+
+                truncationCount ++;
+            }
+            else if (startChecksum != ParserCheckpoint.NO_CHECKSUM &&
+                    TimeIndex.checksum(channel, startPosition) != startChecksum) {
+
+                rotationCount ++;
+            }
+            else {
+
+                readPosition = startPosition;
+            }
+
+            startPosition = 0;
+        }
+
+        return true;
+    }
+
+    private void closeChannel() throws IOException {
+
+        if (channel != null) {
+
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * @return null if the file does not exist.
+     */
+    private BasicFileAttributes attributes() throws IOException {
+
+        try {
+
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        }
+        catch(NoSuchFileException e) {
+
+            return null;
+        }
+    }
+
+    /**
+     * Reads from the channel until its end, and parses the complete lines.
+     *
+     * @return the number of lines passed to the parser.
+     */
+    private long readAvailable() throws IOException, ParsingException {
+
+        long lines = 0;
+
+        while(true) {
+
+            buffer.clear();
+
+            int read = channel.read(buffer, readPosition);
+
+            if (read <= 0) {
+
+                return lines;
+            }
+
+            readPosition += read;
+
+            byte[] bytes = buffer.array();
+            int start = 0;
+
+            for(int i = 0; i < read; i ++) {
+
+                if (bytes[i] != '\n') {
+
+                    continue;
+                }
+
+                if (pendingLength > 0) {
+
+                    append(bytes, start, i - start);
+                    parse(pending, 0, pendingLength);
+                    pendingLength = 0;
+                }
+                else {
+
+                    parse(bytes, start, i - start);
+                }
+
+                lines ++;
+                start = i + 1;
+            }
+
+            append(bytes, start, read - start);
+        }
+    }
+
+    /**
+     * Passes the line being written to the parser, as no more bytes will be added to it.
+     *
+     * @return the number of lines passed to the parser.
+     */
+    private long flushPending() throws ParsingException {
+
+        if (pendingLength == 0) {
+
+            return 0;
+        }
+
+        parse(pending, 0, pendingLength);
+        pendingLength = 0;
+        return 1;
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+
+        if (pendingLength + length > pending.length) {
+
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+
+        System.arraycopy(bytes, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    private void parse(byte[] bytes, int offset, int length) throws ParsingException {
+
+        if (length > 0 && bytes[offset + length - 1] == '\r') {
+
+            length --;
+        }
+
+        parser.parse(new String(bytes, offset, length, charset), query, sink);
+    }
+
+    /**
+     * Passes the line being written to the parser, closes the parser and releases the file.
+     */
+    private void complete() throws IOException {
+
+        try {
+
+            flushPending();
+            parser.close(sink);
+        }
+        catch(ParsingException e) {
+
+            throw new IOException(e);
+        }
+        finally {
+
+            closeChannel();
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
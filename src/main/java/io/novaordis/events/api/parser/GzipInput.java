@@ -0,0 +1,706 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Input streams that decompress gzip files off the reading thread, so decompression overlaps with parsing.
+ *
+ * open() detects the format by the content, not by the file name:
+ *
+ * 1. Files that are not gzip-compressed are read as they are.
+ *
+ * 2. BGZF files (blocked gzip, as written by bgzip: a sequence of gzip members, each carrying its compressed size in
+ * a "BC" extra field) are decompressed block-parallel: the compressed blocks are read sequentially, which is cheap,
+ * and inflated concurrently in a fork-join pool. The decompressed blocks are returned in order.
+ *
+ * 3. Ordinary gzip files, including concatenated multi-member files, whose member boundaries are not known without
+ * inflating, are decompressed by a dedicated thread, which reads ahead of the consumer into a bounded buffer.
+ *
+ * @see ParserDriver#start(File)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class GzipInput {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the size of the chunks the read-ahead thread passes to the consumer, and the number of chunks it can get ahead
+    //
+    public static final int READ_AHEAD_CHUNK_SIZE = 256 * 1024;
+    public static final int READ_AHEAD_CHUNKS = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int ID1 = 0x1f;
+    private static final int ID2 = 0x8b;
+    private static final int CM_DEFLATE = 8;
+    private static final int FEXTRA = 4;
+
+    //
+    // the fixed part of the gzip header, and the trailer (CRC32, ISIZE)
+    //
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 8;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Uses the common fork-join pool for BGZF files.
+     *
+     * @see GzipInput#open(File, ForkJoinPool)
+     */
+    public static InputStream open(File file) throws IOException {
+
+        return open(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return a stream of the decompressed content, or of the content as it is, if the file is not gzip-compressed.
+     *
+     * @exception IllegalArgumentException on null file or pool.
+     */
+    public static InputStream open(File file, ForkJoinPool pool) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        if (pool == null) {
+
+            throw new IllegalArgumentException("null pool");
+        }
+
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+
+        try {
+
+            //
+            // room for the fixed header and the largest extra field
+            //
+
+            in.mark(HEADER_SIZE + 0xffff);
+
+            byte[] header = new byte[HEADER_SIZE];
+
+            int read = readFully(in, header, 0, header.length);
+
+            int blockSize = read == header.length ? bgzfBlockSize(in, header) : -1;
+
+            in.reset();
+
+            if (blockSize > 0) {
+
+                return new BlockParallelInputStream(in, pool);
+            }
+            else if (read >= 2 && (header[0] & 0xff) == ID1 && (header[1] & 0xff) == ID2) {
+
+                return new ReadAheadInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+            }
+
+            return in;
+        }
+        catch(IOException | RuntimeException e) {
+
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the file starts with the gzip magic number.
+     */
+    public static boolean isGzip(File file) throws IOException {
+
+        try(InputStream in = new FileInputStream(file)) {
+
+            return in.read() == ID1 && in.read() == ID2;
+        }
+    }
+
+    /**
+     * @return true if the first gzip member of the file is a BGZF block.
+     */
+    public static boolean isBgzf(File file) throws IOException {
+
+        try(InputStream in = new FileInputStream(file)) {
+
+            byte[] header = new byte[HEADER_SIZE];
+            return readFully(in, header, 0, header.length) == header.length && bgzfBlockSize(in, header) > 0;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private GzipInput() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the extra field of a gzip member whose fixed header was already read.
+     *
+     * @return the total size of the block, as recorded in the BC subfield, or -1 if the member is not a BGZF block.
+     */
+    private static int bgzfBlockSize(InputStream in, byte[] header) throws IOException {
+
+        if ((header[0] & 0xff) != ID1 || (header[1] & 0xff) != ID2 || header[2] != CM_DEFLATE ||
+                (header[3] & FEXTRA) == 0) {
+
+            return -1;
+        }
+
+        int xlen = (header[10] & 0xff) | (header[11] & 0xff) << 8;
+
+        byte[] extra = new byte[xlen];
+
+        if (readFully(in, extra, 0, xlen) != xlen) {
+
+            return -1;
+        }
+
+        for(int i = 0; i + 4 <= xlen; ) {
+
+            int slen = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && slen == 2 && i + 6 <= xlen) {
+
+                return ((extra[i + 4] & 0xff) | (extra[i + 5] & 0xff) << 8) + 1;
+            }
+
+            i += 4 + slen;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes read, less than the length only at the end of the stream.
+     */
+    private static int readFully(InputStream in, byte[] b, int offset, int length) throws IOException {
+
+        int total = 0;
+
+        while(total < length) {
+
+            int read = in.read(b, offset + total, length - total);
+
+            if (read < 0) {
+
+                break;
+            }
+
+            total += read;
+        }
+
+        return total;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads BGZF blocks sequentially, and inflates them in a fork-join pool, keeping at most twice the pool's
+     * parallelism blocks in flight.
+     */
+    private static class BlockParallelInputStream extends InputStream {
+
+        private final InputStream in;
+        private final ForkJoinPool pool;
+        private final int maxInFlight;
+
+        private final ArrayDeque<Future<byte[]>> inFlight;
+
+        private boolean endOfInput;
+
+        private byte[] current;
+        private int position;
+
+        BlockParallelInputStream(InputStream in, ForkJoinPool pool) {
+
+            this.in = in;
+            this.pool = pool;
+            this.maxInFlight = 2 * pool.getParallelism();
+            this.inFlight = new ArrayDeque<>();
+            this.current = new byte[0];
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if (!fill()) {
+
+                return -1;
+            }
+
+            return current[position ++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if (len == 0) {
+
+                return 0;
+            }
+
+            if (!fill()) {
+
+                return -1;
+            }
+
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+
+            return current.length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            for(Future<byte[]> f: inFlight) {
+
+                f.cancel(true);
+            }
+
+            inFlight.clear();
+            in.close();
+        }
+
+        /**
+         * @return false at the end of the stream.
+         */
+        private boolean fill() throws IOException {
+
+            while(position == current.length) {
+
+                while(!endOfInput && inFlight.size() < maxInFlight) {
+
+                    byte[] block = readBlock();
+
+                    if (block == null) {
+
+                        endOfInput = true;
+                    }
+                    else {
+
+                        inFlight.add(pool.submit(new BlockInflation(block)));
+                    }
+                }
+
+                Future<byte[]> f = inFlight.poll();
+
+                if (f == null) {
+
+                    return false;
+                }
+
+                current = get(f);
+                position = 0;
+            }
+
+            return true;
+        }
+
+        /**
+         * @return the next compressed block, header and trailer included, or null at the end of the stream.
+         */
+        private byte[] readBlock() throws IOException {
+
+            byte[] header = new byte[HEADER_SIZE];
+
+            int read = readFully(in, header, 0, header.length);
+
+            if (read == 0) {
+
+                return null;
+            }
+
+            if (read < header.length) {
+
+                throw new EOFException("truncated BGZF block header");
+            }
+
+            int xlen = (header[10] & 0xff) | (header[11] & 0xff) << 8;
+
+            in.mark(xlen);
+
+            int blockSize = bgzfBlockSize(in, header);
+
+            in.reset();
+
+            if (blockSize < 0) {
+
+                throw new IOException("not a BGZF block");
+            }
+
+            byte[] block = new byte[blockSize];
+            System.arraycopy(header, 0, block, 0, header.length);
+
+            if (readFully(in, block, header.length, blockSize - header.length) != blockSize - header.length) {
+
+                throw new EOFException("truncated BGZF block");
+            }
+
+            return block;
+        }
+
+        private static byte[] get(Future<byte[]> f) throws IOException {
+
+            try {
+
+                return f.get();
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while decompressing");
+            }
+            catch(ExecutionException e) {
+
+                for(Throwable t = e.getCause(); t != null; t = t.getCause()) {
+
+                    if (t instanceof IOException) {
+
+                        throw (IOException)t;
+                    }
+                }
+
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Inflates a BGZF block, and verifies its size and checksum.
+     */
+    private static class BlockInflation implements Callable<byte[]> {
+
+        private final byte[] block;
+
+        BlockInflation(byte[] block) {
+
+            this.block = block;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+
+            int xlen = (block[10] & 0xff) | (block[11] & 0xff) << 8;
+            int dataOffset = HEADER_SIZE + xlen;
+            int dataLength = block.length - dataOffset - TRAILER_SIZE;
+
+            if (dataLength < 0) {
+
+                throw new IOException("invalid BGZF block size " + block.length);
+            }
+
+            int t = block.length - TRAILER_SIZE;
+            long crc = readInt(t) & 0xffffffffL;
+            int size = readInt(t + 4);
+
+            byte[] result = new byte[size];
+
+            Inflater inflater = new Inflater(true);
+
+            try {
+
+                inflater.setInput(block, dataOffset, dataLength);
+
+                int total = 0;
+
+                while(total < size) {
+
+                    int n = inflater.inflate(result, total, size - total);
+
+                    if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+
+                        break;
+                    }
+
+                    total += n;
+                }
+
+                if (total != size) {
+
+                    throw new IOException("corrupt BGZF block: " + total + " bytes instead of " + size);
+                }
+            }
+            catch(DataFormatException e) {
+
+                throw new IOException("corrupt BGZF block", e);
+            }
+            finally {
+
+                inflater.end();
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(result, 0, size);
+
+            if (crc32.getValue() != crc) {
+
+                throw new IOException("corrupt BGZF block: CRC mismatch");
+            }
+
+            return result;
+        }
+
+        private int readInt(int offset) {
+
+            return (block[offset] & 0xff) | (block[offset + 1] & 0xff) << 8 | (block[offset + 2] & 0xff) << 16 |
+                    (block[offset + 3] & 0xff) << 24;
+        }
+    }
+
+    /**
+     * Decompresses on a dedicated thread, which reads ahead of the consumer by at most READ_AHEAD_CHUNKS chunks.
+     */
+    private static class ReadAheadInputStream extends InputStream {
+
+        //
+        // the marker that follows the last chunk, compared by identity
+        //
+        private static final byte[] END = new byte[0];
+
+        private final InputStream in;
+        private final RingBuffer<byte[]> chunks;
+        private final byte[][] batch;
+        private final Thread decompressor;
+
+        private volatile boolean closed;
+        private volatile IOException failure;
+
+        private byte[] current;
+        private int position;
+        private int length;
+        private boolean endOfStream;
+
+        //
+        // the chunks taken from the ring buffer, not consumed yet
+        //
+        private int batchIndex;
+        private int batchCount;
+
+        ReadAheadInputStream(InputStream in) {
+
+            this.in = in;
+            this.chunks = new RingBuffer<>(READ_AHEAD_CHUNKS, ParserDriver.WaitStrategy.BLOCKING);
+            this.batch = new byte[READ_AHEAD_CHUNKS][];
+            this.current = END;
+
+            this.decompressor = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    try {
+
+                        while(!closed) {
+
+                            byte[] chunk = new byte[READ_AHEAD_CHUNK_SIZE];
+
+                            int read = readFully(ReadAheadInputStream.this.in, chunk, 0, chunk.length);
+
+                            if (read > 0) {
+
+                                chunks.put(read == chunk.length ? chunk : Arrays.copyOf(chunk, read));
+                            }
+
+                            if (read < chunk.length) {
+
+                                break;
+                            }
+                        }
+                    }
+                    catch(IOException e) {
+
+                        failure = e;
+                    }
+                    catch(RuntimeException e) {
+
+                        failure = new IOException(e);
+                    }
+                    finally {
+
+                        chunks.put(END);
+                    }
+                }
+            }, "events-gzip-decompressor");
+
+            this.decompressor.setDaemon(true);
+            this.decompressor.start();
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if (!fill()) {
+
+                return -1;
+            }
+
+            return current[position ++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if (len == 0) {
+
+                return 0;
+            }
+
+            if (!fill()) {
+
+                return -1;
+            }
+
+            int n = Math.min(len, length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+
+            return length - position;
+        }
+
+        /**
+         * Stops the decompressor thread, draining the chunks it produces until it exits, so it is not left blocked on
+         * a full buffer.
+         */
+        @Override
+        public void close() throws IOException {
+
+            if (closed) {
+
+                return;
+            }
+
+            closed = true;
+
+            while(!endOfStream) {
+
+                next();
+            }
+
+            try {
+
+                decompressor.join();
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+
+            in.close();
+        }
+
+        /**
+         * @return false at the end of the stream.
+         */
+        private boolean fill() throws IOException {
+
+            if (closed) {
+
+                throw new IOException("stream closed");
+            }
+
+            while(position == length) {
+
+                if (endOfStream) {
+
+                    return false;
+                }
+
+                next();
+            }
+
+            return true;
+        }
+
+        private void next() throws IOException {
+
+            if (batchIndex == batchCount) {
+
+                batchCount = chunks.take(batch);
+                batchIndex = 0;
+            }
+
+            byte[] chunk = batch[batchIndex];
+            batch[batchIndex ++] = null;
+
+            if (chunk == END) {
+
+                endOfStream = true;
+                current = END;
+                position = 0;
+                length = 0;
+
+                IOException e = failure;
+
+                if (e != null && !closed) {
+
+                    throw e;
+                }
+
+                return;
+            }
+
+            current = chunk;
+            position = 0;
+            length = chunk.length;
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads lines from a file channel, starting at a given offset, and keeps track of the offset of the next line. Lines
+ * are separated by '\n'. A '\r' preceding '\n' is removed.
+ *
+ * @see ParallelFileParser
+ * @see TimeRangeFileParser
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+class LineReader {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final FileChannel ch;
+    private final Charset charset;
+
+    private final ByteBuffer buffer;
+
+    //
+    // the file offset of the first byte in the buffer
+    //
+    private long bufferOffset;
+
+    private int position;
+    private int limit;
+
+    //
+    // accumulates lines that span buffer reads
+    //
+    private byte[] line;
+    private int lineLength;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    LineReader(FileChannel ch, long offset, Charset charset) {
+
+        this.ch = ch;
+        this.charset = charset;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bufferOffset = offset;
+        this.line = new byte[256];
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the file offset of the next line.
+     */
+    long position() {
+
+        return bufferOffset + position;
+    }
+
+    /**
+     * @return the next line, without the line terminator, or null at the end of the file.
+     */
+    String readLine() throws IOException {
+
+        lineLength = 0;
+
+        boolean read = false;
+
+        while(true) {
+
+            if (position == limit && !fill()) {
+
+                return read ? decode(line, 0, lineLength) : null;
+            }
+
+            read = true;
+
+            byte[] a = buffer.array();
+
+            for(int i = position; i < limit; i ++) {
+
+                if (a[i] == '\n') {
+
+                    int start = position;
+                    position = i + 1;
+
+                    if (lineLength == 0) {
+
+                        return decode(a, start, i - start);
+                    }
+
+                    append(a, start, i - start);
+                    return decode(line, 0, lineLength);
+                }
+            }
+
+            append(a, position, limit - position);
+            position = limit;
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean fill() throws IOException {
+
+        bufferOffset += limit;
+        buffer.clear();
+
+        int read = ch.read(buffer, bufferOffset);
+
+        position = 0;
+        limit = read < 0 ? 0 : read;
+
+        return limit > 0;
+    }
+
+    private void append(byte[] a, int offset, int length) {
+
+        if (lineLength + length > line.length) {
+
+            byte[] tmp = new byte[Math.max(2 * line.length, lineLength + length)];
+            System.arraycopy(line, 0, tmp, 0, lineLength);
+            line = tmp;
+        }
+
+        System.arraycopy(a, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private String decode(byte[] a, int offset, int length) {
+
+        if (length > 0 && a[offset + length - 1] == '\r') {
+
+            length --;
+        }
+
+        return new String(a, offset, length, charset);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,633 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * A source of lines that does not create a String per line. A file is memory-mapped, in windows, and any other input
+ * is read as a channel, into a direct buffer. New lines are located by scanning the buffer a word (8 bytes) at a time.
+ * The lines are returned as CharSequence views over the buffer: ASCII lines, and all lines in single-byte charsets,
+ * are viewed directly, other lines are decoded into a reused char buffer. The line view returned by nextLine() is only
+ * valid until the next invocation: the callers that need to keep the line, or a part of it, must copy it with
+ * toString().
+ *
+ * Lines are separated by '\n'. A '\r' preceding '\n' is removed. The charset must encode '\n' as the single byte 0x0A
+ * (UTF-8, ISO-8859-1, ASCII, etc.)
+ *
+ * The source counts lines, the same way ParserBase does, and parse() drives a parser over all lines of the source.
+ *
+ * The current implementation is not thread safe. Mapped windows are released when garbage collected.
+ *
+ * @see Parser#parse(CharSequence, Query)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class LineSource implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_MAP_SIZE = 256 * 1024 * 1024;
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Word-at-a-time (SWAR) new line scan: the bytes are XOR-ed with '\n', and the zero bytes of each word are flagged
+     * with ~(((x & 0x7F..7F) + 0x7F..7F) | x | 0x7F..7F). Unlike the shorter (x - 0x01..01) & ~x & 0x80..80 test, it
+     * has no false positives, so the first zero byte can be located in either byte order.
+     *
+     * @return the index of the first '\n' in the [from, to) region of the buffer, or -1 if there is none.
+     */
+    static int indexOfNewline(ByteBuffer b, int from, int to) {
+
+        boolean littleEndian = b.order() == ByteOrder.LITTLE_ENDIAN;
+
+        int i = from;
+
+        for(; i + 8 <= to; i += 8) {
+
+            long w = b.getLong(i) ^ NEWLINES;
+            long t = ~(((w & LOW_BITS) + LOW_BITS) | w | LOW_BITS);
+
+            if (t != 0) {
+
+                return i + ((littleEndian ? Long.numberOfTrailingZeros(t) : Long.numberOfLeadingZeros(t)) >>> 3);
+            }
+        }
+
+        for(; i < to; i ++) {
+
+            if (b.get(i) == '\n') {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return true if all bytes in the [from, to) region of the buffer are ASCII.
+     */
+    static boolean isAscii(ByteBuffer b, int from, int to) {
+
+        int i = from;
+
+        for(; i + 8 <= to; i += 8) {
+
+            if ((b.getLong(i) & HIGH_BITS) != 0) {
+
+                return false;
+            }
+        }
+
+        for(; i < to; i ++) {
+
+            if (b.get(i) < 0) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // exactly one of file and channel is not null
+    //
+    private FileChannel file;
+    private long fileSize;
+    private int mapSize;
+
+    private ReadableByteChannel channel;
+    private boolean eof;
+
+    private ByteBuffer buffer;
+
+    //
+    // the source offset of the first byte in the buffer
+    //
+    private long bufferOffset;
+
+    //
+    // the start of the next line, in the buffer
+    //
+    private int position;
+
+    private Charset charset;
+    private boolean singleByte;
+    private CharsetDecoder decoder;
+    private CharBuffer decoded;
+
+    private LineView view;
+
+    private long lineNumber;
+
+    private boolean closed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Memory-maps the file. Uses UTF-8.
+     */
+    public LineSource(File file) throws IOException {
+
+        this(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Memory-maps the file.
+     *
+     * @exception IllegalArgumentException on null file or charset.
+     */
+    public LineSource(File file, Charset charset) throws IOException {
+
+        this(file, charset, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Reads the channel into a direct buffer.
+     *
+     * @exception IllegalArgumentException on null channel or charset.
+     */
+    public LineSource(ReadableByteChannel channel, Charset charset) {
+
+        this(channel, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    LineSource(File file, Charset charset, int mapSize) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        setCharset(charset);
+
+        this.file = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.fileSize = this.file.size();
+        this.mapSize = mapSize;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    LineSource(ReadableByteChannel channel, Charset charset, int bufferSize) {
+
+        if (channel == null) {
+
+            throw new IllegalArgumentException("null channel");
+        }
+
+        setCharset(charset);
+
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.limit(0);
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+
+            return;
+        }
+
+        closed = true;
+        buffer = null;
+
+        if (file != null) {
+
+            file.close();
+        }
+        else {
+
+            channel.close();
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a view of the next line, without the line terminator, or null if there are no more lines. The view is
+     * only valid until the next invocation.
+     *
+     * @exception IllegalStateException if the source is closed.
+     */
+    public CharSequence nextLine() throws IOException {
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        //
+        // the bytes of the current line that were already scanned, across refills
+        //
+
+        int scanned = 0;
+
+        while(true) {
+
+            int limit = buffer.limit();
+
+            int nl = indexOfNewline(buffer, position + scanned, limit);
+
+            if (nl >= 0) {
+
+                int start = position;
+                position = nl + 1;
+                return line(start, nl);
+            }
+
+            scanned = limit - position;
+
+            if (!refill()) {
+
+                //
+                // the last line has no terminator
+                //
+
+                int end = buffer.limit();
+
+                if (position == end) {
+
+                    return null;
+                }
+
+                int start = position;
+                position = end;
+                return line(start, end);
+            }
+        }
+    }
+
+    /**
+     * Drives the parser over the remaining lines of the source, then closes the parser. The events are delivered to
+     * the consumer in the order they are returned by the parser, including the EndOfStreamEvent returned on closing.
+     *
+     * @param query passed to the parser. May be null.
+     *
+     * @return the number of lines processed.
+     *
+     * @exception IllegalArgumentException on null parser or consumer.
+     * @exception IllegalStateException if the parser line count is not consistent with the source line count.
+     */
+    public long parse(Parser parser, Query query, final Consumer<? super Event> consumer)
+            throws IOException, ParsingException {
+
+        if (parser == null) {
+
+            throw new IllegalArgumentException("null parser");
+        }
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("null consumer");
+        }
+
+        EventSink sink = new EventSink() {
+
+            @Override
+            public void emit(Event event) {
+
+                consumer.accept(event);
+            }
+
+            @Override
+            public void endOfStream() {
+
+                consumer.accept(new EndOfStreamEvent());
+            }
+        };
+
+        long first = lineNumber;
+        long parserFirst = parser.getLineNumber();
+
+        CharSequence line;
+
+        while((line = nextLine()) != null) {
+
+            parser.parse(line, query, sink);
+        }
+
+        long lines = lineNumber - first;
+
+        if (parser.getLineNumber() - parserFirst != lines) {
+
+            throw new IllegalStateException(
+                    parser + " counted " + (parser.getLineNumber() - parserFirst) + " lines instead of " + lines);
+        }
+
+        parser.close(sink);
+
+        return lines;
+    }
+
+    /**
+     * @return the number of lines returned so far. The number of the last line returned, if the lines are numbered
+     * from 1.
+     */
+    public long getLineNumber() {
+
+        return lineNumber;
+    }
+
+    /**
+     * @return the source offset of the next line, in bytes.
+     */
+    public long getPosition() {
+
+        return bufferOffset + position;
+    }
+
+    public Charset getCharset() {
+
+        return charset;
+    }
+
+    public boolean isMapped() {
+
+        return file != null;
+    }
+
+    @Override
+    public String toString() {
+
+        return "LineSource[" + (file != null ? "mapped" : "channel") + ", line " + lineNumber + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void setCharset(Charset charset) {
+
+        if (charset == null) {
+
+            throw new IllegalArgumentException("null charset");
+        }
+
+        this.charset = charset;
+        this.singleByte = StandardCharsets.ISO_8859_1.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+        this.view = new LineView();
+    }
+
+    /**
+     * Makes more bytes available after the current line start, which is moved to the beginning of the buffer.
+     *
+     * @return false if there are no more bytes.
+     */
+    private boolean refill() throws IOException {
+
+        int remaining = buffer.limit() - position;
+
+        if (file != null) {
+
+            long offset = bufferOffset + position;
+
+            if (offset + remaining >= fileSize) {
+
+                return false;
+            }
+
+            //
+            // a line longer than the window doubles the window
+            //
+
+            long size = Math.max(mapSize, 2L * remaining);
+            size = Math.min(Math.min(size, fileSize - offset), Integer.MAX_VALUE - 8);
+
+            if (size <= remaining) {
+
+                throw new IOException("line at offset " + offset + " is too long");
+            }
+
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+            bufferOffset = offset;
+            position = 0;
+
+            return true;
+        }
+
+        if (eof) {
+
+            return false;
+        }
+
+        buffer.position(position);
+
+        if (remaining == buffer.capacity()) {
+
+            //
+            // a line longer than the buffer
+            //
+
+            ByteBuffer b = ByteBuffer.allocateDirect(2 * buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            b.put(buffer);
+            buffer = b;
+        }
+        else {
+
+            buffer.compact();
+        }
+
+        bufferOffset += position;
+        position = 0;
+
+        int read = 0;
+
+        while(read == 0) {
+
+            read = channel.read(buffer);
+        }
+
+        buffer.flip();
+
+        if (read < 0) {
+
+            eof = true;
+            return false;
+        }
+
+        return true;
+    }
+
+    private CharSequence line(int start, int end) throws IOException {
+
+        lineNumber ++;
+
+        if (end > start && buffer.get(end - 1) == '\r') {
+
+            end --;
+        }
+
+        if (singleByte || isAscii(buffer, start, end)) {
+
+            view.setBytes(buffer, start, end - start);
+            return view;
+        }
+
+        if (decoder == null) {
+
+            decoder = charset.newDecoder().
+                    onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        int capacity = (int)Math.ceil((end - start) * (double)decoder.maxCharsPerByte());
+
+        if (decoded == null || decoded.capacity() < capacity) {
+
+            decoded = CharBuffer.allocate(Math.max(capacity, 256));
+        }
+
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(end).position(start);
+
+        decoded.clear();
+        decoder.reset();
+        decoder.decode(bytes, decoded, true);
+        decoder.flush(decoded);
+        decoded.flip();
+
+        view.setChars(decoded);
+        return view;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * A line, viewed either as a region of the byte buffer, one character per byte, or as a decoded char buffer.
+     */
+    private static class LineView implements CharSequence {
+
+        private ByteBuffer bytes;
+        private int offset;
+        private int length;
+
+        private CharBuffer chars;
+
+        LineView() {
+        }
+
+        LineView(ByteBuffer bytes, int offset, int length) {
+
+            setBytes(bytes, offset, length);
+        }
+
+        void setBytes(ByteBuffer bytes, int offset, int length) {
+
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.chars = null;
+        }
+
+        void setChars(CharBuffer chars) {
+
+            this.bytes = null;
+            this.chars = chars;
+            this.length = chars.remaining();
+        }
+
+        @Override
+        public int length() {
+
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+
+            if (index < 0 || index >= length) {
+
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            }
+
+            return chars != null ? chars.get(chars.position() + index) : (char)(bytes.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+
+            if (start < 0 || end > length || start > end) {
+
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+            }
+
+            if (chars != null) {
+
+                return chars.subSequence(start, end);
+            }
+
+            return new LineView(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+
+            if (chars != null) {
+
+                return chars.toString();
+            }
+
+            if (bytes.hasArray()) {
+
+                return new String(bytes.array(), bytes.arrayOffset() + offset, length, StandardCharsets.ISO_8859_1);
+            }
+
+            byte[] a = new byte[length];
+
+            ByteBuffer b = bytes.duplicate();
+            b.position(offset);
+            b.get(a);
+
+            return new String(a, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
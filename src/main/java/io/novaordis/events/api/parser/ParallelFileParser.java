@@ -0,0 +1,627 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * Parses a file in parallel. The file is split into chunks of approximately equal size, aligned to line boundaries,
+ * and each chunk is parsed by an independent ParserBase instance, obtained from the parser factory, on a fork-join
+ * pool. The events are delivered in line order, with line numbers relative to the whole file, as if the file was
+ * parsed sequentially by a single parser.
+ *
+ * The chunk parsers number the lines relative to the beginning of their chunk, and count the lines that start within
+ * their chunk. The events are renumbered with setLineNumber() while the chunks are merged, in order, when the number of
+ * lines that precede each chunk becomes known, so the parsers must not freeze the events they produce. A chunk whose
+ * parser failed is parsed again on the calling thread, with line numbers relative to the whole file, so the exception
+ * reports the line number a sequential parser would.
+ *
+ * Each chunk parser starts at the first line of its chunk for which ParserBase.isEventStart() returns true, and
+ * continues past the end of its chunk until the next event start, so multi-line events that straddle a chunk boundary
+ * are parsed by a single parser. Multi-line parsers must implement isEventStart() for the result to be identical to
+ * the result of a sequential parsing.
+ *
+ * Lines are separated by '\n'. A '\r' preceding '\n' is removed. The charset must encode '\n' as the single byte 0x0A
+ * (UTF-8, ISO-8859-1, ASCII, etc.)
+ *
+ * The events of the chunks that were submitted for parsing, but not delivered yet, are held in memory. The memory is
+ * bounded by limiting the total size of those chunks, see setMaxInFlightBytes(long).
+ *
+ * A ParallelFileParser instance may be used to parse several files, sequentially or concurrently.
+ *
+ * @see ParserBase#isEventStart(String)
+ * @see ParserBase#setLineNumber(long)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParallelFileParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64 * 1024 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Supplier<? extends ParserBase> parserFactory;
+
+    private ForkJoinPool pool;
+
+    private long chunkSize;
+
+    private long maxInFlightBytes;
+
+    private Charset charset;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Uses the common fork-join pool.
+     */
+    public ParallelFileParser(Supplier<? extends ParserBase> parserFactory) {
+
+        this(parserFactory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param parserFactory must return a new parser instance on each invocation.
+     *
+     * @exception IllegalArgumentException on null factory or pool.
+     */
+    public ParallelFileParser(Supplier<? extends ParserBase> parserFactory, ForkJoinPool pool) {
+
+        if (parserFactory == null) {
+
+            throw new IllegalArgumentException("null parser factory");
+        }
+
+        if (pool == null) {
+
+            throw new IllegalArgumentException("null pool");
+        }
+
+        this.parserFactory = parserFactory;
+        this.pool = pool;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+        this.charset = StandardCharsets.UTF_8;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the file and collects the events, in line order. The last event is an EndOfStreamEvent.
+     *
+     * @param query passed to the parsers. May be null.
+     *
+     * @see ParallelFileParser#parse(File, Query, Consumer)
+     */
+    public List<Event> parse(File file, Query query) throws IOException, ParsingException {
+
+        final List<Event> result = new ArrayList<>();
+
+        parse(file, query, new Consumer<Event>() {
+
+            @Override
+            public void accept(Event e) {
+
+                result.add(e);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Parses the file and delivers the events to the consumer, in line order, on the calling thread. The last event is
+     * an EndOfStreamEvent. The size of the chunks parsed ahead of the consumer is bounded, so the events of the whole
+     * file are never held in memory at the same time, unless the consumer keeps them.
+     *
+     * @param query passed to the parsers. May be null.
+     *
+     * @exception IllegalArgumentException on null file or consumer.
+     * @exception ParsingException the first exception thrown by a chunk parser, in line order. The events of the
+     * chunks that precede the failed chunk have been delivered.
+     */
+    public void parse(File file, Query query, Consumer<? super Event> consumer) throws IOException, ParsingException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("null consumer");
+        }
+
+        if (!file.isFile()) {
+
+            throw new IOException("no such file: " + file);
+        }
+
+        long[] starts = split(file);
+
+        int chunks = starts.length - 1;
+
+        //
+        // parse, keeping at most maxInFlightBytes worth of chunks submitted and not delivered, but at least one chunk
+        //
+
+        ArrayDeque<ChunkParsing> inFlight = new ArrayDeque<>();
+
+        long inFlightBytes = 0;
+
+        //
+        // the number of lines that precede the next chunk to be delivered
+        //
+
+        long precedingLines = 0;
+
+        int next = 0;
+
+        try {
+
+            while(next < chunks || !inFlight.isEmpty()) {
+
+                while(next < chunks &&
+                        (inFlight.isEmpty() || inFlightBytes + starts[next + 1] - starts[next] <= maxInFlightBytes)) {
+
+                    ChunkParsing c = new ChunkParsing(file, next, starts[next], starts[next + 1], 0L, query);
+                    c.future = pool.submit(c);
+                    inFlight.add(c);
+                    inFlightBytes += c.end - c.start;
+                    next ++;
+                }
+
+                ChunkParsing c = inFlight.poll();
+
+                inFlightBytes -= c.end - c.start;
+
+                ChunkParsing.Result r;
+
+                try {
+
+                    r = get(c.future);
+                }
+                catch(ParsingException e) {
+
+                    //
+                    // the exception carries line numbers relative to the chunk; parse the chunk again with absolute
+                    // line numbers, which are now known, the second attempt usually fails the same way
+                    //
+
+                    c = new ChunkParsing(file, c.index, c.start, c.end, precedingLines, query);
+                    r = c.call();
+                }
+
+                List<Event> events = r.events;
+
+                long delta = precedingLines - c.precedingLines;
+
+                for(int i = 0; i < events.size(); i ++) {
+
+                    Event e = events.get(i);
+
+                    if (delta != 0) {
+
+                        long lineNumber = e.getLineNumber(-1L);
+
+                        if (lineNumber != -1L) {
+
+                            e.setLineNumber(lineNumber + delta);
+                        }
+                    }
+
+                    consumer.accept(e);
+                }
+
+                precedingLines += r.lineCount;
+            }
+        }
+        finally {
+
+            for(ChunkParsing c: inFlight) {
+
+                c.future.cancel(true);
+            }
+        }
+
+        consumer.accept(new EndOfStreamEvent());
+    }
+
+    /**
+     * @return the approximate chunk size, in bytes.
+     */
+    public long getChunkSize() {
+
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize the approximate chunk size, in bytes. The chunks are extended to the end of the line.
+     *
+     * @exception IllegalArgumentException on non-positive size.
+     */
+    public void setChunkSize(long chunkSize) {
+
+        if (chunkSize <= 0) {
+
+            throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the maximum total size, in bytes, of the chunks submitted for parsing and not delivered yet.
+     */
+    public long getMaxInFlightBytes() {
+
+        return maxInFlightBytes;
+    }
+
+    /**
+     * The events built from the chunks that were submitted for parsing, but not delivered yet, are held in memory, so
+     * the bound limits the memory used by the parser, in proportion to the size of the events the parser builds from
+     * the same bytes. One chunk is always in flight, regardless of the bound. For the pool to be fully used, the bound
+     * should allow for at least parallelism chunks.
+     *
+     * @exception IllegalArgumentException on non-positive size.
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+
+        if (maxInFlightBytes <= 0) {
+
+            throw new IllegalArgumentException("invalid in-flight byte count: " + maxInFlightBytes);
+        }
+
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public Charset getCharset() {
+
+        return charset;
+    }
+
+    /**
+     * @exception IllegalArgumentException on null charset.
+     */
+    public void setCharset(Charset charset) {
+
+        if (charset == null) {
+
+            throw new IllegalArgumentException("null charset");
+        }
+
+        this.charset = charset;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ParallelFileParser[" + chunkSize + ", " + maxInFlightBytes + ", " + pool.getParallelism() + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the chunk boundaries: the offset of the first line of each chunk, followed by the file size.
+     */
+    long[] split(File file) throws IOException {
+
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = ch.size();
+
+            List<Long> starts = new ArrayList<>();
+            starts.add(0L);
+
+            long start = 0;
+
+            while(true) {
+
+                start = nextLineStart(ch, Math.max(start + chunkSize, start + 1), size);
+
+                if (start >= size) {
+
+                    break;
+                }
+
+                starts.add(start);
+            }
+
+            long[] result = new long[starts.size() + 1];
+
+            for(int i = 0; i < starts.size(); i ++) {
+
+                result[i] = starts.get(i);
+            }
+
+            result[starts.size()] = size;
+
+            return result;
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the offset of the first line that starts at or after the given offset, or the file size if there is none.
+     */
+    private static long nextLineStart(FileChannel ch, long offset, long size) throws IOException {
+
+        if (offset >= size) {
+
+            return size;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+
+        //
+        // the offset is a line start if it follows a new line
+        //
+
+        long position = offset - 1;
+
+        while(position < size) {
+
+            buffer.clear();
+
+            int read = ch.read(buffer, position);
+
+            if (read <= 0) {
+
+                break;
+            }
+
+            for(int i = 0; i < read; i ++) {
+
+                if (buffer.get(i) == '\n') {
+
+                    return position + i + 1;
+                }
+            }
+
+            position += read;
+        }
+
+        return size;
+    }
+
+    private static <T> T get(Future<T> f) throws IOException, ParsingException {
+
+        try {
+
+            return f.get();
+        }
+        catch(InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while parsing");
+        }
+        catch(ExecutionException e) {
+
+            Throwable cause = e.getCause();
+
+            //
+            // the fork-join pool wraps the checked exceptions thrown by the tasks in RuntimeExceptions
+            //
+
+            for(Throwable t = cause; t != null; t = t.getCause()) {
+
+                if (t instanceof ParsingException) {
+
+                    throw (ParsingException)t;
+                }
+                else if (t instanceof IOException) {
+
+                    throw (IOException)t;
+                }
+            }
+
+            if (cause instanceof RuntimeException) {
+
+                throw (RuntimeException)cause;
+            }
+            else if (cause instanceof Error) {
+
+                throw (Error)cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the events that start within a chunk, and counts the lines that start within the chunk.
+     */
+    private class ChunkParsing implements Callable<ChunkParsing.Result> {
+
+        private final File file;
+        private final int index;
+        private final long start;
+        private final long end;
+        private final long precedingLines;
+        private final Query query;
+
+        //
+        // set when submitted, accessed from the merging thread only
+        //
+        private Future<Result> future;
+
+        /**
+         * @param precedingLines the number of lines that precede the chunk, 0 if not known yet, in which case the line
+         *                       numbers are relative to the beginning of the chunk.
+         */
+        ChunkParsing(File file, int index, long start, long end, long precedingLines, Query query) {
+
+            this.file = file;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.precedingLines = precedingLines;
+            this.query = query;
+        }
+
+        @Override
+        public Result call() throws IOException, ParsingException {
+
+            ParserBase parser = parserFactory.get();
+
+            if (parser == null) {
+
+                throw new IllegalStateException("the parser factory produced a null parser");
+            }
+
+            final List<Event> events = new ArrayList<>();
+
+            //
+            // the end of the stream is signaled by the enclosing parse(), after the last chunk
+            //
+
+            EventSink sink = new EventSink() {
+
+                @Override
+                public void emit(Event event) {
+
+                    events.add(event);
+                }
+
+                @Override
+                public void endOfStream() {
+
+                    // noop
+                }
+            };
+
+            //
+            // the number of lines that start within the chunk
+            //
+
+            long lineCount = 0;
+
+            try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+                LineReader reader = new LineReader(ch, start, charset);
+
+                String line = reader.readLine();
+
+                if (index > 0) {
+
+                    //
+                    // skip the tail of the event in progress, it is parsed by the previous chunk's parser
+                    //
+
+                    while(line != null && !parser.isEventStart(line)) {
+
+                        lineCount ++;
+
+                        if (reader.position() >= end) {
+
+                            return new Result(events, lineCount);
+                        }
+
+                        line = reader.readLine();
+                    }
+                }
+
+                if (line == null) {
+
+                    return new Result(events, lineCount);
+                }
+
+                parser.setLineNumber(precedingLines + lineCount);
+
+                lineCount ++;
+
+                while(true) {
+
+                    parser.parse(line, query, sink);
+
+                    long position = reader.position();
+
+                    line = reader.readLine();
+
+                    if (line == null) {
+
+                        break;
+                    }
+
+                    if (position < end) {
+
+                        lineCount ++;
+                    }
+                    else if (parser.isEventStart(line)) {
+
+                        //
+                        // the event starts in the next chunk
+                        //
+
+                        break;
+                    }
+                }
+            }
+
+            parser.close(sink);
+
+            return new Result(events, lineCount);
+        }
+
+        private class Result {
+
+            private final List<Event> events;
+            private final long lineCount;
+
+            Result(List<Event> events, long lineCount) {
+
+                this.events = events;
+                this.lineCount = lineCount;
+            }
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ package io.novaordis.events.api.parser;
 
 import java.util.List;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.query.Query;
 import io.novaordis.utilities.parsing.ParsingException;
@@ -29,7 +30,7 @@ import io.novaordis.utilities.parsing.ParsingException;
  * line contains multiple events.
  *
  * An implementation should first consider extending ParserBase, where some of the expected generic behavior is already
- * implemented, and implement parseInternal() and closeInternal().
+ * implemented, and implement parse(long, String, Query) and close(long), or their EventSink variants.
  *
  * The implementations must count lines internally, and rely on the fact that *all* lines from the external text
  * stream are being provided for processing via parse().
@@ -64,6 +65,23 @@ public interface Parser {
      */
     List<Event> parse(String line, Query query) throws ParsingException;
 
+    /**
+     * Same as parse(String, Query), for a line provided as a CharSequence, usually a view over a read buffer, which
+     * saves creating a String per line. The content of the view changes after the invocation returns, so the
+     * implementations must not retain it, or any subSequence() of it: the values that are kept must be copied with
+     * toString(). In particular, lazy properties must not be created over the view.
+     *
+     * The default implementation converts the line to a String and delegates to parse(String, Query).
+     *
+     * @see LineSource
+     *
+     * @exception IllegalStateException if invoked on a closed parser.
+     */
+    default List<Event> parse(CharSequence line, Query query) throws ParsingException {
+
+        return parse(line == null ? null : line.toString(), query);
+    }
+
     /**
      * Processes the remaining accumulated state and closes the parser. A parser that was closed cannot be re-used,
      * an attempt to invoke parse() on it will throw IllegalStateException. The last event returned by the close()
@@ -74,6 +92,129 @@ public interface Parser {
      */
     List<Event> close() throws ParsingException;
 
+    /**
+     * The push variant of parse(String, Query): the events that could be completely parsed are emitted into the sink,
+     * instead of being returned in a list, so no list is allocated per line.
+     *
+     * The default implementation is an adapter that emits the events returned by parse(String, Query), so it still
+     * allocates the list. ParserBase sub-classes may avoid it.
+     *
+     * @exception IllegalStateException if invoked on a closed parser.
+     * @exception IllegalArgumentException on null sink.
+     */
+    default void parse(String line, Query query, EventSink sink) throws ParsingException {
+
+        if (sink == null) {
+
+            throw new IllegalArgumentException("null sink");
+        }
+
+        List<Event> events = parse(line, query);
+
+        for(int i = 0; i < events.size(); i ++) {
+
+            sink.emit(events.get(i));
+        }
+    }
+
+    /**
+     * The push variant of parse(CharSequence, Query). The same restrictions on retaining the line apply.
+     *
+     * The default implementation is an adapter that emits the events returned by parse(CharSequence, Query).
+     *
+     * @exception IllegalStateException if invoked on a closed parser.
+     * @exception IllegalArgumentException on null sink.
+     */
+    default void parse(CharSequence line, Query query, EventSink sink) throws ParsingException {
+
+        if (sink == null) {
+
+            throw new IllegalArgumentException("null sink");
+        }
+
+        List<Event> events = parse(line, query);
+
+        for(int i = 0; i < events.size(); i ++) {
+
+            sink.emit(events.get(i));
+        }
+    }
+
+    /**
+     * The push variant of close(): emits the events built from the remaining accumulated state into the sink, closes
+     * the parser, then invokes endOfStream() on the sink. The sink receives no EndOfStreamEvent, the sink decides
+     * how to represent the end of the stream. Redundant invocations after the parser was closed do nothing.
+     *
+     * The default implementation is an adapter over close(): it emits the returned events, and translates the
+     * EndOfStreamEvent into an endOfStream() invocation. Since a redundant close() returns no EndOfStreamEvent, a
+     * redundant invocation does not notify the sink.
+     *
+     * @exception IllegalArgumentException on null sink.
+     *
+     * @see EventListSink
+     */
+    default void close(EventSink sink) throws ParsingException {
+
+        if (sink == null) {
+
+            throw new IllegalArgumentException("null sink");
+        }
+
+        List<Event> events = close();
+
+        for(int i = 0; i < events.size(); i ++) {
+
+            Event e = events.get(i);
+
+            if (e instanceof EndOfStreamEvent) {
+
+                sink.endOfStream();
+            }
+            else {
+
+                sink.emit(e);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the parser's progress, which can be used to resume the parsing with a new parser instance,
+     * after a restart. Must be invoked between lines, from the parsing thread.
+     *
+     * @param position the byte offset, in the text stream, of the first line that was not passed to the parser yet.
+     *                 The parser does not know the offsets, they are provided by the line source.
+     *
+     * Checkpoints are opt-in: the default implementation throws IllegalStateException, as a parser that does not
+     * know how to save its accumulated state would silently lose it.
+     *
+     * @exception IllegalArgumentException on negative position.
+     * @exception IllegalStateException if invoked on a closed parser, or if the parser cannot save its state.
+     */
+    default ParserCheckpoint checkpoint(long position) {
+
+        throw new IllegalStateException(getClass().getName() + " does not support checkpoints");
+    }
+
+    /**
+     * Restores the progress saved by checkpoint(long) in a parser that has not processed any lines yet: the line
+     * numbering and the accumulated state. The caller is responsible for resuming the text stream at the checkpoint
+     * position.
+     *
+     * The default implementation throws IllegalArgumentException, see checkpoint(long).
+     *
+     * @exception IllegalArgumentException on null checkpoint, or if the state cannot be restored by this parser.
+     * @exception IllegalStateException if the parser already processed lines, or it is closed.
+     */
+    default void restore(ParserCheckpoint checkpoint) {
+
+        if (checkpoint == null) {
+
+            throw new IllegalArgumentException("null checkpoint");
+        }
+
+        throw new IllegalArgumentException(getClass().getName() + " does not support checkpoints");
+    }
+
     /**
      * @return the 1-based line number of the last successfully or unsuccessfully parsed line. Return 0 if no lines
      * were processed yet. If the parser is closed, returns the number of the last line in the text stream.
@@ -20,9 +20,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
+import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.query.Query;
 import io.novaordis.utilities.parsing.ParsingException;
 
@@ -42,11 +45,16 @@ public abstract class ParserBase implements Parser {
 
     private AtomicLong lineNumber;
 
+    private boolean recycling;
+
+    private List<EventPool<?>> eventPools;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     protected ParserBase() {
 
         lineNumber = new AtomicLong(0);
+        eventPools = new ArrayList<>();
     }
 
     // Parser implementation -------------------------------------------------------------------------------------------
@@ -62,6 +70,21 @@ public abstract class ParserBase implements Parser {
         return parse(lineNumber.incrementAndGet(), line, query);
     }
 
+    @Override
+    public List<Event> parse(CharSequence line, Query query) throws ParsingException {
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        return parse(lineNumber.incrementAndGet(), line, query);
+    }
+
+    /**
+     * Delivers the events through an EventListSink, so the events are the same as those emitted by close(EventSink),
+     * followed by an EndOfStreamEvent.
+     */
     @Override
     public List<Event> close() throws ParsingException {
 
@@ -74,25 +97,85 @@ public abstract class ParserBase implements Parser {
             return Collections.emptyList();
         }
 
-        List<Event> result = close(lineNumber.get());
+        EventListSink sink = new EventListSink();
 
-        List<Event> resultWithEndOfStream = new ArrayList<>(result.size() + 1);
+        close(sink);
 
-        for(Event e: result) {
+        return sink.drain();
+    }
 
-            if (e instanceof EndOfStreamEvent) {
+    @Override
+    public void parse(String line, Query query, EventSink sink) throws ParsingException {
 
-                throw new IllegalStateException("the sub-class must not return EndOfStream");
-            }
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        if (sink == null) {
+
+            throw new IllegalArgumentException("null sink");
+        }
+
+        parse(lineNumber.incrementAndGet(), line, query, sink);
+    }
+
+    @Override
+    public void parse(CharSequence line, Query query, EventSink sink) throws ParsingException {
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        if (sink == null) {
 
-            resultWithEndOfStream.add(e);
+            throw new IllegalArgumentException("null sink");
         }
 
-        resultWithEndOfStream.add(new EndOfStreamEvent());
+        parse(lineNumber.incrementAndGet(), line, query, sink);
+    }
+
+    @Override
+    public void close(final EventSink sink) throws ParsingException {
+
+        if (sink == null) {
+
+            throw new IllegalArgumentException("null sink");
+        }
+
+        //
+        // protect against redundant calls, the sink was already notified on the first close() call
+        //
+
+        if (closed) {
+
+            return;
+        }
+
+        close(lineNumber.get(), new EventSink() {
+
+            @Override
+            public void emit(Event event) {
+
+                if (event instanceof EndOfStreamEvent) {
+
+                    throw new IllegalStateException("the sub-class must not return EndOfStream");
+                }
+
+                sink.emit(event);
+            }
+
+            @Override
+            public void endOfStream() {
+
+                throw new IllegalStateException("the sub-class must not signal the end of the stream");
+            }
+        });
 
         closed = true;
 
-        return resultWithEndOfStream;
+        sink.endOfStream();
     }
 
     @Override
@@ -101,8 +184,117 @@ public abstract class ParserBase implements Parser {
         return lineNumber.get();
     }
 
+    @Override
+    public ParserCheckpoint checkpoint(long position) {
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        return new ParserCheckpoint(position, lineNumber.get(), saveState());
+    }
+
+    @Override
+    public void restore(ParserCheckpoint checkpoint) {
+
+        if (checkpoint == null) {
+
+            throw new IllegalArgumentException("null checkpoint");
+        }
+
+        setLineNumber(checkpoint.getLineNumber());
+        restoreState(checkpoint.getState());
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * Opt-in event recycling. When enabled, the event pools created by the subclass via createEventPool() start
+     * pooling: the consumers are expected to return the events they do not keep (for example, those rejected by
+     * a query) with EventPool.recycle(), or Query.filterAndRecycle(), on the parsing thread. Disabled by default.
+     *
+     * @see EventPool
+     */
+    public void setRecycling(boolean recycling) {
+
+        this.recycling = recycling;
+
+        for(EventPool<?> p: eventPools) {
+
+            p.setCapacity(recycling ? EventPool.DEFAULT_CAPACITY : 0);
+        }
+    }
+
+    public boolean isRecycling() {
+
+        return recycling;
+    }
+
+    /**
+     * Positions the parser within the text stream: the next line passed to parse() is numbered lineNumber + 1. Used
+     * when the parser is handed a fragment of a stream, so the lines are numbered relative to the whole stream.
+     *
+     * @param lineNumber the number of lines that precede the fragment in the stream.
+     *
+     * @exception IllegalArgumentException on negative line number.
+     * @exception IllegalStateException if the parser already processed lines, or it is closed.
+     *
+     * @see ParallelFileParser
+     */
+    public void setLineNumber(long lineNumber) {
+
+        if (lineNumber < 0) {
+
+            throw new IllegalArgumentException("invalid line number: " + lineNumber);
+        }
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        if (!this.lineNumber.compareAndSet(0, lineNumber)) {
+
+            throw new IllegalStateException(this + " already processed lines");
+        }
+    }
+
+    /**
+     * Resynchronization hook, used when the parser is handed a fragment of a text stream that may start in the middle
+     * of an event. The lines that precede the first event start are skipped, as they belong to the event in progress
+     * at the end of the previous fragment, which is completed by the parser handling that fragment.
+     *
+     * Parsers whose events span multiple lines must override this method and return false for continuation lines
+     * (stack trace lines, the lines following a garbage collection event header, etc.) The implementation must not
+     * change the state of the parser, and it may be invoked on lines that are never passed to parse().
+     *
+     * @return true if the line may be the first line of an event. The default implementation returns true: each line
+     * is assumed to start a new event.
+     *
+     * @see ParallelFileParser
+     */
+    public boolean isEventStart(String line) {
+
+        return true;
+    }
+
+    /**
+     * Time-range pushdown hook, used to locate the events of a time interval in a time-ordered text stream without
+     * parsing it. The implementation should extract the timestamp cheaply, without building the event. It must not
+     * change the state of the parser, and it may be invoked on lines that are never passed to parse().
+     *
+     * @return the timestamp of the event that starts on the given line, as POSIX time in milliseconds, or
+     * Long.MIN_VALUE if the line does not carry a timestamp (a continuation line, for example). The default
+     * implementation returns Long.MIN_VALUE: the parser does not support time-range pushdown.
+     *
+     * @see TimeRangeFileParser
+     */
+    public long timestampOf(String line) {
+
+        return Long.MIN_VALUE;
+    }
+
     @Override
     public String toString() {
 
@@ -127,9 +319,55 @@ public abstract class ParserBase implements Parser {
      *              drop the rest of the processing if the time stamp does not match the query. May be null.
      *
      * @param lineNumber the line number, as managed by superclass.
+     *
+     * @see SinkParserBase
      */
     protected abstract List<Event> parse(long lineNumber, String line, Query query) throws ParsingException;
 
+    /**
+     * The push variant of parse(long, String, Query): the events are emitted into the sink as soon as they are
+     * complete, instead of being returned in a list. Parsers that override it do not allocate a list per line.
+     *
+     * The default implementation emits the events returned by parse(long, String, Query). Parsers that produce their
+     * events in the sink natively should extend SinkParserBase.
+     *
+     * @param sink never null.
+     *
+     * @see Parser#parse(String, Query, EventSink)
+     */
+    protected void parse(long lineNumber, String line, Query query, EventSink sink) throws ParsingException {
+
+        emit(parse(lineNumber, line, query), sink);
+    }
+
+    /**
+     * The CharSequence variant of parse(long, String, Query). The line is usually a view over a read buffer, whose
+     * content changes after the invocation returns, so it must not be retained.
+     *
+     * The default implementation creates a String and delegates to parse(long, String, Query). Parsers that can work
+     * on the CharSequence directly should override it, to avoid creating a String per line.
+     *
+     * @see Parser#parse(CharSequence, Query)
+     */
+    protected List<Event> parse(long lineNumber, CharSequence line, Query query) throws ParsingException {
+
+        return parse(lineNumber, line == null ? null : line.toString(), query);
+    }
+
+    /**
+     * The push variant of parse(long, CharSequence, Query). The default implementation emits the events returned by
+     * parse(long, CharSequence, Query), so push parsers that work on the CharSequence directly should override this
+     * method as well.
+     *
+     * @param sink never null.
+     *
+     * @see Parser#parse(CharSequence, Query, EventSink)
+     */
+    protected void parse(long lineNumber, CharSequence line, Query query, EventSink sink) throws ParsingException {
+
+        emit(parse(lineNumber, line, query), sink);
+    }
+
     /**
      * Process the remaining accumulated state. The super close() will actually close the parser and issue the
      * EnoOfStream as the last event in the event stream.
@@ -144,8 +382,88 @@ public abstract class ParserBase implements Parser {
      */
     protected abstract List<Event> close(long lineNumber) throws ParsingException;
 
+    /**
+     * The push variant of close(long). The implementation must not emit an EndOfStreamEvent, nor invoke
+     * endOfStream() on the sink, handling the end of the stream is THIS layer's job.
+     *
+     * The default implementation emits the events returned by close(long).
+     *
+     * @param sink never null.
+     *
+     * @see Parser#close(EventSink)
+     */
+    protected void close(long lineNumber, EventSink sink) throws ParsingException {
+
+        emit(close(lineNumber), sink);
+    }
+
+    /**
+     * Serializes the state the parser accumulated from the lines processed so far, usually the partially assembled
+     * multi-line event, so it can be restored with restoreState() in a new parser instance.
+     *
+     * Checkpoints are opt-in: the default implementation throws IllegalStateException, so checkpoint(long) fails
+     * instead of silently losing a partially assembled event. Parsers that build each event from a single line opt in
+     * by overriding this method to return null. Parsers that accumulate state across lines must override both
+     * saveState() and restoreState().
+     *
+     * @return the serialized state, or null if there is no accumulated state.
+     *
+     * @exception IllegalStateException if the state cannot be saved.
+     *
+     * @see Parser#checkpoint(long)
+     */
+    protected byte[] saveState() {
+
+        throw new IllegalStateException(getClass().getName() + " does not support checkpoints");
+    }
+
+    /**
+     * Restores the state serialized by saveState(). Invoked before the parser processes any line.
+     *
+     * The default implementation only accepts null.
+     *
+     * @param state may be null, if the parser had no accumulated state.
+     *
+     * @exception IllegalArgumentException if the state cannot be restored.
+     *
+     * @see Parser#restore(ParserCheckpoint)
+     */
+    protected void restoreState(byte[] state) {
+
+        if (state != null) {
+
+            throw new IllegalArgumentException(getClass().getName() + " cannot restore parser state");
+        }
+    }
+
+    /**
+     * Creates an event pool owned by this parser. Subclasses that want to support recycling should create one pool per
+     * event type, and obtain their events from it instead of instantiating them directly. The pool only pools events
+     * while recycling is enabled on the parser.
+     *
+     * @see ParserBase#setRecycling(boolean)
+     */
+    protected <E extends GenericEvent> EventPool<E> createEventPool(Supplier<E> factory) {
+
+        EventPool<E> p = new EventPool<>(factory, recycling ? EventPool.DEFAULT_CAPACITY : 0);
+        eventPools.add(p);
+        return p;
+    }
+
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private static void emit(List<Event> events, EventSink sink) {
+
+        //
+        // indexed, the lists returned by the sub-classes are usually array lists, this saves an iterator per line
+        //
+
+        for(int i = 0; i < events.size(); i ++) {
+
+            sink.emit(events.get(i));
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the progress of a parser through a text stream, which allows resuming the parsing after a
+ * restart without re-reading the input that was already processed. The snapshot contains:
+ *
+ * 1. The byte offset in the stream of the first line that was not passed to the parser yet.
+ *
+ * 2. The number of lines passed to the parser so far.
+ *
+ * 3. The parser's own state, opaque to this class: usually the partially assembled multi-line event. Null if the
+ * parser had no accumulated state.
+ *
+ * 4. Optionally, a checksum of the stream content that precedes the position, which allows the reader of a file to
+ * verify, before resuming, that the file is the same one the checkpoint was taken on, and not a file that was
+ * replaced meanwhile, with different content, at the same path.
+ *
+ * The serialized form is compact: a header, the two numbers and the state bytes.
+ *
+ * @see Parser#checkpoint(long)
+ * @see Parser#restore(ParserCheckpoint)
+ * @see CheckpointWriter
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParserCheckpoint {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // "EVCP"
+    //
+    private static final int MAGIC = 0x45564350;
+
+    private static final byte VERSION = 2;
+
+    public static final long NO_CHECKSUM = -1L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null array, or if the array does not contain a valid checkpoint.
+     */
+    public static ParserCheckpoint fromByteArray(byte[] bytes) {
+
+        if (bytes == null) {
+
+            throw new IllegalArgumentException("null byte array");
+        }
+
+        try {
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if (in.readInt() != MAGIC) {
+
+                throw new IllegalArgumentException("invalid checkpoint: bad header");
+            }
+
+            byte version = in.readByte();
+
+            if (version != VERSION && version != 1) {
+
+                throw new IllegalArgumentException("invalid checkpoint: unsupported version " + version);
+            }
+
+            long position = in.readLong();
+            long lineNumber = in.readLong();
+
+            //
+            // version 1 checkpoints do not carry a checksum
+            //
+
+            long checksum = version == 1 ? NO_CHECKSUM : in.readLong();
+
+            int stateLength = in.readInt();
+
+            byte[] state = null;
+
+            if (stateLength >= 0) {
+
+                state = new byte[stateLength];
+                in.readFully(state);
+            }
+
+            if (in.read() != -1) {
+
+                throw new IllegalArgumentException("invalid checkpoint: trailing bytes");
+            }
+
+            return new ParserCheckpoint(position, lineNumber, state, checksum);
+        }
+        catch(IOException e) {
+
+            throw new IllegalArgumentException("invalid checkpoint: truncated", e);
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final long position;
+    private final long lineNumber;
+    private final byte[] state;
+    private final long checksum;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * A checkpoint without a checksum.
+     *
+     * @param state the parser state. May be null. The array is copied.
+     *
+     * @exception IllegalArgumentException on negative position or line number.
+     */
+    public ParserCheckpoint(long position, long lineNumber, byte[] state) {
+
+        this(position, lineNumber, state, NO_CHECKSUM);
+    }
+
+    /**
+     * @param state the parser state. May be null. The array is copied.
+     * @param checksum the checksum of the content that precedes the position, or NO_CHECKSUM. The checksum is opaque
+     *                 to this class, it is computed and verified by the reader of the stream.
+     *
+     * @exception IllegalArgumentException on negative position or line number.
+     */
+    public ParserCheckpoint(long position, long lineNumber, byte[] state, long checksum) {
+
+        if (position < 0) {
+
+            throw new IllegalArgumentException("invalid position: " + position);
+        }
+
+        if (lineNumber < 0) {
+
+            throw new IllegalArgumentException("invalid line number: " + lineNumber);
+        }
+
+        this.position = position;
+        this.lineNumber = lineNumber;
+        this.state = state == null ? null : state.clone();
+        this.checksum = checksum;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the byte offset of the first line that was not passed to the parser.
+     */
+    public long getPosition() {
+
+        return position;
+    }
+
+    /**
+     * @return the number of lines passed to the parser.
+     */
+    public long getLineNumber() {
+
+        return lineNumber;
+    }
+
+    /**
+     * @return a copy of the parser state, or null if the parser had no accumulated state.
+     */
+    public byte[] getState() {
+
+        return state == null ? null : state.clone();
+    }
+
+    /**
+     * @return the checksum of the content that precedes the position, or NO_CHECKSUM if the checkpoint does not carry
+     * one.
+     */
+    public long getChecksum() {
+
+        return checksum;
+    }
+
+    public byte[] toByteArray() {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(33 + (state == null ? 0 : state.length));
+
+        try {
+
+            DataOutputStream out = new DataOutputStream(baos);
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(position);
+            out.writeLong(lineNumber);
+            out.writeLong(checksum);
+
+            if (state == null) {
+
+                out.writeInt(-1);
+            }
+            else {
+
+                out.writeInt(state.length);
+                out.write(state);
+            }
+
+            out.flush();
+        }
+        catch(IOException e) {
+
+            //
+            // not thrown by ByteArrayOutputStream
+            //
+
+            throw new IllegalStateException(e);
+        }
+
+        return baos.toByteArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+
+            return true;
+        }
+
+        if (!(o instanceof ParserCheckpoint)) {
+
+            return false;
+        }
+
+        ParserCheckpoint that = (ParserCheckpoint)o;
+
+        return position == that.position && lineNumber == that.lineNumber && checksum == that.checksum &&
+                Arrays.equals(state, that.state);
+    }
+
+    @Override
+    public int hashCode() {
+
+        int h = 31 * Long.hashCode(position) + Long.hashCode(lineNumber);
+        h = 31 * h + Long.hashCode(checksum);
+        return 31 * h + Arrays.hashCode(state);
+    }
+
+    @Override
+    public String toString() {
+
+        return "ParserCheckpoint[position=" + position + ", line=" + lineNumber +
+                (state == null ? "" : ", state=" + state.length + " bytes") +
+                (checksum == NO_CHECKSUM ? "" : ", checksum=" + Long.toHexString(checksum)) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,612 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.ShutdownEvent;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * Runs the reading, the parsing and the consumption of a text stream on three separate threads, so slow reads do not
+ * stall parsing, and slow consumers do not stall reading until the buffers fill up. The reader thread passes lines to
+ * the parser thread, and the parser thread passes events to the consumer thread, through bounded single-producer/
+ * single-consumer ring buffers. The buffers are taken from in batches. When the consumer lags, the buffers fill up and
+ * the upstream threads block: the memory used by a driver is bounded by the ring capacity.
+ *
+ * The consumer receives the events in stream order, on the consumer thread. The last event is either:
+ *
+ * 1. An EndOfStreamEvent, if the stream was read and parsed completely.
+ *
+ * 2. A ShutdownEvent, if the driver was shut down, or a stage failed. In the latter case, await() throws the failure.
+ *
+ * A driver instance runs once.
+ *
+ * @see Parser#parse(String, Query, EventSink)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParserDriver {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_RING_CAPACITY = 4096;
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    //
+    // the line ring markers, compared by identity
+    //
+    private static final Object END_OF_LINES = new Object();
+    private static final Object LINES_ABORTED = new Object();
+
+    //
+    // the event ring marker that follows the last event, compared by identity. The consumer thread exits on it, not on
+    // the event type, so an EndOfStreamEvent or a ShutdownEvent produced by the parser does not stall the pipeline
+    //
+    private static final Object END_OF_EVENTS = new Object();
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Parser parser;
+    private final Query query;
+    private final Consumer<? super Event> consumer;
+
+    private int ringCapacity;
+    private int batchSize;
+    private WaitStrategy waitStrategy;
+    private Charset charset;
+
+    private volatile boolean shutdown;
+
+    private final AtomicReference<Throwable> failure;
+
+    private Thread[] threads;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param query passed to the parser. May be null.
+     *
+     * @exception IllegalArgumentException on null parser or consumer.
+     */
+    public ParserDriver(Parser parser, Query query, Consumer<? super Event> consumer) {
+
+        if (parser == null) {
+
+            throw new IllegalArgumentException("null parser");
+        }
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("null consumer");
+        }
+
+        this.parser = parser;
+        this.query = query;
+        this.consumer = consumer;
+        this.ringCapacity = DEFAULT_RING_CAPACITY;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.waitStrategy = WaitStrategy.BLOCKING;
+        this.charset = StandardCharsets.UTF_8;
+        this.failure = new AtomicReference<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts the reader, parser and consumer threads, and returns. The stream is closed by the reader thread.
+     *
+     * @exception IllegalArgumentException on null stream.
+     * @exception IllegalStateException if the driver was already started.
+     */
+    public synchronized void start(InputStream in) {
+
+        if (in == null) {
+
+            throw new IllegalArgumentException("null input stream");
+        }
+
+        if (threads != null) {
+
+            throw new IllegalStateException(this + " already started");
+        }
+
+        RingBuffer<Object> lines = new RingBuffer<>(ringCapacity, waitStrategy);
+        RingBuffer<Object> events = new RingBuffer<>(ringCapacity, waitStrategy);
+
+        threads = new Thread[] {
+
+                new Thread(new Reader(in, lines), "events-reader"),
+                new Thread(new Parsing(lines, events), "events-parser"),
+                new Thread(new Consumption(events), "events-consumer"),
+        };
+
+        for(Thread t: threads) {
+
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Starts the driver on the content of the file, decompressed if the file is gzip-compressed. BGZF files are
+     * decompressed block-parallel in the common fork-join pool, ordinary gzip files on a dedicated thread that reads
+     * ahead of the reader thread.
+     *
+     * @see GzipInput#open(File)
+     *
+     * @exception IllegalArgumentException on null file.
+     * @exception IllegalStateException if the driver was already started.
+     */
+    public void start(File file) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        InputStream in = GzipInput.open(file);
+
+        try {
+
+            start(in);
+        }
+        catch(RuntimeException e) {
+
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until the consumer received the last event, and all threads exited.
+     *
+     * @exception IOException if the stream could not be read.
+     * @exception ParsingException if the parser failed.
+     * @exception IllegalStateException if the driver was not started.
+     */
+    public void await() throws InterruptedException, IOException, ParsingException {
+
+        Thread[] ts;
+
+        synchronized(this) {
+
+            ts = threads;
+        }
+
+        if (ts == null) {
+
+            throw new IllegalStateException(this + " not started");
+        }
+
+        for(Thread t: ts) {
+
+            t.join();
+        }
+
+        Throwable t = failure.get();
+
+        if (t == null) {
+
+            return;
+        }
+
+        if (t instanceof IOException) {
+
+            throw (IOException)t;
+        }
+        else if (t instanceof ParsingException) {
+
+            throw (ParsingException)t;
+        }
+        else if (t instanceof RuntimeException) {
+
+            throw (RuntimeException)t;
+        }
+        else if (t instanceof Error) {
+
+            throw (Error)t;
+        }
+
+        throw new IllegalStateException(t);
+    }
+
+    /**
+     * Starts the driver and waits for it to complete.
+     *
+     * @see ParserDriver#start(InputStream)
+     * @see ParserDriver#await()
+     */
+    public void run(InputStream in) throws InterruptedException, IOException, ParsingException {
+
+        start(in);
+        await();
+    }
+
+    /**
+     * Starts the driver on the content of the file, and waits for it to complete.
+     *
+     * @see ParserDriver#start(File)
+     * @see ParserDriver#await()
+     */
+    public void run(File file) throws InterruptedException, IOException, ParsingException {
+
+        start(file);
+        await();
+    }
+
+    /**
+     * Asks the driver to stop: the reader stops after the current line, the lines that were not parsed yet are
+     * discarded, and the consumer receives a ShutdownEvent after the events already produced. The parser is not
+     * closed. Returns immediately, use await() to wait for the threads to exit. A reader blocked in a read of the
+     * stream only notices the request after the read returns.
+     */
+    public void shutdown() {
+
+        shutdown = true;
+    }
+
+    public boolean isShutdown() {
+
+        return shutdown;
+    }
+
+    /**
+     * @return the failure of the first stage that failed, or null.
+     */
+    public Throwable getFailure() {
+
+        return failure.get();
+    }
+
+    /**
+     * @param capacity the capacity of each of the two ring buffers, rounded up to a power of two.
+     *
+     * @exception IllegalArgumentException on invalid capacity.
+     * @exception IllegalStateException if the driver was already started.
+     */
+    public synchronized void setRingCapacity(int capacity) {
+
+        if (capacity <= 0 || capacity > (1 << 30)) {
+
+            throw new IllegalArgumentException("invalid ring capacity: " + capacity);
+        }
+
+        checkNotStarted();
+        this.ringCapacity = capacity;
+    }
+
+    public synchronized int getRingCapacity() {
+
+        return ringCapacity;
+    }
+
+    /**
+     * @param batchSize the maximum number of elements a thread takes from a ring buffer at a time.
+     *
+     * @exception IllegalArgumentException on invalid batch size.
+     * @exception IllegalStateException if the driver was already started.
+     */
+    public synchronized void setBatchSize(int batchSize) {
+
+        if (batchSize <= 0) {
+
+            throw new IllegalArgumentException("invalid batch size: " + batchSize);
+        }
+
+        checkNotStarted();
+        this.batchSize = batchSize;
+    }
+
+    public synchronized int getBatchSize() {
+
+        return batchSize;
+    }
+
+    /**
+     * @exception IllegalArgumentException on null wait strategy.
+     * @exception IllegalStateException if the driver was already started.
+     */
+    public synchronized void setWaitStrategy(WaitStrategy waitStrategy) {
+
+        if (waitStrategy == null) {
+
+            throw new IllegalArgumentException("null wait strategy");
+        }
+
+        checkNotStarted();
+        this.waitStrategy = waitStrategy;
+    }
+
+    public synchronized WaitStrategy getWaitStrategy() {
+
+        return waitStrategy;
+    }
+
+    /**
+     * @exception IllegalArgumentException on null charset.
+     * @exception IllegalStateException if the driver was already started.
+     */
+    public synchronized void setCharset(Charset charset) {
+
+        if (charset == null) {
+
+            throw new IllegalArgumentException("null charset");
+        }
+
+        checkNotStarted();
+        this.charset = charset;
+    }
+
+    public synchronized Charset getCharset() {
+
+        return charset;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ParserDriver[" + parser + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void checkNotStarted() {
+
+        if (threads != null) {
+
+            throw new IllegalStateException(this + " already started");
+        }
+    }
+
+    /**
+     * Records the failure, if it is the first one, and stops the driver.
+     */
+    private void fail(Throwable t) {
+
+        failure.compareAndSet(null, t);
+        shutdown = true;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * How a thread waits on a full or an empty ring buffer.
+     */
+    public enum WaitStrategy {
+
+        //
+        // the thread parks, without a timeout, until it is unparked by the other side. Saves CPU, at the cost of a
+        // wake up latency
+        //
+        BLOCKING,
+
+        //
+        // the thread spins, yielding, until the other side makes progress. Lowest latency, but each waiting thread
+        // keeps a CPU busy
+        //
+        SPINNING,
+    }
+
+    private class Reader implements Runnable {
+
+        private final InputStream in;
+        private final RingBuffer<Object> lines;
+
+        Reader(InputStream in, RingBuffer<Object> lines) {
+
+            this.in = in;
+            this.lines = lines;
+        }
+
+        @Override
+        public void run() {
+
+            Object last = LINES_ABORTED;
+
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
+
+                String line;
+
+                while(!shutdown && (line = reader.readLine()) != null) {
+
+                    lines.put(line);
+                }
+
+                if (!shutdown) {
+
+                    last = END_OF_LINES;
+                }
+            }
+            catch(Throwable t) {
+
+                fail(t);
+            }
+            finally {
+
+                lines.put(last);
+            }
+        }
+    }
+
+    private class Parsing implements Runnable {
+
+        private final RingBuffer<Object> lines;
+        private final RingBuffer<Object> events;
+
+        Parsing(RingBuffer<Object> lines, RingBuffer<Object> events) {
+
+            this.lines = lines;
+            this.events = events;
+        }
+
+        @Override
+        public void run() {
+
+            EventSink sink = new EventSink() {
+
+                @Override
+                public void emit(Event event) {
+
+                    events.put(event);
+                }
+
+                @Override
+                public void endOfStream() {
+
+                    events.put(new EndOfStreamEvent());
+                }
+            };
+
+            Object[] batch = new Object[batchSize];
+
+            //
+            // after a shutdown request or a failure, the lines are drained and discarded until the reader's marker, so
+            // the reader is never left blocked on a full buffer
+            //
+
+            boolean discarding = false;
+
+            try {
+
+                while(true) {
+
+                    int count = lines.take(batch);
+
+                    discarding |= shutdown;
+
+                    for(int i = 0; i < count; i ++) {
+
+                        Object o = batch[i];
+                        batch[i] = null;
+
+                        if (o == END_OF_LINES && !discarding) {
+
+                            try {
+
+                                parser.close(sink);
+                            }
+                            catch(Throwable t) {
+
+                                fail(t);
+                                events.put(new ShutdownEvent());
+                            }
+
+                            return;
+                        }
+                        else if (o == END_OF_LINES || o == LINES_ABORTED) {
+
+                            events.put(new ShutdownEvent());
+                            return;
+                        }
+                        else if (discarding) {
+
+                            continue;
+                        }
+
+                        try {
+
+                            parser.parse((String)o, query, sink);
+                        }
+                        catch(Throwable t) {
+
+                            fail(t);
+                            discarding = true;
+                        }
+                    }
+                }
+            }
+            finally {
+
+                events.put(END_OF_EVENTS);
+            }
+        }
+    }
+
+    private class Consumption implements Runnable {
+
+        private final RingBuffer<Object> events;
+
+        Consumption(RingBuffer<Object> events) {
+
+            this.events = events;
+        }
+
+        @Override
+        public void run() {
+
+            Object[] batch = new Object[batchSize];
+
+            //
+            // after the consumer failed, the events are drained and discarded until the end marker, so the parser is
+            // never left blocked on a full buffer
+            //
+
+            boolean discarding = false;
+
+            while(true) {
+
+                int count = events.take(batch);
+
+                for(int i = 0; i < count; i ++) {
+
+                    Object o = batch[i];
+                    batch[i] = null;
+
+                    if (o == END_OF_EVENTS) {
+
+                        return;
+                    }
+                    else if (discarding) {
+
+                        continue;
+                    }
+
+                    try {
+
+                        consumer.accept((Event)o);
+                    }
+                    catch(Throwable t) {
+
+                        fail(t);
+                        discarding = true;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -16,7 +16,6 @@
 
 package io.novaordis.events.api.parser;
 
-import io.novaordis.events.api.event.BooleanProperty;
 import io.novaordis.events.api.event.Event;
 
 /**
@@ -26,10 +25,11 @@ import io.novaordis.events.api.event.Event;
  *
  * In order to avoid applying the query multiple times, we proceed as such:
  *
- * 1. If the parser used the query when parsing, it "marks" the event with a query-once=true Boolean property.
+ * 1. If the parser used the query when parsing, it "marks" the event by setting the QUERY_ONCE_FLAG in the event
+ * header. For compatibility, the event also carries a query-once=true Boolean property.
  *
- * 2. Each layer that wants to apply the query it first looks for "query-once". If found true, the query is assumed
- * satisfied.
+ * 2. Each layer that wants to apply the query it first checks the flag. If set, the query is assumed satisfied. The
+ * check is a header bit test, and does not involve property lookups.
  *
  * All API interaction must be conducted via this class, so the hack can be refactored easier, later.
  *
@@ -49,38 +49,17 @@ public class QueryOnce {
 
     public static void set(Event e, boolean queryOnce) {
 
-        if (!queryOnce) {
-
-            e.removeBooleanProperty("query-once");
-        }
-        else {
-
-            e.setBooleanProperty("query-once", true);
-        }
+        e.setFlag(Event.QUERY_ONCE_FLAG, queryOnce);
     }
 
     public static boolean isQueryOnce(Event e) {
 
-        BooleanProperty p = e.getBooleanProperty("query-once");
-
-        if (p == null) {
-
-            return false;
-        }
-
-        Boolean b = p.getBoolean();
-
-        if (b == null) {
-
-            return false;
-        }
-
-        return b;
+        return e.hasFlag(Event.QUERY_ONCE_FLAG);
     }
 
     public static void clear(Event e) {
 
-        e.removeBooleanProperty("query-once");
+        e.setFlag(Event.QUERY_ONCE_FLAG, false);
     }
 
     // Attributes ------------------------------------------------------------------------------------------------------
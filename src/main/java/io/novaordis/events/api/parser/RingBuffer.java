@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer/single-consumer ring buffer, whose slots are allocated when the buffer is created. The
+ * producer blocks when the buffer is full, which propagates backpressure upstream, and the consumer blocks when the
+ * buffer is empty. The consumer takes the available elements in batches, advancing the read position once per batch.
+ *
+ * Exactly one thread may invoke put(), and exactly one thread may invoke take(). The waits are not interruptible: the
+ * interrupted status is preserved and restored on return.
+ *
+ * With the BLOCKING strategy, a waiting thread parks without a timeout, and the other side unparks it after it moves
+ * its position. The waiting thread publishes itself in a volatile field and then re-reads the other side's position.
+ * The other side stores its position and then reads that field. Both use volatile accesses, so either the waiting
+ * thread sees the new position and does not park, or the other side sees the waiting thread and unparks it. A wake up
+ * cannot be missed. An unpark may reach a thread that already stopped waiting. That only causes one spurious return
+ * from a later park, and the wait loops re-check the position after every return.
+ *
+ * @see ParserDriver
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+class RingBuffer<E> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Object[] slots;
+    private final int mask;
+
+    private final ParserDriver.WaitStrategy waitStrategy;
+
+    //
+    // the position of the next element to take, only written by the consumer
+    //
+    private final AtomicLong head;
+
+    //
+    // the position of the next element to put, only written by the producer
+    //
+    private final AtomicLong tail;
+
+    //
+    // the producer's and the consumer's cached view of the other side's position, they save reading the other side's
+    // position on each operation
+    //
+    private long cachedHead;
+    private long cachedTail;
+
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param capacity rounded up to a power of two.
+     *
+     * @exception IllegalArgumentException on invalid capacity or null wait strategy.
+     */
+    RingBuffer(int capacity, ParserDriver.WaitStrategy waitStrategy) {
+
+        if (capacity <= 0 || capacity > (1 << 30)) {
+
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        if (waitStrategy == null) {
+
+            throw new IllegalArgumentException("null wait strategy");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+
+        if (size < capacity) {
+
+            size <<= 1;
+        }
+
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.head = new AtomicLong(0);
+        this.tail = new AtomicLong(0);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Blocks while the buffer is full. Producer thread only.
+     *
+     * @exception IllegalArgumentException on null element.
+     */
+    void put(E e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null element");
+        }
+
+        long t = tail.get();
+
+        if (t - cachedHead == slots.length) {
+
+            cachedHead = head.get();
+
+            if (t - cachedHead == slots.length) {
+
+                boolean interrupted = false;
+
+                while(t - cachedHead == slots.length) {
+
+                    interrupted |= awaitConsumer(t);
+                    cachedHead = head.get();
+                }
+
+                if (interrupted) {
+
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        slots[(int)t & mask] = e;
+
+        publish(tail, t + 1);
+
+        Thread w = waitingConsumer;
+
+        if (w != null) {
+
+            LockSupport.unpark(w);
+        }
+    }
+
+    /**
+     * Takes all available elements, up to the length of the batch array, blocking while the buffer is empty. Consumer
+     * thread only.
+     *
+     * @return the number of elements copied in the batch array, starting with index 0. Always at least 1.
+     */
+    @SuppressWarnings("unchecked")
+    int take(E[] batch) {
+
+        long h = head.get();
+
+        if (cachedTail - h < batch.length) {
+
+            //
+            // the cached view cannot fill the batch, there may be more
+            //
+
+            cachedTail = tail.get();
+
+            if (cachedTail == h) {
+
+                boolean interrupted = false;
+
+                while(cachedTail == h) {
+
+                    interrupted |= awaitProducer(h);
+                    cachedTail = tail.get();
+                }
+
+                if (interrupted) {
+
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        int count = (int)Math.min(batch.length, cachedTail - h);
+
+        for(int i = 0; i < count; i ++) {
+
+            int index = (int)(h + i) & mask;
+            batch[i] = (E)slots[index];
+            slots[index] = null;
+        }
+
+        publish(head, h + count);
+
+        Thread w = waitingProducer;
+
+        if (w != null) {
+
+            LockSupport.unpark(w);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the number of slots, the requested capacity rounded up to a power of two.
+     */
+    int getCapacity() {
+
+        return slots.length;
+    }
+
+    /**
+     * @return an estimate of the number of elements in the buffer, exact if invoked by the producer or the consumer
+     * while the other side is idle.
+     */
+    int size() {
+
+        return (int)(tail.get() - head.get());
+    }
+
+    ParserDriver.WaitStrategy getWaitStrategy() {
+
+        return waitStrategy;
+    }
+
+    @Override
+    public String toString() {
+
+        return "RingBuffer[" + size() + "/" + slots.length + ", " + waitStrategy + "]";
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void publish(AtomicLong position, long value) {
+
+        if (waitStrategy == ParserDriver.WaitStrategy.SPINNING) {
+
+            //
+            // the other side polls, an ordered store is sufficient
+            //
+
+            position.lazySet(value);
+        }
+        else {
+
+            //
+            // the full fence orders the store before the read of the other side's waiting thread, which closes the
+            // handshake described in the class comment
+            //
+
+            position.set(value);
+        }
+    }
+
+    /**
+     * @return true if the thread was interrupted while waiting. The interrupted status is cleared.
+     */
+    private boolean awaitConsumer(long t) {
+
+        if (waitStrategy == ParserDriver.WaitStrategy.SPINNING) {
+
+            Thread.yield();
+            return false;
+        }
+
+        waitingProducer = Thread.currentThread();
+
+        try {
+
+            if (t - head.get() == slots.length) {
+
+                LockSupport.park(this);
+            }
+        }
+        finally {
+
+            waitingProducer = null;
+        }
+
+        return Thread.interrupted();
+    }
+
+    /**
+     * @return true if the thread was interrupted while waiting. The interrupted status is cleared.
+     */
+    private boolean awaitProducer(long h) {
+
+        if (waitStrategy == ParserDriver.WaitStrategy.SPINNING) {
+
+            Thread.yield();
+            return false;
+        }
+
+        waitingConsumer = Thread.currentThread();
+
+        try {
+
+            if (tail.get() == h) {
+
+                LockSupport.park(this);
+            }
+        }
+        finally {
+
+            waitingConsumer = null;
+        }
+
+        return Thread.interrupted();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.List;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * The base class of the parsers that emit their events into an EventSink as soon as they are complete: the sub-classes
+ * implement parse(long, String, Query, EventSink) and close(long, EventSink), and the list-returning methods are
+ * adapters that collect the emitted events. Parsers that build a list per line anyway should extend ParserBase
+ * directly.
+ *
+ * @see EventSink
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public abstract class SinkParserBase extends ParserBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // reused by the list adapters, the events are handed over with drain()
+    //
+    private EventListSink adapterSink;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    protected SinkParserBase() {
+
+        adapterSink = new EventListSink();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Adapter that collects the events emitted by parse(long, String, Query, EventSink).
+     */
+    @Override
+    protected List<Event> parse(long lineNumber, String line, Query query) throws ParsingException {
+
+        //
+        // discard the events left over by a failed invocation
+        //
+
+        adapterSink.clear();
+
+        parse(lineNumber, line, query, adapterSink);
+
+        return adapterSink.drain();
+    }
+
+    /**
+     * Processes the current line, and emits into the sink all events that could be completely parsed, accumulated so
+     * far. The same contract as ParserBase.parse(long, String, Query) applies.
+     *
+     * @param sink never null.
+     *
+     * @see ParserBase#parse(long, String, Query)
+     */
+    @Override
+    protected abstract void parse(long lineNumber, String line, Query query, EventSink sink) throws ParsingException;
+
+    /**
+     * Creates a String and delegates to parse(long, String, Query, EventSink), without going through a list. Parsers
+     * that can work on the CharSequence directly should override it.
+     */
+    @Override
+    protected void parse(long lineNumber, CharSequence line, Query query, EventSink sink) throws ParsingException {
+
+        parse(lineNumber, line == null ? null : line.toString(), query, sink);
+    }
+
+    /**
+     * Adapter that collects the events emitted by close(long, EventSink).
+     */
+    @Override
+    protected List<Event> close(long lineNumber) throws ParsingException {
+
+        adapterSink.clear();
+
+        close(lineNumber, adapterSink);
+
+        return adapterSink.drain();
+    }
+
+    /**
+     * Emits the events built from the remaining accumulated state. The implementation must not emit an
+     * EndOfStreamEvent, nor invoke endOfStream() on the sink, handling the end of the stream is ParserBase's job.
+     *
+     * @param sink never null.
+     *
+     * @see ParserBase#close(long)
+     */
+    @Override
+    protected abstract void close(long lineNumber, EventSink sink) throws ParsingException;
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A sparse index of a time-ordered text file, usually persisted in a sidecar file next to it. The index covers a
+ * prefix of the file that ends with a line terminator, and maps timestamps to the byte offset and line number of the
+ * lines that start events. Entries are at least "granularity" bytes apart, so a 10 GB file indexed at the default
+ * granularity has about 40,000 entries (1 MB), and a lookup leaves about "granularity" bytes to be read.
+ *
+ * Each entry contains:
+ *
+ * 1. The timestamp of the event that starts on the line.
+ *
+ * 2. The byte offset of the line.
+ *
+ * 3. The number of lines that precede the line in the file.
+ *
+ * The index records the size and the modification time of the file, and a checksum of the beginning and the end of
+ * the indexed prefix. It is valid for the file if the size and the modification time did not change, or if the file
+ * only grew, which is verified with the checksum. A file that grew is indexed incrementally: entries are appended as
+ * the new content is read.
+ *
+ * Instances are not thread safe.
+ *
+ * @see TimeRangeFileParser
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimeIndex {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_GRANULARITY = 256 * 1024;
+
+    public static final String SIDECAR_SUFFIX = ".tidx";
+
+    //
+    // the number of bytes checksummed at the beginning, and at the end of the indexed prefix
+    //
+    static final int CHECKSUM_LENGTH = 4096;
+
+    //
+    // "EVTI"
+    //
+    private static final int MAGIC = 0x45565449;
+
+    private static final byte VERSION = 1;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the sidecar file of the given file: a file in the same directory, whose name is the name of the given
+     * file followed by SIDECAR_SUFFIX.
+     *
+     * @exception IllegalArgumentException on null file.
+     */
+    public static File sidecarOf(File file) {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * @return the index stored in the file, or null if the file does not exist.
+     *
+     * @exception IllegalArgumentException on null file, or if the file does not contain a valid index.
+     */
+    public static TimeIndex read(File file) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        try {
+
+            return fromByteArray(Files.readAllBytes(file.toPath()));
+        }
+        catch(NoSuchFileException e) {
+
+            return null;
+        }
+    }
+
+    /**
+     * @exception IllegalArgumentException on null array, or if the array does not contain a valid index.
+     */
+    public static TimeIndex fromByteArray(byte[] bytes) {
+
+        if (bytes == null) {
+
+            throw new IllegalArgumentException("null byte array");
+        }
+
+        try {
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if (in.readInt() != MAGIC) {
+
+                throw new IllegalArgumentException("invalid time index: bad header");
+            }
+
+            byte version = in.readByte();
+
+            if (version != VERSION) {
+
+                throw new IllegalArgumentException("invalid time index: unsupported version " + version);
+            }
+
+            long granularity = in.readLong();
+
+            if (granularity <= 0) {
+
+                throw new IllegalArgumentException("invalid time index: invalid granularity " + granularity);
+            }
+
+            TimeIndex index = new TimeIndex(granularity);
+
+            index.fileSize = in.readLong();
+            index.lastModified = in.readLong();
+            index.checksum = in.readLong();
+            index.length = in.readLong();
+            index.lineCount = in.readLong();
+
+            int size = in.readInt();
+
+            if (size < 0 || size > (bytes.length - 57) / 24) {
+
+                throw new IllegalArgumentException("invalid time index: invalid entry count " + size);
+            }
+
+            index.timestamps = new long[Math.max(size, 16)];
+            index.offsets = new long[index.timestamps.length];
+            index.lineNumbers = new long[index.timestamps.length];
+
+            for(int i = 0; i < size; i ++) {
+
+                index.timestamps[i] = in.readLong();
+                index.offsets[i] = in.readLong();
+                index.lineNumbers[i] = in.readLong();
+            }
+
+            index.size = size;
+
+            if (in.read() != -1) {
+
+                throw new IllegalArgumentException("invalid time index: trailing bytes");
+            }
+
+            return index;
+        }
+        catch(IOException e) {
+
+            throw new IllegalArgumentException("invalid time index: truncated", e);
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final long granularity;
+
+    private long[] timestamps;
+    private long[] offsets;
+    private long[] lineNumbers;
+    private int size;
+
+    //
+    // the indexed prefix, and the number of lines it contains
+    //
+    private long length;
+    private long lineCount;
+
+    //
+    // the state of the file when the index was last stamped
+    //
+    private long fileSize;
+    private long lastModified;
+    private long checksum;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates an empty index.
+     *
+     * @param granularity the minimum distance, in bytes, between entries.
+     *
+     * @exception IllegalArgumentException on invalid granularity.
+     */
+    public TimeIndex(long granularity) {
+
+        if (granularity <= 0) {
+
+            throw new IllegalArgumentException("invalid granularity: " + granularity);
+        }
+
+        this.granularity = granularity;
+        this.timestamps = new long[16];
+        this.offsets = new long[16];
+        this.lineNumbers = new long[16];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getGranularity() {
+
+        return granularity;
+    }
+
+    /**
+     * @return the length, in bytes, of the indexed prefix of the file.
+     */
+    public long getLength() {
+
+        return length;
+    }
+
+    /**
+     * @return the number of lines in the indexed prefix of the file.
+     */
+    public long getLineCount() {
+
+        return lineCount;
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    public long getTimestamp(int entry) {
+
+        return timestamps[check(entry)];
+    }
+
+    public long getOffset(int entry) {
+
+        return offsets[check(entry)];
+    }
+
+    /**
+     * @return the number of lines that precede the entry's line.
+     */
+    public long getLineNumber(int entry) {
+
+        return lineNumbers[check(entry)];
+    }
+
+    /**
+     * @return the last entry whose timestamp is before the given time, or -1 if there is no such entry. The events
+     * that start before the entry's offset are older than the time, if the file is time-ordered.
+     */
+    public int floor(long time) {
+
+        int low = 0;
+        int high = size;
+
+        while(low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (timestamps[middle] < time) {
+
+                low = middle + 1;
+            }
+            else {
+
+                high = middle;
+            }
+        }
+
+        return low - 1;
+    }
+
+    /**
+     * @return true if the index describes the file, or a prefix of the file, if the file grew since the index was
+     * stamped.
+     *
+     * @exception IllegalArgumentException on null file.
+     */
+    public boolean isValidFor(File file) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        long size = file.length();
+
+        if (size < length) {
+
+            return false;
+        }
+
+        if (size == fileSize && file.lastModified() == lastModified) {
+
+            return true;
+        }
+
+        if (size <= fileSize) {
+
+            //
+            // truncated, or re-written in place
+            //
+
+            return false;
+        }
+
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            return checksum(ch, length) == checksum;
+        }
+    }
+
+    /**
+     * Records the current size and modification time of the file, and the checksum of the indexed prefix. Must be
+     * invoked before the index is written.
+     *
+     * @exception IllegalArgumentException on null file.
+     */
+    public void stamp(File file) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        //
+        // the size is read before the modification time: if the file grows meanwhile, the recorded size is smaller
+        // than the size that corresponds to the modification time, and the next validation uses the checksum
+        //
+
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            this.fileSize = Math.max(length, ch.size());
+            this.checksum = checksum(ch, length);
+        }
+
+        this.lastModified = file.lastModified();
+    }
+
+    /**
+     * Writes the index atomically: a reader sees either the previous content of the file, or the new content.
+     *
+     * @exception IllegalArgumentException on null file.
+     */
+    public void write(File file) throws IOException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        CheckpointWriter.write(file.toPath(), toByteArray());
+    }
+
+    public byte[] toByteArray() {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(57 + 24 * size);
+
+        try {
+
+            DataOutputStream out = new DataOutputStream(baos);
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(granularity);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeLong(checksum);
+            out.writeLong(length);
+            out.writeLong(lineCount);
+            out.writeInt(size);
+
+            for(int i = 0; i < size; i ++) {
+
+                out.writeLong(timestamps[i]);
+                out.writeLong(offsets[i]);
+                out.writeLong(lineNumbers[i]);
+            }
+
+            out.flush();
+        }
+        catch(IOException e) {
+
+            //
+            // not thrown by ByteArrayOutputStream
+            //
+
+            throw new IllegalStateException(e);
+        }
+
+        return baos.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+
+        return "TimeIndex[" + size + " entries, " + length + " bytes, " + lineCount + " lines, granularity=" +
+                granularity + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Extends the indexed prefix with a complete line. The line must start at the end of the indexed prefix.
+     *
+     * @param offset the offset of the line.
+     * @param lineNumber the number of lines that precede the line.
+     * @param end the offset that follows the line terminator.
+     * @param timestamp the timestamp of the event that starts on the line, or Long.MIN_VALUE if the line does not
+     *                  start an event, or does not carry a timestamp.
+     *
+     * @exception IllegalArgumentException if the line does not follow the indexed prefix.
+     */
+    void extend(long offset, long lineNumber, long end, long timestamp) {
+
+        if (offset != length || lineNumber != lineCount || end <= offset) {
+
+            throw new IllegalArgumentException(
+                    "line at " + offset + " (" + lineNumber + " lines) does not follow the indexed prefix");
+        }
+
+        if (timestamp != Long.MIN_VALUE && (size == 0 || offset - offsets[size - 1] >= granularity)) {
+
+            if (size == timestamps.length) {
+
+                timestamps = Arrays.copyOf(timestamps, 2 * size);
+                offsets = Arrays.copyOf(offsets, 2 * size);
+                lineNumbers = Arrays.copyOf(lineNumbers, 2 * size);
+            }
+
+            timestamps[size] = timestamp;
+            offsets[size] = offset;
+            lineNumbers[size] = lineNumber;
+            size ++;
+        }
+
+        length = end;
+        lineCount = lineNumber + 1;
+    }
+
+    /**
+     * @return the CRC32 of the first and the last CHECKSUM_LENGTH bytes of the file prefix. The ranges overlap for
+     * short prefixes.
+     */
+    static long checksum(FileChannel ch, long length) throws IOException {
+
+        CRC32 crc = new CRC32();
+
+        int head = (int)Math.min(CHECKSUM_LENGTH, length);
+        update(crc, ch, 0, head);
+        update(crc, ch, length - head, head);
+
+        return crc.getValue();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void update(CRC32 crc, FileChannel ch, long position, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while(buffer.hasRemaining()) {
+
+            if (ch.read(buffer, position + buffer.position()) < 0) {
+
+                throw new IOException("unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+
+        crc.update(buffer.array(), 0, length);
+    }
+
+    private int check(int entry) {
+
+        if (entry < 0 || entry >= size) {
+
+            throw new IndexOutOfBoundsException("invalid entry: " + entry);
+        }
+
+        return entry;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,674 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.query.Query;
+import io.novaordis.events.query.TimeRange;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * Parses the part of a time-ordered file that may contain the events selected by the time component of a query,
+ * without reading the rest of the file. The effective time interval is obtained from the query, and:
+ *
+ * 1. If the interval has a start, the file is binary-searched for it, by sampling the timestamps of the lines that
+ * follow byte offsets, until the search window is smaller than a few tens of kilobytes. Reading starts at the
+ * beginning of the window, at the first line that starts an event.
+ *
+ * 2. If the interval has an end, reading stops at the first line whose timestamp is past it.
+ *
+ * The timestamps are obtained with ParserBase.timestampOf(), which must be implemented by the parser. The input is
+ * allowed to be out of order by at most the tolerance: the search targets the start of the interval minus the
+ * tolerance, and reading stops at the end of the interval plus the tolerance. The events are not filtered: some
+ * events that precede or follow the interval are delivered, and the consumer is expected to apply the query.
+ *
+ * When reading starts after the beginning of the file, the line numbers are still relative to the beginning of the
+ * file: without an index, the lines that precede the start are counted, which reads the skipped bytes without parsing
+ * them. Callers that do not need the line numbers may opt for relative line numbers, counted from the start position,
+ * which avoids reading the skipped bytes.
+ *
+ * If indexing is enabled, a sparse time index is maintained in a sidecar file. The first parsing that reads the file
+ * from the beginning builds it. Once built, the index replaces the binary search: reading starts at the last entry
+ * that precedes the interval, at most "granularity" bytes before it, with absolute line numbers. If the file grew,
+ * and the interval may start after the indexed prefix, the new lines are indexed first, without being parsed. The
+ * parsings that read past the end of the indexed prefix also extend it.
+ *
+ * Lines are separated by '\n'. A '\r' preceding '\n' is removed. The charset must encode '\n' as the single byte 0x0A.
+ *
+ * An instance may be used to parse several files, sequentially. The statistics refer to the last file.
+ *
+ * @see Query#getTimeRange()
+ * @see ParserBase#timestampOf(String)
+ * @see TimeIndex
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimeRangeFileParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_TOLERANCE_MS = 1000L;
+
+    //
+    // the binary search stops when the window is smaller than this, the rest is read sequentially
+    //
+    public static final long SEARCH_WINDOW = 64 * 1024;
+
+    //
+    // the number of lines read at a sampling offset, looking for a timestamp
+    //
+    public static final int MAX_SAMPLE_LINES = 1000;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(TimeRangeFileParser.class);
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Supplier<? extends ParserBase> parserFactory;
+
+    private long tolerance;
+
+    private boolean relativeLineNumbers;
+
+    private Charset charset;
+
+    private boolean indexing;
+
+    private long indexGranularity;
+
+    private long startPosition;
+    private long endPosition;
+    private int sampleCount;
+    private TimeIndex index;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param parserFactory must return a new parser instance on each invocation.
+     *
+     * @exception IllegalArgumentException on null factory.
+     */
+    public TimeRangeFileParser(Supplier<? extends ParserBase> parserFactory) {
+
+        if (parserFactory == null) {
+
+            throw new IllegalArgumentException("null parser factory");
+        }
+
+        this.parserFactory = parserFactory;
+        this.tolerance = DEFAULT_TOLERANCE_MS;
+        this.charset = StandardCharsets.UTF_8;
+        this.indexGranularity = TimeIndex.DEFAULT_GRANULARITY;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the part of the file that may contain the events in the query's time interval. The last event is an
+     * EndOfStreamEvent.
+     *
+     * @param query provides the time interval, and is passed to the parser. If null, or if it has no time component,
+     *              the whole file is parsed.
+     *
+     * @exception IllegalArgumentException on null file or consumer.
+     */
+    public void parse(File file, Query query, final Consumer<? super Event> consumer)
+            throws IOException, ParsingException {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        if (consumer == null) {
+
+            throw new IllegalArgumentException("null consumer");
+        }
+
+        if (!file.isFile()) {
+
+            throw new IOException("no such file: " + file);
+        }
+
+        TimeRange range = query == null ? TimeRange.UNBOUNDED : query.getTimeRange();
+
+        ParserBase parser = parserFactory.get();
+
+        EventSink sink = new EventSink() {
+
+            @Override
+            public void emit(Event event) {
+
+                consumer.accept(event);
+            }
+
+            @Override
+            public void endOfStream() {
+
+                consumer.accept(new EndOfStreamEvent());
+            }
+        };
+
+        sampleCount = 0;
+
+        TimeIndex index = indexing ? loadIndex(file) : null;
+        long indexedLength = index == null ? 0 : index.getLength();
+
+        this.index = index;
+
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = ch.size();
+
+            startPosition = 0;
+            endPosition = 0;
+
+            if (range.isEmpty()) {
+
+                parser.close(sink);
+                return;
+            }
+
+            long lineNumber = 0;
+            boolean absolute = true;
+
+            if (range.hasFrom()) {
+
+                long time = saturatedAdd(range.getFrom(), -tolerance);
+
+                if (index != null && index.getLength() > 0) {
+
+                    if (index.getLength() < size && index.floor(time) == index.size() - 1) {
+
+                        //
+                        // the interval may start in the part of the file that was not indexed yet
+                        //
+
+                        scan(index, ch, parser, size);
+                    }
+
+                    int entry = index.floor(time);
+
+                    if (entry >= 0) {
+
+                        startPosition = index.getOffset(entry);
+                        lineNumber = index.getLineNumber(entry);
+                    }
+                }
+                else {
+
+                    startPosition = seek(ch, parser, size, time);
+
+                    if (startPosition > 0) {
+
+                        if (relativeLineNumbers) {
+
+                            absolute = false;
+                        }
+                        else {
+
+                            lineNumber = countLines(ch, startPosition);
+                        }
+                    }
+                }
+            }
+
+            long last = range.hasTo() ? saturatedAdd(range.getTo(), tolerance) : Long.MAX_VALUE;
+
+            LineReader reader = new LineReader(ch, startPosition, charset);
+
+            long lineStart = startPosition;
+            String line = reader.readLine();
+
+            if (startPosition > 0) {
+
+                //
+                // skip the tail of the event in progress at the start position
+                //
+
+                while(line != null && !parser.isEventStart(line)) {
+
+                    lineNumber ++;
+                    lineStart = reader.position();
+                    line = reader.readLine();
+                }
+            }
+
+            parser.setLineNumber(lineNumber);
+
+            //
+            // the index is extended only by reads that are contiguous with the indexed prefix
+            //
+
+            boolean indexingLines = index != null && absolute && lineStart <= index.getLength();
+
+            while(line != null) {
+
+                long timestamp = parser.timestampOf(line);
+
+                if (timestamp != Long.MIN_VALUE && timestamp > last) {
+
+                    break;
+                }
+
+                parser.parse(line, query, sink);
+
+                long lineEnd = reader.position();
+
+                if (indexingLines && lineStart >= index.getLength() && isTerminated(ch, lineEnd, size)) {
+
+                    index.extend(lineStart, lineNumber, lineEnd,
+                            parser.isEventStart(line) ? timestamp : Long.MIN_VALUE);
+                }
+
+                lineNumber ++;
+                lineStart = lineEnd;
+                line = reader.readLine();
+            }
+
+            endPosition = lineStart;
+        }
+
+        parser.close(sink);
+
+        if (index != null && index.getLength() != indexedLength) {
+
+            saveIndex(index, file);
+        }
+    }
+
+    /**
+     * @param tolerance how much, in milliseconds, the timestamps of the input may be out of order.
+     *
+     * @exception IllegalArgumentException on negative tolerance.
+     */
+    public void setTolerance(long tolerance) {
+
+        if (tolerance < 0) {
+
+            throw new IllegalArgumentException("invalid tolerance: " + tolerance);
+        }
+
+        this.tolerance = tolerance;
+    }
+
+    public long getTolerance() {
+
+        return tolerance;
+    }
+
+    /**
+     * @param b if true, and the file is not indexed, the line numbers are counted from the position reading starts
+     *          at, instead of from the beginning of the file, so the lines that precede the start position are not
+     *          read. Indexed files always get line numbers relative to the beginning of the file, as the index records
+     *          them. False by default.
+     */
+    public void setRelativeLineNumbers(boolean b) {
+
+        this.relativeLineNumbers = b;
+    }
+
+    public boolean isRelativeLineNumbers() {
+
+        return relativeLineNumbers;
+    }
+
+    /**
+     * @exception IllegalArgumentException on null charset.
+     */
+    public void setCharset(Charset charset) {
+
+        if (charset == null) {
+
+            throw new IllegalArgumentException("null charset");
+        }
+
+        this.charset = charset;
+    }
+
+    public Charset getCharset() {
+
+        return charset;
+    }
+
+    /**
+     * @param b if true, the file is indexed in a sidecar file, and the index is used to locate the start of the time
+     *          interval.
+     *
+     * @see TimeIndex
+     */
+    public void setIndexing(boolean b) {
+
+        this.indexing = b;
+    }
+
+    public boolean isIndexing() {
+
+        return indexing;
+    }
+
+    /**
+     * @param granularity the minimum distance, in bytes, between the entries of new indexes. Existing valid indexes
+     *                    are used with the granularity they were built with.
+     *
+     * @exception IllegalArgumentException on invalid granularity.
+     */
+    public void setIndexGranularity(long granularity) {
+
+        if (granularity <= 0) {
+
+            throw new IllegalArgumentException("invalid granularity: " + granularity);
+        }
+
+        this.indexGranularity = granularity;
+    }
+
+    public long getIndexGranularity() {
+
+        return indexGranularity;
+    }
+
+    /**
+     * @return the index used by the last parsing, as updated by it, or null if indexing is disabled.
+     */
+    public TimeIndex getIndex() {
+
+        return index;
+    }
+
+    /**
+     * @return the offset the last parsing started at.
+     */
+    public long getStartPosition() {
+
+        return startPosition;
+    }
+
+    /**
+     * @return the offset the last parsing stopped at: the offset of the first line past the end of the time interval,
+     * or the size of the file.
+     */
+    public long getEndPosition() {
+
+        return endPosition;
+    }
+
+    /**
+     * @return the number of offsets sampled by the last binary search.
+     */
+    public int getSampleCount() {
+
+        return sampleCount;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the offset of a line start such that the events that start before it are older than the given time.
+     * The events that start in the first SEARCH_WINDOW bytes after the offset may also be older.
+     */
+    long seek(FileChannel ch, ParserBase parser, long size, long time) throws IOException {
+
+        long low = 0;
+        long high = size;
+
+        while(high - low > SEARCH_WINDOW) {
+
+            long middle = low + (high - low) / 2;
+
+            long sample = sample(ch, parser, middle, high);
+
+            if (sample != Long.MIN_VALUE && sample < time) {
+
+                low = middle;
+            }
+            else {
+
+                //
+                // the first timestamp after the middle is not older, or there are no timestamps between the middle
+                // and the end of the window: the events of interest start before the middle
+                //
+
+                high = middle;
+            }
+        }
+
+        if (low == 0) {
+
+            return 0;
+        }
+
+        //
+        // the beginning of the first complete line after the offset
+        //
+
+        LineReader reader = new LineReader(ch, low - 1, charset);
+        reader.readLine();
+        return reader.position();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the timestamp of the first line that starts after the offset, and before the limit, and carries a
+     * timestamp. Long.MIN_VALUE if no such line is found within MAX_SAMPLE_LINES lines.
+     */
+    private long sample(FileChannel ch, ParserBase parser, long offset, long limit) throws IOException {
+
+        sampleCount ++;
+
+        LineReader reader = new LineReader(ch, offset - 1, charset);
+
+        //
+        // the rest of the line that contains the offset
+        //
+
+        reader.readLine();
+
+        for(int i = 0; i < MAX_SAMPLE_LINES && reader.position() < limit; i ++) {
+
+            String line = reader.readLine();
+
+            if (line == null) {
+
+                break;
+            }
+
+            long timestamp = parser.timestampOf(line);
+
+            if (timestamp != Long.MIN_VALUE) {
+
+                return timestamp;
+            }
+        }
+
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the number of '\n' in the first bytes of the file.
+     */
+    private static long countLines(FileChannel ch, long length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(LineReader.BUFFER_SIZE);
+
+        long count = 0;
+        long position = 0;
+
+        while(position < length) {
+
+            buffer.clear();
+
+            if (length - position < buffer.capacity()) {
+
+                buffer.limit((int)(length - position));
+            }
+
+            int read = ch.read(buffer, position);
+
+            if (read <= 0) {
+
+                break;
+            }
+
+            byte[] a = buffer.array();
+
+            for(int i = 0; i < read; i ++) {
+
+                if (a[i] == '\n') {
+
+                    count ++;
+                }
+            }
+
+            position += read;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return true if the line that ends at the given offset ends with a line terminator. The lines that end before
+     * the end of the file do.
+     */
+    private static boolean isTerminated(FileChannel ch, long lineEnd, long size) throws IOException {
+
+        if (lineEnd < size) {
+
+            return true;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+
+        return ch.read(buffer, lineEnd - 1) == 1 && buffer.get(0) == '\n';
+    }
+
+    /**
+     * Indexes the complete lines that follow the indexed prefix, without parsing them.
+     */
+    private void scan(TimeIndex index, FileChannel ch, ParserBase parser, long size) throws IOException {
+
+        LineReader reader = new LineReader(ch, index.getLength(), charset);
+
+        long lineNumber = index.getLineCount();
+
+        while(true) {
+
+            long lineStart = reader.position();
+            String line = reader.readLine();
+
+            if (line == null) {
+
+                return;
+            }
+
+            long lineEnd = reader.position();
+
+            if (!isTerminated(ch, lineEnd, size)) {
+
+                return;
+            }
+
+            index.extend(lineStart, lineNumber ++, lineEnd,
+                    parser.isEventStart(line) ? parser.timestampOf(line) : Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * @return the sidecar index, if valid for the file, or a new empty index.
+     */
+    private TimeIndex loadIndex(File file) {
+
+        File sidecar = TimeIndex.sidecarOf(file);
+
+        try {
+
+            TimeIndex index = TimeIndex.read(sidecar);
+
+            if (index != null && index.isValidFor(file)) {
+
+                return index;
+            }
+
+            if (index != null) {
+
+                log.debug(sidecar + " is stale, rebuilding it");
+            }
+        }
+        catch(IllegalArgumentException | IOException e) {
+
+            log.warn("failed to read time index " + sidecar + ", rebuilding it: " + e.getMessage());
+        }
+
+        return new TimeIndex(indexGranularity);
+    }
+
+    /**
+     * The index is an optimization: a failure to write it is logged, not propagated.
+     */
+    private void saveIndex(TimeIndex index, File file) {
+
+        File sidecar = TimeIndex.sidecarOf(file);
+
+        try {
+
+            index.stamp(file);
+            index.write(sidecar);
+        }
+        catch(IOException e) {
+
+            log.warn("failed to write time index " + sidecar + ": " + e.getMessage());
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+
+        long r = a + b;
+
+        //
+        // overflow if both operands have the sign opposite to the result's
+        //
+
+        if (((a ^ r) & (b ^ r)) < 0) {
+
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+
+        return r;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
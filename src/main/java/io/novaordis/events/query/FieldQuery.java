@@ -19,8 +19,11 @@ package io.novaordis.events.query;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import io.novaordis.events.api.event.CompactMap;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.MapProperty;
 import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.StringProperty;
 import io.novaordis.events.api.parser.QueryOnce;
 
 /**
@@ -28,6 +31,11 @@ import io.novaordis.events.api.parser.QueryOnce;
  * properties are matched currently, anything else will not match. "Field query" and "property query" are terms can be
  * used interchangeably.
  *
+ * A field name in the "map.key" format designates the value associated with "key" in the map property "map", unless
+ * the event has a property whose name is literally "map.key". The path is split when the query is built, and the
+ * position the key was found at in the last map is remembered, so for compact maps with the same layout the lookup
+ * takes a single comparison.
+ *
  * https://kb.novaordis.com/index.php/Events-api_Concepts#Field_Query
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -43,6 +51,17 @@ public class FieldQuery extends QueryBase {
 
     private String propertyName;
 
+    //
+    // the compiled "map.key" path, null if the property name contains no dot
+    //
+    private String mapPropertyName;
+    private String mapKey;
+
+    //
+    // the position of mapKey in the last compact map it was looked up in. Only a hint, races are benign
+    //
+    private int mapKeyHint;
+
     //
     // this is the original regular expression literal as it provided on the command line. The metacharacters are
     // represented using the application's conventions, not Java regular expression conventions. For example, the
@@ -60,7 +79,7 @@ public class FieldQuery extends QueryBase {
 
     public FieldQuery(String propertyName, String regularExpressionLiteral) {
 
-        this.propertyName = propertyName;
+        setPropertyName(propertyName);
 
         this.negate = false;
 
@@ -81,13 +100,15 @@ public class FieldQuery extends QueryBase {
             throw new QueryException("not a valid FieldQuery literal, missing colon: \"" + literal + "\"");
         }
 
-        this.propertyName = literal.substring(0, i).trim();
+        String name = literal.substring(0, i).trim();
 
-        if (propertyName.isEmpty()) {
+        if (name.isEmpty()) {
 
             throw new QueryException("not a valid FieldQuery literal, empty field name: \"" + literal + "\"");
         }
 
+        setPropertyName(name);
+
         String re = literal.substring(i + 1).trim();
 
         if (re.isEmpty()) {
@@ -110,7 +131,7 @@ public class FieldQuery extends QueryBase {
     public FieldQuery negate() throws QueryException {
 
         FieldQuery negatedCopy = new FieldQuery();
-        negatedCopy.propertyName = this.propertyName;
+        negatedCopy.setPropertyName(this.propertyName);
         negatedCopy.setRegularExpressionLiteral(this.regularExpressionLiteral);
         negatedCopy.negate = !this.negate;
         return negatedCopy;
@@ -147,39 +168,23 @@ public class FieldQuery extends QueryBase {
         }
         else {
 
-            Property p = e.getProperty(propertyName);
+            //
+            // for the time being we don't apply regular expression to values other than strings. This is not because
+            // of a very thought out reason, just because we want to keep the code simple and we did not have a good
+            // use case. If such a case arises, we'll refactor
+            //
+
+            CharSequence value = getFieldContent(e);
 
-            if (p == null) {
+            if (value == null) {
 
                 selected = false;
             }
             else {
 
-                Object value = p.getValue();
-
-                if (value == null) {
-
-                    selected = false;
-                }
-                else {
-
-                    //
-                    // for the time being we don't apply regular expression to values other than strings. This is not
-                    // because of a very thought out reason, just because we want to keep the code simple and we did not
-                    // have a good use case. If such a case arises, we'll refactor
-                    //
+                Matcher m = pattern.matcher(value);
 
-                    if (!(value instanceof String)) {
-
-                        selected = false;
-                    }
-                    else {
-
-                        Matcher m = pattern.matcher((String) value);
-
-                        selected = m.find();
-                    }
-                }
+                selected = m.find();
             }
         }
 
@@ -265,6 +270,84 @@ public class FieldQuery extends QueryBase {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private void setPropertyName(String propertyName) {
+
+        this.propertyName = propertyName;
+        this.mapPropertyName = null;
+        this.mapKey = null;
+        this.mapKeyHint = 0;
+
+        int i = propertyName == null ? -1 : propertyName.indexOf('.');
+
+        if (i > 0 && i < propertyName.length() - 1) {
+
+            this.mapPropertyName = propertyName.substring(0, i);
+            this.mapKey = propertyName.substring(i + 1);
+        }
+    }
+
+    /**
+     * @return the String value of the property, or the String value designated by the "map.key" path, or null if there
+     * is none, or the value is not a String. String properties are read as CharSequences, so the regular expression
+     * can be applied to byte slices without building the String.
+     */
+    private CharSequence getFieldContent(Event e) {
+
+        Property p = e.getProperty(propertyName);
+
+        if (p instanceof StringProperty) {
+
+            return ((StringProperty)p).getCharSequence();
+        }
+
+        if (p != null) {
+
+            if (isPrimitive(p)) {
+
+                return null;
+            }
+
+            Object value = p.getValue();
+            return value instanceof String ? (String)value : null;
+        }
+
+        if (mapKey == null) {
+
+            return null;
+        }
+
+        MapProperty mp = e.getMapProperty(mapPropertyName);
+
+        if (mp == null) {
+
+            return null;
+        }
+
+        Object map = mp.getValue();
+
+        if (map instanceof CompactMap) {
+
+            CompactMap cm = (CompactMap)map;
+
+            int i = cm.indexOf(mapKey, mapKeyHint);
+
+            if (i != -1) {
+
+                mapKeyHint = i;
+                Object value = cm.valueAt(i);
+                return value instanceof String ? (String)value : null;
+            }
+
+            if (cm.isCompact()) {
+
+                return null;
+            }
+        }
+
+        Object value = mp.getMap().get(mapKey);
+        return value instanceof String ? (String)value : null;
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
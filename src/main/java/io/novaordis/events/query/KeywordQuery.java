@@ -16,8 +16,11 @@
 
 package io.novaordis.events.query;
 
+import java.util.List;
+
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.StringProperty;
 import io.novaordis.events.api.parser.QueryOnce;
 
 /**
@@ -86,16 +89,44 @@ public class KeywordQuery extends QueryBase {
             return true;
         }
 
-        for(Property p: e.getProperties()) {
+        //
+        // indexed iteration over the live view, no copy of the property list, no iterator
+        //
+
+        List<Property> properties = e.getPropertiesView();
+
+        for(int i = 0; i < properties.size(); i ++) {
+
+            Property p = properties.get(i);
+
+            if (p instanceof StringProperty) {
+
+                //
+                // byte slice properties are matched without building the String
+                //
+
+                if (((StringProperty)p).contains(keyword, !caseSensitive)) {
+
+                    return true;
+                }
+
+                continue;
+            }
+
+            if (isPrimitive(p)) {
+
+                //
+                // not matched, and reading the value would box it
+                //
+
+                continue;
+            }
 
             Object o = p.getValue();
 
             if (o instanceof String) {
 
-                String target = caseSensitive ? (String)o : ((String)o).toLowerCase();
-                String searchKey = caseSensitive ? keyword : keyword.toLowerCase();
-
-                if (target.contains(searchKey)) {
+                if (contains((String)o)) {
 
                     return true;
                 }
@@ -140,6 +171,29 @@ public class KeywordQuery extends QueryBase {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Case-insensitive matching is done in place, without lower-casing copies of the target and the keyword.
+     */
+    private boolean contains(String target) {
+
+        if (caseSensitive) {
+
+            return target.contains(keyword);
+        }
+
+        int length = keyword.length();
+
+        for(int i = 0; i <= target.length() - length; i ++) {
+
+            if (target.regionMatches(true, i, keyword, 0, length)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
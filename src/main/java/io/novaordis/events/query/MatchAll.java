@@ -57,6 +57,12 @@ public class MatchAll extends ExpressionElementBase implements Query {
         return true;
     }
 
+    @Override
+    public TimeRange getTimeRange() {
+
+        return TimeRange.UNBOUNDED;
+    }
+
     @Override
     public List<Event> filter(List<Event> events) {
 
@@ -68,6 +74,16 @@ public class MatchAll extends ExpressionElementBase implements Query {
         return events;
     }
 
+    @Override
+    public List<Event> filterAndRecycle(List<Event> events) {
+
+        //
+        // nothing is rejected
+        //
+
+        return filter(events);
+    }
+
     @Override
     public Query negate() throws QueryException {
 
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
 
 /**
  * A query that selects no event.
@@ -58,6 +59,12 @@ public class MatchNone extends ExpressionElementBase implements Query {
         return false;
     }
 
+    @Override
+    public TimeRange getTimeRange() {
+
+        return TimeRange.EMPTY;
+    }
+
     @Override
     public List<Event> filter(List<Event> events) {
 
@@ -69,6 +76,25 @@ public class MatchNone extends ExpressionElementBase implements Query {
         return Collections.emptyList();
     }
 
+    /**
+     * All events are rejected, so all are recycled.
+     */
+    @Override
+    public List<Event> filterAndRecycle(List<Event> events) {
+
+        if (events == null) {
+
+            throw new IllegalArgumentException("null event list");
+        }
+
+        for(Event e: events) {
+
+            EventPool.recycle(e);
+        }
+
+        return Collections.emptyList();
+    }
+
     @Override
     public Query negate() throws QueryException {
 
@@ -353,6 +353,54 @@ public class MixedQuery extends QueryBase {
         throw new IllegalStateException("invalid state: no null query, no sole query, no and queries and no or queries");
     }
 
+    /**
+     * The intersection of the and-ed queries' intervals, or the span of the or-ed queries' intervals.
+     */
+    @Override
+    public TimeRange getTimeRange() {
+
+        if (!isCompiled()) {
+
+            throw new IllegalStateException("query not compiled");
+        }
+
+        if (nullQuery) {
+
+            return TimeRange.UNBOUNDED;
+        }
+
+        if (soleQuery != null) {
+
+            return soleQuery.getTimeRange();
+        }
+
+        if (orQueries != null) {
+
+            TimeRange result = TimeRange.EMPTY;
+
+            for(Query q: orQueries) {
+
+                result = result.span(q.getTimeRange());
+            }
+
+            return result;
+        }
+
+        if (andQueries != null) {
+
+            TimeRange result = TimeRange.UNBOUNDED;
+
+            for(Query q: andQueries) {
+
+                result = result.intersect(q.getTimeRange());
+            }
+
+            return result;
+        }
+
+        throw new IllegalStateException("invalid state: no null query, no sole query, no and queries and no or queries");
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public void addExpressionElementLiteral(String literal) throws QueryException {
@@ -19,6 +19,7 @@ package io.novaordis.events.query;
 import java.util.List;
 
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
 
 /**
  * A query is a combination of free format and structured text that is interpreted by the events runtime to filter a
@@ -91,6 +92,18 @@ public interface Query extends ExpressionElement {
      */
     boolean selects(long timestamp);
 
+    /**
+     * The default implementation returns TimeRange.UNBOUNDED, which is always correct, as it does not exclude any time.
+     *
+     * @return the interval of times the query may select: selects(long) returns false for any time outside it. The
+     * interval is used to avoid reading input that cannot contain selected events. Queries without a time component
+     * return TimeRange.UNBOUNDED. Never null.
+     */
+    default TimeRange getTimeRange() {
+
+        return TimeRange.UNBOUNDED;
+    }
+
     /**
      * Throw away events that do not match the query and only allow those that match in the final result. Convenience
      * complementary method for selects(): if selects(e) returns true, then filtering a list that contains e will leave
@@ -100,5 +113,41 @@ public interface Query extends ExpressionElement {
      */
     List<Event> filter(List<Event> events);
 
+    /**
+     * Same as filter(), but the events that do not match the query are returned to the pool they were acquired from,
+     * if any. The caller must not use the rejected events after the invocation.
+     *
+     * The default implementation relies on filter() preserving the relative order of the selected events.
+     *
+     * @exception IllegalArgumentException on null list.
+     *
+     * @see io.novaordis.events.api.event.EventPool#recycle(Event)
+     */
+    default List<Event> filterAndRecycle(List<Event> events) {
+
+        List<Event> selected = filter(events);
+
+        //
+        // the selected events are a subsequence of the original list
+        //
+
+        int j = 0;
+
+        for(int i = 0; i < events.size(); i ++) {
+
+            Event e = events.get(i);
+
+            if (j < selected.size() && selected.get(j) == e) {
+
+                j ++;
+            }
+            else {
+
+                EventPool.recycle(e);
+            }
+        }
+
+        return selected;
+    }
 
 }
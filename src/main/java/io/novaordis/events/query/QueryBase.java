@@ -20,7 +20,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import io.novaordis.events.api.event.BooleanProperty;
+import io.novaordis.events.api.event.DoubleProperty;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
+import io.novaordis.events.api.event.FloatProperty;
+import io.novaordis.events.api.event.IntegerProperty;
+import io.novaordis.events.api.event.LongProperty;
+import io.novaordis.events.api.event.Property;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -44,6 +51,57 @@ public abstract class QueryBase extends ExpressionElementBase implements Query {
     @Override
     public List<Event> filter(List<Event> events) {
 
+        return filter(events, false);
+    }
+
+    @Override
+    public List<Event> filterAndRecycle(List<Event> events) {
+
+        return filter(events, true);
+    }
+
+    /**
+     * Most queries don't have a time component, so they select all.
+     */
+    @Override
+    public boolean selects(long timestamp) {
+
+        //
+        // default behavior - no time component, we match everything
+        //
+
+        return true;
+    }
+
+    /**
+     * Most queries don't have a time component, so they may select any time.
+     */
+    @Override
+    public TimeRange getTimeRange() {
+
+        return TimeRange.UNBOUNDED;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the property stores its value unboxed: getValue() would allocate a boxed instance, which can
+     * never be a String.
+     */
+    static boolean isPrimitive(Property p) {
+
+        return p instanceof LongProperty || p instanceof IntegerProperty || p instanceof DoubleProperty ||
+                p instanceof FloatProperty || p instanceof BooleanProperty;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private List<Event> filter(List<Event> events, boolean recycleRejected) {
+
         if (events == null) {
 
             throw new IllegalArgumentException("null event list");
@@ -67,6 +125,10 @@ public abstract class QueryBase extends ExpressionElementBase implements Query {
 
                 filtered.add(e);
             }
+            else if (recycleRejected) {
+
+                EventPool.recycle(e);
+            }
         }
 
         if (filtered == null) {
@@ -79,27 +141,6 @@ public abstract class QueryBase extends ExpressionElementBase implements Query {
         }
     }
 
-    /**
-     * Most queries don't have a time component, so they select all.
-     */
-    @Override
-    public boolean selects(long timestamp) {
-
-        //
-        // default behavior - no time component, we match everything
-        //
-
-        return true;
-    }
-
-    // Public ----------------------------------------------------------------------------------------------------------
-
-    // Package protected -----------------------------------------------------------------------------------------------
-
-    // Protected -------------------------------------------------------------------------------------------------------
-
-    // Private ---------------------------------------------------------------------------------------------------------
-
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -16,15 +16,14 @@
 
 package io.novaordis.events.query;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.TimedEvent;
+import io.novaordis.events.api.event.TimestampFormat;
 import io.novaordis.events.api.parser.QueryOnce;
 
 /**
@@ -43,14 +42,21 @@ public class TimeQuery extends QueryBase {
     //
     // listed in the descending order of preference
     //
+    public static final TimestampFormat[] SUPPORTED_TIMESTAMP_FORMATS = {
 
-    //
-    // TODO refactor, not thread safe
-    //
+            new TimestampFormat("MM/dd/yy HH:mm:ss,SSS"),
+            new TimestampFormat("MM/dd/yy HH:mm:ss"),
+    };
+
+    /**
+     * @deprecated SimpleDateFormat instances are not thread safe, use SUPPORTED_TIMESTAMP_FORMATS. The elements
+     * correspond to the elements of SUPPORTED_TIMESTAMP_FORMATS, and they are not used for parsing.
+     */
+    @Deprecated
     public static final SimpleDateFormat[] SUPPORTED_FORMATS = {
 
-            new SimpleDateFormat("MM/dd/yy HH:mm:ss,SSS"),
-            new SimpleDateFormat("MM/dd/yy HH:mm:ss"),
+            SUPPORTED_TIMESTAMP_FORMATS[0].toSimpleDateFormat(),
+            SUPPORTED_TIMESTAMP_FORMATS[1].toSimpleDateFormat(),
     };
 
     // Static ----------------------------------------------------------------------------------------------------------
@@ -62,7 +68,7 @@ public class TimeQuery extends QueryBase {
 
     private Long time;
 
-    private SimpleDateFormat format;
+    private TimestampFormat format;
 
     private boolean compiled = false;
 
@@ -194,6 +200,28 @@ public class TimeQuery extends QueryBase {
 
     // Query implementation --------------------------------------------------------------------------------------------
 
+    @Override
+    public TimeRange getTimeRange() {
+
+        if (time == null) {
+
+            throw new IllegalStateException(this + " not initialized, null timestamp");
+        }
+
+        if (from) {
+
+            return new TimeRange(time, Long.MAX_VALUE);
+        }
+        else if (to) {
+
+            return new TimeRange(Long.MIN_VALUE, time);
+        }
+        else {
+
+            throw new IllegalArgumentException(this + " was not property initialized");
+        }
+    }
+
     /**
      * In case of non-timed events, or timed events with null timestamps (less usual), a timed query is logically
      * equivalent with a "null query", in that the query does not have the information required to query the event.
@@ -221,9 +249,13 @@ public class TimeQuery extends QueryBase {
 
         TimedEvent te = (TimedEvent) e;
 
-        Long eventTime = te.getTime();
+        //
+        // Long.MIN_VALUE is not a meaningful timestamp, so it can be safely used as "no timestamp" marker
+        //
+
+        long eventTime = te.getTime(Long.MIN_VALUE);
 
-        return eventTime == null || selects(eventTime);
+        return eventTime == Long.MIN_VALUE || selects(eventTime);
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -240,13 +272,17 @@ public class TimeQuery extends QueryBase {
         //
         // try all supported formats and only fail if none is found
         //
-        for(SimpleDateFormat f: SUPPORTED_FORMATS) {
+        for(TimestampFormat f: SUPPORTED_TIMESTAMP_FORMATS) {
+
+            //
+            // Long.MIN_VALUE is not a meaningful timestamp, so it can be safely used as "no match" marker
+            //
 
-            try {
+            long t = f.parse(ts, Long.MIN_VALUE);
 
-                Date d = f.parse(ts);
+            if (t != Long.MIN_VALUE) {
 
-                this.time = d.getTime();
+                this.time = t;
 
                 //
                 // first match is preferred
@@ -256,16 +292,14 @@ public class TimeQuery extends QueryBase {
 
                 break;
             }
-            catch (ParseException e) {
 
-                //
-                // keep trying
-                //
+            //
+            // keep trying
+            //
 
-                if (log.isTraceEnabled()) {
+            if (log.isTraceEnabled()) {
 
-                    log.trace("heuristics failure, timestamp " + ts + " does not match possible format " + f.toPattern());
-                }
+                log.trace("heuristics failure, timestamp " + ts + " does not match possible format " + f.toPattern());
             }
         }
 
@@ -273,11 +307,11 @@ public class TimeQuery extends QueryBase {
 
             String msg = "unknown timestamp format or invalid timestamp: '" + ts + "', supported formats: ";
 
-            for (int i = 0; i < SUPPORTED_FORMATS.length; i ++) {
+            for (int i = 0; i < SUPPORTED_TIMESTAMP_FORMATS.length; i ++) {
 
-                msg += "'" + SUPPORTED_FORMATS[i].toPattern() + "'";
+                msg += "'" + SUPPORTED_TIMESTAMP_FORMATS[i].toPattern() + "'";
 
-                if (i < SUPPORTED_FORMATS.length - 1) {
+                if (i < SUPPORTED_TIMESTAMP_FORMATS.length - 1) {
 
                     msg += ", ";
                 }
@@ -301,9 +335,28 @@ public class TimeQuery extends QueryBase {
 
     /**
      * The format in which the timestamp was specified. May be null.
+     *
+     * @deprecated use getTimestampFormat(). Returns the corresponding element of SUPPORTED_FORMATS.
      */
+    @Deprecated
     public SimpleDateFormat getFormat() {
 
+        for(int i = 0; i < SUPPORTED_TIMESTAMP_FORMATS.length; i ++) {
+
+            if (SUPPORTED_TIMESTAMP_FORMATS[i] == format) {
+
+                return SUPPORTED_FORMATS[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The format in which the timestamp was specified. May be null.
+     */
+    public TimestampFormat getTimestampFormat() {
+
         return format;
     }
 
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.query;
+
+/**
+ * An immutable closed interval of POSIX times, in milliseconds: the times a query may select. Long.MIN_VALUE and
+ * Long.MAX_VALUE stand for unbounded ends. An interval whose start is after its end is empty.
+ *
+ * The interval is an over-approximation: a query never selects an event whose time is outside the interval, but it
+ * may reject events whose time is inside, because of its non-time components. It is used to avoid reading input that
+ * cannot contain selected events.
+ *
+ * @see Query#getTimeRange()
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimeRange {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final TimeRange UNBOUNDED = new TimeRange(Long.MIN_VALUE, Long.MAX_VALUE);
+
+    public static final TimeRange EMPTY = new TimeRange(Long.MAX_VALUE, Long.MIN_VALUE);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final long from;
+    private final long to;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param from inclusive. Long.MIN_VALUE for no lower bound.
+     * @param to inclusive. Long.MAX_VALUE for no upper bound.
+     */
+    public TimeRange(long from, long to) {
+
+        this.from = from;
+        this.to = to;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the inclusive start, Long.MIN_VALUE if there is no lower bound.
+     */
+    public long getFrom() {
+
+        return from;
+    }
+
+    /**
+     * @return the inclusive end, Long.MAX_VALUE if there is no upper bound.
+     */
+    public long getTo() {
+
+        return to;
+    }
+
+    public boolean hasFrom() {
+
+        return from != Long.MIN_VALUE;
+    }
+
+    public boolean hasTo() {
+
+        return to != Long.MAX_VALUE;
+    }
+
+    public boolean isUnbounded() {
+
+        return !hasFrom() && !hasTo();
+    }
+
+    public boolean isEmpty() {
+
+        return from > to;
+    }
+
+    public boolean contains(long time) {
+
+        return from <= time && time <= to;
+    }
+
+    /**
+     * @return the times contained by both intervals. The result of a conjunction.
+     *
+     * @exception IllegalArgumentException on null interval.
+     */
+    public TimeRange intersect(TimeRange other) {
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null time range");
+        }
+
+        TimeRange result = new TimeRange(Math.max(from, other.from), Math.min(to, other.to));
+
+        return result.isEmpty() ? EMPTY : result;
+    }
+
+    /**
+     * @return the smallest interval that contains both intervals. Over-approximates the result of a disjunction.
+     *
+     * @exception IllegalArgumentException on null interval.
+     */
+    public TimeRange span(TimeRange other) {
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null time range");
+        }
+
+        if (isEmpty()) {
+
+            return other;
+        }
+
+        if (other.isEmpty()) {
+
+            return this;
+        }
+
+        return new TimeRange(Math.min(from, other.from), Math.max(to, other.to));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+
+            return true;
+        }
+
+        if (!(o instanceof TimeRange)) {
+
+            return false;
+        }
+
+        TimeRange that = (TimeRange)o;
+
+        return isEmpty() ? that.isEmpty() : from == that.from && to == that.to;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return isEmpty() ? 0 : 31 * Long.hashCode(from) + Long.hashCode(to);
+    }
+
+    @Override
+    public String toString() {
+
+        if (isEmpty()) {
+
+            return "[]";
+        }
+
+        return "[" + (hasFrom() ? Long.toString(from) : "") + ", " + (hasTo() ? Long.toString(to) : "") + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
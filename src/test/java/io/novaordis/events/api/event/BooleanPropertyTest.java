@@ -21,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -81,6 +83,45 @@ public class BooleanPropertyTest extends PropertyTest {
         assertEquals("test-name", bp.externalizeType());
     }
 
+    // primitive storage -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveValue() throws Exception {
+
+        BooleanProperty p = new BooleanProperty("test", (Boolean)null);
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+
+        p.setBoolean(true);
+
+        assertFalse(p.isNull());
+        assertTrue(p.booleanValue());
+        assertEquals(true, p.getValue());
+
+        p.setValue(null);
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+    }
+
+    @Test
+    public void setValue_WrongType() throws Exception {
+
+        BooleanProperty p = new BooleanProperty("test");
+
+        try {
+
+            p.setValue("true");
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot store a String value in a BooleanProperty"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
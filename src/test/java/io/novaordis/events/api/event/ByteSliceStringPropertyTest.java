@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ByteSliceStringPropertyTest extends StringPropertyTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidRegion() throws Exception {
+
+        byte[] bytes = new byte[10];
+
+        try {
+
+            new ByteSliceStringProperty("test", bytes, 5, 6);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid region"));
+        }
+
+        try {
+
+            new ByteSliceStringProperty("test", (byte[])null, 0, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null byte array"));
+        }
+    }
+
+    @Test
+    public void lazyString() throws Exception {
+
+        byte[] line = "12:00:01 INFO started".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("level", line, 9, 4);
+
+        assertTrue(p.isSlice());
+        assertFalse(p.isNull());
+        assertEquals(String.class, p.getType());
+
+        //
+        // matching does not build the String
+        //
+
+        assertTrue(p.contentEquals("INFO"));
+        assertTrue(p.contains("nf", true));
+        assertTrue(p.regionMatches(false, 1, "NF", 0, 2));
+        assertEquals("INFO", p.getCharSequence().toString());
+        assertTrue(p.isSlice());
+
+        assertEquals("INFO", p.getString());
+        assertFalse(p.isSlice());
+        assertTrue(p.getValue() == p.getValue());
+    }
+
+    @Test
+    public void setValue_ReleasesBytes() throws Exception {
+
+        byte[] line = "abc".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("test", line, 0, 3);
+
+        p.setValue("xyz");
+
+        line[0] = 'z';
+
+        assertEquals("xyz", p.getString());
+        assertTrue(p.contentEquals("xyz"));
+
+        p.setValue(null);
+
+        assertTrue(p.isNull());
+    }
+
+    @Test
+    public void setSlice() throws Exception {
+
+        byte[] line = "a b".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("test", line, 0, 1);
+
+        assertEquals("a", p.getString());
+
+        p.setSlice(line, 2, 1);
+
+        assertTrue(p.isSlice());
+        assertEquals("b", p.getString());
+    }
+
+    @Test
+    public void freeze_BuildsTheString() throws Exception {
+
+        byte[] line = "abc".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("test", line, 0, 3);
+
+        p.freeze();
+
+        line[0] = 'z';
+
+        assertFalse(p.isSlice());
+        assertEquals("abc", p.getString());
+        assertTrue(p.contains("ab", false));
+
+        try {
+
+            p.setSlice(line, 0, 1);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void byteBuffer_Heap() throws Exception {
+
+        ByteBuffer b = ByteBuffer.wrap("xxabcxx".getBytes(StandardCharsets.ISO_8859_1), 1, 5).slice();
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("test", b, 1, 3);
+
+        assertEquals("abc", p.getString());
+    }
+
+    @Test
+    public void byteBuffer_Direct() throws Exception {
+
+        ByteBuffer b = ByteBuffer.allocateDirect(5);
+        b.put("xabcx".getBytes(StandardCharsets.ISO_8859_1));
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("test", b, 1, 3);
+
+        b.put(1, (byte)'z');
+
+        assertEquals("abc", p.getString());
+
+        try {
+
+            new ByteSliceStringProperty("test", b, 3, 3);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid region"));
+        }
+    }
+
+    @Test
+    public void contains_Latin1IgnoreCase() throws Exception {
+
+        byte[] bytes = "caf\u00c9".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("test", bytes, 0, bytes.length);
+
+        assertTrue(p.contains("CAF\u00e9", true));
+        assertFalse(p.contains("CAF\u00e9", false));
+        assertFalse(p.contains("caf\u0100", true));
+    }
+
+    @Test
+    public void event_Query() throws Exception {
+
+        byte[] line = "12:00:01 ERROR connection refused".getBytes(StandardCharsets.ISO_8859_1);
+
+        GenericEvent e = new GenericEvent();
+        ByteSliceStringProperty p = new ByteSliceStringProperty("message", line, 15, 18);
+        e.setProperty(p);
+
+        assertEquals("connection refused", e.getStringProperty("message").getString());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected StringProperty getPropertyToTest(String name) {
+
+        return getStringPropertyToTest(name, "test-value");
+    }
+
+    @Override
+    protected StringProperty getStringPropertyToTest(String name, String value) {
+
+        //
+        // the value is surrounded by other content
+        //
+
+        byte[] bytes = ("<<" + value + ">>").getBytes(StandardCharsets.ISO_8859_1);
+        return new ByteSliceStringProperty(name, bytes, 2, value.length());
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
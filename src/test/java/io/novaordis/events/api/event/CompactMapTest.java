@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class CompactMapTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void putGetRemove() throws Exception {
+
+        CompactMap m = new CompactMap();
+
+        assertTrue(m.isEmpty());
+        assertTrue(m.isCompact());
+
+        assertNull(m.put("a", "A"));
+        assertNull(m.put("b", null));
+        assertNull(m.put(null, "N"));
+        assertEquals("A", m.put("a", "A2"));
+
+        assertEquals(3, m.size());
+        assertEquals("A2", m.get("a"));
+        assertEquals("A2", m.get(new String("a")));
+        assertNull(m.get("b"));
+        assertTrue(m.containsKey("b"));
+        assertEquals("N", m.get(null));
+        assertFalse(m.containsKey("c"));
+
+        assertEquals("A2", m.remove("a"));
+        assertNull(m.remove("a"));
+        assertEquals(2, m.size());
+        assertFalse(m.containsKey("a"));
+        assertEquals("N", m.get(null));
+    }
+
+    @Test
+    public void insertionOrder() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("c", 1);
+        m.put("a", 2);
+        m.put("b", 3);
+
+        Iterator<Map.Entry<String, Object>> i = m.entrySet().iterator();
+        assertEquals("c", i.next().getKey());
+        assertEquals("a", i.next().getKey());
+        assertEquals("b", i.next().getKey());
+        assertFalse(i.hasNext());
+    }
+
+    @Test
+    public void spill() throws Exception {
+
+        CompactMap m = new CompactMap();
+
+        for(int i = 0; i < CompactMap.MAX_COMPACT_SIZE; i ++) {
+
+            m.put("k" + i, i);
+        }
+
+        assertTrue(m.isCompact());
+
+        m.put("k" + CompactMap.MAX_COMPACT_SIZE, CompactMap.MAX_COMPACT_SIZE);
+
+        assertFalse(m.isCompact());
+        assertEquals(CompactMap.MAX_COMPACT_SIZE + 1, m.size());
+
+        for(int i = 0; i <= CompactMap.MAX_COMPACT_SIZE; i ++) {
+
+            assertEquals(i, m.get("k" + i));
+        }
+
+        assertEquals(-1, m.indexOf("k0", 0));
+
+        m.clear();
+
+        assertTrue(m.isEmpty());
+        assertTrue(m.isCompact());
+    }
+
+    @Test
+    public void indexOf_Hint() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+        m.put("b", "B");
+
+        assertEquals(1, m.indexOf("b", 1));
+        assertEquals(1, m.indexOf("b", 0));
+        assertEquals(1, m.indexOf("b", 7));
+        assertEquals(1, m.indexOf("b", -1));
+        assertEquals(-1, m.indexOf("c", 1));
+        assertEquals("B", m.valueAt(1));
+
+        try {
+
+            m.valueAt(2);
+            fail("should have thrown exception");
+        }
+        catch(IndexOutOfBoundsException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void putAll_InPlace() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+
+        CompactMap m2 = new CompactMap();
+        m2.put("a", "A2");
+        m2.put("b", "B");
+
+        m.putAll(m2);
+
+        assertEquals(2, m.size());
+        assertEquals("A2", m.get("a"));
+        assertEquals("B", m.get("b"));
+
+        Map<String, Object> hm = new HashMap<>();
+        hm.put("c", "C");
+
+        m.putAll(hm);
+
+        assertEquals(3, m.size());
+        assertEquals("C", m.get("c"));
+    }
+
+    @Test
+    public void entrySet_SetValueAndRemove() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+        m.put("b", "B");
+        m.put("c", "C");
+
+        for(Iterator<Map.Entry<String, Object>> i = m.entrySet().iterator(); i.hasNext(); ) {
+
+            Map.Entry<String, Object> e = i.next();
+
+            if ("a".equals(e.getKey())) {
+
+                i.remove();
+            }
+            else {
+
+                e.setValue(e.getValue() + "2");
+            }
+        }
+
+        assertEquals(2, m.size());
+        assertEquals("B2", m.get("b"));
+        assertEquals("C2", m.get("c"));
+    }
+
+    @Test
+    public void entrySet_PutDuringIterationFailsFast() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+        m.put("b", "B");
+
+        Iterator<Map.Entry<String, Object>> i = m.entrySet().iterator();
+        assertEquals("a", i.next().getKey());
+
+        m.put("c", "C");
+
+        try {
+
+            i.next();
+            fail("should have thrown exception");
+        }
+        catch(ConcurrentModificationException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void entrySet_ReplacingAValueDuringIterationIsNotAModification() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+        m.put("b", "B");
+
+        Iterator<Map.Entry<String, Object>> i = m.entrySet().iterator();
+        assertEquals("a", i.next().getKey());
+
+        m.put("a", "A2");
+
+        assertEquals("b", i.next().getKey());
+        assertFalse(i.hasNext());
+    }
+
+    @Test
+    public void entrySet_SpillDuringIterationFailsFast() throws Exception {
+
+        CompactMap m = new CompactMap();
+
+        for(int i = 0; i < CompactMap.MAX_COMPACT_SIZE; i ++) {
+
+            m.put("k" + i, i);
+        }
+
+        Iterator<Map.Entry<String, Object>> i = m.entrySet().iterator();
+        assertEquals("k0", i.next().getKey());
+
+        m.put("overflow", -1);
+        assertFalse(m.isCompact());
+
+        //
+        // the arrays are gone, but the iteration must not end silently
+        //
+        assertTrue(i.hasNext());
+
+        try {
+
+            i.next();
+            fail("should have thrown exception");
+        }
+        catch(ConcurrentModificationException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void entrySet_RemoveThroughTheMapDuringIterationFailsFast() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+        m.put("b", "B");
+        m.put("c", "C");
+
+        Iterator<Map.Entry<String, Object>> i = m.entrySet().iterator();
+        i.next();
+
+        m.remove("c");
+
+        try {
+
+            i.remove();
+            fail("should have thrown exception");
+        }
+        catch(ConcurrentModificationException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void entrySet_IteratorAfterSpill() throws Exception {
+
+        CompactMap m = new CompactMap();
+        Set<Map.Entry<String, Object>> entries = m.entrySet();
+
+        for(int i = 0; i <= CompactMap.MAX_COMPACT_SIZE; i ++) {
+
+            m.put("k" + i, i);
+        }
+
+        int count = 0;
+
+        for(Iterator<Map.Entry<String, Object>> i = entries.iterator(); i.hasNext(); i.next()) {
+
+            count ++;
+        }
+
+        assertEquals(CompactMap.MAX_COMPACT_SIZE + 1, count);
+    }
+
+    @Test
+    public void sameAsHashMap() throws Exception {
+
+        CompactMap m = new CompactMap();
+        Map<String, Object> reference = new HashMap<>();
+
+        Random r = new Random(11L);
+
+        for(int i = 0; i < 5000; i ++) {
+
+            String key = "k" + r.nextInt(24);
+
+            if (r.nextInt(3) == 0) {
+
+                assertEquals(reference.remove(key), m.remove(key));
+            }
+            else {
+
+                assertEquals(reference.put(key, i), m.put(key, i));
+            }
+
+            assertEquals(reference.size(), m.size());
+        }
+
+        assertEquals(reference, m);
+        assertEquals(m, reference);
+        assertEquals(reference.hashCode(), m.hashCode());
+    }
+
+    @Test
+    public void equalsAndHashCode() throws Exception {
+
+        CompactMap m = new CompactMap();
+        m.put("a", "A");
+        m.put("b", null);
+
+        Map<String, Object> hm = new HashMap<>();
+        hm.put("b", null);
+        hm.put("a", "A");
+
+        assertEquals(hm, m);
+        assertEquals(m, hm);
+        assertEquals(hm.hashCode(), m.hashCode());
+        assertEquals(m, new CompactMap(hm));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
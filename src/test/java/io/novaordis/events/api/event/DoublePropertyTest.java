@@ -21,6 +21,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -80,6 +83,56 @@ public class DoublePropertyTest extends PropertyTest {
         assertEquals("test-name", sp.externalizeType());
     }
 
+    // primitive storage -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveValue() throws Exception {
+
+        DoubleProperty p = new DoubleProperty("test");
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+
+        p.setDouble(7.1d);
+
+        assertFalse(p.isNull());
+        assertEquals(7.1d, p.doubleValue(), 0.0001);
+        assertEquals(7.1d, p.getValue());
+
+        p.setValue(null);
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+    }
+
+    @Test
+    public void setValue_OtherNumberType() throws Exception {
+
+        DoubleProperty p = new DoubleProperty("test");
+
+        p.setValue(Float.valueOf(7.5f));
+
+        assertEquals(7.5d, p.doubleValue(), 0.0d);
+        assertEquals(Double.class, p.getValue().getClass());
+    }
+
+    @Test
+    public void setValue_WrongType() throws Exception {
+
+        DoubleProperty p = new DoubleProperty("test");
+
+        try {
+
+            p.setValue("7.1");
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot store a String value in a DoubleProperty"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.query.KeywordQuery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/4/17
+ */
+public class EventBatchTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void fromEvents_Null() throws Exception {
+
+        try {
+
+            EventBatch.fromEvents(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null event list"));
+        }
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        for(int i = 0; i < 100; i ++) {
+
+            GenericTimedEvent e = new GenericTimedEvent(1000L + i);
+            e.setLineNumber((long)i);
+            e.setLongProperty("memory", 10L * i, MemoryMeasureUnit.MEGABYTE);
+            e.setIntegerProperty("count", i);
+            e.setProperty(new DoubleProperty("load", i / 2d));
+            e.setProperty(new FloatProperty("ratio", i / 4f));
+            e.setBooleanProperty("even", i % 2 == 0);
+            e.setStringProperty("host", i % 2 == 0 ? "a" : "b");
+            events.add(e);
+        }
+
+        EventBatch b = EventBatch.fromEvents(events);
+
+        assertEquals(100, b.size());
+        assertEquals(7, b.getColumns().size());
+
+        List<Event> result = b.toEvents();
+
+        assertEquals(100, result.size());
+
+        for(int i = 0; i < 100; i ++) {
+
+            Event original = events.get(i);
+            Event copy = result.get(i);
+
+            assertTrue(copy instanceof GenericTimedEvent);
+            assertSameProperties(original.getProperties(), copy.getProperties());
+            assertEquals(1000L + i, ((TimedEvent)copy).getTime(-1L));
+            assertEquals(i, copy.getLineNumber(-1L));
+            assertEquals(MemoryMeasureUnit.MEGABYTE, copy.getLongProperty("memory").getMeasureUnit());
+        }
+    }
+
+    @Test
+    public void columns() throws Exception {
+
+        EventBatch b = new EventBatch(1);
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("a", 1L);
+        e.setStringProperty("s", "x");
+        b.add(e);
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setProperty(new LongProperty("a"));
+        e2.setStringProperty("s", "y");
+        b.add(e2);
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setStringProperty("s", "x");
+        b.add(e3);
+
+        EventBatch.LongColumn a = (EventBatch.LongColumn)b.getColumn("a");
+
+        assertEquals(Long.class, a.getType());
+        assertEquals(1L, a.get(0));
+        assertEquals(1L, a.array()[0]);
+        assertTrue(a.isPresent(0));
+        assertFalse(a.isNull(0));
+        assertTrue(a.isPresent(1));
+        assertTrue(a.isNull(1));
+        assertFalse(a.isPresent(2));
+        assertTrue(a.isNull(2));
+        assertNull(a.toProperty(2));
+
+        //
+        // dictionary encoding
+        //
+
+        EventBatch.StringColumn s = (EventBatch.StringColumn)b.getColumn("s");
+
+        assertEquals(Arrays.asList("x", "y"), s.getDictionary());
+        assertEquals(0, s.getCode(0));
+        assertEquals(1, s.getCode(1));
+        assertEquals(0, s.getCode(2));
+        assertEquals("x", s.get(2));
+
+        assertNull(b.getColumn("no-such-column"));
+    }
+
+    @Test
+    public void columnPromotion_TypeConflict() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("a", 1L);
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setStringProperty("a", "something");
+
+        EventBatch b = EventBatch.fromEvents(Arrays.asList(e, e2));
+
+        EventBatch.Column c = b.getColumn("a");
+
+        assertTrue(c instanceof EventBatch.ObjectColumn);
+        assertEquals(1, b.getColumns().size());
+        assertSameProperty(new LongProperty("a", 1L), c.toProperty(0));
+        assertSameProperty(new StringProperty("a", "something"), c.toProperty(1));
+
+        assertEquals(1L, b.getRow(0).getLong("a", -1L));
+        assertEquals(-1L, b.getRow(1).getLong("a", -1L));
+    }
+
+    @Test
+    public void columnPromotion_MeasureUnitConflict() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("a", 1L, MemoryMeasureUnit.BYTE);
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setLongProperty("a", 2L, MemoryMeasureUnit.KILOBYTE);
+
+        EventBatch b = EventBatch.fromEvents(Arrays.asList(e, e2));
+
+        assertTrue(b.getColumn("a") instanceof EventBatch.ObjectColumn);
+
+        List<Event> events = b.toEvents();
+
+        assertEquals(MemoryMeasureUnit.BYTE, events.get(0).getLongProperty("a").getMeasureUnit());
+        assertEquals(MemoryMeasureUnit.KILOBYTE, events.get(1).getLongProperty("a").getMeasureUnit());
+    }
+
+    @Test
+    public void row() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setLineNumber(7L);
+        e.setLongProperty("a", 1L);
+        e.setIntegerProperty("b", 2);
+        e.setBooleanProperty("c", true);
+        e.setFlag(Event.QUERY_ONCE_FLAG, true);
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setIntegerProperty("b", 3);
+
+        EventBatch b = EventBatch.fromEvents(Arrays.asList(e, e2));
+
+        Event r = b.getRow(0);
+
+        assertFalse(r.isTimed());
+        assertSameProperties(e.getProperties(), r.getProperties());
+        assertSameProperties(e.getProperties(), r.getPropertiesView());
+        assertEquals(e.propertyCount(), r.propertyCount());
+        assertSameProperty(new IntegerProperty("b", 2), r.getProperty(2));
+        assertNull(r.getProperty(10));
+        assertEquals(1L, r.getLong("a", -1L));
+        assertEquals(2, r.getInteger("b", -1));
+        assertTrue(r.getBoolean("c", false));
+        assertEquals(7L, r.getLineNumber().longValue());
+        assertEquals(7L, r.getLineNumber(-1L));
+        assertTrue(r.hasFlag(Event.QUERY_ONCE_FLAG));
+        assertEquals(2, r.getProperties(Boolean.class).size());
+
+        Event r2 = b.getRow(1);
+
+        assertEquals(1, r2.propertyCount());
+        assertEquals(3, r2.getInteger("b", -1));
+        assertEquals(-1L, r2.getLong("a", -1L));
+        assertNull(r2.getProperty("a"));
+        assertNull(r2.getLineNumber());
+        assertFalse(r2.hasFlag(Event.QUERY_ONCE_FLAG));
+    }
+
+    @Test
+    public void row_Timed() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent(5L);
+        e.setLongProperty("a", 1L);
+
+        GenericTimedEvent e2 = new GenericTimedEvent();
+        e2.setLongProperty("a", 2L);
+
+        EventBatch b = EventBatch.fromEvents(Arrays.asList(e, e2, new GenericEvent()));
+
+        assertTrue(b.isTimed(0));
+        assertTrue(b.isTimed(1));
+        assertFalse(b.isTimed(2));
+
+        assertEquals(5L, b.getTime(0, -1L));
+        assertEquals(-1L, b.getTime(1, -1L));
+        assertEquals(5L, b.getTimes()[0]);
+        assertEquals(EventBatch.NO_TIME, b.getTimes()[1]);
+
+        TimedEvent r = (TimedEvent)b.getRow(0);
+
+        assertTrue(r.isTimed());
+        assertEquals(5L, r.getTime().longValue());
+        assertEquals(5L, r.getTimestamp().getTime());
+        assertSameProperties(e.getProperties(), r.getProperties());
+        assertSameProperties(e.getProperties(), r.getPropertiesView());
+        assertSameProperty(new TimestampProperty(5L), r.getProperty(0));
+        assertSameProperty(new TimestampProperty(5L), r.getProperty(TimedEvent.TIME_PROPERTY_NAME));
+        assertSameProperty(new LongProperty("a", 1L), r.getProperty(1));
+        assertEquals(2, r.propertyCount());
+
+        TimedEvent r2 = (TimedEvent)b.getRow(1);
+
+        assertNull(r2.getTime());
+        assertNull(r2.getTimestamp());
+
+        List<Event> events = b.toEvents();
+
+        assertTrue(events.get(0) instanceof GenericTimedEvent);
+        assertTrue(events.get(1) instanceof GenericTimedEvent);
+        assertNull(((TimedEvent)events.get(1)).getTime());
+        assertFalse(events.get(2).isTimed());
+    }
+
+    @Test
+    public void row_ReadOnly() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent(5L);
+        e.setLongProperty("a", 1L);
+
+        EventBatch b = EventBatch.fromEvents(Arrays.asList(e));
+
+        TimedEvent r = (TimedEvent)b.getRow(0);
+
+        try {
+
+            r.setLongProperty("a", 2L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("is read-only"));
+        }
+
+        try {
+
+            r.removeLongProperty("a");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("is read-only"));
+        }
+
+        try {
+
+            r.setTime(1L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("is read-only"));
+        }
+
+        assertEquals(1L, r.getLong("a", -1L));
+    }
+
+    @Test
+    public void row_InvalidIndex() throws Exception {
+
+        EventBatch b = new EventBatch();
+
+        try {
+
+            b.getRow(0);
+            fail("should have thrown exception");
+        }
+        catch(IndexOutOfBoundsException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("row: 0"));
+        }
+    }
+
+    @Test
+    public void rowsCanBeQueried() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("host", "alpha");
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setStringProperty("host", "beta");
+
+        EventBatch b = EventBatch.fromEvents(Arrays.asList(e, e2));
+
+        KeywordQuery q = new KeywordQuery("ALPHA");
+
+        assertTrue(q.selects(b.getRow(0)));
+        assertFalse(q.selects(b.getRow(1)));
+    }
+
+    @Test
+    public void growth() throws Exception {
+
+        EventBatch b = new EventBatch(0);
+
+        for(int i = 0; i < 1000; i ++) {
+
+            GenericEvent e = new GenericEvent();
+            e.setLongProperty("a", (long)i);
+
+            if (i == 999) {
+
+                e.setBooleanProperty("last", true);
+            }
+
+            assertEquals(i, b.add(e));
+        }
+
+        assertEquals(1000, b.size());
+
+        EventBatch.LongColumn a = (EventBatch.LongColumn)b.getColumn("a");
+
+        for(int i = 0; i < 1000; i ++) {
+
+            assertEquals(i, a.get(i));
+        }
+
+        EventBatch.BooleanColumn last = (EventBatch.BooleanColumn)b.getColumn("last");
+
+        assertFalse(last.isPresent(998));
+        assertTrue(last.get(999));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void assertSameProperty(Property expected, Property actual) {
+
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getMeasureUnit(), actual.getMeasureUnit());
+    }
+
+    private static void assertSameProperties(List<Property> expected, List<Property> actual) {
+
+        assertEquals(expected.size(), actual.size());
+
+        for(int i = 0; i < expected.size(); i ++) {
+
+            assertSameProperty(expected.get(i), actual.get(i));
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
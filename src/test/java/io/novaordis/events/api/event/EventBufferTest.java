@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class EventBufferTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new EventBuffer(0, EventBuffer.OverflowPolicy.DROP_OLDEST);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid budget"));
+        }
+
+        try {
+
+            new EventBuffer(100, (EventBuffer.OverflowPolicy)null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null policy"));
+        }
+
+        try {
+
+            new EventBuffer(100, EventBuffer.OverflowPolicy.SPILL_OLDEST);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null spill consumer"));
+        }
+    }
+
+    @Test
+    public void add_Null() throws Exception {
+
+        EventBuffer b = new EventBuffer(1000, EventBuffer.OverflowPolicy.DROP_OLDEST);
+
+        try {
+
+            b.add(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null event"));
+        }
+    }
+
+    @Test
+    public void addPollPeek() throws Exception {
+
+        EventBuffer b = new EventBuffer(1024 * 1024, EventBuffer.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(b.isEmpty());
+        assertNull(b.poll());
+        assertNull(b.peek());
+
+        GenericEvent e = event(0);
+        GenericEvent e2 = event(1);
+
+        assertTrue(b.add(e));
+        assertTrue(b.add(e2));
+
+        assertEquals(2, b.size());
+        assertEquals(
+                e.estimateRetainedBytes() + e2.estimateRetainedBytes() + 2 * EventBuffer.ENTRY_OVERHEAD,
+                b.getRetainedBytes());
+
+        assertSame(e, b.peek());
+        assertSame(e, b.poll());
+        assertEquals(e2.estimateRetainedBytes() + EventBuffer.ENTRY_OVERHEAD, b.getRetainedBytes());
+        assertSame(e2, b.poll());
+        assertEquals(0, b.getRetainedBytes());
+        assertTrue(b.isEmpty());
+    }
+
+    @Test
+    public void add_EventsAreFrozen() throws Exception {
+
+        EventBuffer b = new EventBuffer(1024 * 1024, EventBuffer.OverflowPolicy.DROP_OLDEST);
+
+        GenericEvent e = event(0);
+        long bytes = e.estimateRetainedBytes();
+
+        assertTrue(b.add(e));
+        assertTrue(e.isFrozen());
+
+        try {
+
+            e.setStringProperty("message", "something else happened");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        assertEquals(bytes + EventBuffer.ENTRY_OVERHEAD, b.getRetainedBytes());
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle s = schema.addProperty("s", String.class);
+        SchemaEvent se = schema.newEvent();
+        se.set(s, "blue");
+
+        assertTrue(b.add(se));
+        assertTrue(se.isFrozen());
+
+        //
+        // a mutable copy can still be changed
+        //
+
+        Event copy = e.mutableCopy();
+        copy.setStringProperty("message", "something else happened");
+        assertEquals("something happened", e.getStringProperty("message").getString());
+    }
+
+    @Test
+    public void dropOldest() throws Exception {
+
+        long eventSize = event(0).estimateRetainedBytes() + EventBuffer.ENTRY_OVERHEAD;
+
+        EventBuffer b = new EventBuffer(3 * eventSize, EventBuffer.OverflowPolicy.DROP_OLDEST);
+
+        for(int i = 0; i < 10; i ++) {
+
+            assertTrue(b.add(event(i)));
+            assertTrue(b.getRetainedBytes() <= b.getBudget());
+        }
+
+        assertEquals(3, b.size());
+        assertEquals(7, b.getDroppedCount());
+        assertEquals(0, b.getSpilledCount());
+
+        Iterator<Event> i = b.iterator();
+        assertEquals(7, i.next().getLongProperty("id").getLong().longValue());
+        assertEquals(8, i.next().getLongProperty("id").getLong().longValue());
+        assertEquals(9, i.next().getLongProperty("id").getLong().longValue());
+        assertFalse(i.hasNext());
+    }
+
+    @Test
+    public void dropNewest() throws Exception {
+
+        long eventSize = event(0).estimateRetainedBytes() + EventBuffer.ENTRY_OVERHEAD;
+
+        EventBuffer b = new EventBuffer(3 * eventSize, EventBuffer.OverflowPolicy.DROP_NEWEST);
+
+        for(int i = 0; i < 10; i ++) {
+
+            assertEquals(i < 3, b.add(event(i)));
+        }
+
+        assertEquals(3, b.size());
+        assertEquals(7, b.getDroppedCount());
+        assertEquals(0, b.peek().getLongProperty("id").getLong().longValue());
+    }
+
+    @Test
+    public void spillOldest() throws Exception {
+
+        long eventSize = event(0).estimateRetainedBytes() + EventBuffer.ENTRY_OVERHEAD;
+
+        List<Event> spilled = new ArrayList<>();
+
+        EventBuffer b = new EventBuffer(3 * eventSize, spilled::add);
+
+        assertEquals(EventBuffer.OverflowPolicy.SPILL_OLDEST, b.getPolicy());
+
+        for(int i = 0; i < 10; i ++) {
+
+            assertTrue(b.add(event(i)));
+        }
+
+        assertEquals(3, b.size());
+        assertEquals(7, b.getSpilledCount());
+        assertEquals(0, b.getDroppedCount());
+        assertEquals(7, spilled.size());
+
+        for(int i = 0; i < 7; i ++) {
+
+            assertEquals(i, spilled.get(i).getLongProperty("id").getLong().longValue());
+        }
+    }
+
+    @Test
+    public void eventLargerThanBudget() throws Exception {
+
+        GenericEvent large = event(0);
+        large.setStringProperty("payload", new String(new char[1000]));
+
+        long budget = large.estimateRetainedBytes() / 2;
+
+        EventBuffer b = new EventBuffer(budget, EventBuffer.OverflowPolicy.DROP_OLDEST);
+        assertTrue(b.add(event(1)));
+        assertFalse(b.add(large));
+        assertEquals(1, b.size());
+        assertEquals(1, b.getDroppedCount());
+
+        List<Event> spilled = new ArrayList<>();
+        b = new EventBuffer(budget, spilled::add);
+        assertFalse(b.add(large));
+        assertTrue(b.isEmpty());
+        assertSame(large, spilled.get(0));
+    }
+
+    @Test
+    public void nestedEventsCount() throws Exception {
+
+        GenericEvent e = event(0);
+        GenericEvent nested = new GenericEvent();
+        nested.setStringProperty("payload", new String(new char[1000]));
+        e.setEventProperty("nested", nested);
+
+        EventBuffer b = new EventBuffer(1024 * 1024, EventBuffer.OverflowPolicy.DROP_OLDEST);
+        b.add(e);
+
+        assertTrue(b.getRetainedBytes() > HeapFootprint.ofString(1000));
+    }
+
+    @Test
+    public void setBudget() throws Exception {
+
+        long eventSize = event(0).estimateRetainedBytes() + EventBuffer.ENTRY_OVERHEAD;
+
+        List<Event> spilled = new ArrayList<>();
+
+        EventBuffer b = new EventBuffer(5 * eventSize, spilled::add);
+
+        for(int i = 0; i < 5; i ++) {
+
+            b.add(event(i));
+        }
+
+        b.setBudget(2 * eventSize);
+
+        assertEquals(2, b.size());
+        assertEquals(3, spilled.size());
+        assertEquals(3, b.peek().getLongProperty("id").getLong().longValue());
+
+        try {
+
+            b.setBudget(-1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid budget"));
+        }
+    }
+
+    @Test
+    public void clear() throws Exception {
+
+        EventBuffer b = new EventBuffer(1024 * 1024, EventBuffer.OverflowPolicy.DROP_OLDEST);
+        b.add(event(0));
+
+        b.clear();
+
+        assertTrue(b.isEmpty());
+        assertEquals(0, b.getRetainedBytes());
+        assertEquals(0, b.getDroppedCount());
+    }
+
+    @Test
+    public void budgetFromMaxHeap() throws Exception {
+
+        long budget = EventBuffer.budgetFromMaxHeap(0.25);
+
+        assertTrue(budget > 0);
+        assertTrue(budget <= Runtime.getRuntime().maxMemory());
+
+        try {
+
+            EventBuffer.budgetFromMaxHeap(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid heap fraction"));
+        }
+
+        try {
+
+            EventBuffer.budgetFromMaxHeap(1.5);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            // expected
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericEvent event(long id) {
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("id", id);
+        e.setStringProperty("message", "something happened");
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
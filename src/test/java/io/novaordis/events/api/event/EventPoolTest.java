@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/3/17
+ */
+public class EventPoolTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullFactory() throws Exception {
+
+        try {
+
+            new EventPool<GenericEvent>(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null factory"));
+        }
+    }
+
+    @Test
+    public void constructor_NegativeCapacity() throws Exception {
+
+        try {
+
+            new EventPool<>(GenericEvent::new, -1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid capacity"));
+        }
+    }
+
+    @Test
+    public void acquireReleaseAcquire() throws Exception {
+
+        EventPool<GenericTimedEvent> pool = new EventPool<>(GenericTimedEvent::new);
+
+        assertEquals(EventPool.DEFAULT_CAPACITY, pool.getCapacity());
+        assertEquals(0, pool.size());
+
+        GenericTimedEvent e = pool.acquire();
+
+        e.setTime(7L);
+        e.setLineNumber(3L);
+        e.setStringProperty("a", "A");
+        e.setFlag(Event.QUERY_ONCE_FLAG, true);
+
+        pool.release(e);
+
+        assertEquals(1, pool.size());
+
+        GenericTimedEvent e2 = pool.acquire();
+
+        assertTrue(e == e2);
+        assertEquals(0, pool.size());
+
+        //
+        // reset
+        //
+
+        assertNull(e2.getTime());
+        assertNull(e2.getLineNumber());
+        assertNull(e2.getProperty("a"));
+        assertFalse(e2.hasFlag(Event.QUERY_ONCE_FLAG));
+        assertEquals(1, e2.propertyCount());
+    }
+
+    @Test
+    public void propertiesAreReused() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+
+        e.setStringProperty("a", "A");
+        e.setLongProperty("b", 1L);
+        e.setIntegerProperty("c", 2, null);
+        e.setBooleanProperty("d", true);
+
+        StringProperty a = e.getStringProperty("a");
+        LongProperty b = e.getLongProperty("b");
+        IntegerProperty c = e.getIntegerProperty("c");
+        BooleanProperty d = e.getBooleanProperty("d");
+
+        pool.release(e);
+
+        GenericEvent e2 = pool.acquire();
+
+        //
+        // same properties, same order
+        //
+
+        e2.setStringProperty("a", "A2");
+        e2.setLongProperty("b", 10L);
+        e2.setIntegerProperty("c", 20, null);
+        e2.setBooleanProperty("d", false);
+
+        assertTrue(a == e2.getStringProperty("a"));
+        assertTrue(b == e2.getLongProperty("b"));
+        assertTrue(c == e2.getIntegerProperty("c"));
+        assertTrue(d == e2.getBooleanProperty("d"));
+
+        assertEquals("A2", e2.getStringProperty("a").getString());
+        assertEquals(10L, e2.getLong("b", -1L));
+        assertEquals(20, e2.getInteger("c", -1));
+        assertFalse(e2.getBoolean("d", true));
+    }
+
+    @Test
+    public void propertiesAreNotReusedIfNamesDoNotMatch() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+        e.setLongProperty("b", 1L);
+        LongProperty b = e.getLongProperty("b");
+
+        pool.release(e);
+
+        GenericEvent e2 = pool.acquire();
+        e2.setLongProperty("x", 2L);
+
+        assertFalse(b == e2.getLongProperty("x"));
+        assertEquals(1L, b.longValue());
+    }
+
+    @Test
+    public void release_NotFromThisPool() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        try {
+
+            pool.release(new GenericEvent());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("was not acquired from"));
+        }
+    }
+
+    @Test
+    public void release_Twice() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+
+        pool.release(e);
+
+        try {
+
+            pool.release(e);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("was already released"));
+        }
+    }
+
+    @Test
+    public void release_PoolFull() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new, 1);
+
+        GenericEvent e = pool.acquire();
+        GenericEvent e2 = pool.acquire();
+
+        pool.release(e);
+        pool.release(e2);
+
+        assertEquals(1, pool.size());
+
+        //
+        // the discarded event is detached from the pool
+        //
+
+        assertFalse(EventPool.recycle(e2));
+    }
+
+    @Test
+    public void zeroCapacity_NoPooling() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new, 0);
+
+        GenericEvent e = pool.acquire();
+
+        assertFalse(EventPool.recycle(e));
+        assertEquals(0, pool.size());
+
+        assertFalse(e == pool.acquire());
+    }
+
+    @Test
+    public void setCapacity_DiscardsExcess() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+        GenericEvent e2 = pool.acquire();
+
+        pool.release(e);
+        pool.release(e2);
+
+        assertEquals(2, pool.size());
+
+        pool.setCapacity(1);
+
+        assertEquals(1, pool.getCapacity());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void recycle() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+
+        assertTrue(EventPool.recycle(e));
+        assertEquals(1, pool.size());
+
+        assertFalse(EventPool.recycle(new GenericEvent()));
+        assertFalse(EventPool.recycle(null));
+    }
+
+    @Test
+    public void frozenEventsAreDetached() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+        e.setStringProperty("a", "A");
+        e.freeze();
+
+        //
+        // neither recycling nor releasing reset the frozen event, or return it to the pool
+        //
+
+        assertFalse(EventPool.recycle(e));
+        pool.release(e);
+
+        assertEquals(0, pool.size());
+        assertEquals("A", e.getStringProperty("a").getString());
+        assertTrue(pool.acquire() != e);
+    }
+
+    @Test
+    public void threadConfinement() throws Exception {
+
+        final EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        final GenericEvent e = pool.acquire();
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicReference<Boolean> recycled = new AtomicReference<>();
+
+        Thread t = new Thread(() -> {
+
+            recycled.set(EventPool.recycle(e));
+
+            try {
+
+                pool.acquire();
+            }
+            catch(Throwable th) {
+
+                failure.set(th);
+            }
+        });
+
+        t.start();
+        t.join();
+
+        //
+        // recycle() on a foreign thread is a noop, acquire() fails
+        //
+
+        assertFalse(recycled.get());
+        assertTrue(failure.get() instanceof IllegalStateException);
+        assertTrue(failure.get().getMessage().contains("is confined to thread"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
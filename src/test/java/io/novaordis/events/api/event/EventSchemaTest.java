@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/2/17
+ */
+public class EventSchemaTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void addProperty() throws Exception {
+
+        EventSchema s = new EventSchema();
+
+        assertEquals(0, s.size());
+
+        PropertyHandle h = s.addProperty("a", String.class);
+        PropertyHandle h2 = s.addProperty("b", Long.class, MemoryMeasureUnit.MEGABYTE);
+
+        assertEquals(2, s.size());
+
+        assertEquals(s, h.getSchema());
+        assertEquals(0, h.getSlot());
+        assertEquals("a", h.getName());
+        assertEquals(String.class, h.getType());
+        assertNull(h.getMeasureUnit());
+
+        assertEquals(1, h2.getSlot());
+        assertEquals(MemoryMeasureUnit.MEGABYTE, h2.getMeasureUnit());
+
+        assertEquals(h, s.getHandle("a"));
+        assertEquals(h2, s.getHandle("b"));
+        assertNull(s.getHandle("c"));
+
+        assertEquals(h, s.getHandle(0));
+        assertEquals(h2, s.getHandle(1));
+
+        List<PropertyHandle> handles = s.getHandles();
+        assertEquals(2, handles.size());
+        assertEquals(h, handles.get(0));
+        assertEquals(h2, handles.get(1));
+    }
+
+    @Test
+    public void addProperty_DuplicateName() throws Exception {
+
+        EventSchema s = new EventSchema();
+
+        s.addProperty("a", String.class);
+
+        try {
+
+            s.addProperty("a", Long.class);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("duplicate property name: a"));
+        }
+    }
+
+    @Test
+    public void addProperty_NullType() throws Exception {
+
+        try {
+
+            new EventSchema().addProperty("a", null);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null type"));
+        }
+    }
+
+    @Test
+    public void addProperty_UnsupportedType() throws Exception {
+
+        try {
+
+            new EventSchema().addProperty("a", Object.class);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("unsupported property type"));
+        }
+    }
+
+    @Test
+    public void addProperty_TimestampName() throws Exception {
+
+        try {
+
+            new EventSchema().addProperty(TimedEvent.TIME_PROPERTY_NAME, Long.class);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("is reserved for timestamps"));
+        }
+    }
+
+    @Test
+    public void addProperty_HeaderNames() throws Exception {
+
+        for(String name: new String[] { Event.LINE_PROPERTY_NAME, Event.QUERY_ONCE_PROPERTY_NAME }) {
+
+            try {
+
+                new EventSchema().addProperty(name, Long.class);
+                fail("should throw exception");
+            }
+            catch(IllegalArgumentException e) {
+
+                String msg = e.getMessage();
+                assertTrue(msg.contains("is maintained in the event header"));
+            }
+        }
+    }
+
+    @Test
+    public void toProperty() throws Exception {
+
+        EventSchema s = new EventSchema();
+
+        assertTrue(EventSchema.toProperty(s.addProperty("s", String.class), "x") instanceof StringProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("l", Long.class), 1L) instanceof LongProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("i", Integer.class), 1) instanceof IntegerProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("f", Float.class), 1f) instanceof FloatProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("d", Double.class), 1d) instanceof DoubleProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("b", Boolean.class), true) instanceof BooleanProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("t", Date.class), new Date()) instanceof DateProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("m", Map.class), null) instanceof MapProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("li", List.class), null) instanceof ListProperty);
+        assertTrue(EventSchema.toProperty(s.addProperty("e", Event.class), null) instanceof EventProperty);
+
+        Property p = EventSchema.toProperty(
+                s.addProperty("mu", Long.class, MemoryMeasureUnit.BYTE), 10L);
+        assertEquals("mu", p.getName());
+        assertEquals(10L, p.getValue());
+        assertEquals(MemoryMeasureUnit.BYTE, p.getMeasureUnit());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -16,6 +16,7 @@
 
 package io.novaordis.events.api.event;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -644,6 +645,49 @@ public abstract class EventTest {
         assertEquals("value 2", e.getProperty("something").getValue());
     }
 
+    // primitive accessors ---------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveAccessors() throws Exception {
+
+        Event e = getEventToTest();
+
+        assertEquals(-1L, e.getLong("l", -1L));
+        assertEquals(-1, e.getInteger("i", -1));
+        assertEquals(-1f, e.getFloat("f", -1f), 0.0001);
+        assertEquals(-1d, e.getDouble("d", -1d), 0.0001);
+        assertTrue(e.getBoolean("b", true));
+
+        e.setProperty(new LongProperty("l", 1L));
+        e.setProperty(new IntegerProperty("i", 2));
+        e.setProperty(new FloatProperty("f", 3.1f));
+        e.setProperty(new DoubleProperty("d", 4.1d));
+        e.setProperty(new BooleanProperty("b", false));
+
+        assertEquals(1L, e.getLong("l", -1L));
+        assertEquals(2, e.getInteger("i", -1));
+        assertEquals(3.1f, e.getFloat("f", -1f), 0.0001);
+        assertEquals(4.1d, e.getDouble("d", -1d), 0.0001);
+        assertFalse(e.getBoolean("b", true));
+
+        //
+        // type mismatch
+        //
+
+        assertEquals(-1L, e.getLong("i", -1L));
+        assertEquals(-1, e.getInteger("l", -1));
+        assertEquals(-1f, e.getFloat("d", -1f), 0.0001);
+        assertEquals(-1d, e.getDouble("f", -1d), 0.0001);
+        assertTrue(e.getBoolean("l", true));
+
+        //
+        // null values
+        //
+
+        e.setProperty(new LongProperty("l"));
+        assertEquals(-1L, e.getLong("l", -1L));
+    }
+
     // line number -----------------------------------------------------------------------------------------------------
 
     @Test
@@ -680,6 +724,187 @@ public abstract class EventTest {
         assertNull(e.getLineNumber());
     }
 
+    // header ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void header_LineNumber() throws Exception {
+
+        Event e = getEventToTest();
+
+        //
+        // some events come with a line number
+        //
+
+        e.setLineNumber(null);
+
+        assertEquals(-1L, e.getLineNumber(-1L));
+
+        e.setLineNumber(11L);
+
+        assertEquals(11L, e.getLineNumber(-1L));
+
+        //
+        // the property view is in sync with the header
+        //
+
+        LongProperty p = e.getLongProperty(Event.LINE_PROPERTY_NAME);
+        assertEquals(11L, p.longValue());
+
+        e.setProperty(new LongProperty(Event.LINE_PROPERTY_NAME, 12L));
+        assertEquals(12L, e.getLineNumber(-1L));
+
+        e.removeLongProperty(Event.LINE_PROPERTY_NAME);
+        assertEquals(-1L, e.getLineNumber(-1L));
+        assertNull(e.getLineNumber());
+
+        e.setLineNumber(13L);
+        e.clearProperties();
+        assertNull(e.getLineNumber());
+    }
+
+    @Test
+    public void header_Flags() throws Exception {
+
+        Event e = getEventToTest();
+
+        assertFalse(e.hasFlag(Event.QUERY_ONCE_FLAG));
+
+        e.setFlag(Event.QUERY_ONCE_FLAG, true);
+
+        assertTrue(e.hasFlag(Event.QUERY_ONCE_FLAG));
+        assertTrue(e.getBooleanProperty(Event.QUERY_ONCE_PROPERTY_NAME).booleanValue());
+
+        e.setFlag(Event.QUERY_ONCE_FLAG, false);
+
+        assertFalse(e.hasFlag(Event.QUERY_ONCE_FLAG));
+        assertNull(e.getBooleanProperty(Event.QUERY_ONCE_PROPERTY_NAME));
+
+        //
+        // setting the property directly updates the header
+        //
+
+        e.setBooleanProperty(Event.QUERY_ONCE_PROPERTY_NAME, true);
+        assertTrue(e.hasFlag(Event.QUERY_ONCE_FLAG));
+
+        e.setBooleanProperty(Event.QUERY_ONCE_PROPERTY_NAME, false);
+        assertFalse(e.hasFlag(Event.QUERY_ONCE_FLAG));
+
+        e.setBooleanProperty(Event.QUERY_ONCE_PROPERTY_NAME, true);
+        e.clearProperties();
+        assertFalse(e.hasFlag(Event.QUERY_ONCE_FLAG));
+    }
+
+    // propertyCount(), forEachProperty(), getPropertiesView() ---------------------------------------------------------
+
+    @Test
+    public void views_ConsistentWithGetProperties() throws Exception {
+
+        Event e = getEventToTest();
+
+        e.setStringProperty("view-a", "A");
+        e.setIntegerProperty("view-b", 1);
+
+        List<Property> expected = e.getProperties();
+
+        assertEquals(expected.size(), e.propertyCount());
+
+        List<Property> view = e.getPropertiesView();
+
+        assertEquals(expected.size(), view.size());
+
+        final List<Property> visited = new ArrayList<>();
+
+        e.forEachProperty(visited::add);
+
+        assertEquals(expected.size(), visited.size());
+
+        for(int i = 0; i < expected.size(); i ++) {
+
+            assertEquals(expected.get(i).getName(), view.get(i).getName());
+            assertEquals(expected.get(i).getValue(), view.get(i).getValue());
+            assertEquals(expected.get(i).getName(), visited.get(i).getName());
+        }
+    }
+
+    @Test
+    public void propertiesView_Live() throws Exception {
+
+        Event e = getEventToTest();
+
+        List<Property> view = e.getPropertiesView();
+
+        int initial = view.size();
+
+        e.setStringProperty("view-a", "A");
+
+        assertEquals(initial + 1, view.size());
+        assertEquals("A", view.get(initial).getValue());
+
+        e.removeStringProperty("view-a");
+
+        assertEquals(initial, view.size());
+    }
+
+    @Test
+    public void propertiesView_ForEach() throws Exception {
+
+        Event e = getEventToTest();
+
+        e.setStringProperty("view-a", "A");
+
+        List<Property> expected = e.getProperties();
+
+        final List<Property> visited = new ArrayList<>();
+
+        e.getPropertiesView().forEach(visited::add);
+
+        assertEquals(expected.size(), visited.size());
+        assertEquals("A", visited.get(visited.size() - 1).getValue());
+
+        try {
+
+            e.getPropertiesView().forEach(null);
+            fail("should have thrown exception");
+        }
+        catch(NullPointerException ex) {
+
+            log.info(ex.getMessage());
+        }
+    }
+
+    @Test
+    public void propertiesView_ReadOnly() throws Exception {
+
+        Event e = getEventToTest();
+
+        try {
+
+            e.getPropertiesView().add(new StringProperty("view-a", "A"));
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            log.info(ex.getMessage());
+        }
+    }
+
+    @Test
+    public void forEachProperty_NullAction() throws Exception {
+
+        Event e = getEventToTest();
+
+        try {
+
+            e.forEachProperty(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("null action"));
+        }
+    }
+
     // getProperties() -------------------------------------------------------------------------------------------------
 
     @Test
@@ -1106,6 +1331,44 @@ public abstract class EventTest {
         assertEquals("something else", p.getValue());
     }
 
+    // estimateRetainedBytes() -----------------------------------------------------------------------------------------
+
+    @Test
+    public void estimateRetainedBytes() throws Exception {
+
+        Event e = getEventToTest();
+
+        long empty = e.estimateRetainedBytes();
+        assertTrue(empty > 0);
+
+        e.setStringProperty("s", "0123456789");
+
+        long withString = e.estimateRetainedBytes();
+        assertTrue(withString >= empty + HeapFootprint.ofString(10));
+
+        e.setStringProperty("s", "0123456789012345678901234567890123456789");
+        assertTrue(e.estimateRetainedBytes() > withString);
+
+        e.removeStringProperty("s");
+        assertTrue(e.estimateRetainedBytes() < withString);
+    }
+
+    @Test
+    public void estimateRetainedBytes_NestedEvent() throws Exception {
+
+        Event e = getEventToTest();
+
+        GenericEvent nested = new GenericEvent();
+        nested.setStringProperty("a", "something");
+        nested.setLongProperty("b", 1L);
+
+        long before = e.estimateRetainedBytes();
+
+        e.setEventProperty("nested", nested);
+
+        assertTrue(e.estimateRetainedBytes() >= before + nested.estimateRetainedBytes());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -21,6 +21,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -80,6 +83,56 @@ public class FloatPropertyTest extends PropertyTest {
         assertEquals("test-name", fp.externalizeType());
     }
 
+    // primitive storage -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveValue() throws Exception {
+
+        FloatProperty p = new FloatProperty("test");
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+
+        p.setFloat(7.1f);
+
+        assertFalse(p.isNull());
+        assertEquals(7.1f, p.floatValue(), 0.0001);
+        assertEquals(7.1f, p.getValue());
+
+        p.setValue(null);
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+    }
+
+    @Test
+    public void setValue_OtherNumberType() throws Exception {
+
+        FloatProperty p = new FloatProperty("test");
+
+        p.setValue(Double.valueOf(7.5d));
+
+        assertEquals(7.5f, p.floatValue(), 0.0f);
+        assertEquals(Float.class, p.getValue().getClass());
+    }
+
+    @Test
+    public void setValue_WrongType() throws Exception {
+
+        FloatProperty p = new FloatProperty("test");
+
+        try {
+
+            p.setValue("7.1");
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot store a String value in a FloatProperty"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
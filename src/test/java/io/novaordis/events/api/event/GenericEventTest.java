@@ -17,7 +17,9 @@
 package io.novaordis.events.api.event;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -482,6 +484,199 @@ public class GenericEventTest extends EventTest {
         }
     }
 
+    // name index ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void nameIndex_WideEvent() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+
+        int count = 3 * GenericEvent.NAME_INDEX_THRESHOLD;
+
+        for(int i = 0; i < count; i ++) {
+
+            e.setIntegerProperty("p" + i, i);
+        }
+
+        for(int i = 0; i < count; i ++) {
+
+            assertEquals(i, e.getIntegerProperty("p" + i).getInteger().intValue());
+            assertEquals("p" + i, e.getProperty(i).getName());
+        }
+
+        assertNull(e.getProperty("no-such-property"));
+
+        //
+        // replace, the position must be preserved
+        //
+
+        assertNotNull(e.setProperty(new StringProperty("p5", "five")));
+        assertEquals("five", e.getStringProperty("p5").getString());
+        assertEquals("p5", e.getProperty(5).getName());
+        assertEquals(count, e.getProperties().size());
+    }
+
+    @Test
+    public void nameIndex_WideEvent_RemoveShiftsSubsequentProperties() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+
+        int count = 3 * GenericEvent.NAME_INDEX_THRESHOLD;
+
+        for(int i = 0; i < count; i ++) {
+
+            e.setIntegerProperty("p" + i, i);
+        }
+
+        assertNotNull(e.removeIntegerProperty("p3"));
+
+        assertNull(e.getProperty("p3"));
+        assertEquals(count - 1, e.getProperties().size());
+
+        for(int i = 0; i < count; i ++) {
+
+            if (i == 3) {
+
+                continue;
+            }
+
+            assertEquals(i, e.getIntegerProperty("p" + i).getInteger().intValue());
+        }
+
+        e.setStringProperty("p3", "three");
+
+        assertEquals("three", e.getStringProperty("p3").getString());
+        assertEquals("p3", e.getProperty(count - 1).getName());
+
+        //
+        // shrink below the threshold and grow back
+        //
+
+        for(int i = 0; i < count; i ++) {
+
+            e.removeIntegerProperty("p" + i);
+        }
+
+        assertEquals(1, e.getProperties().size());
+        assertEquals("three", e.getStringProperty("p3").getString());
+
+        for(int i = 0; i < count; i ++) {
+
+            e.setLongProperty("l" + i, (long)i);
+        }
+
+        for(int i = 0; i < count; i ++) {
+
+            assertEquals(i, e.getLongProperty("l" + i).getLong().longValue());
+        }
+
+        assertEquals("three", e.getStringProperty("p3").getString());
+    }
+
+    @Test
+    public void typeIndex_InvalidatedOnChange() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+
+        e.setStringProperty("s1", "a");
+        e.setIntegerProperty("i1", 1);
+
+        List<Property> strings = e.getProperties(String.class);
+        assertEquals(1, strings.size());
+
+        e.setStringProperty("s2", "b");
+
+        strings = e.getProperties(String.class);
+        assertEquals(2, strings.size());
+        assertEquals("s1", strings.get(0).getName());
+        assertEquals("s2", strings.get(1).getName());
+
+        //
+        // replacing with a different type
+        //
+
+        e.setProperty(new IntegerProperty("s1", 2));
+
+        strings = e.getProperties(String.class);
+        assertEquals(1, strings.size());
+        assertEquals("s2", strings.get(0).getName());
+
+        List<Property> integers = e.getProperties(Integer.class);
+        assertEquals(2, integers.size());
+        assertEquals("s1", integers.get(0).getName());
+        assertEquals("i1", integers.get(1).getName());
+
+        e.removeStringProperty("s2");
+        assertTrue(e.getProperties(String.class).isEmpty());
+
+        e.clearProperties();
+        assertTrue(e.getProperties(Integer.class).isEmpty());
+    }
+
+    @Test
+    public void typeIndex_CopiesAreMutable() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+
+        //
+        // no properties, no match, and a match: each invocation returns a new list the caller may modify
+        //
+
+        e.getProperties(String.class).add(new StringProperty("x", "x"));
+
+        e.setStringProperty("s1", "a");
+
+        e.getProperties(Integer.class).add(new StringProperty("x", "x"));
+
+        List<Property> strings = e.getProperties(String.class);
+        strings.add(new StringProperty("x", "x"));
+        assertEquals(2, strings.size());
+
+        //
+        // the index was not modified
+        //
+
+        assertTrue(e.getProperties(Integer.class).isEmpty());
+        assertEquals(1, e.getProperties(String.class).size());
+    }
+
+    // reset() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void reset() throws Exception {
+
+        GenericEvent e = new GenericEvent(7L);
+
+        e.setStringProperty("a", "A");
+        e.setFlag(Event.QUERY_ONCE_FLAG, true);
+
+        e.reset();
+
+        assertEquals(0, e.propertyCount());
+        assertNull(e.getLineNumber());
+        assertFalse(e.hasFlag(Event.QUERY_ONCE_FLAG));
+
+        //
+        // the event is usable after reset
+        //
+
+        e.setStringProperty("a", "B");
+        assertEquals("B", e.getStringProperty("a").getString());
+    }
+
+    @Test
+    public void reset_Property() throws Exception {
+
+        LongProperty p = new LongProperty("a", 1L, new MockMeasureUnit());
+
+        p.reset();
+
+        assertEquals("a", p.getName());
+        assertNull(p.getValue());
+        assertTrue(p.isNull());
+        assertNull(p.getMeasureUnit());
+    }
+
     // appendRawLine() -------------------------------------------------------------------------------------------------
 
     @Test
@@ -546,6 +741,415 @@ public class GenericEventTest extends EventTest {
         assertEquals("something\nsomething else\nsomething else entirely", e.getRawRepresentation());
     }
 
+    @Test
+    public void appendRawLine_RawPropertyReplaced() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        e.appendRawLine("something");
+
+        e.setProperty(new StringProperty(Event.RAW_PROPERTY_NAME, "replaced"));
+
+        assertEquals("replaced", e.getRawRepresentation());
+
+        e.appendRawLine("something else");
+
+        assertEquals("replaced\nsomething else", e.getRawRepresentation());
+
+        e.removeStringProperty(Event.RAW_PROPERTY_NAME);
+
+        assertNull(e.getRawRepresentation());
+
+        e.appendRawLine("something");
+
+        assertEquals("something", e.getRawRepresentation());
+    }
+
+    @Test
+    public void appendRawLine_ManyLines() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        StringBuilder expected = new StringBuilder();
+
+        for(int i = 0; i < 300; i ++) {
+
+            String line = "\tat frame" + i + "(Frame.java:" + i + ")";
+            e.appendRawLine(line);
+            expected.append(i == 0 ? "" : "\n").append(line);
+        }
+
+        assertEquals(expected.toString(), e.getRawRepresentation());
+        assertEquals(expected.toString(), e.getStringProperty(Event.RAW_PROPERTY_NAME).getString());
+        assertFalse(e.isRawRepresentationTruncated());
+    }
+
+    @Test
+    public void appendRawLine_Limit() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        assertEquals(GenericEvent.DEFAULT_RAW_REPRESENTATION_LIMIT, e.getRawRepresentationLimit());
+
+        e.setRawRepresentationLimit(10);
+
+        e.appendRawLine("12345");
+        e.appendRawLine("1234");
+
+        assertEquals("12345\n1234", e.getRawRepresentation());
+        assertFalse(e.isRawRepresentationTruncated());
+
+        e.appendRawLine("abc");
+
+        assertEquals("12345\n1234" + RawRepresentationProperty.TRUNCATION_MARKER, e.getRawRepresentation());
+        assertTrue(e.isRawRepresentationTruncated());
+
+        e.appendRawLine("def");
+
+        assertEquals("12345\n1234" + RawRepresentationProperty.TRUNCATION_MARKER, e.getRawRepresentation());
+
+        e.reset();
+
+        assertEquals(10, e.getRawRepresentationLimit());
+        assertFalse(e.isRawRepresentationTruncated());
+    }
+
+    @Test
+    public void setRawRepresentationLimit_Invalid() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        try {
+
+            e.setRawRepresentationLimit(-1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("invalid raw representation limit"));
+        }
+    }
+
+    // freeze() --------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void freeze() throws Exception {
+
+        GenericEvent e = getEventToTest();
+        e.setStringProperty("a", "A");
+        e.setLongProperty("b", 1L);
+        e.appendRawLine("raw");
+
+        assertFalse(e.isFrozen());
+        assertTrue(e == e.freeze());
+        assertTrue(e.isFrozen());
+        assertTrue(e == e.freeze());
+
+        assertEquals("A", e.getStringProperty("a").getString());
+        assertEquals(1L, e.getLong("b", -1L));
+        assertEquals("raw", e.getRawRepresentation());
+        assertEquals(1, e.getProperties(Long.class).size() - (e.getLineNumber() == null ? 0 : 1));
+
+        try {
+
+            e.setStringProperty("a", "B");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("frozen event"));
+        }
+
+        try {
+
+            e.removeStringProperty("a");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        try {
+
+            e.getLongProperty("b").setLong(2L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        try {
+
+            e.appendRawLine("more");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        try {
+
+            e.setFlag(Event.QUERY_ONCE_FLAG, true);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        try {
+
+            e.clearProperties();
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        try {
+
+            e.reset();
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        assertEquals("A", e.getStringProperty("a").getString());
+        assertEquals(1L, e.getLong("b", -1L));
+        assertEquals("raw", e.getRawRepresentation());
+    }
+
+    @Test
+    public void freeze_LazyPropertiesAreDecoded() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        LazyProperty lp = new PropertyFactory().createLazyInstance("a", Long.class, "x=10", 2, 4, null, null);
+        e.setProperty(lp);
+
+        e.freeze();
+
+        assertTrue(lp.isDecoded());
+        assertEquals(10L, e.getLong("a", -1L));
+    }
+
+    @Test
+    public void freeze_ConcurrentReads() throws Exception {
+
+        final GenericEvent e = getEventToTest();
+
+        for(int i = 0; i < 3 * GenericEvent.NAME_INDEX_THRESHOLD; i ++) {
+
+            e.setLongProperty("p" + i, (long)i);
+        }
+
+        e.setStringProperty("s", "S");
+        e.freeze();
+
+        final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Thread[] threads = new Thread[4];
+
+        for(int i = 0; i < threads.length; i ++) {
+
+            threads[i] = new Thread(() -> {
+
+                for(int j = 0; j < 10000; j ++) {
+
+                    int k = j % (3 * GenericEvent.NAME_INDEX_THRESHOLD);
+
+                    if (e.getLong("p" + k, -1L) != k) {
+
+                        failures.add("p" + k);
+                    }
+
+                    if (e.getProperties(String.class).isEmpty()) {
+
+                        failures.add("s");
+                    }
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for(Thread t: threads) {
+
+            t.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    // snapshot() ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void snapshot() throws Exception {
+
+        GenericEvent e = getEventToTest();
+        e.setStringProperty("a", "A");
+        e.setLongProperty("b", 1L);
+
+        GenericEvent s = e.snapshot();
+
+        assertTrue(s != e);
+        assertEquals(e.getClass(), s.getClass());
+        assertTrue(s.isFrozen());
+        assertFalse(e.isFrozen());
+        assertTrue(s == s.snapshot());
+
+        //
+        // the property instances are shared, and frozen
+        //
+
+        assertTrue(e.getProperty("b") == s.getProperty("b"));
+        assertTrue(((PropertyBase)e.getProperty("b")).isFrozen());
+
+        //
+        // the original remains mutable, but does not modify shared properties
+        //
+
+        e.setStringProperty("a", "A2");
+        e.setLongProperty("b", 2L);
+        e.setStringProperty("c", "C");
+        e.removeStringProperty("a");
+
+        assertEquals("A", s.getStringProperty("a").getString());
+        assertEquals(1L, s.getLong("b", -1L));
+        assertNull(s.getProperty("c"));
+
+        assertNull(e.getProperty("a"));
+        assertEquals(2L, e.getLong("b", -1L));
+        assertEquals("C", e.getStringProperty("c").getString());
+    }
+
+    // mutableCopy() ---------------------------------------------------------------------------------------------------
+
+    @Test
+    public void mutableCopy() throws Exception {
+
+        GenericEvent e = getEventToTest();
+        e.setStringProperty("a", "A");
+        e.setLongProperty("b", 1L);
+
+        GenericEvent c = e.mutableCopy();
+
+        assertTrue(c != e);
+        assertEquals(e.getClass(), c.getClass());
+        assertFalse(c.isFrozen());
+        assertFalse(e.isFrozen());
+        assertTrue(e.getProperty("a") == c.getProperty("a"));
+        assertEquals(e.propertyCount(), c.propertyCount());
+
+        c.setStringProperty("a", "A2");
+        c.setLongProperty("d", 4L);
+
+        assertEquals("A2", c.getStringProperty("a").getString());
+        assertEquals(4L, c.getLong("d", -1L));
+        assertEquals(1L, c.getLong("b", -1L));
+
+        assertEquals("A", e.getStringProperty("a").getString());
+        assertNull(e.getProperty("d"));
+
+        e.clearProperties();
+
+        assertEquals(1L, c.getLong("b", -1L));
+    }
+
+    @Test
+    public void mutableCopy_OfFrozenEvent() throws Exception {
+
+        GenericEvent e = getEventToTest();
+        e.setStringProperty("a", "A");
+        e.freeze();
+
+        GenericEvent c = e.mutableCopy();
+
+        assertFalse(c.isFrozen());
+
+        c.setStringProperty("a", "B");
+
+        assertEquals("B", c.getStringProperty("a").getString());
+        assertEquals("A", e.getStringProperty("a").getString());
+    }
+
+    @Test
+    public void mutableCopy_ManyProperties() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        int count = 3 * GenericEvent.NAME_INDEX_THRESHOLD;
+
+        for(int i = 0; i < count; i ++) {
+
+            e.setLongProperty("p" + i, (long)i);
+        }
+
+        GenericEvent c = e.mutableCopy();
+
+        c.removeLongProperty("p0");
+        c.setLongProperty("q", 100L);
+
+        for(int i = 1; i < count; i ++) {
+
+            assertEquals(i, c.getLong("p" + i, -1L));
+            assertEquals(i, e.getLong("p" + i, -1L));
+        }
+
+        assertEquals(0L, e.getLong("p0", -1L));
+        assertEquals(-1L, c.getLong("p0", -1L));
+        assertEquals(100L, c.getLong("q", -1L));
+        assertEquals(-1L, e.getLong("q", -1L));
+    }
+
+    @Test
+    public void mutableCopy_MapPropertyMerge() throws Exception {
+
+        GenericEvent e = getEventToTest();
+
+        MapProperty mp = new MapProperty("m");
+        mp.getMap().put("a", "A");
+        e.setProperty(mp);
+
+        GenericEvent c = e.mutableCopy();
+
+        MapProperty mp2 = new MapProperty("m");
+        mp2.getMap().put("b", "B");
+        c.setProperty(mp2);
+
+        Map<String, Object> copyMap = c.getMapProperty("m").getMap();
+        assertEquals(2, copyMap.size());
+        assertEquals("A", copyMap.get("a"));
+        assertEquals("B", copyMap.get("b"));
+
+        Map<String, Object> originalMap = e.getMapProperty("m").getMap();
+        assertEquals(1, originalMap.size());
+        assertEquals("A", originalMap.get("a"));
+    }
+
+    @Test
+    public void mutableCopy_RawRepresentation() throws Exception {
+
+        GenericEvent e = getEventToTest();
+        e.appendRawLine("line 1");
+
+        GenericEvent c = e.mutableCopy();
+
+        c.appendRawLine("line 2");
+        e.appendRawLine("line 3");
+
+        assertEquals("line 1\nline 2", c.getRawRepresentation());
+        assertEquals("line 1\nline 3", e.getRawRepresentation());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
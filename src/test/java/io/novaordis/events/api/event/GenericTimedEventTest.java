@@ -193,6 +193,51 @@ public class GenericTimedEventTest extends TimedEventTest {
         }
     }
 
+    // header ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void timestampIsBuiltLazilyAndCached() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent(7L);
+
+        Timestamp ts = e.getTimestamp();
+        assertEquals(7L, ts.getTime());
+        assertTrue(ts == e.getTimestamp());
+
+        e.setTime(8L);
+
+        Timestamp ts2 = e.getTimestamp();
+        assertEquals(8L, ts2.getTime());
+    }
+
+    @Test
+    public void explicitTimestampIsPreserved() throws Exception {
+
+        Timestamp ts = new TimestampImpl(7L);
+
+        GenericTimedEvent e = new GenericTimedEvent(ts);
+
+        assertTrue(ts == e.getTimestamp());
+        assertEquals(7L, e.getTime(-1L));
+    }
+
+    @Test
+    public void timeZoneOffset() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent();
+
+        assertEquals(-1, e.getTimeZoneOffsetMs(-1));
+
+        e.setTime(7L, 3600000);
+
+        assertEquals(7L, e.getTime(-1L));
+        assertEquals(3600000, e.getTimeZoneOffsetMs(-1));
+
+        e.setTime(8L);
+
+        assertEquals(-1, e.getTimeZoneOffsetMs(-1));
+    }
+
     // setProperty() ---------------------------------------------------------------------------------------------------
 
     @Test
@@ -215,6 +260,41 @@ public class GenericTimedEventTest extends TimedEventTest {
         assertEquals(8L, e.getTime().longValue());
     }
 
+    @Test
+    public void timestampProperty_CannotBeModified() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent(1000L);
+
+        TimestampProperty p = (TimestampProperty)e.getProperty(TimedEvent.TIME_PROPERTY_NAME);
+
+        try {
+
+            p.setValue(5000L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("frozen"));
+        }
+
+        assertEquals(1000L, e.getTime().longValue());
+        assertEquals(1000L, p.getValue());
+        assertTrue(e.getProperty(0) == p);
+
+        //
+        // the time is changed with the event's mutators, and the cached property is replaced
+        //
+
+        e.setTime(5000L);
+
+        TimestampProperty p2 = (TimestampProperty)e.getProperty(TimedEvent.TIME_PROPERTY_NAME);
+
+        assertTrue(p2 != p);
+        assertEquals(5000L, p2.getValue());
+        assertEquals(1000L, p.getValue());
+    }
+
     // getProperties() -------------------------------------------------------------------------------------------------
 
     @Test
@@ -252,6 +332,64 @@ public class GenericTimedEventTest extends TimedEventTest {
         assertEquals(1, p3.getValue());
     }
 
+    // snapshot() and mutableCopy() ------------------------------------------------------------------------------------
+
+    @Test
+    public void snapshot() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent(7L);
+        e.setStringProperty("a", "A");
+
+        GenericTimedEvent s = (GenericTimedEvent)e.snapshot();
+
+        assertEquals(7L, s.getTime().longValue());
+        assertEquals(2, s.getPropertiesView().size());
+        assertEquals(7L, s.getPropertiesView().get(0).getValue());
+        assertEquals("A", s.getPropertiesView().get(1).getValue());
+
+        try {
+
+            s.setTime(8L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("frozen event"));
+        }
+
+        e.setTime(8L);
+        e.setStringProperty("a", "B");
+
+        assertEquals(7L, s.getTime().longValue());
+        assertEquals(7L, s.getProperty(TimedEvent.TIME_PROPERTY_NAME).getValue());
+        assertEquals("A", s.getPropertiesView().get(1).getValue());
+
+        assertEquals(8L, e.getTime().longValue());
+        assertEquals(8L, e.getProperty(TimedEvent.TIME_PROPERTY_NAME).getValue());
+        assertEquals("B", e.getPropertiesView().get(1).getValue());
+    }
+
+    @Test
+    public void mutableCopy() throws Exception {
+
+        GenericTimedEvent e = new GenericTimedEvent(7L);
+        e.setStringProperty("a", "A");
+
+        GenericTimedEvent c = (GenericTimedEvent)e.mutableCopy();
+
+        c.setTime(8L);
+        c.setStringProperty("b", "B");
+
+        assertEquals(8L, c.getTime().longValue());
+        assertEquals(3, c.getPropertiesView().size());
+        assertEquals(8L, c.getPropertiesView().get(0).getValue());
+
+        assertEquals(7L, e.getTime().longValue());
+        assertEquals(2, e.getPropertiesView().size());
+        assertEquals(7L, e.getPropertiesView().get(0).getValue());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
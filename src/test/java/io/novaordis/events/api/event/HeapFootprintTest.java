@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class HeapFootprintTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void align() throws Exception {
+
+        assertEquals(0, HeapFootprint.align(0));
+        assertEquals(8, HeapFootprint.align(1));
+        assertEquals(8, HeapFootprint.align(8));
+        assertEquals(16, HeapFootprint.align(9));
+    }
+
+    @Test
+    public void primitives() throws Exception {
+
+        assertEquals(0, HeapFootprint.of(null));
+        assertEquals(24, HeapFootprint.of(1L));
+        assertEquals(24, HeapFootprint.of(1d));
+        assertEquals(16, HeapFootprint.of(1));
+        assertEquals(16, HeapFootprint.of(1f));
+        assertEquals(16, HeapFootprint.of(true));
+        assertEquals(24, HeapFootprint.of(new Date()));
+    }
+
+    @Test
+    public void strings() throws Exception {
+
+        assertEquals(40, HeapFootprint.of(""));
+        assertEquals(48, HeapFootprint.of("abcd"));
+        assertEquals(56, HeapFootprint.of("abcde"));
+        assertEquals(HeapFootprint.ofString(100), HeapFootprint.of(new String(new char[100])));
+        assertEquals(24 + HeapFootprint.ofArray(64, 2), HeapFootprint.of(new StringBuilder(64)));
+        assertEquals(32, HeapFootprint.of(new byte[10]));
+    }
+
+    @Test
+    public void arrays() throws Exception {
+
+        assertEquals(16, HeapFootprint.ofArray(0, 4));
+        assertEquals(24, HeapFootprint.ofArray(1, 4));
+        assertEquals(16 + 800, HeapFootprint.ofArray(100, 8));
+    }
+
+    @Test
+    public void collections() throws Exception {
+
+        List<Object> list = new ArrayList<>();
+
+        long empty = HeapFootprint.of(list);
+
+        list.add("a");
+        list.add(1L);
+
+        assertEquals(24 + HeapFootprint.ofArray(2, 4) + HeapFootprint.of("a") + 24, HeapFootprint.of(list));
+        assertTrue(HeapFootprint.of(list) > empty);
+
+        Map<String, Object> map = new HashMap<>();
+
+        assertEquals(HeapFootprint.ofHashMap(0), HeapFootprint.of(map));
+
+        map.put("a", list);
+
+        assertEquals(
+                HeapFootprint.ofHashMap(1) + HeapFootprint.of("a") + HeapFootprint.of(list), HeapFootprint.of(map));
+    }
+
+    @Test
+    public void hashMap() throws Exception {
+
+        assertEquals(48 + HeapFootprint.ofArray(16, 4) + 32, HeapFootprint.ofHashMap(1));
+        assertEquals(48 + HeapFootprint.ofArray(16, 4) + 12 * 32, HeapFootprint.ofHashMap(12));
+        assertEquals(48 + HeapFootprint.ofArray(32, 4) + 13 * 32, HeapFootprint.ofHashMap(13));
+    }
+
+    @Test
+    public void compactMap() throws Exception {
+
+        CompactMap m = new CompactMap();
+
+        long empty = HeapFootprint.of(m);
+
+        m.put("a", "b");
+
+        assertEquals(empty + HeapFootprint.of("a") + HeapFootprint.of("b"), HeapFootprint.of(m));
+    }
+
+    @Test
+    public void eventsAndProperties() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("a", 1L);
+
+        assertEquals(e.estimateRetainedBytes(), HeapFootprint.of(e));
+
+        Property p = e.getProperty("a");
+
+        assertEquals(p.estimateRetainedBytes(), HeapFootprint.of(p));
+        //
+        // unboxed
+        //
+
+        assertEquals(HeapFootprint.ofObject(4 * 4 + 1 + 8 + 1), p.estimateRetainedBytes());
+
+        e.setStringProperty("b", "something");
+        p = e.getProperty("b");
+
+        assertEquals(HeapFootprint.ofObject(4 * 4 + 1) + HeapFootprint.ofString(9), p.estimateRetainedBytes());
+    }
+
+    @Test
+    public void unknown() throws Exception {
+
+        assertEquals(16, HeapFootprint.of(new Object()));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -21,6 +21,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -80,6 +83,56 @@ public class IntegerPropertyTest extends PropertyTest {
         assertEquals("test-name", ip.externalizeType());
     }
 
+    // primitive storage -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveValue() throws Exception {
+
+        IntegerProperty p = new IntegerProperty("test");
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+
+        p.setInteger(7);
+
+        assertFalse(p.isNull());
+        assertEquals(7, p.intValue());
+        assertEquals(7, p.getValue());
+
+        p.setValue(null);
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+    }
+
+    @Test
+    public void setValue_OtherNumberType() throws Exception {
+
+        IntegerProperty p = new IntegerProperty("test");
+
+        p.setValue(Long.valueOf(7L));
+
+        assertEquals(7, p.intValue());
+        assertEquals(Integer.class, p.getValue().getClass());
+    }
+
+    @Test
+    public void setValue_WrongType() throws Exception {
+
+        IntegerProperty p = new IntegerProperty("test");
+
+        try {
+
+            p.setValue("7");
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot store a String value in a IntegerProperty"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/5/17
+ */
+public class LazyPropertyTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final String LINE = "host-a 1024 0.75 yes";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertyFactory factory = new PropertyFactory();
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidOffsets() throws Exception {
+
+        try {
+
+            factory.createLazyInstance("a", Long.class, LINE, 7, LINE.length() + 1, null, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid offsets"));
+        }
+    }
+
+    @Test
+    public void decodedOnFirstAccess() throws Exception {
+
+        LazyProperty p = factory.createLazyInstance("memory", Long.class, LINE, 7, 11, 2.0, MemoryMeasureUnit.BYTE);
+
+        //
+        // none of these decode
+        //
+
+        assertEquals("memory", p.getName());
+        assertEquals(Long.class, p.getType());
+        assertEquals(MemoryMeasureUnit.BYTE, p.getMeasureUnit());
+        assertEquals("1024", p.getRawValue());
+        assertEquals("memory=1024", p.toString());
+        assertFalse(p.isDecoded());
+
+        assertEquals(2048L, p.getValue());
+        assertTrue(p.isDecoded());
+
+        Property d = p.decode();
+
+        assertTrue(d instanceof LongProperty);
+        assertTrue(d == p.decode());
+        assertEquals(MemoryMeasureUnit.BYTE, d.getMeasureUnit());
+        assertEquals("2048", p.getRawValue());
+    }
+
+    @Test
+    public void typeHeuristics() throws Exception {
+
+        LazyProperty p = factory.createLazyInstance("load", null, LINE, 12, 16, null, null);
+
+        assertFalse(p.isDecoded());
+
+        assertEquals(Float.class, p.getType());
+        assertTrue(p.isDecoded());
+        assertEquals(0.75f, p.getValue());
+    }
+
+    @Test
+    public void conversionFailureReportedOnAccess() throws Exception {
+
+        LazyProperty p = factory.createLazyInstance("count", Long.class, LINE, 0, 6, null, null);
+
+        try {
+
+            p.getValue();
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot convert \"host-a\" to a long"));
+        }
+    }
+
+    @Test
+    public void event_ResolvedOnAccess() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.appendRawLine(LINE);
+
+        LazyProperty host = factory.createLazyInstance("host", String.class, LINE, 0, 6, null, null);
+        LazyProperty memory = factory.createLazyInstance("memory", Long.class, LINE, 7, 11, null, null);
+
+        e.setProperty(host);
+        e.setProperty(memory);
+
+        assertFalse(host.isDecoded());
+        assertFalse(memory.isDecoded());
+        assertEquals(3, e.getPropertiesView().size());
+        assertFalse(memory.isDecoded());
+
+        //
+        // accessed by name, replaced in place
+        //
+
+        assertEquals(1024L, e.getLong("memory", -1L));
+        assertTrue(memory.isDecoded());
+        assertFalse(host.isDecoded());
+        assertTrue(e.getPropertiesView().get(2) instanceof LongProperty);
+        assertTrue(e.getLongProperty("memory") == memory.decode());
+
+        //
+        // accessed by index
+        //
+
+        assertTrue(e.getProperty(1) instanceof StringProperty);
+        assertTrue(host.isDecoded());
+        assertEquals("host-a", e.getStringProperty("host").getString());
+        assertEquals(3, e.propertyCount());
+    }
+
+    @Test
+    public void event_ResolvedOnTypeQuery() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(factory.createLazyInstance("memory", Long.class, LINE, 7, 11, null, null));
+
+        assertEquals(1, e.getProperties(Long.class).size());
+        assertTrue(e.getProperties(Long.class).get(0) instanceof LongProperty);
+    }
+
+    @Test
+    public void event_ResolvedByViewAndIteration() throws Exception {
+
+        //
+        // all access paths expose the decoded property, regardless of what was accessed before
+        //
+
+        GenericEvent e = new GenericEvent();
+        LazyProperty memory = factory.createLazyInstance("memory", Long.class, LINE, 7, 11, null, null);
+        e.setProperty(memory);
+
+        assertTrue(e.getPropertiesView().get(0) instanceof LongProperty);
+        assertTrue(memory.isDecoded());
+
+        e = new GenericEvent();
+        memory = factory.createLazyInstance("memory", Long.class, LINE, 7, 11, null, null);
+        e.setProperty(memory);
+
+        final List<Property> visited = new ArrayList<>();
+        e.forEachProperty(visited::add);
+
+        assertEquals(1, visited.size());
+        assertTrue(visited.get(0) instanceof LongProperty);
+        assertTrue(visited.get(0) == e.getProperty("memory"));
+
+        e = new GenericEvent();
+        memory = factory.createLazyInstance("memory", Long.class, LINE, 7, 11, null, null);
+        e.setProperty(memory);
+
+        List<Property> properties = e.getProperties();
+
+        assertTrue(properties.get(0) instanceof LongProperty);
+        assertEquals(1024L, ((LongProperty)properties.get(0)).getLong().longValue());
+        assertTrue(properties.get(0) == e.getPropertiesView().get(0));
+    }
+
+    @Test
+    public void event_HeaderPropertiesDecodedRightAway() throws Exception {
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(factory.createLazyInstance(Event.LINE_PROPERTY_NAME, Long.class, LINE, 7, 11, null, null));
+
+        assertEquals(1024L, e.getLineNumber(-1L));
+        assertTrue(e.getPropertiesView().get(0) instanceof LongProperty);
+    }
+
+    @Test
+    public void string_Interned() throws Exception {
+
+        PropertyFactory f = new PropertyFactory();
+        StringDictionary d = new StringDictionary();
+        f.setStringDictionary(d);
+
+        String canonical = d.intern(new String("main"));
+
+        String line = "thread=main level=INFO";
+
+        LazyProperty p = f.createLazyInstance("thread", String.class, line, 7, 11, null, null);
+
+        assertSame(canonical, p.getValue());
+        assertEquals(1, d.getHitCount());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
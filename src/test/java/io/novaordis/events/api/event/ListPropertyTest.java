@@ -135,6 +135,23 @@ public class ListPropertyTest extends PropertyTest {
         assertTrue(l.isEmpty());
     }
 
+    @Test
+    public void estimateRetainedBytes_Nested() throws Exception {
+
+        List<Object> list = new ArrayList<>();
+        ListProperty<Object> p = new ListProperty<>("test", list);
+
+        long empty = p.estimateRetainedBytes();
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "0123456789");
+
+        list.add(e);
+        list.add("something");
+
+        assertTrue(p.estimateRetainedBytes() >= empty + e.estimateRetainedBytes() + HeapFootprint.ofString(9));
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
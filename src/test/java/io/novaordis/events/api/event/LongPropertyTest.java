@@ -21,6 +21,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -80,6 +83,56 @@ public class LongPropertyTest extends PropertyTest {
         assertEquals("test-name", lp.externalizeType());
     }
 
+    // primitive storage -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveValue() throws Exception {
+
+        LongProperty p = new LongProperty("test");
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+
+        p.setLong(7L);
+
+        assertFalse(p.isNull());
+        assertEquals(7L, p.longValue());
+        assertEquals(7L, p.getValue());
+
+        p.setValue(null);
+
+        assertTrue(p.isNull());
+        assertNull(p.getValue());
+    }
+
+    @Test
+    public void setValue_OtherNumberType() throws Exception {
+
+        LongProperty p = new LongProperty("test");
+
+        p.setValue(Integer.valueOf(7));
+
+        assertEquals(7L, p.longValue());
+        assertEquals(Long.class, p.getValue().getClass());
+    }
+
+    @Test
+    public void setValue_WrongType() throws Exception {
+
+        LongProperty p = new LongProperty("test");
+
+        try {
+
+            p.setValue("7");
+            fail("should have thrown Exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot store a String value in a LongProperty"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -27,6 +27,7 @@ import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -132,6 +133,121 @@ public class MapPropertyTest extends PropertyTest {
         assertTrue(map.isEmpty());
     }
 
+    @Test
+    public void newMapIsCompact() throws Exception {
+
+        MapProperty mp = new MapProperty("test");
+
+        assertTrue(mp.getMap() instanceof CompactMap);
+    }
+
+    // merge() ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void merge_Null() throws Exception {
+
+        MapProperty mp = new MapProperty("test");
+
+        try {
+
+            mp.merge(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null map property"));
+        }
+    }
+
+    @Test
+    public void merge() throws Exception {
+
+        MapProperty mp = new MapProperty("test");
+        Map<String, Object> map = mp.getMap();
+        map.put("a", "A");
+        map.put("b", "B");
+
+        MapProperty mp2 = new MapProperty("test");
+        mp2.getMap().put("b", "B2");
+        mp2.getMap().put("c", "C");
+
+        mp.merge(mp2);
+
+        //
+        // merged in place
+        //
+
+        assertTrue(map == mp.getMap());
+        assertEquals(3, map.size());
+        assertEquals("A", map.get("a"));
+        assertEquals("B2", map.get("b"));
+        assertEquals("C", map.get("c"));
+    }
+
+    @Test
+    public void merge_NoMap() throws Exception {
+
+        MapProperty mp = new MapProperty("test", null);
+
+        Map<String, Object> source = new HashMap<>();
+        source.put("a", "A");
+
+        mp.merge(new MapProperty("test", source));
+
+        Map<String, Object> map = mp.getMap();
+        assertTrue(map instanceof CompactMap);
+        assertEquals(1, map.size());
+        assertEquals("A", map.get("a"));
+
+        //
+        // not shared with the source
+        //
+
+        source.put("b", "B");
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void merge_EmptySource() throws Exception {
+
+        MapProperty mp = new MapProperty("test", null);
+
+        mp.merge(new MapProperty("test", null));
+
+        assertNull(mp.getValue());
+    }
+
+    @Test
+    public void estimateRetainedBytes_Nested() throws Exception {
+
+        MapProperty p = new MapProperty("test");
+
+        long empty = p.estimateRetainedBytes();
+
+        p.getMap().put("a", "0123456789");
+
+        long withString = p.estimateRetainedBytes();
+        assertTrue(withString >= empty + HeapFootprint.ofString(1) + HeapFootprint.ofString(10));
+
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("b", "0123456789");
+        p.getMap().put("nested", nested);
+
+        assertTrue(p.estimateRetainedBytes() >= withString + HeapFootprint.of(nested));
+
+        //
+        // spilled
+        //
+
+        for(int i = 0; i < CompactMap.MAX_COMPACT_SIZE; i ++) {
+
+            p.getMap().put("k" + i, i);
+        }
+
+        assertTrue(p.estimateRetainedBytes() > withString + HeapFootprint.of(nested));
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
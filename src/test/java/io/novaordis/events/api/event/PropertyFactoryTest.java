@@ -21,14 +21,21 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -42,6 +49,8 @@ public class PropertyFactoryTest {
 
     private static final Logger log = LoggerFactory.getLogger(PropertyFactoryTest.class);
 
+    private static final int ONE_HOUR_LOG_LINES = 3600 * 20;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -602,6 +611,156 @@ public class PropertyFactoryTest {
         assertNull(p2.getMeasureUnit());
     }
 
+    @Test
+    public void createTypeHeuristicsInstance_Timestamp_FormatShared() throws Exception {
+
+        TimestampProperty p = (TimestampProperty)PropertyFactory.createTypeHeuristicsInstance(
+                "a", "12/31/16 23:00:01", null, null);
+        TimestampProperty p2 = (TimestampProperty)PropertyFactory.createTypeHeuristicsInstance(
+                "b", "12/31/16 23:00:02", null, null);
+
+        //
+        // the thread-safe format is shared, SimpleDateFormat instances are only created on demand, and not shared
+        //
+
+        assertNotNull(p.getTimestampFormat());
+        assertTrue(p.getTimestampFormat() == p2.getTimestampFormat());
+        assertTrue(p.getFormat() != p2.getFormat());
+        assertTrue(p.getFormat() != p.getFormat());
+
+        assertEquals("12/31/16 23:00:01", p.externalizeValue());
+        assertEquals("12/31/16 23:00:02", p2.externalizeValue());
+    }
+
+    @Test
+    public void createTypeHeuristicsInstance_LongFromString() throws Exception {
+
+        Property p = PropertyFactory.createTypeHeuristicsInstance("test", "12345678901", null, null);
+
+        assertEquals(12345678901L, ((LongProperty)p).longValue());
+
+        Property p2 = PropertyFactory.createTypeHeuristicsInstance("test", "123456789012345678901", null, null);
+
+        assertEquals("123456789012345678901", ((StringProperty)p2).getString());
+    }
+
+    // classify() ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void classify() throws Exception {
+
+        assertEquals(PropertyFactory.TIMESTAMP, PropertyFactory.classify("12/31/16 23:00:01"));
+        assertEquals(PropertyFactory.TIMESTAMP, PropertyFactory.classify("1/2/2017 3:4:5 trailing content"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("12/31/16 23:00"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("12/31/16T23:00:01"));
+
+        assertEquals(PropertyFactory.FLOAT, PropertyFactory.classify("1.5"));
+        assertEquals(PropertyFactory.FLOAT, PropertyFactory.classify("-.5"));
+        assertEquals(PropertyFactory.FLOAT, PropertyFactory.classify("+1."));
+        assertEquals(PropertyFactory.FLOAT, PropertyFactory.classify(" 1.5e-3f "));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("."));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("1.5.1"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("1.5e"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("1.5 MB"));
+
+        assertEquals(PropertyFactory.INTEGER, PropertyFactory.classify("0"));
+        assertEquals(PropertyFactory.INTEGER, PropertyFactory.classify("+7"));
+        assertEquals(PropertyFactory.INTEGER, PropertyFactory.classify("-2147483648"));
+        assertEquals(PropertyFactory.LONG, PropertyFactory.classify("2147483648"));
+        assertEquals(PropertyFactory.LONG, PropertyFactory.classify("-9223372036854775808"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("9223372036854775808"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("-"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify(" 7"));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify(""));
+        assertEquals(PropertyFactory.STRING, PropertyFactory.classify("something"));
+    }
+
+    @Test
+    public void classify_ConsistentWithParsers() throws Exception {
+
+        String[] values = {
+
+                "1", "-1", "+1", "1.0", "1.", ".1", "1e5", "1.0e5", "1.0E+5", "1.0d", "1.0x", "--1", "1-", "0.0.0",
+                "2147483647", "2147483648", "99999999999999999999", " 1.0", "1.0 ", "abc", "1,000", "1_000",
+        };
+
+        for(String s: values) {
+
+            int kind = PropertyFactory.classify(s);
+
+            assertEquals(s, kind == PropertyFactory.INTEGER, parses(s, Integer.class));
+            assertEquals(s, kind == PropertyFactory.LONG, !parses(s, Integer.class) && parses(s, Long.class));
+            assertEquals(s, kind == PropertyFactory.FLOAT, s.contains(".") && parses(s, Float.class));
+        }
+    }
+
+    // type locking ----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void typeLocking() throws Exception {
+
+        PropertyFactory f = new PropertyFactory();
+
+        for(int i = 0; i < PropertyFactory.TYPE_LOCK_SAMPLES - 1; i ++) {
+
+            assertEquals(i, ((IntegerProperty)f.createInstance("count", null, "" + i, null)).intValue());
+            assertEquals(PropertyFactory.STRING, f.getLockedKind("count"));
+        }
+
+        f.createInstance("count", null, "100", null);
+
+        assertEquals(PropertyFactory.INTEGER, f.getLockedKind("count"));
+
+        //
+        // the lock does not change the result
+        //
+
+        assertEquals(10000000000L, ((LongProperty)f.createInstance("count", null, "10000000000", null)).longValue());
+        assertEquals(PropertyFactory.INTEGER, f.getLockedKind("count"));
+
+        assertEquals(1.5f, ((FloatProperty)f.createInstance("count", null, "1.5", null)).floatValue(), 0.0001);
+        assertEquals(PropertyFactory.STRING, f.getLockedKind("count"));
+
+        //
+        // other names are not affected
+        //
+
+        assertEquals(PropertyFactory.STRING, f.getLockedKind("other"));
+    }
+
+    @Test
+    public void typeLocking_StringsAreNotLocked() throws Exception {
+
+        PropertyFactory f = new PropertyFactory();
+
+        for(int i = 0; i < 2 * PropertyFactory.TYPE_LOCK_SAMPLES; i ++) {
+
+            f.createInstance("host", null, "host" + i, null);
+        }
+
+        assertEquals(PropertyFactory.STRING, f.getLockedKind("host"));
+        assertEquals(7, ((IntegerProperty)f.createInstance("host", null, "7", null)).intValue());
+    }
+
+    @Test
+    public void typeLocking_Timestamp() throws Exception {
+
+        PropertyFactory f = new PropertyFactory();
+
+        for(int i = 0; i < PropertyFactory.TYPE_LOCK_SAMPLES; i ++) {
+
+            f.createInstance("t", null, "12/31/16 23:00:" + (10 + i), null);
+        }
+
+        assertEquals(PropertyFactory.TIMESTAMP, f.getLockedKind("t"));
+
+        long expected = new SimpleDateFormat(PropertyFactory.TIME_FORMAT).parse("01/01/17 00:00:00").getTime();
+
+        assertEquals(expected, f.createInstance("t", null, "01/01/17 00:00:00", null).getValue());
+        assertTrue(f.createInstance("t", null, "none", null) instanceof StringProperty);
+        assertEquals(PropertyFactory.STRING, f.getLockedKind("t"));
+    }
+
     // conversions -----------------------------------------------------------------------------------------------------
 
     @Test
@@ -722,12 +881,236 @@ public class PropertyFactoryTest {
         assertNull(p.getValue());
     }
 
+    @Test
+    public void stringDictionary() throws Exception {
+
+        PropertyFactory f = new PropertyFactory();
+
+        assertNull(f.getStringDictionary());
+
+        //
+        // no interning by default
+        //
+
+        assertNotSame(
+                f.createInstance("a", String.class, new String("x"), null).getValue(),
+                f.createInstance("a", String.class, new String("x"), null).getValue());
+
+        StringDictionary d = new StringDictionary();
+        f.setStringDictionary(d);
+        assertSame(d, f.getStringDictionary());
+
+        Object v = f.createInstance("a", String.class, new String("x"), null).getValue();
+        assertSame(v, f.createInstance("b", String.class, new String("x"), null).getValue());
+
+        //
+        // inferred
+        //
+
+        assertSame(v, f.createInstance("c", null, new String("x"), null).getValue());
+
+        //
+        // regions
+        //
+
+        String line = "level=x";
+
+        StringProperty p = f.createStringInstance("d", line, 6, 7, null);
+        assertSame(v, p.getValue());
+
+        p = f.createStringInstance("e", line.getBytes(), 6, 1, MemoryMeasureUnit.BYTE);
+        assertSame(v, p.getValue());
+        assertEquals(MemoryMeasureUnit.BYTE, p.getMeasureUnit());
+
+        assertEquals(4, d.getHitCount());
+
+        f.setStringDictionary(null);
+
+        assertEquals("x", f.createStringInstance("d", line, 6, 7, null).getValue());
+        assertNotSame(v, f.createStringInstance("d", line, 6, 7, null).getValue());
+    }
+
+    @Test
+    public void stringDictionary_OneHourLog() throws Exception {
+
+        //
+        // one hour of an application log at 20 lines a second. The level, thread, logger category and host values
+        // repeat; the messages do not, and they go through the dictionary too, competing for its slots
+        //
+
+        StringDictionary d = new StringDictionary();
+
+        PropertyFactory interning = new PropertyFactory();
+        interning.setStringDictionary(d);
+
+        long[] interned = driveOneHourLog(interning);
+        long[] plain = driveOneHourLog(new PropertyFactory());
+
+        long lookups = ONE_HOUR_LOG_LINES * 5L;
+        long repetitiveLookups = ONE_HOUR_LOG_LINES * 4L;
+
+        assertEquals(lookups, d.getHitCount() + d.getMissCount());
+
+        //
+        // every message misses, and the repetitive values hit, except for their first occurrence and for the values
+        // the message churn evicted in between
+        //
+
+        long repetitiveMisses = d.getMissCount() - ONE_HOUR_LOG_LINES;
+        assertTrue(repetitiveMisses + " repetitive misses", repetitiveMisses < repetitiveLookups / 100);
+
+        //
+        // retained String heap: the repetitive values are held by a few hundred canonical instances instead of one
+        // copy per event (about 60 KB instead of about 25 MB), while the messages are retained the same either way
+        // (about 8 MB)
+        //
+
+        log.info("repetitive values: " + interned[0] + " bytes interned, " + plain[0] + " bytes not interned");
+
+        assertTrue(interned[0] * 100 < plain[0]);
+        assertEquals(plain[1], interned[1]);
+        assertTrue(interned[0] + interned[1] < (plain[0] + plain[1]) / 3);
+    }
+
+    @Test
+    public void createStringInstance_InvalidArguments() throws Exception {
+
+        PropertyFactory f = new PropertyFactory();
+
+        try {
+
+            f.createStringInstance("a", (CharSequence)null, 0, 0, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null source"));
+        }
+
+        try {
+
+            f.createStringInstance("a", "abc", 2, 1, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid region"));
+        }
+
+        try {
+
+            f.createStringInstance("a", (byte[])null, 0, 0, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null byte array"));
+        }
+
+        try {
+
+            f.createStringInstance("a", new byte[2], 0, 3, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid region"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Creates the String properties of a one hour log, as a parser would, from the regions of each line.
+     *
+     * @return the heap retained by the distinct String instances that hold the repetitive values, and the heap
+     * retained by the distinct String instances that hold the messages.
+     */
+    private static long[] driveOneHourLog(PropertyFactory f) {
+
+        String[] levels = { "INFO", "INFO", "INFO", "INFO", "DEBUG", "DEBUG", "WARN", "ERROR" };
+        Random random = new Random(7L);
+        Set<Object> repetitive = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        Set<Object> messages = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+        for(int i = 0; i < ONE_HOUR_LOG_LINES; i ++) {
+
+            //
+            // the categories are Zipf-like distributed, a few of them produce most of the lines
+            //
+
+            int category = (int)Math.pow(300, random.nextDouble());
+
+            String line = levels[random.nextInt(levels.length)] + " " +
+                    "http-nio-8080-exec-" + random.nextInt(40) + " " +
+                    "com.example.service.module" + (category % 17) + ".Component" + category + " " +
+                    "app-server-0" + random.nextInt(4) + ".example.com " +
+                    "request " + i + " completed in " + random.nextInt(1000) + " ms";
+
+            byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+
+            int start = 0;
+
+            for(int field = 0; field < 5; field ++) {
+
+                int end = field < 4 ? line.indexOf(' ', start) : line.length();
+
+                StringProperty p = f.createStringInstance("f" + field, bytes, start, end - start, null);
+
+                (field < 4 ? repetitive : messages).add(p.getValue());
+
+                start = end + 1;
+            }
+        }
+
+        return new long[] { retained(repetitive), retained(messages) };
+    }
+
+    /**
+     * Estimated with the Java 8 layout on a 64 bit JVM with compressed references: a 24 byte String instance, plus a
+     * char array with a 16 byte header, aligned to 8 bytes.
+     */
+    private static long retained(Set<Object> strings) {
+
+        long result = 0;
+
+        for(Object s: strings) {
+
+            result += 24 + ((16 + 2 * ((String)s).length() + 7) & ~7);
+        }
+
+        return result;
+    }
+
+    private static boolean parses(String s, Class type) {
+
+        try {
+
+            if (Integer.class.equals(type)) {
+
+                Integer.parseInt(s);
+            }
+            else if (Long.class.equals(type)) {
+
+                Long.parseLong(s);
+            }
+            else {
+
+                Float.parseFloat(s);
+            }
+
+            return true;
+        }
+        catch(NumberFormatException e) {
+
+            return false;
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -21,10 +21,12 @@ import org.junit.Test;
 import java.text.Format;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -120,6 +122,70 @@ public abstract class PropertyTest {
         assertEquals("another name", p.getName());
     }
 
+    // freeze() --------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void freeze() throws Exception {
+
+        PropertyBase p = (PropertyBase)getPropertyToTest("test");
+        String name = p.getName();
+        Object value = p.getValue();
+
+        assertFalse(p.isFrozen());
+
+        p.freeze();
+
+        assertTrue(p.isFrozen());
+
+        try {
+
+            p.setValue(getAppropriateValueForPropertyToTest());
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("frozen"));
+        }
+
+        try {
+
+            p.setMeasureUnit(null);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            // expected
+        }
+
+        try {
+
+            p.reset();
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            // expected
+        }
+
+        assertEquals(name, p.getName());
+        assertEquals(value, p.getValue());
+    }
+
+    // estimateRetainedBytes() -----------------------------------------------------------------------------------------
+
+    @Test
+    public void estimateRetainedBytes() throws Exception {
+
+        Property p = getPropertyToTest("test");
+
+        long estimate = p.estimateRetainedBytes();
+
+        assertTrue(estimate >= HeapFootprint.ofObject(4 * HeapFootprint.REFERENCE));
+        assertEquals(0, estimate % HeapFootprint.ALIGNMENT);
+        assertTrue(estimate >= HeapFootprint.of(p.getValue()));
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -0,0 +1,717 @@
+/*
+ * Copyright (c) 2016 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/2/17
+ */
+public class SchemaEventTest extends EventTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullSchema() throws Exception {
+
+        try {
+
+            new SchemaEvent(null);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null schema"));
+        }
+    }
+
+    // slot access -----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void slotAccess() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle s = schema.addProperty("s", String.class);
+        PropertyHandle l = schema.addProperty("l", Long.class, MemoryMeasureUnit.BYTE);
+
+        SchemaEvent e = schema.newEvent();
+
+        assertFalse(e.has(s));
+        assertNull(e.get(s));
+        assertTrue(e.getProperties().isEmpty());
+
+        e.set(s, "blue");
+        e.set(l, 7L);
+
+        assertTrue(e.has(s));
+        assertEquals("blue", e.get(s));
+        assertEquals(7L, e.get(l));
+
+        //
+        // the Event API sees the slot values
+        //
+
+        assertEquals("blue", e.getStringProperty("s").getString());
+        LongProperty lp = e.getLongProperty("l");
+        assertEquals(7L, lp.getLong().longValue());
+        assertEquals(MemoryMeasureUnit.BYTE, lp.getMeasureUnit());
+
+        List<Property> properties = e.getProperties();
+        assertEquals(2, properties.size());
+        assertEquals("s", properties.get(0).getName());
+        assertEquals("l", properties.get(1).getName());
+
+        e.clear(s);
+
+        assertFalse(e.has(s));
+        assertNull(e.getProperty("s"));
+        assertEquals(1, e.getProperties().size());
+    }
+
+    @Test
+    public void slotAccess_NullValue() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle s = schema.addProperty("s", String.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        e.set(s, null);
+
+        assertTrue(e.has(s));
+        assertNull(e.get(s));
+
+        StringProperty sp = e.getStringProperty("s");
+        assertNotNull(sp);
+        assertNull(sp.getString());
+    }
+
+    @Test
+    public void slotAccess_TypeMismatch() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle l = schema.addProperty("l", Long.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        try {
+
+            e.set(l, "not a long");
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException iae) {
+
+            String msg = iae.getMessage();
+            assertTrue(msg.contains("cannot store a String value in l (Long)"));
+        }
+
+        try {
+
+            e.setStringProperty("l", "not a long");
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException iae) {
+
+            String msg = iae.getMessage();
+            assertTrue(msg.contains("cannot store a String value in l (Long)"));
+        }
+    }
+
+    @Test
+    public void slotAccess_HandleFromADifferentSchema() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        schema.addProperty("s", String.class);
+
+        EventSchema schema2 = new EventSchema();
+        PropertyHandle s2 = schema2.addProperty("s", String.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        try {
+
+            e.get(s2);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException iae) {
+
+            String msg = iae.getMessage();
+            assertTrue(msg.contains("does not belong to the schema of this event"));
+        }
+    }
+
+    @Test
+    public void slotAccess_SchemaGrowsAfterTheEventWasCreated() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        schema.addProperty("a", String.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        PropertyHandle b = schema.addProperty("b", Integer.class);
+
+        assertFalse(e.has(b));
+        assertNull(e.get(b));
+
+        e.set(b, 1);
+
+        assertEquals(1, e.get(b));
+        assertEquals(1, e.getIntegerProperty("b").getInteger().intValue());
+    }
+
+    @Test
+    public void slotAccess_Primitives() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle l = schema.addProperty("l", Long.class);
+        PropertyHandle i = schema.addProperty("i", Integer.class);
+        PropertyHandle f = schema.addProperty("f", Float.class);
+        PropertyHandle d = schema.addProperty("d", Double.class);
+        PropertyHandle b = schema.addProperty("b", Boolean.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        assertEquals(-1L, e.getLong(l, -1L));
+        assertEquals(-1, e.getInteger(i, -1));
+        assertEquals(-1f, e.getFloat(f, -1f), 0f);
+        assertEquals(-1d, e.getDouble(d, -1d), 0d);
+        assertTrue(e.getBoolean(b, true));
+
+        e.setLong(l, Long.MIN_VALUE);
+        e.setInteger(i, -7);
+        e.setFloat(f, -1.5f);
+        e.setDouble(d, 2.25d);
+        e.setBoolean(b, false);
+
+        assertEquals(Long.MIN_VALUE, e.getLong(l, -1L));
+        assertEquals(-7, e.getInteger(i, -1));
+        assertEquals(-1.5f, e.getFloat(f, -1f), 0f);
+        assertEquals(2.25d, e.getDouble(d, -1d), 0d);
+        assertFalse(e.getBoolean(b, true));
+
+        //
+        // boxed and Event API access
+        //
+
+        assertEquals(Long.MIN_VALUE, e.get(l));
+        assertEquals(-7, e.get(i));
+        assertEquals(-1.5f, e.get(f));
+        assertEquals(2.25d, e.get(d));
+        assertEquals(false, e.get(b));
+
+        assertEquals(-7, e.getInteger("i", -1));
+        assertEquals(-1.5f, e.getFloatProperty("f").getFloat(), 0f);
+        assertEquals(2.25d, e.getDouble("d", -1d), 0d);
+
+        //
+        // the typed accessors do not convert
+        //
+
+        assertEquals(-1L, e.getLong(i, -1L));
+
+        try {
+
+            e.setLong(i, 1L);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException iae) {
+
+            String msg = iae.getMessage();
+            assertTrue(msg.contains("cannot store a Long value in i (Integer)"));
+        }
+
+        //
+        // a null value is not a default
+        //
+
+        e.set(l, null);
+
+        assertTrue(e.has(l));
+        assertEquals(-1L, e.getLong(l, -1L));
+    }
+
+    // Event API -------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void eventApi_PropertiesAreLive() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle l = schema.addProperty("l", Long.class);
+        PropertyHandle m = schema.addProperty("m", Map.class);
+
+        SchemaEvent e = schema.newEvent();
+        e.setLong(l, 1L);
+
+        LongProperty lp = e.getLongProperty("l");
+
+        assertTrue(lp == e.getLongProperty("l"));
+
+        lp.setValue(2L);
+
+        assertEquals(2L, e.getLong(l, -1L));
+        assertEquals(2L, e.get(l));
+        assertEquals(2L, e.getLong("l", -1L));
+
+        //
+        // setting the value via the handle replaces the property
+        //
+
+        e.setLong(l, 3L);
+
+        assertEquals(3L, e.getLong(l, -1L));
+        assertEquals(2L, lp.getLong().longValue());
+        assertEquals(3L, e.getLongProperty("l").getLong().longValue());
+
+        //
+        // properties passed to setProperty() are kept
+        //
+
+        MapProperty mp = new MapProperty("m");
+        e.setProperty(mp);
+        mp.getMap().put("a", "A");
+
+        assertEquals("A", ((Map)e.get(m)).get("a"));
+
+        //
+        // the header
+        //
+
+        e.setLineNumber(10L);
+
+        LongProperty line = e.getLongProperty(Event.LINE_PROPERTY_NAME);
+        line.setValue(11L);
+
+        assertEquals(11L, e.getLineNumber().longValue());
+        assertEquals(11L, e.getLong(Event.LINE_PROPERTY_NAME, -1L));
+
+        e.setFlag(Event.QUERY_ONCE_FLAG, true);
+
+        BooleanProperty queryOnce = e.getBooleanProperty(Event.QUERY_ONCE_PROPERTY_NAME);
+        queryOnce.setValue(false);
+
+        assertFalse(e.hasFlag(Event.QUERY_ONCE_FLAG));
+        assertNotNull(e.getProperty(Event.QUERY_ONCE_PROPERTY_NAME));
+    }
+
+    @Test
+    public void eventApi_HeaderPropertiesFollowTheSlots() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        schema.addProperty("a", String.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        e.setStringProperty("x", "non-schema");
+        e.setLineNumber(5L);
+        e.setStringProperty("a", "schema");
+
+        List<Property> properties = e.getProperties();
+        assertEquals(3, properties.size());
+        assertEquals("a", properties.get(0).getName());
+        assertEquals(Event.LINE_PROPERTY_NAME, properties.get(1).getName());
+        assertEquals("x", properties.get(2).getName());
+        assertEquals(3, e.propertyCount());
+    }
+
+    @Test
+    public void eventApi_FrozenEventBuildsFrozenProperties() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle l = schema.addProperty("l", Long.class);
+
+        SchemaEvent e = schema.newEvent();
+        e.setLong(l, 1L);
+        e.freeze();
+
+        LongProperty lp = e.getLongProperty("l");
+
+        try {
+
+            lp.setValue(2L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        assertEquals(1L, e.getLong(l, -1L));
+    }
+
+    @Test
+    public void eventApi_SchemaAndNonSchemaProperties() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle a = schema.addProperty("a", String.class);
+        PropertyHandle b = schema.addProperty("b", Integer.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        e.setStringProperty("x", "non-schema");
+        assertNull(e.setIntegerProperty("b", 2));
+        e.setStringProperty("a", "schema");
+
+        assertEquals("schema", e.get(a));
+        assertEquals(2, e.get(b));
+
+        //
+        // schema properties first, in slot order, then the others in setting order
+        //
+
+        List<Property> properties = e.getProperties();
+        assertEquals(3, properties.size());
+        assertEquals("a", properties.get(0).getName());
+        assertEquals("b", properties.get(1).getName());
+        assertEquals("x", properties.get(2).getName());
+
+        assertEquals("a", e.getProperty(0).getName());
+        assertEquals("b", e.getProperty(1).getName());
+        assertEquals("x", e.getProperty(2).getName());
+        assertNull(e.getProperty(3));
+
+        List<Property> strings = e.getProperties(String.class);
+        assertEquals(2, strings.size());
+        assertEquals("a", strings.get(0).getName());
+        assertEquals("x", strings.get(1).getName());
+
+        //
+        // the result is always a mutable copy, even if nothing matches
+        //
+
+        strings.clear();
+        assertEquals(2, e.getProperties(String.class).size());
+
+        List<Property> booleans = e.getProperties(Boolean.class);
+        assertTrue(booleans.isEmpty());
+        booleans.add(new BooleanProperty("y", true));
+
+        //
+        // header properties are included
+        //
+
+        e.setLineNumber(7L);
+        List<Property> longs = e.getProperties(Long.class);
+        assertEquals(1, longs.size());
+        assertEquals(Event.LINE_PROPERTY_NAME, longs.get(0).getName());
+        assertEquals(7L, longs.get(0).getValue());
+        e.setLineNumber(null);
+
+        //
+        // replace
+        //
+
+        Property previous = e.setIntegerProperty("b", 3);
+        assertEquals(2, previous.getValue());
+        assertEquals(3, e.get(b));
+
+        //
+        // remove
+        //
+
+        assertNull(e.removeProperty("b", String.class));
+        Property removed = e.removeIntegerProperty("b");
+        assertEquals(3, removed.getValue());
+        assertFalse(e.has(b));
+
+        e.clearProperties();
+
+        assertFalse(e.has(a));
+        assertTrue(e.getProperties().isEmpty());
+    }
+
+    @Test
+    public void eventApi_PropertyCountFollowsTheSlots() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle a = schema.addProperty("a", String.class);
+        PropertyHandle b = schema.addProperty("b", Long.class);
+        PropertyHandle c = schema.addProperty("c", String.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        assertEquals(0, e.propertyCount());
+        assertNull(e.getProperty(0));
+
+        e.set(a, "A");
+        e.set(a, "A2");
+        e.setLong(b, 1L);
+        e.set(c, null);
+
+        assertEquals(3, e.propertyCount());
+
+        //
+        // all slots present
+        //
+
+        assertEquals("A2", e.getProperty(0).getValue());
+        assertEquals(1L, e.getProperty(1).getValue());
+        assertNull(e.getProperty(2).getValue());
+
+        //
+        // binding a slot to a Property instance does not change the count
+        //
+
+        e.getStringProperty("a");
+        e.setProperty(new LongProperty("b", 2L));
+
+        assertEquals(3, e.propertyCount());
+
+        e.clear(b);
+        e.clear(b);
+
+        assertEquals(2, e.propertyCount());
+
+        //
+        // gaps
+        //
+
+        assertEquals("a", e.getProperty(0).getName());
+        assertEquals("c", e.getProperty(1).getName());
+
+        e.setLineNumber(3L);
+        e.setStringProperty("x", "X");
+
+        assertEquals(4, e.propertyCount());
+        assertEquals(Event.LINE_PROPERTY_NAME, e.getProperty(2).getName());
+        assertEquals("x", e.getProperty(3).getName());
+        assertNull(e.getProperty(4));
+
+        SchemaEvent copy = (SchemaEvent)e.mutableCopy();
+        assertEquals(4, copy.propertyCount());
+        assertEquals("c", copy.getProperty(1).getName());
+
+        e.clearProperties();
+
+        assertEquals(0, e.propertyCount());
+        assertEquals(4, copy.propertyCount());
+    }
+
+    @Test
+    public void eventApi_MapPropertiesAreMerged() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle m = schema.addProperty("m", Map.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        Map<String, Object> m1 = new HashMap<>();
+        m1.put("a", "A");
+        e.setProperty(new MapProperty("m", m1));
+
+        Map<String, Object> m2 = new HashMap<>();
+        m2.put("b", "B");
+        e.setProperty(new MapProperty("m", m2));
+
+        //noinspection unchecked
+        Map<String, Object> merged = (Map<String, Object>)e.get(m);
+        assertEquals(2, merged.size());
+        assertEquals("A", merged.get("a"));
+        assertEquals("B", merged.get("b"));
+    }
+
+    @Test
+    public void eventApi_TimestampPropertyNotAllowed() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        schema.addProperty("a", String.class);
+
+        SchemaEvent e = schema.newEvent();
+
+        try {
+
+            e.setProperty(new TimestampProperty(1L));
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException iae) {
+
+            String msg = iae.getMessage();
+            assertTrue(msg.contains("timestamp property not allowed on a non-timed event"));
+        }
+    }
+
+    // snapshot() and mutableCopy() ------------------------------------------------------------------------------------
+
+    @Test
+    public void mutableCopy_SlotsAreNotShared() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle l = schema.addProperty("l", Long.class);
+        PropertyHandle m = schema.addProperty("m", Map.class);
+
+        SchemaEvent e = schema.newEvent();
+        e.set(l, 1L);
+        Map<String, Object> map = new HashMap<>();
+        map.put("a", "A");
+        e.setProperty(new MapProperty("m", map));
+
+        SchemaEvent c = (SchemaEvent)e.mutableCopy();
+
+        c.set(l, 2L);
+        Map<String, Object> map2 = new HashMap<>();
+        map2.put("b", "B");
+        c.setProperty(new MapProperty("m", map2));
+
+        assertEquals(2L, c.get(l));
+        assertEquals(2, ((Map)c.get(m)).size());
+
+        assertEquals(1L, e.get(l));
+        assertEquals(1, ((Map)e.get(m)).size());
+    }
+
+    @Test
+    public void snapshot_SlotsAreFrozen() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle l = schema.addProperty("l", Long.class);
+
+        SchemaEvent e = schema.newEvent();
+        e.set(l, 1L);
+
+        SchemaEvent s = (SchemaEvent)e.snapshot();
+
+        try {
+
+            s.set(l, 2L);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("frozen event"));
+        }
+
+        try {
+
+            s.clear(l);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+
+        e.set(l, 3L);
+
+        assertEquals(1L, s.get(l));
+        assertEquals(1L, s.getLong("l", -1L));
+    }
+
+    // footprint -------------------------------------------------------------------------------------------------------
+
+    /**
+     * The same content, as a GenericEvent and as a SchemaEvent: a line number, two strings, shared by both events, and
+     * five numeric and boolean values.
+     */
+    @Test
+    public void estimateRetainedBytes_ComparedToGenericEvent() throws Exception {
+
+        String thread = "main";
+        String level = "INFO";
+
+        GenericEvent ge = new GenericEvent();
+        ge.setLineNumber(1234L);
+        ge.setStringProperty("thread", thread);
+        ge.setStringProperty("level", level);
+        ge.setLongProperty("duration", 17L);
+        ge.setLongProperty("bytes", 1024L);
+        ge.setIntegerProperty("status", 200);
+        ge.setProperty(new DoubleProperty("ratio", 0.5d));
+        ge.setBooleanProperty("cached", true);
+
+        EventSchema schema = new EventSchema();
+        PropertyHandle threadHandle = schema.addProperty("thread", String.class);
+        PropertyHandle levelHandle = schema.addProperty("level", String.class);
+        PropertyHandle duration = schema.addProperty("duration", Long.class);
+        PropertyHandle bytes = schema.addProperty("bytes", Long.class);
+        PropertyHandle status = schema.addProperty("status", Integer.class);
+        PropertyHandle ratio = schema.addProperty("ratio", Double.class);
+        PropertyHandle cached = schema.addProperty("cached", Boolean.class);
+
+        SchemaEvent se = schema.newEvent();
+        se.setLineNumber(1234L);
+        se.set(threadHandle, thread);
+        se.set(levelHandle, level);
+        se.setLong(duration, 17L);
+        se.setLong(bytes, 1024L);
+        se.setInteger(status, 200);
+        se.setDouble(ratio, 0.5d);
+        se.setBoolean(cached, true);
+
+        assertEquals(ge.getProperties().size(), se.getPropertiesView().size());
+
+        //
+        // the strings are counted by both events
+        //
+
+        long strings = HeapFootprint.of(thread) + HeapFootprint.of(level);
+
+        long generic = ge.estimateRetainedBytes() - strings;
+        long compact = se.estimateRetainedBytes() - strings;
+
+        //
+        // 432 vs. 168 bytes at the time of writing
+        //
+
+        assertTrue(generic + " vs. " + compact, compact * 5 < generic * 2);
+    }
+
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * The schema does not overlap the property names used by the generic tests, so those exercise the non-schema
+     * storage. The schema storage is exercised by the tests above.
+     */
+    @Override
+    protected SchemaEvent getEventToTest() throws Exception {
+
+        EventSchema schema = new EventSchema();
+        schema.addProperty("schema-string", String.class);
+        schema.addProperty("schema-long", Long.class);
+        return schema.newEvent();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class StringDictionaryTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new StringDictionary(0, 10);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid capacity"));
+        }
+
+        try {
+
+            new StringDictionary(10, -1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid maximum length"));
+        }
+    }
+
+    @Test
+    public void intern_String() throws Exception {
+
+        StringDictionary d = new StringDictionary();
+
+        assertNull(d.intern(null));
+
+        String s = new String("INFO");
+        String s2 = new String("INFO");
+
+        assertSame(s, d.intern(s));
+        assertSame(s, d.intern(s2));
+        assertEquals(1, d.size());
+        assertEquals(1, d.getHitCount());
+        assertEquals(1, d.getMissCount());
+    }
+
+    @Test
+    public void intern_CharSequenceAndByteRegions() throws Exception {
+
+        StringDictionary d = new StringDictionary();
+
+        String line = "12:00:01 INFO [main] started";
+        byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+
+        String s = d.intern(line, 9, 13);
+        assertEquals("INFO", s);
+
+        assertSame(s, d.intern(new StringBuilder(line), 9, 13));
+        assertSame(s, d.intern(bytes, 9, 4));
+        assertSame(s, d.intern("INFO"));
+
+        String empty = d.intern(line, 0, 0);
+        assertEquals("", empty);
+        assertSame(empty, d.intern(bytes, 3, 0));
+
+        assertEquals(2, d.size());
+        assertEquals(4, d.getHitCount());
+    }
+
+    @Test
+    public void intern_NonAsciiBytes() throws Exception {
+
+        StringDictionary d = new StringDictionary();
+
+        String s = "caf\u00e9";
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+
+        String interned = d.intern(bytes, 0, bytes.length);
+        assertEquals(s, interned);
+        assertSame(interned, d.intern(s));
+    }
+
+    @Test
+    public void intern_InvalidRegions() throws Exception {
+
+        StringDictionary d = new StringDictionary();
+
+        try {
+
+            d.intern((CharSequence)null, 0, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null character sequence"));
+        }
+
+        try {
+
+            d.intern("abc", 2, 4);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid region"));
+        }
+
+        try {
+
+            d.intern((byte[])null, 0, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null byte array"));
+        }
+
+        try {
+
+            d.intern(new byte[3], 1, 3);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid region"));
+        }
+    }
+
+    @Test
+    public void maxLength() throws Exception {
+
+        StringDictionary d = new StringDictionary(10, 3);
+
+        assertSame(d.intern(new String("abc")), d.intern(new String("abc")));
+
+        String s = new String("abcd");
+        String s2 = new String("abcd");
+
+        assertSame(s, d.intern(s));
+        assertSame(s2, d.intern(s2));
+        assertNotSame(d.intern(new StringBuilder("abcd"), 0, 4), d.intern(new StringBuilder("abcd"), 0, 4));
+
+        assertEquals(1, d.size());
+    }
+
+    @Test
+    public void clockEviction() throws Exception {
+
+        StringDictionary d = new StringDictionary(3, 10);
+
+        String a = d.intern(new String("a"));
+        String b = d.intern(new String("b"));
+        d.intern(new String("c"));
+
+        //
+        // "a" gets a second chance, "b" is evicted
+        //
+
+        assertSame(a, d.intern(new String("a")));
+
+        String e = d.intern(new String("e"));
+
+        assertEquals(3, d.size());
+        assertEquals(1, d.getEvictionCount());
+
+        assertSame(a, d.intern(new String("a")));
+        assertSame(e, d.intern(new String("e")));
+
+        String b2 = new String("b");
+        assertNotSame(b, b2);
+        assertSame(b2, d.intern(b2));
+        assertEquals(2, d.getEvictionCount());
+    }
+
+    @Test
+    public void eviction_ManyValues() throws Exception {
+
+        StringDictionary d = new StringDictionary(16, 10);
+
+        for(int i = 0; i < 1000; i ++) {
+
+            String s = "v" + (i % 37);
+            assertEquals(s, d.intern(s));
+            assertTrue(d.size() <= 16);
+        }
+
+        assertEquals(1000, d.getHitCount() + d.getMissCount());
+        assertEquals(d.getMissCount() - 16, d.getEvictionCount());
+
+        //
+        // the values left in the dictionary are still found
+        //
+
+        long hits = d.getHitCount();
+        d.intern("v" + (999 % 37));
+        assertEquals(hits + 1, d.getHitCount());
+    }
+
+    @Test
+    public void clear() throws Exception {
+
+        StringDictionary d = new StringDictionary();
+
+        String s = d.intern(new String("a"));
+        d.intern("a");
+
+        d.clear();
+
+        assertEquals(0, d.size());
+        assertEquals(0, d.getHitCount());
+        assertEquals(0, d.getMissCount());
+
+        String s2 = new String("a");
+        assertSame(s2, d.intern(s2));
+        assertNotSame(s, s2);
+    }
+
+    @Test
+    public void concurrentInterning() throws Exception {
+
+        final StringDictionary d = new StringDictionary(64, 10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+
+            List<Future<String[]>> futures = new ArrayList<>();
+
+            for(int t = 0; t < 4; t ++) {
+
+                futures.add(executor.submit(new Callable<String[]>() {
+
+                    @Override
+                    public String[] call() throws Exception {
+
+                        String[] result = new String[32];
+
+                        for(int i = 0; i < 10000; i ++) {
+
+                            result[i % 32] = d.intern(new String("value-" + (i % 32)));
+                        }
+
+                        return result;
+                    }
+                }));
+            }
+
+            String[] first = futures.get(0).get();
+
+            for(Future<String[]> f: futures) {
+
+                String[] result = f.get();
+
+                for(int i = 0; i < 32; i ++) {
+
+                    assertSame(first[i], result[i]);
+                }
+            }
+
+            assertEquals(32, d.size());
+            assertEquals(32, d.getMissCount());
+        }
+        finally {
+
+            executor.shutdownNow();
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -21,6 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -67,6 +71,96 @@ public class StringPropertyTest extends PropertyTest {
         assertEquals("test-name", sp.externalizeType());
     }
 
+    // contains() ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void contains() throws Exception {
+
+        StringProperty sp = getStringPropertyToTest("test", "Some Value");
+
+        assertTrue(sp.contains("Value", false));
+        assertTrue(sp.contains("", false));
+        assertTrue(sp.contains("Some Value", false));
+        assertFalse(sp.contains("value", false));
+        assertTrue(sp.contains("value", true));
+        assertTrue(sp.contains("SOME v", true));
+        assertFalse(sp.contains("Some Values", true));
+        assertFalse(sp.contains("Some_", true));
+    }
+
+    @Test
+    public void contains_Null() throws Exception {
+
+        StringProperty sp = getStringPropertyToTest("test", "something");
+
+        try {
+
+            sp.contains(null, false);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null string"));
+        }
+    }
+
+    @Test
+    public void contains_NullValue() throws Exception {
+
+        StringProperty sp = getStringPropertyToTest("test", "something");
+        sp.setValue(null);
+
+        assertFalse(sp.contains("", false));
+        assertFalse(sp.contains("some", true));
+        assertNull(sp.getCharSequence());
+    }
+
+    // regionMatches() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void regionMatches() throws Exception {
+
+        StringProperty sp = getStringPropertyToTest("test", "ERROR [main] something");
+
+        assertTrue(sp.regionMatches(false, 0, "ERROR", 0, 5));
+        assertTrue(sp.regionMatches(true, 7, "xMAIN", 1, 4));
+        assertFalse(sp.regionMatches(false, 7, "MAIN", 0, 4));
+        assertFalse(sp.regionMatches(false, -1, "ERROR", 0, 5));
+        assertTrue(sp.regionMatches(false, 13, "something", 0, 9));
+        assertTrue(sp.regionMatches(false, 20, "ng", 0, 2));
+        assertFalse(sp.regionMatches(false, 20, "ngx", 0, 3));
+    }
+
+    // contentEquals() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void contentEquals() throws Exception {
+
+        StringProperty sp = getStringPropertyToTest("test", "something");
+
+        assertTrue(sp.contentEquals("something"));
+        assertTrue(sp.contentEquals(new StringBuilder("something")));
+        assertFalse(sp.contentEquals("Something"));
+        assertFalse(sp.contentEquals("some"));
+        assertFalse(sp.contentEquals(null));
+    }
+
+    // getCharSequence() -----------------------------------------------------------------------------------------------
+
+    @Test
+    public void getCharSequence() throws Exception {
+
+        StringProperty sp = getStringPropertyToTest("test", "something");
+
+        CharSequence cs = sp.getCharSequence();
+
+        assertEquals("something", cs.toString());
+        assertEquals(9, cs.length());
+        assertEquals('t', cs.charAt(4));
+        assertEquals("thin", cs.subSequence(4, 8).toString());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -81,6 +175,11 @@ public class StringPropertyTest extends PropertyTest {
         return "test";
     }
 
+    protected StringProperty getStringPropertyToTest(String name, String value) {
+
+        return new StringProperty(name, value);
+    }
+
     // Private ---------------------------------------------------------------------------------------------------------
 
     // Inner classes ---------------------------------------------------------------------------------------------------
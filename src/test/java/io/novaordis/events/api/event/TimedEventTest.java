@@ -98,6 +98,25 @@ public abstract class TimedEventTest extends EventTest {
         assertEquals(1L, te.getTime().longValue());
     }
 
+    @Test
+    public void primitiveTime() throws Exception {
+
+        TimedEvent te = getEventToTest(null);
+        assertEquals(-1L, te.getTime(-1L));
+
+        te.setTime(5L);
+        assertEquals(5L, te.getTime(-1L));
+        assertEquals(5L, te.getTime().longValue());
+        assertEquals(5L, te.getTimestamp().getTime());
+
+        te.setTime(6L);
+        assertEquals(6L, te.getTimestamp().getTime());
+
+        te.setTimestamp(null);
+        assertEquals(-1L, te.getTime(-1L));
+        assertNull(te.getTimestamp());
+    }
+
     // getProperty() by name -------------------------------------------------------------------------------------------
 
     /**
@@ -133,6 +152,28 @@ public abstract class TimedEventTest extends EventTest {
         assertEquals(125L, time);
     }
 
+    @Test
+    public void getProperty_ByName_timestamp_Cached() throws Exception {
+
+        TimedEvent te = getEventToTest(125L);
+
+        Property p = te.getProperty(TimedEvent.TIME_PROPERTY_NAME);
+
+        assertTrue(p == te.getProperty(TimedEvent.TIME_PROPERTY_NAME));
+        assertTrue(p == te.getProperty(0));
+        assertTrue(p == te.getPropertiesView().get(0));
+
+        //
+        // a time change invalidates the cached property
+        //
+
+        te.setTime(126L);
+
+        Property p2 = te.getProperty(TimedEvent.TIME_PROPERTY_NAME);
+
+        assertEquals(126L, p2.getValue());
+    }
+
     // getProperty() by index ------------------------------------------------------------------------------------------
 
     @Test
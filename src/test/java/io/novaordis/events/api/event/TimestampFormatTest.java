@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.event;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimestampFormatTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final String PATTERN = "MM/dd/yy HH:mm:ss,SSS";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullPattern() throws Exception {
+
+        try {
+
+            new TimestampFormat(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null pattern"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidPattern() throws Exception {
+
+        try {
+
+            new TimestampFormat("MM/dd/yy QQ");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void fastPath() throws Exception {
+
+        assertTrue(new TimestampFormat(PATTERN).isFastPathEnabled());
+        assertFalse(new TimestampFormat("yyyy-MM-dd'T'HH:mm:ss").isFastPathEnabled());
+        assertTrue(new TimestampFormat("yyyy-MM-dd HH:mm:ss").isFastPathEnabled());
+        assertFalse(new TimestampFormat("dd/MMM/yyyy:HH:mm:ss Z").isFastPathEnabled());
+    }
+
+    @Test
+    public void parse_SameAsSimpleDateFormat() throws Exception {
+
+        String[] patterns = { PATTERN, "MM/dd/yy HH:mm:ss", "yyyy-MM-dd HH:mm:ss.SSS", "dd/MMM/yyyy:HH:mm:ss Z" };
+
+        String[] values = {
+
+                "12/01/16 14:00:01,123",
+                "12/01/16 14:00:01",
+                "01/01/17 00:00:00,000 and some content",
+                "12/31/99 23:59:59,999",
+                "02/30/17 10:10:10,010",
+                "13/01/17 10:10:10,010",
+                "1/2/17 3:4:5,6",
+                "12/01/2016 14:00:01,123",
+                "12/01/16 14:00:012,123",
+                "12/01/16 14:00:75,000",
+                "12/01/16 14:00:01,1234",
+                "12/01/16 14-00-01,123",
+                "2017-12-01 14:00:01.123",
+                "01/Dec/2017:14:00:01 +0100",
+                "something else",
+                "",
+        };
+
+        for(String pattern: patterns) {
+
+            TimestampFormat f = new TimestampFormat(pattern);
+            SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+
+            for(String value: values) {
+
+                Date expected = sdf.parse(value, new ParsePosition(0));
+                long actual = f.parse(value, Long.MIN_VALUE);
+
+                assertEquals(pattern + ", " + value, expected == null ? Long.MIN_VALUE : expected.getTime(), actual);
+            }
+        }
+    }
+
+    @Test
+    public void parse_Random_SameAsSimpleDateFormat() throws Exception {
+
+        TimestampFormat f = new TimestampFormat(PATTERN);
+        SimpleDateFormat sdf = new SimpleDateFormat(PATTERN);
+
+        Random r = new Random(7L);
+
+        long t = sdf.parse("01/01/10 00:00:00,000").getTime();
+
+        for(int i = 0; i < 10000; i ++) {
+
+            //
+            // mostly in the same minute, sometimes jumps
+            //
+
+            t += r.nextInt(10) == 0 ? r.nextInt(1000 * 3600 * 24 * 20) : r.nextInt(500);
+
+            String s = sdf.format(new Date(t));
+
+            assertEquals(s, t, f.parse(s, Long.MIN_VALUE));
+        }
+    }
+
+    @Test
+    public void parse_CharSequence() throws Exception {
+
+        TimestampFormat f = new TimestampFormat(PATTERN);
+
+        StringBuilder sb = new StringBuilder("12/01/16 14:00:01,123 INFO something");
+
+        assertEquals(new SimpleDateFormat(PATTERN).parse("12/01/16 14:00:01,123").getTime(), f.parse(sb, -1L));
+    }
+
+    @Test
+    public void parse_NoMatch() throws Exception {
+
+        TimestampFormat f = new TimestampFormat(PATTERN);
+
+        assertEquals(-1L, f.parse("12/01/16 14:00:01", -1L));
+        assertEquals(-1L, f.parse("", -1L));
+    }
+
+    @Test
+    public void parse_Null() throws Exception {
+
+        try {
+
+            new TimestampFormat(PATTERN).parse(null, -1L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null timestamp"));
+        }
+    }
+
+    @Test
+    public void parse_Concurrent() throws Exception {
+
+        final TimestampFormat f = new TimestampFormat(PATTERN);
+        final SimpleDateFormat sdf = new SimpleDateFormat(PATTERN);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        final String[] values = new String[1000];
+        final long[] expected = new long[values.length];
+
+        long t = sdf.parse("01/01/15 00:00:00,000").getTime();
+
+        for(int i = 0; i < values.length; i ++) {
+
+            t += 60777L * i;
+            values[i] = sdf.format(new Date(t));
+            expected[i] = t;
+        }
+
+        Thread[] threads = new Thread[4];
+
+        for(int i = 0; i < threads.length; i ++) {
+
+            final int offset = i;
+
+            threads[i] = new Thread(() -> {
+
+                for(int j = 0; j < 20 * values.length; j ++) {
+
+                    int k = (j + offset * 7) % values.length;
+
+                    if (f.parse(values[k], -1L) != expected[k]) {
+
+                        failure.set(values[k]);
+                    }
+
+                    if (!values[k].equals(f.format(expected[k]))) {
+
+                        failure.set(values[k]);
+                    }
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for(Thread th: threads) {
+
+            th.join();
+        }
+
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void formatAndPattern() throws Exception {
+
+        TimestampFormat f = new TimestampFormat(PATTERN);
+
+        assertEquals(PATTERN, f.toPattern());
+        assertEquals(PATTERN, f.toSimpleDateFormat().toPattern());
+        assertFalse(f.toSimpleDateFormat() == f.toSimpleDateFormat());
+
+        long t = new SimpleDateFormat(PATTERN).parse("12/01/16 14:00:01,123").getTime();
+
+        assertEquals("12/01/16 14:00:01,123", f.format(t));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.metric.os;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.FloatProperty;
+import io.novaordis.events.api.event.LongProperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class InternalMetricReadingContainerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void primitiveFloat() throws Exception {
+
+        MockPreParsedContent ppc = new MockPreParsedContent();
+
+        InternalMetricReadingContainer c = new InternalMetricReadingContainer(1.5f, ppc);
+
+        assertTrue(c.hasPropertyValue());
+        assertEquals(1.5f, (Float)c.getPropertyValue(), 0.0f);
+        assertTrue(ppc == c.getPreParsedContent());
+
+        FloatProperty p = new FloatProperty("test");
+        c.setValueOn(p);
+        assertEquals(1.5f, p.floatValue(), 0.0f);
+    }
+
+    @Test
+    public void primitiveLong() throws Exception {
+
+        InternalMetricReadingContainer c = new InternalMetricReadingContainer(7L, null);
+
+        assertTrue(c.hasPropertyValue());
+        assertEquals(7L, c.getPropertyValue());
+
+        LongProperty p = new LongProperty("test");
+        c.setValueOn(p);
+        assertEquals(7L, p.longValue());
+
+        //
+        // a property of a different type is set via setValue()
+        //
+
+        FloatProperty p2 = new FloatProperty("test");
+        c.setValueOn(p2);
+        assertEquals(7.0f, p2.floatValue(), 0.0f);
+    }
+
+    @Test
+    public void boxed() throws Exception {
+
+        InternalMetricReadingContainer c = new InternalMetricReadingContainer(Long.valueOf(3L), null);
+
+        assertEquals(3L, c.getPropertyValue());
+
+        LongProperty p = new LongProperty("test");
+        c.setValueOn(p);
+        assertEquals(3L, p.longValue());
+
+        InternalMetricReadingContainer c2 = new InternalMetricReadingContainer(null, null);
+
+        assertFalse(c2.hasPropertyValue());
+        assertNull(c2.getPropertyValue());
+
+        LongProperty p2 = new LongProperty("test", 5L);
+        c2.setValueOn(p2);
+        assertTrue(p2.isNull());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
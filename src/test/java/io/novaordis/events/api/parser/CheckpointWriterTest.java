@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class CheckpointWriterTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+    }
+
+    @After
+    public void after() throws Exception {
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new CheckpointWriter(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null file"));
+        }
+
+        try {
+
+            new CheckpointWriter(new File(scratchDirectory, "checkpoint"), 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid interval"));
+        }
+    }
+
+    @Test
+    public void read_NoFile() throws Exception {
+
+        assertNull(CheckpointWriter.read(new File(scratchDirectory, "checkpoint")));
+    }
+
+    @Test
+    public void periodicWrite() throws Exception {
+
+        File file = new File(scratchDirectory, "checkpoint");
+
+        CheckpointWriter w = new CheckpointWriter(file, 5);
+
+        assertTrue(w.isDue());
+
+        ParserCheckpoint c = new ParserCheckpoint(100, 10, new byte[] { 1 });
+
+        w.update(c);
+
+        assertFalse(w.isDue());
+        assertTrue(c == w.getLatest());
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while(w.getWriteCount() == 0) {
+
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        assertEquals(c, CheckpointWriter.read(file));
+
+        //
+        // an unchanged checkpoint is not written again
+        //
+
+        Thread.sleep(50);
+
+        assertEquals(1, w.getWriteCount());
+        assertTrue(w.isDue());
+
+        w.close();
+
+        assertTrue(w.isClosed());
+        assertNull(w.getFailure());
+        assertFalse(new File(scratchDirectory, "checkpoint.tmp").exists());
+    }
+
+    @Test
+    public void close_WritesLatest() throws Exception {
+
+        File file = new File(scratchDirectory, "checkpoint");
+
+        CheckpointWriter w = new CheckpointWriter(file, 60000);
+
+        ParserCheckpoint c = new ParserCheckpoint(200, 20, null);
+
+        w.update(new ParserCheckpoint(100, 10, null));
+        w.update(c);
+
+        w.close();
+
+        assertEquals(c, CheckpointWriter.read(file));
+        assertEquals(1, w.getWriteCount());
+
+        w.close();
+
+        try {
+
+            w.update(c);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("closed"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class EventListSinkTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void emitAndEndOfStream() throws Exception {
+
+        EventListSink s = new EventListSink();
+
+        assertTrue(s.isEmpty());
+
+        GenericEvent e = new GenericEvent();
+        s.emit(e);
+        s.endOfStream();
+
+        assertEquals(2, s.size());
+        assertTrue(e == s.getEvents().get(0));
+        assertTrue(s.getEvents().get(1) instanceof EndOfStreamEvent);
+
+        try {
+
+            s.getEvents().clear();
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException ex) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void emit_Null() throws Exception {
+
+        EventListSink s = new EventListSink();
+
+        try {
+
+            s.emit(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null event"));
+        }
+    }
+
+    @Test
+    public void drain() throws Exception {
+
+        EventListSink s = new EventListSink();
+
+        assertTrue(s.drain().isEmpty());
+
+        GenericEvent e = new GenericEvent();
+        s.emit(e);
+
+        List<Event> one = s.drain();
+
+        assertEquals(1, one.size());
+        assertTrue(e == one.get(0));
+        assertTrue(s.isEmpty());
+
+        s.emit(new GenericEvent());
+        s.emit(new GenericEvent());
+
+        List<Event> two = s.drain();
+
+        assertTrue(s.isEmpty());
+
+        //
+        // the drained list is not affected by the subsequent use of the sink
+        //
+
+        s.emit(new GenericEvent());
+
+        assertEquals(2, two.size());
+        assertEquals(1, s.size());
+
+        s.clear();
+
+        assertTrue(s.isEmpty());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
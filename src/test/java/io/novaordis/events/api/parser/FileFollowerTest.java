@@ -0,0 +1,617 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class FileFollowerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+    }
+
+    @After
+    public void after() throws Exception {
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        File f = new File(scratchDirectory, "test.log");
+
+        try {
+
+            new FileFollower(null, new SingleLineParser(), null, e -> {});
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null file"));
+        }
+
+        try {
+
+            new FileFollower(f, null, null, e -> {});
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null parser"));
+        }
+
+        try {
+
+            new FileFollower(f, new SingleLineParser(), null, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null consumer"));
+        }
+    }
+
+    @Test
+    public void setPollInterval() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> {});
+
+        assertEquals(FileFollower.DEFAULT_MIN_POLL_INTERVAL_MS, f.getMinPollInterval());
+        assertEquals(FileFollower.DEFAULT_MAX_POLL_INTERVAL_MS, f.getMaxPollInterval());
+
+        f.setPollInterval(2, 20);
+
+        assertEquals(2, f.getMinPollInterval());
+        assertEquals(20, f.getMaxPollInterval());
+
+        try {
+
+            f.setPollInterval(10, 5);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid poll interval"));
+        }
+    }
+
+    @Test
+    public void poll_FileDoesNotExist() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        assertEquals(0, f.poll());
+        assertTrue(lines.isEmpty());
+
+        append(file, "a\n");
+
+        assertEquals(1, f.poll());
+        assertEquals(Collections.singletonList("1:a"), lines);
+    }
+
+    @Test
+    public void poll_Growth() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "a\nb\r\n");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        assertEquals(2, f.poll());
+        assertEquals(5, f.getPosition());
+
+        assertEquals(0, f.poll());
+
+        //
+        // a line being written is not parsed before its new line
+        //
+
+        append(file, "cc");
+
+        assertEquals(0, f.poll());
+        assertEquals(5, f.getPosition());
+
+        append(file, "c\nd");
+
+        assertEquals(1, f.poll());
+        assertEquals(9, f.getPosition());
+
+        assertEquals(3, lines.size());
+        assertEquals("2:b", lines.get(1));
+        assertEquals("3:ccc", lines.get(2));
+        assertEquals(3, f.getParser().getLineNumber());
+
+        //
+        // on close, the line being written is parsed
+        //
+
+        f.close();
+
+        assertEquals("4:d", lines.get(3));
+        assertEquals("END", lines.get(4));
+        assertTrue(f.isClosed());
+
+        f.close();
+
+        assertEquals(5, lines.size());
+
+        try {
+
+            f.poll();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("closed"));
+        }
+    }
+
+    @Test
+    public void poll_LongLines() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 100000; i ++) {
+
+            sb.append((char)('a' + i % 26));
+        }
+
+        String longLine = sb.toString();
+
+        append(file, longLine + "\n" + longLine + "\nshort\n");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        assertEquals(3, f.poll());
+        assertEquals("1:" + longLine, lines.get(0));
+        assertEquals("2:" + longLine, lines.get(1));
+        assertEquals("3:short", lines.get(2));
+    }
+
+    @Test
+    public void poll_Truncation() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "aaaa\nbbbb\n");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        assertEquals(2, f.poll());
+
+        //
+        // copy-truncate
+        //
+
+        Files.write(file.toPath(), "c\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        assertEquals(1, f.poll());
+        assertEquals(1, f.getTruncationCount());
+        assertEquals(0, f.getRotationCount());
+        assertEquals("3:c", lines.get(2));
+        assertEquals(2, f.getPosition());
+    }
+
+    @Test
+    public void poll_Rotation() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "a\n");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        assertEquals(1, f.poll());
+
+        //
+        // the rotated file gets more content, including a line without its new line, after the last poll
+        //
+
+        append(file, "b\nc");
+
+        File rotated = new File(scratchDirectory, "test.log.1");
+        assertTrue(file.renameTo(rotated));
+
+        //
+        // the new file does not exist yet
+        //
+
+        assertEquals(1, f.poll());
+        assertEquals(0, f.getRotationCount());
+
+        append(file, "d\n");
+
+        assertEquals(2, f.poll());
+        assertEquals(1, f.getRotationCount());
+
+        assertEquals(4, lines.size());
+        assertEquals("2:b", lines.get(1));
+        assertEquals("3:c", lines.get(2));
+        assertEquals("4:d", lines.get(3));
+        assertEquals(4, f.getParser().getLineNumber());
+        assertEquals(2, f.getPosition());
+    }
+
+    @Test
+    public void follow() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "a\n");
+
+        List<String> lines = new CopyOnWriteArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        Thread t = new Thread(() -> {
+
+            try {
+
+                f.follow();
+            }
+            catch(Throwable e) {
+
+                failures.add(e);
+            }
+        });
+
+        t.start();
+
+        await(lines, 1);
+
+        try {
+
+            f.follow();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("already being followed"));
+        }
+
+        append(file, "b\n");
+
+        await(lines, 2);
+
+        assertEquals("2:b", lines.get(1));
+
+        f.close();
+
+        t.join(5000);
+
+        assertFalse(t.isAlive());
+        assertTrue(failures.isEmpty());
+        assertEquals("END", lines.get(lines.size() - 1));
+        assertEquals(3, lines.size());
+    }
+
+    @Test
+    public void close_ConcurrentWithFollowStart() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "a\n");
+
+        for(int i = 0; i < 500; i ++) {
+
+            List<String> lines = new CopyOnWriteArrayList<>();
+            List<Throwable> failures = new CopyOnWriteArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+
+            FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+            Thread t = new Thread(() -> {
+
+                try {
+
+                    start.await();
+                    f.follow();
+                }
+                catch(IllegalStateException e) {
+
+                    // close() won the race, follow() did not start
+                }
+                catch(Throwable e) {
+
+                    failures.add(e);
+                }
+            });
+
+            t.start();
+            start.countDown();
+            f.close();
+
+            t.join(5000);
+
+            assertFalse(t.isAlive());
+            assertTrue(failures.toString(), failures.isEmpty());
+
+            //
+            // exactly one of the threads completed the close, after the following thread stopped polling
+            //
+
+            assertEquals("END", lines.get(lines.size() - 1));
+            assertEquals(1, Collections.frequency(lines, "END"));
+        }
+    }
+
+    @Test
+    public void checkpointAndResume() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+
+        String content = "a\n b\nc\n d\n e\nf\n";
+
+        //
+        // uninterrupted
+        //
+
+        append(file, content);
+
+        List<String> expected = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new MultiLineParser(), null, e -> expected.add(text(e)));
+        f.poll();
+        f.close();
+
+        assertEquals(Files.readAllLines(file.toPath()).size(), f.getParser().getLineNumber());
+        assertTrue(file.delete());
+
+        //
+        // interrupted in the middle of the second event, which is in progress in the parser
+        //
+
+        append(file, "a\n b\nc\n d\n");
+
+        List<String> actual = new ArrayList<>();
+
+        FileFollower f2 = new FileFollower(file, new MultiLineParser(), null, e -> actual.add(text(e)));
+        f2.poll();
+
+        ParserCheckpoint c = f2.checkpoint();
+
+        assertEquals(10, c.getPosition());
+        assertEquals(4, c.getLineNumber());
+        assertTrue(c.getState() != null);
+
+        //
+        // the second follower does not re-read the first lines
+        //
+
+        append(file, " e\nf\n");
+
+        FileFollower f3 = new FileFollower(file, new MultiLineParser(), null, e -> actual.add(text(e)));
+
+        f3.resume(ParserCheckpoint.fromByteArray(c.toByteArray()));
+
+        assertEquals(2, f3.poll());
+
+        f3.close();
+
+        assertEquals(expected, actual);
+        assertEquals(0, f3.getTruncationCount());
+
+        try {
+
+            f3.resume(c);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("already started"));
+        }
+    }
+
+    @Test
+    public void resume_FileTruncatedMeanwhile() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "x\n");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        f.resume(new ParserCheckpoint(100, 7, null));
+
+        assertEquals(1, f.poll());
+        assertEquals(1, f.getTruncationCount());
+        assertEquals("8:x", lines.get(0));
+    }
+
+    @Test
+    public void resume_FileReplacedMeanwhile() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        append(file, "a\nb\n");
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> {});
+        f.poll();
+
+        ParserCheckpoint c = f.checkpoint();
+        f.close();
+
+        assertEquals(4, c.getPosition());
+        assertTrue(c.getChecksum() != ParserCheckpoint.NO_CHECKSUM);
+
+        //
+        // a different file, longer than the checkpoint position, replaces the original one
+        //
+
+        assertTrue(file.delete());
+        append(file, "x\ny\nz\n");
+
+        List<String> lines = new ArrayList<>();
+
+        FileFollower f2 = new FileFollower(file, new SingleLineParser(), null, e -> lines.add(text(e)));
+
+        f2.resume(ParserCheckpoint.fromByteArray(c.toByteArray()));
+
+        assertEquals(3, f2.poll());
+        assertEquals(1, f2.getRotationCount());
+        assertEquals(0, f2.getTruncationCount());
+        assertEquals("3:x", lines.get(0));
+        assertEquals("5:z", lines.get(2));
+    }
+
+    @Test
+    public void checkpointWriter() throws Exception {
+
+        File file = new File(scratchDirectory, "test.log");
+        File checkpointFile = new File(scratchDirectory, "test.checkpoint");
+
+        CheckpointWriter w = new CheckpointWriter(checkpointFile, 60000);
+
+        FileFollower f = new FileFollower(file, new SingleLineParser(), null, e -> {});
+        f.setCheckpointWriter(w);
+
+        assertTrue(w == f.getCheckpointWriter());
+
+        append(file, "a\nb\n");
+
+        f.poll();
+
+        //
+        // the first checkpoint is due immediately, the next one after the interval
+        //
+
+        long checksum;
+
+        try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            checksum = TimeIndex.checksum(ch, 4);
+        }
+
+        assertEquals(new ParserCheckpoint(4, 2, null, checksum), w.getLatest());
+
+        append(file, "c\n");
+
+        f.poll();
+
+        assertEquals(4, w.getLatest().getPosition());
+
+        w.close();
+
+        assertEquals(new ParserCheckpoint(4, 2, null, checksum), CheckpointWriter.read(checkpointFile));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void append(File file, String content) throws Exception {
+
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static String text(Event e) {
+
+        if (e instanceof EndOfStreamEvent) {
+
+            return "END";
+        }
+
+        return e.getLineNumber() + ":" + ((GenericEvent)e).getStringProperty("text").getString();
+    }
+
+    private static void await(List<String> lines, int count) throws Exception {
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while(lines.size() < count) {
+
+            assertTrue("timed out waiting for " + count + " events", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class GzipInputTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+    }
+
+    @After
+    public void after() throws Exception {
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void open_InvalidArguments() throws Exception {
+
+        try {
+
+            GzipInput.open(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null file"));
+        }
+
+        try {
+
+            GzipInput.open(new File(scratchDirectory, "test.log"), null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null pool"));
+        }
+    }
+
+    @Test
+    public void open_Uncompressed() throws Exception {
+
+        byte[] content = content(100000);
+
+        File f = new File(scratchDirectory, "test.log");
+        Files.write(f.toPath(), content);
+
+        assertFalse(GzipInput.isGzip(f));
+        assertFalse(GzipInput.isBgzf(f));
+        assertArrayEquals(content, readAll(f));
+
+        File empty = new File(scratchDirectory, "empty.log");
+        Files.write(empty.toPath(), new byte[0]);
+
+        assertEquals(0, readAll(empty).length);
+
+        File one = new File(scratchDirectory, "one.log");
+        Files.write(one.toPath(), new byte[] { 0x1f });
+
+        assertArrayEquals(new byte[] { 0x1f }, readAll(one));
+    }
+
+    @Test
+    public void open_Gzip() throws Exception {
+
+        byte[] content = content(2 * GzipInput.READ_AHEAD_CHUNK_SIZE + 1000);
+
+        File f = new File(scratchDirectory, "test.log.gz");
+
+        try(OutputStream os = new GZIPOutputStream(new FileOutputStream(f))) {
+
+            os.write(content);
+        }
+
+        assertTrue(GzipInput.isGzip(f));
+        assertFalse(GzipInput.isBgzf(f));
+        assertArrayEquals(content, readAll(f));
+    }
+
+    @Test
+    public void open_MultiMemberGzip() throws Exception {
+
+        byte[] content = content(50000);
+
+        File f = new File(scratchDirectory, "test.log.gz");
+
+        try(OutputStream os = new FileOutputStream(f)) {
+
+            for(int i = 0; i < 3; i ++) {
+
+                GZIPOutputStream gos = new GZIPOutputStream(os);
+                gos.write(content, i * 10000, 10000);
+                gos.finish();
+            }
+
+            GZIPOutputStream gos = new GZIPOutputStream(os);
+            gos.write(content, 30000, 20000);
+            gos.finish();
+        }
+
+        assertArrayEquals(content, readAll(f));
+    }
+
+    @Test
+    public void open_Bgzf() throws Exception {
+
+        byte[] content = content(1000000);
+
+        File f = new File(scratchDirectory, "test.log.bgz");
+        Files.write(f.toPath(), bgzf(content, 16 * 1024));
+
+        assertTrue(GzipInput.isGzip(f));
+        assertTrue(GzipInput.isBgzf(f));
+
+        assertArrayEquals(content, readAll(f));
+
+        //
+        // a pool with a single thread keeps two blocks in flight
+        //
+
+        ForkJoinPool pool = new ForkJoinPool(1);
+
+        try(InputStream in = GzipInput.open(f, pool)) {
+
+            assertArrayEquals(content, readAll(in));
+        }
+        finally {
+
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void open_Bgzf_CorruptBlock() throws Exception {
+
+        byte[] bgzf = bgzf(content(100000), 16 * 1024);
+
+        //
+        // flip a byte in the CRC of the first block
+        //
+
+        int firstBlockSize = ((bgzf[16] & 0xff) | (bgzf[17] & 0xff) << 8) + 1;
+        bgzf[firstBlockSize - 8] ^= 1;
+
+        File f = new File(scratchDirectory, "test.log.bgz");
+        Files.write(f.toPath(), bgzf);
+
+        try(InputStream in = GzipInput.open(f)) {
+
+            readAll(in);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("CRC mismatch"));
+        }
+    }
+
+    @Test
+    public void open_Bgzf_Truncated() throws Exception {
+
+        byte[] bgzf = bgzf(content(100000), 16 * 1024);
+
+        File f = new File(scratchDirectory, "test.log.bgz");
+        Files.write(f.toPath(), Arrays.copyOf(bgzf, bgzf.length - 40));
+
+        try(InputStream in = GzipInput.open(f)) {
+
+            readAll(in);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("truncated"));
+        }
+    }
+
+    @Test
+    public void close_BeforeTheEnd() throws Exception {
+
+        byte[] content = content(20 * GzipInput.READ_AHEAD_CHUNK_SIZE);
+
+        File f = new File(scratchDirectory, "test.log.gz");
+
+        try(OutputStream os = new GZIPOutputStream(new FileOutputStream(f))) {
+
+            os.write(content);
+        }
+
+        InputStream in = GzipInput.open(f);
+
+        assertEquals(content[0] & 0xff, in.read());
+
+        //
+        // the decompressor thread is ahead, and blocked on the full buffer
+        //
+
+        Thread.sleep(50);
+
+        in.close();
+
+        try {
+
+            in.read();
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("closed"));
+        }
+    }
+
+    @Test
+    public void parserDriver_Gzip() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 10000; i ++) {
+
+            sb.append("line ").append(i).append('\n');
+        }
+
+        byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        File gz = new File(scratchDirectory, "test.log.gz");
+
+        try(OutputStream os = new GZIPOutputStream(new FileOutputStream(gz))) {
+
+            os.write(content);
+        }
+
+        File bgz = new File(scratchDirectory, "test.log.bgz");
+        Files.write(bgz.toPath(), bgzf(content, 4096));
+
+        for(File f: new File[] { gz, bgz }) {
+
+            List<Event> events = new ArrayList<>();
+
+            new ParserDriver(new SingleLineParser(), null, events::add).run(f);
+
+            assertEquals(10001, events.size());
+            assertEquals("line 9999", ((GenericEvent)events.get(9999)).getStringProperty("text").getString());
+            assertTrue(events.get(10000) instanceof EndOfStreamEvent);
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static byte[] content(int size) {
+
+        Random r = new Random(size);
+
+        byte[] b = new byte[size];
+
+        for(int i = 0; i < size; i ++) {
+
+            b[i] = (byte)(r.nextInt(10) == 0 ? '\n' : 'a' + r.nextInt(8));
+        }
+
+        return b;
+    }
+
+    private static byte[] readAll(File f) throws Exception {
+
+        try(InputStream in = GzipInput.open(f)) {
+
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        //
+        // mix single byte and bulk reads
+        //
+
+        int b = in.read();
+
+        if (b == -1) {
+
+            return baos.toByteArray();
+        }
+
+        baos.write(b);
+
+        byte[] buffer = new byte[7777];
+
+        int read;
+
+        while((read = in.read(buffer)) != -1) {
+
+            baos.write(buffer, 0, read);
+        }
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Writes the content in BGZF format, followed by the empty end-of-file block, the way bgzip does.
+     */
+    private static byte[] bgzf(byte[] content, int blockSize) throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        for(int offset = 0; offset < content.length; offset += blockSize) {
+
+            writeBlock(baos, content, offset, Math.min(blockSize, content.length - offset));
+        }
+
+        writeBlock(baos, content, 0, 0);
+
+        return baos.toByteArray();
+    }
+
+    private static void writeBlock(ByteArrayOutputStream baos, byte[] content, int offset, int length) {
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(content, offset, length);
+        deflater.finish();
+
+        byte[] compressed = new byte[length + 1024];
+        int compressedLength = deflater.deflate(compressed);
+        deflater.end();
+
+        CRC32 crc = new CRC32();
+        crc.update(content, offset, length);
+
+        int blockSize = 18 + compressedLength + 8;
+
+        baos.write(new byte[] {
+
+                0x1f, (byte)0x8b, 8, 4, 0, 0, 0, 0, 0, (byte)0xff, 6, 0,
+                'B', 'C', 2, 0, (byte)(blockSize - 1), (byte)((blockSize - 1) >> 8)
+
+        }, 0, 18);
+
+        baos.write(compressed, 0, compressedLength);
+
+        writeInt(baos, (int)crc.getValue());
+        writeInt(baos, length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream baos, int i) {
+
+        baos.write(i);
+        baos.write(i >> 8);
+        baos.write(i >> 16);
+        baos.write(i >> 24);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
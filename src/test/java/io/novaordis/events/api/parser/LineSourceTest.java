@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+import static io.novaordis.events.api.parser.ParserTestUtil.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class LineSourceTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+    }
+
+    @After
+    public void after() throws Exception {
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void indexOfNewline() throws Exception {
+
+        Random r = new Random(3L);
+
+        for(ByteOrder order: new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+
+            for(int n = 0; n < 2000; n ++) {
+
+                byte[] a = new byte[r.nextInt(40)];
+
+                for(int i = 0; i < a.length; i ++) {
+
+                    //
+                    // bytes that differ from '\n' by a single bit, and high bytes, to catch false positives
+                    //
+
+                    int k = r.nextInt(6);
+                    a[i] = k == 0 ? (byte)'\n' :
+                            k == 1 ? 0x0B : k == 2 ? 0x08 : k == 3 ? (byte)0x8A : (byte)r.nextInt();
+                }
+
+                ByteBuffer b = ByteBuffer.wrap(a).order(order);
+
+                int from = a.length == 0 ? 0 : r.nextInt(a.length);
+
+                assertEquals(naiveIndexOf(a, from), LineSource.indexOfNewline(b, from, a.length));
+            }
+        }
+    }
+
+    @Test
+    public void isAscii() throws Exception {
+
+        byte[] a = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer b = ByteBuffer.wrap(a);
+
+        assertTrue(LineSource.isAscii(b, 0, a.length));
+
+        a[17] = (byte)0xC3;
+
+        assertFalse(LineSource.isAscii(b, 0, a.length));
+        assertTrue(LineSource.isAscii(b, 0, 17));
+        assertFalse(LineSource.isAscii(b, 3, 18));
+        assertTrue(LineSource.isAscii(b, 18, 20));
+    }
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new LineSource((File)null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null file"));
+        }
+
+        try {
+
+            new LineSource((ReadableByteChannel)null, StandardCharsets.UTF_8);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null channel"));
+        }
+
+        try {
+
+            new LineSource(channel(""), null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null charset"));
+        }
+    }
+
+    @Test
+    public void emptyInput() throws Exception {
+
+        try(LineSource s = new LineSource(write(scratchDirectory, ""))) {
+
+            assertTrue(s.isMapped());
+            assertNull(s.nextLine());
+            assertEquals(0, s.getLineNumber());
+        }
+
+        try(LineSource s = new LineSource(channel(""), StandardCharsets.UTF_8)) {
+
+            assertFalse(s.isMapped());
+            assertNull(s.nextLine());
+        }
+    }
+
+    @Test
+    public void lines() throws Exception {
+
+        String content = "first\n\nthird\r\n\r\nfifth\n  sixth, with no terminator";
+
+        for(LineSource s: sources(content, StandardCharsets.UTF_8, 1024)) {
+
+            try {
+
+                assertEquals("first", s.nextLine().toString());
+                assertEquals(6, s.getPosition());
+                assertEquals("", s.nextLine().toString());
+                assertEquals("third", s.nextLine().toString());
+                assertEquals("", s.nextLine().toString());
+                assertEquals("fifth", s.nextLine().toString());
+
+                CharSequence line = s.nextLine();
+                assertEquals(27, line.length());
+                assertEquals('s', line.charAt(2));
+                assertEquals("sixth", line.subSequence(2, 7).toString());
+                assertEquals("  sixth, with no terminator", line.toString());
+
+                assertNull(s.nextLine());
+                assertNull(s.nextLine());
+                assertEquals(6, s.getLineNumber());
+                assertEquals(content.length(), s.getPosition());
+            }
+            finally {
+
+                s.close();
+            }
+        }
+    }
+
+    @Test
+    public void lines_SmallWindows() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+
+        Random r = new Random(5L);
+
+        for(int i = 0; i < 300; i ++) {
+
+            StringBuilder line = new StringBuilder("line " + i + " ");
+
+            for(int j = r.nextInt(i % 50 == 0 ? 200 : 20); j > 0; j --) {
+
+                line.append((char)('a' + r.nextInt(26)));
+            }
+
+            expected.add(line.toString());
+            sb.append(line).append('\n');
+        }
+
+        //
+        // windows and buffers much smaller than some of the lines
+        //
+
+        for(LineSource s: sources(sb.toString(), StandardCharsets.UTF_8, 16)) {
+
+            assertEquals(expected, readAll(s));
+        }
+    }
+
+    @Test
+    public void lines_NonAscii() throws Exception {
+
+        String content = "caf\u00e9 au lait\nplain\n\u65e5\u672c\u8a9e\n";
+
+        for(LineSource s: sources(content, StandardCharsets.UTF_8, 8)) {
+
+            List<String> lines = readAll(s);
+
+            assertEquals(3, lines.size());
+            assertEquals("caf\u00e9 au lait", lines.get(0));
+            assertEquals("plain", lines.get(1));
+            assertEquals("\u65e5\u672c\u8a9e", lines.get(2));
+        }
+
+        for(LineSource s: sources("caf\u00e9\n", StandardCharsets.ISO_8859_1, 1024)) {
+
+            assertEquals(Collections.singletonList("caf\u00e9"), readAll(s));
+        }
+    }
+
+    @Test
+    public void closed() throws Exception {
+
+        LineSource s = new LineSource(write(scratchDirectory, "a\n"));
+        s.close();
+        s.close();
+
+        try {
+
+            s.nextLine();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 100; i ++) {
+
+            sb.append("line ").append(i).append('\n');
+        }
+
+        for(LineSource s: sources(sb.toString(), StandardCharsets.UTF_8, 64)) {
+
+            ViewParser parser = new ViewParser();
+            List<Event> events = new ArrayList<>();
+
+            assertEquals(100, s.parse(parser, null, events::add));
+
+            assertEquals(101, events.size());
+            assertTrue(events.get(100) instanceof EndOfStreamEvent);
+            assertEquals(100, parser.getLineNumber());
+
+            for(int i = 0; i < 100; i ++) {
+
+                assertEquals(i + 1, events.get(i).getLineNumber().longValue());
+                assertEquals("line " + i, events.get(i).getStringProperty("text").getString());
+            }
+
+            //
+            // the parser did not create Strings for the lines
+            //
+
+            assertEquals(0, parser.stringLines);
+
+            s.close();
+        }
+    }
+
+    @Test
+    public void parse_DefaultCharSequenceSupport() throws Exception {
+
+        //
+        // parsers that do not override the CharSequence variant get a String
+        //
+
+        List<String> lines = new ArrayList<>();
+
+        ParserBase parser = new MockParser() {
+
+            @Override
+            protected List<Event> parse(long lineNumber, String line, Query query) throws ParsingException {
+
+                lines.add(lineNumber + ":" + line);
+                return Collections.emptyList();
+            }
+        };
+
+        try(LineSource s = new LineSource(write(scratchDirectory, "a\nb\n"))) {
+
+            assertEquals(2, s.parse(parser, null, e -> {}));
+        }
+
+        assertEquals(2, lines.size());
+        assertEquals("1:a", lines.get(0));
+        assertEquals("2:b", lines.get(1));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static ReadableByteChannel channel(String content) {
+
+        return Channels.newChannel(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return a mapped source and a channel source over the same content.
+     */
+    private List<LineSource> sources(String content, Charset charset, int size) throws Exception {
+
+        List<LineSource> result = new ArrayList<>();
+
+        result.add(new LineSource(write(scratchDirectory, content, charset), charset, size));
+        result.add(new LineSource(
+                Channels.newChannel(new ByteArrayInputStream(content.getBytes(charset))), charset, size));
+
+        return result;
+    }
+
+    private static List<String> readAll(LineSource s) throws Exception {
+
+        List<String> result = new ArrayList<>();
+
+        CharSequence line;
+
+        while((line = s.nextLine()) != null) {
+
+            result.add(line.toString());
+        }
+
+        s.close();
+
+        return result;
+    }
+
+    private static int naiveIndexOf(byte[] a, int from) {
+
+        for(int i = from; i < a.length; i ++) {
+
+            if (a[i] == '\n') {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Works on the line view, and copies the content it keeps.
+     */
+    private static class ViewParser extends ParserBase {
+
+        private int stringLines;
+
+        @Override
+        protected List<Event> parse(long lineNumber, String line, Query query) throws ParsingException {
+
+            stringLines ++;
+            return parse(lineNumber, (CharSequence)line, query);
+        }
+
+        @Override
+        protected List<Event> parse(long lineNumber, CharSequence line, Query query) throws ParsingException {
+
+            GenericEvent e = new GenericEvent();
+            e.setLineNumber(lineNumber);
+            e.setStringProperty("text", line.toString());
+            return Collections.singletonList(e);
+        }
+
+        @Override
+        protected List<Event> close(long lineNumber) throws ParsingException {
+
+            return Collections.emptyList();
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.query.Query;
+
+/**
+ * A Parser that does not extend ParserBase, and only implements the list API: it relies on the Parser default methods
+ * for everything else. Creates an event per space-separated token.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ListOnlyParser implements Parser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private long lineNumber;
+    private boolean closed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Parser implementation -------------------------------------------------------------------------------------------
+
+    @Override
+    public List<Event> parse(String line, Query query) {
+
+        if (closed) {
+
+            throw new IllegalStateException(this + " is closed");
+        }
+
+        lineNumber ++;
+
+        List<Event> result = new ArrayList<>();
+
+        for(String tok: line.split(" +")) {
+
+            if (tok.isEmpty()) {
+
+                continue;
+            }
+
+            GenericEvent e = new GenericEvent();
+            e.setLineNumber(lineNumber);
+            e.setStringProperty("token", tok);
+            result.add(e);
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<Event> close() {
+
+        if (closed) {
+
+            return Collections.emptyList();
+        }
+
+        closed = true;
+
+        return Collections.singletonList(new EndOfStreamEvent());
+    }
+
+    @Override
+    public long getLineNumber() {
+
+        return lineNumber;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Exercises the Parser default methods.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ListOnlyParserTest extends ParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parse_CharSequence() throws Exception {
+
+        ListOnlyParser p = getParserToTest();
+
+        StringBuilder line = new StringBuilder("a b");
+
+        List<Event> events = p.parse(line, null);
+
+        //
+        // the events do not depend on the view
+        //
+
+        line.setLength(0);
+        line.append("x y");
+
+        assertEquals(2, events.size());
+        assertEquals("a", events.get(0).getStringProperty("token").getString());
+        assertEquals("b", events.get(1).getStringProperty("token").getString());
+        assertEquals(1L, events.get(0).getLineNumber().longValue());
+    }
+
+    @Test
+    public void sink() throws Exception {
+
+        ListOnlyParser p = getParserToTest();
+
+        EventListSink sink = new EventListSink();
+
+        p.parse("a b", null, sink);
+        p.parse(new StringBuilder("c"), null, sink);
+
+        assertEquals(3, sink.size());
+
+        p.close(sink);
+
+        List<Event> events = sink.getEvents();
+
+        assertEquals(4, events.size());
+        assertEquals("c", events.get(2).getStringProperty("token").getString());
+        assertEquals(2L, events.get(2).getLineNumber().longValue());
+        assertTrue(events.get(3) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void checkpointsNotSupported() throws Exception {
+
+        ListOnlyParser p = getParserToTest();
+
+        try {
+
+            p.checkpoint(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("does not support checkpoints"));
+        }
+
+        try {
+
+            p.restore(new ParserCheckpoint(0, 0, null));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("does not support checkpoints"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    @Override
+    protected ListOnlyParser getParserToTest() throws Exception {
+
+        return new ListOnlyParser();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -51,6 +51,15 @@ public class MockParser extends ParserBase {
         return Collections.emptyList();
     }
 
+    /**
+     * No accumulated state, opts in for checkpoints.
+     */
+    @Override
+    protected byte[] saveState() {
+
+        return null;
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     // Package protected -----------------------------------------------------------------------------------------------
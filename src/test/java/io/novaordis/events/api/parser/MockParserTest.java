@@ -16,6 +16,24 @@
 
 package io.novaordis.events.api.parser;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.query.Query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 4/28/17
@@ -34,6 +52,342 @@ public class MockParserTest extends ParserTest {
 
     // Tests -----------------------------------------------------------------------------------------------------------
 
+    @Test
+    public void recycling() throws Exception {
+
+        MockParser p = getParserToTest();
+
+        assertFalse(p.isRecycling());
+
+        EventPool<GenericTimedEvent> pool = p.createEventPool(GenericTimedEvent::new);
+
+        //
+        // recycling is opt-in
+        //
+
+        assertEquals(0, pool.getCapacity());
+        assertFalse(EventPool.recycle(pool.acquire()));
+
+        p.setRecycling(true);
+
+        assertTrue(p.isRecycling());
+        assertEquals(EventPool.DEFAULT_CAPACITY, pool.getCapacity());
+
+        GenericTimedEvent e = pool.acquire();
+        assertTrue(EventPool.recycle(e));
+        assertTrue(e == pool.acquire());
+
+        p.setRecycling(false);
+
+        assertEquals(0, pool.getCapacity());
+
+        //
+        // pools created after recycling was enabled pool from the start
+        //
+
+        p.setRecycling(true);
+
+        EventPool<GenericTimedEvent> pool2 = p.createEventPool(GenericTimedEvent::new);
+        assertEquals(EventPool.DEFAULT_CAPACITY, pool2.getCapacity());
+    }
+
+    @Test
+    public void setLineNumber() throws Exception {
+
+        MockParser p = getParserToTest();
+
+        try {
+
+            p.setLineNumber(-1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid line number"));
+        }
+
+        p.setLineNumber(10);
+
+        assertEquals(10L, p.getLineNumber());
+
+        p.parse("something", null);
+
+        assertEquals(11L, p.getLineNumber());
+
+        try {
+
+            p.setLineNumber(20);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            assertTrue(e.getMessage().contains("already processed lines"));
+        }
+
+        p.close();
+
+        try {
+
+            p.setLineNumber(20);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    @Test
+    public void isEventStart() throws Exception {
+
+        MockParser p = getParserToTest();
+
+        assertTrue(p.isEventStart("something"));
+        assertTrue(p.isEventStart(""));
+    }
+
+    @Test
+    public void pushParser_ListAdapter() throws Exception {
+
+        PushParser p = new PushParser();
+
+        List<Event> events = p.parse("a b", null);
+
+        assertEquals(2, events.size());
+        assertEquals(1L, events.get(0).getLineNumber().longValue());
+        assertEquals(1L, events.get(1).getLineNumber().longValue());
+
+        assertTrue(p.parse("", null).isEmpty());
+
+        List<Event> events2 = p.parse(new StringBuilder("c"), null);
+
+        assertEquals(1, events2.size());
+        assertEquals(3L, events2.get(0).getLineNumber().longValue());
+
+        //
+        // the returned lists are not reused by the parser
+        //
+
+        assertEquals(2, events.size());
+
+        List<Event> last = p.close();
+
+        assertEquals(2, last.size());
+        assertEquals(3L, last.get(0).getLineNumber().longValue());
+        assertTrue(last.get(1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void pushParser_Sink() throws Exception {
+
+        PushParser p = new PushParser();
+
+        EventListSink sink = new EventListSink();
+
+        p.parse("a b", null, sink);
+        p.parse(new StringBuilder("c"), null, sink);
+        p.close(sink);
+
+        List<Event> events = sink.getEvents();
+
+        assertEquals(5, events.size());
+        assertEquals(2L, events.get(2).getLineNumber().longValue());
+        assertEquals(2L, events.get(3).getLineNumber().longValue());
+        assertTrue(events.get(4) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void listParser_Sink() throws Exception {
+
+        ListParser p = new ListParser();
+
+        EventListSink sink = new EventListSink();
+
+        p.parse("a b", null, sink);
+
+        assertEquals(2, sink.size());
+
+        p.close(sink);
+
+        assertEquals(4, sink.size());
+        assertEquals(1L, sink.getEvents().get(2).getLineNumber().longValue());
+        assertTrue(sink.getEvents().get(3) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void subClassMustNotEmitEndOfStream() throws Exception {
+
+        ParserBase p = new SinkParserBase() {
+
+            @Override
+            protected void parse(long lineNumber, String line, Query query, EventSink sink) {
+
+                // noop
+            }
+
+            @Override
+            protected void close(long lineNumber, EventSink sink) {
+
+                sink.emit(new EndOfStreamEvent());
+            }
+        };
+
+        EventListSink sink = new EventListSink();
+
+        try {
+
+            p.close(sink);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("must not return EndOfStream"));
+        }
+
+        assertTrue(sink.isEmpty());
+    }
+
+    @Test
+    public void failedInvocationDoesNotLeakEvents() throws Exception {
+
+        ParserBase p = new SinkParserBase() {
+
+            @Override
+            protected void parse(long lineNumber, String line, Query query, EventSink sink) {
+
+                sink.emit(new GenericEvent());
+
+                if ("fail".equals(line)) {
+
+                    throw new IllegalArgumentException("SYNTHETIC");
+                }
+            }
+
+            @Override
+            protected void close(long lineNumber, EventSink sink) {
+
+                // noop
+            }
+        };
+
+        try {
+
+            p.parse("fail", null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertEquals("SYNTHETIC", e.getMessage());
+        }
+
+        assertEquals(1, p.parse("ok", null).size());
+    }
+
+    @Test
+    public void checkpointAndRestore() throws Exception {
+
+        MockParser p = getParserToTest();
+
+        p.parse("a", null);
+        p.parse("b", null);
+
+        ParserCheckpoint c = p.checkpoint(4);
+
+        assertEquals(4, c.getPosition());
+        assertEquals(2, c.getLineNumber());
+        assertTrue(c.getState() == null);
+
+        MockParser p2 = getParserToTest();
+
+        p2.restore(c);
+
+        assertEquals(2, p2.getLineNumber());
+
+        p2.parse("c", null);
+
+        assertEquals(3, p2.getLineNumber());
+
+        //
+        // a parser that already processed lines cannot be restored
+        //
+
+        try {
+
+            p2.restore(c);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("already processed lines"));
+        }
+
+        p2.close();
+
+        try {
+
+            p2.checkpoint(6);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("closed"));
+        }
+    }
+
+    @Test
+    public void checkpoint_NotSupported() throws Exception {
+
+        //
+        // a parser that does not override saveState() did not opt in for checkpoints
+        //
+
+        PushParser p = new PushParser();
+
+        p.parse("a", null);
+
+        try {
+
+            p.checkpoint(2);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("does not support checkpoints"));
+        }
+    }
+
+    @Test
+    public void restore_StateNotSupported() throws Exception {
+
+        MockParser p = getParserToTest();
+
+        try {
+
+            p.restore(new ParserCheckpoint(0, 0, new byte[] { 1 }));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot restore parser state"));
+        }
+
+        try {
+
+            p.restore(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null checkpoint"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -48,4 +402,53 @@ public class MockParserTest extends ParserTest {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * Emits one event per word, and one event on close, only implements the EventSink variants.
+     */
+    private static class PushParser extends SinkParserBase {
+
+        @Override
+        protected void parse(long lineNumber, String line, Query query, EventSink sink) {
+
+            for(String word: line.split(" ")) {
+
+                if (!word.isEmpty()) {
+
+                    sink.emit(new GenericEvent(lineNumber));
+                }
+            }
+        }
+
+        @Override
+        protected void close(long lineNumber, EventSink sink) {
+
+            sink.emit(new GenericEvent(lineNumber));
+        }
+    }
+
+    /**
+     * Returns one event per word, and one event on close, only implements the list variants.
+     */
+    private static class ListParser extends ParserBase {
+
+        @Override
+        protected List<Event> parse(long lineNumber, String line, Query query) {
+
+            List<Event> result = new ArrayList<>();
+
+            for(String word: line.split(" ")) {
+
+                result.add(new GenericEvent(lineNumber));
+            }
+
+            return result;
+        }
+
+        @Override
+        protected List<Event> close(long lineNumber) {
+
+            return Collections.singletonList(new GenericEvent(lineNumber));
+        }
+    }
+
 }
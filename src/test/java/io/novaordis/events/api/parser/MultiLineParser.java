@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.query.Query;
+
+/**
+ * Continuation lines start with a space. Each event carries its first line, followed by its trimmed continuation lines,
+ * separated by '|', as a "text" property. The state saved in checkpoints is the text of the event in progress.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class MultiLineParser extends ParserBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private long start;
+    private StringBuilder text;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ParserBase overrides --------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isEventStart(String line) {
+
+        return !line.startsWith(" ");
+    }
+
+    @Override
+    protected List<Event> parse(long lineNumber, String line, Query query) {
+
+        if (text != null && !isEventStart(line)) {
+
+            text.append('|').append(line.trim());
+            return Collections.emptyList();
+        }
+
+        List<Event> result = complete();
+
+        start = lineNumber;
+        text = new StringBuilder(line);
+
+        return result;
+    }
+
+    @Override
+    protected List<Event> close(long lineNumber) {
+
+        return complete();
+    }
+
+    @Override
+    protected byte[] saveState() {
+
+        return text == null ? null : (start + ":" + text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void restoreState(byte[] state) {
+
+        if (state == null) {
+
+            return;
+        }
+
+        String s = new String(state, StandardCharsets.UTF_8);
+        int i = s.indexOf(':');
+        start = Long.parseLong(s.substring(0, i));
+        text = new StringBuilder(s.substring(i + 1));
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param text the text of the event, starting with its first line.
+     */
+    protected GenericEvent newEvent(long lineNumber, String text) {
+
+        return new GenericEvent(lineNumber);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private List<Event> complete() {
+
+        if (text == null) {
+
+            return Collections.emptyList();
+        }
+
+        GenericEvent e = newEvent(start, text.toString());
+        e.setStringProperty("text", text.toString());
+        text = null;
+        return Collections.singletonList(e);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
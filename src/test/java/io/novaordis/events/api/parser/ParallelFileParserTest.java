@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.utilities.parsing.ParsingException;
+
+import static io.novaordis.events.api.parser.ParserTestUtil.render;
+import static io.novaordis.events.api.parser.ParserTestUtil.sequential;
+import static io.novaordis.events.api.parser.ParserTestUtil.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParallelFileParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    private ForkJoinPool pool;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void after() throws Exception {
+
+        pool.shutdownNow();
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new ParallelFileParser(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null parser factory"));
+        }
+
+        try {
+
+            new ParallelFileParser(SingleLineParser::new, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null pool"));
+        }
+
+        try {
+
+            new ParallelFileParser(SingleLineParser::new).setChunkSize(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid chunk size"));
+        }
+
+        try {
+
+            new ParallelFileParser(SingleLineParser::new).setMaxInFlightBytes(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid in-flight byte count"));
+        }
+    }
+
+    @Test
+    public void parse_NoSuchFile() throws Exception {
+
+        ParallelFileParser p = new ParallelFileParser(SingleLineParser::new, pool);
+
+        try {
+
+            p.parse(new File(scratchDirectory, "no-such-file.log"), null);
+            fail("should have thrown exception");
+        }
+        catch(java.io.IOException e) {
+
+            assertTrue(e.getMessage().contains("no such file"));
+        }
+    }
+
+    @Test
+    public void split() throws Exception {
+
+        File f = write(scratchDirectory, "a\nbb\nccc\n\ndddd");
+
+        ParallelFileParser p = new ParallelFileParser(SingleLineParser::new, pool);
+        p.setChunkSize(1);
+
+        assertArrayEquals(new long[] {0, 2, 5, 9, 10, 14}, p.split(f));
+
+        p.setChunkSize(4);
+
+        assertArrayEquals(new long[] {0, 5, 9, 14}, p.split(f));
+
+        p.setChunkSize(100);
+
+        assertArrayEquals(new long[] {0, 14}, p.split(f));
+
+        assertArrayEquals(new long[] {0, 0}, p.split(write(scratchDirectory, "")));
+    }
+
+    @Test
+    public void emptyFile() throws Exception {
+
+        File f = write(scratchDirectory, "");
+
+        List<Event> events = new ParallelFileParser(SingleLineParser::new, pool).parse(f, null);
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void singleLineEvents() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        Random r = new Random(7L);
+
+        for(int i = 0; i < 500; i ++) {
+
+            sb.append("line ").append(i);
+
+            for(int j = r.nextInt(20); j > 0; j --) {
+
+                sb.append('.');
+            }
+
+            sb.append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+
+        sb.append("last line, no new line");
+
+        File f = write(scratchDirectory, sb.toString());
+
+        List<String> expected = render(sequential(f, new SingleLineParser()));
+
+        assertEquals(501, expected.size());
+        assertTrue(expected.get(0).startsWith("1: line 0"));
+        assertEquals("501: last line, no new line", expected.get(500));
+
+        for(long chunkSize: new long[] {1, 13, 100, 1000, ParallelFileParser.DEFAULT_CHUNK_SIZE}) {
+
+            ParallelFileParser p = new ParallelFileParser(SingleLineParser::new, pool);
+            p.setChunkSize(chunkSize);
+
+            assertEquals("chunk size " + chunkSize, expected, parsed(p, f));
+        }
+    }
+
+    @Test
+    public void multiLineEvents() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        //
+        // continuation lines at the beginning of the file belong to the first event
+        //
+
+        sb.append("  orphan continuation\n");
+
+        Random r = new Random(11L);
+
+        for(int i = 0; i < 300; i ++) {
+
+            sb.append("event ").append(i).append('\n');
+
+            for(int j = r.nextInt(i % 10 == 0 ? 40 : 4); j > 0; j --) {
+
+                sb.append("  at continuation ").append(j).append('\n');
+            }
+        }
+
+        File f = write(scratchDirectory, sb.toString());
+
+        List<String> expected = render(sequential(f, new MultiLineParser()));
+
+        assertEquals(301, expected.size());
+
+        for(long chunkSize: new long[] {1, 17, 64, 500, 4096, ParallelFileParser.DEFAULT_CHUNK_SIZE}) {
+
+            ParallelFileParser p = new ParallelFileParser(MultiLineParser::new, pool);
+            p.setChunkSize(chunkSize);
+
+            assertEquals("chunk size " + chunkSize, expected, parsed(p, f));
+        }
+    }
+
+    @Test
+    public void multiLineEvent_SpanningSeveralChunks() throws Exception {
+
+        StringBuilder sb = new StringBuilder("event 0\n");
+
+        for(int i = 0; i < 100; i ++) {
+
+            sb.append("  continuation ").append(i).append('\n');
+        }
+
+        sb.append("event 1\n");
+
+        File f = write(scratchDirectory, sb.toString());
+
+        ParallelFileParser p = new ParallelFileParser(MultiLineParser::new, pool);
+        p.setChunkSize(50);
+
+        List<String> events = parsed(p, f);
+
+        assertEquals(render(sequential(f, new MultiLineParser())), events);
+        assertEquals(2, events.size());
+        assertTrue(events.get(1).startsWith("102: event 1"));
+    }
+
+    @Test
+    public void maxInFlightBytes() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        Random r = new Random(13L);
+
+        for(int i = 0; i < 200; i ++) {
+
+            sb.append("event ").append(i).append('\n');
+
+            for(int j = r.nextInt(6); j > 0; j --) {
+
+                sb.append("  at continuation ").append(j).append('\n');
+            }
+        }
+
+        File f = write(scratchDirectory, sb.toString());
+
+        List<String> expected = render(sequential(f, new MultiLineParser()));
+
+        //
+        // a bound smaller than a chunk still allows one chunk in flight
+        //
+
+        for(long maxInFlightBytes: new long[] {1, 100, 1000, ParallelFileParser.DEFAULT_MAX_IN_FLIGHT_BYTES}) {
+
+            ParallelFileParser p = new ParallelFileParser(MultiLineParser::new, pool);
+            p.setChunkSize(256);
+            p.setMaxInFlightBytes(maxInFlightBytes);
+
+            assertEquals(maxInFlightBytes, p.getMaxInFlightBytes());
+            assertEquals("max in-flight bytes " + maxInFlightBytes, expected, parsed(p, f));
+        }
+    }
+
+    @Test
+    public void noTrailingNewLine() throws Exception {
+
+        File f = write(scratchDirectory, "event 0\n  continuation\nevent 1\n  continuation\nevent 2");
+
+        List<String> expected = render(sequential(f, new MultiLineParser()));
+
+        assertEquals(3, expected.size());
+
+        for(long chunkSize: new long[] {1, 5, 10, 30}) {
+
+            ParallelFileParser p = new ParallelFileParser(MultiLineParser::new, pool);
+            p.setChunkSize(chunkSize);
+
+            assertEquals("chunk size " + chunkSize, expected, parsed(p, f));
+        }
+    }
+
+    @Test
+    public void parsingException() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 100; i ++) {
+
+            sb.append(i == 70 ? "fail" : "line " + i).append('\n');
+        }
+
+        File f = write(scratchDirectory, sb.toString());
+
+        ParallelFileParser p = new ParallelFileParser(SingleLineParser::new, pool);
+        p.setChunkSize(32);
+
+        final List<Event> delivered = new ArrayList<>();
+
+        try {
+
+            p.parse(f, null, delivered::add);
+            fail("should have thrown exception");
+        }
+        catch(ParsingException e) {
+
+            assertTrue(e.getMessage().contains("line 71"));
+        }
+
+        //
+        // the events that precede the failed chunk were delivered, in order
+        //
+
+        assertTrue(delivered.size() <= 70);
+
+        for(int i = 0; i < delivered.size(); i ++) {
+
+            assertEquals(i + 1, delivered.get(i).getLineNumber().longValue());
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the rendered events, after checking that the parallel parser ended the stream, as a sequential one would.
+     */
+    private static List<String> parsed(ParallelFileParser p, File f) throws Exception {
+
+        List<Event> events = p.parse(f, null);
+
+        assertTrue(events.get(events.size() - 1) instanceof EndOfStreamEvent);
+
+        return render(events);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
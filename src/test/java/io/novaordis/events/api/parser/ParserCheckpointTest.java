@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParserCheckpointTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new ParserCheckpoint(-1, 0, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid position"));
+        }
+
+        try {
+
+            new ParserCheckpoint(0, -1, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid line number"));
+        }
+    }
+
+    @Test
+    public void stateIsCopied() throws Exception {
+
+        byte[] state = new byte[] { 1, 2, 3 };
+
+        ParserCheckpoint c = new ParserCheckpoint(10, 2, state);
+
+        state[0] = 7;
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, c.getState());
+
+        c.getState()[1] = 7;
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, c.getState());
+    }
+
+    @Test
+    public void serialization() throws Exception {
+
+        ParserCheckpoint c = new ParserCheckpoint(1234567890123L, 98765L, new byte[] { 0, -1, 127 });
+
+        byte[] bytes = c.toByteArray();
+
+        assertEquals(33 + 3, bytes.length);
+
+        ParserCheckpoint c2 = ParserCheckpoint.fromByteArray(bytes);
+
+        assertEquals(c, c2);
+        assertEquals(c.hashCode(), c2.hashCode());
+        assertEquals(1234567890123L, c2.getPosition());
+        assertEquals(98765L, c2.getLineNumber());
+        assertArrayEquals(new byte[] { 0, -1, 127 }, c2.getState());
+        assertEquals(ParserCheckpoint.NO_CHECKSUM, c2.getChecksum());
+    }
+
+    @Test
+    public void serialization_Checksum() throws Exception {
+
+        ParserCheckpoint c = new ParserCheckpoint(10, 2, null, 0xcafebabeL);
+
+        ParserCheckpoint c2 = ParserCheckpoint.fromByteArray(c.toByteArray());
+
+        assertEquals(c, c2);
+        assertEquals(0xcafebabeL, c2.getChecksum());
+        assertNotEquals(new ParserCheckpoint(10, 2, null), c2);
+        assertTrue(c2.toString().contains("checksum=cafebabe"));
+    }
+
+    @Test
+    public void fromByteArray_Version1() throws Exception {
+
+        //
+        // checkpoints written before the checksum was introduced are still readable
+        //
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(0x45564350);
+        out.writeByte(1);
+        out.writeLong(10);
+        out.writeLong(2);
+        out.writeInt(1);
+        out.writeByte(7);
+        out.flush();
+
+        ParserCheckpoint c = ParserCheckpoint.fromByteArray(baos.toByteArray());
+
+        assertEquals(new ParserCheckpoint(10, 2, new byte[] { 7 }), c);
+        assertEquals(ParserCheckpoint.NO_CHECKSUM, c.getChecksum());
+    }
+
+    @Test
+    public void serialization_NullAndEmptyState() throws Exception {
+
+        ParserCheckpoint c = ParserCheckpoint.fromByteArray(new ParserCheckpoint(5, 1, null).toByteArray());
+
+        assertNull(c.getState());
+
+        ParserCheckpoint c2 = ParserCheckpoint.fromByteArray(new ParserCheckpoint(5, 1, new byte[0]).toByteArray());
+
+        assertEquals(0, c2.getState().length);
+        assertNotEquals(c, c2);
+    }
+
+    @Test
+    public void fromByteArray_Invalid() throws Exception {
+
+        byte[] valid = new ParserCheckpoint(5, 1, new byte[] { 1 }).toByteArray();
+
+        try {
+
+            ParserCheckpoint.fromByteArray(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null byte array"));
+        }
+
+        byte[] badHeader = valid.clone();
+        badHeader[0] = 0;
+
+        assertInvalid(badHeader, "bad header");
+
+        byte[] badVersion = valid.clone();
+        badVersion[4] = 9;
+
+        assertInvalid(badVersion, "unsupported version 9");
+
+        assertInvalid(Arrays.copyOf(valid, valid.length - 1), "truncated");
+        assertInvalid(Arrays.copyOf(valid, valid.length + 1), "trailing bytes");
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void assertInvalid(byte[] bytes, String message) {
+
+        try {
+
+            ParserCheckpoint.fromByteArray(bytes);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg, msg.contains(message));
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.ShutdownEvent;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParserDriverTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new ParserDriver(null, null, e -> {});
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null parser"));
+        }
+
+        try {
+
+            new ParserDriver(new SingleLineParser(), null, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null consumer"));
+        }
+    }
+
+    @Test
+    public void configuration() throws Exception {
+
+        ParserDriver d = new ParserDriver(new SingleLineParser(), null, e -> {});
+
+        assertEquals(ParserDriver.DEFAULT_RING_CAPACITY, d.getRingCapacity());
+        assertEquals(ParserDriver.DEFAULT_BATCH_SIZE, d.getBatchSize());
+        assertEquals(ParserDriver.WaitStrategy.BLOCKING, d.getWaitStrategy());
+        assertEquals(StandardCharsets.UTF_8, d.getCharset());
+
+        try {
+
+            d.setRingCapacity(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid ring capacity"));
+        }
+
+        try {
+
+            d.setBatchSize(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid batch size"));
+        }
+
+        d.run(stream(""));
+
+        try {
+
+            d.setBatchSize(10);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("already started"));
+        }
+
+        try {
+
+            d.start(stream(""));
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("already started"));
+        }
+    }
+
+    @Test
+    public void await_NotStarted() throws Exception {
+
+        ParserDriver d = new ParserDriver(new SingleLineParser(), null, e -> {});
+
+        try {
+
+            d.await();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("not started"));
+        }
+    }
+
+    @Test
+    public void run_Blocking() throws Exception {
+
+        run(ParserDriver.WaitStrategy.BLOCKING);
+    }
+
+    @Test
+    public void run_Spinning() throws Exception {
+
+        run(ParserDriver.WaitStrategy.SPINNING);
+    }
+
+    @Test
+    public void run_EmptyStream() throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        new ParserDriver(new SingleLineParser(), null, events::add).run(stream(""));
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void parserFailure() throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        ParserDriver d = new ParserDriver(new SingleLineParser(), null, events::add);
+
+        try {
+
+            d.run(stream("a\nb\nfail\nc\n"));
+            fail("should have thrown exception");
+        }
+        catch(ParsingException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("failed to parse line 3"));
+        }
+
+        assertTrue(d.isShutdown());
+        assertTrue(d.getFailure() instanceof ParsingException);
+        assertEquals(3, events.size());
+        assertEquals("a", ((GenericEvent)events.get(0)).getStringProperty("text").getString());
+        assertEquals("b", ((GenericEvent)events.get(1)).getStringProperty("text").getString());
+        assertTrue(events.get(2) instanceof ShutdownEvent);
+    }
+
+    @Test
+    public void readerFailure() throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        InputStream broken = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+
+                throw new IOException("SYNTHETIC");
+            }
+        };
+
+        try {
+
+            new ParserDriver(new SingleLineParser(), null, events::add).run(broken);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertEquals("SYNTHETIC", e.getMessage());
+        }
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof ShutdownEvent);
+    }
+
+    @Test
+    public void consumerFailure_DoesNotStallThePipeline() throws Exception {
+
+        final List<Event> events = new ArrayList<>();
+
+        ParserDriver d = new ParserDriver(new SingleLineParser(), null, e -> {
+
+            if (events.size() == 5) {
+
+                throw new IllegalStateException("SYNTHETIC");
+            }
+
+            events.add(e);
+        });
+
+        d.setRingCapacity(2);
+        d.setBatchSize(1);
+
+        try {
+
+            d.run(stream(lines(1000)));
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            assertEquals("SYNTHETIC", e.getMessage());
+        }
+
+        assertEquals(5, events.size());
+    }
+
+    @Test
+    public void shutdown() throws Exception {
+
+        final CountDownLatch delivered = new CountDownLatch(10);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Event> events = new ArrayList<>();
+
+        ParserDriver d = new ParserDriver(new SingleLineParser(), null, e -> {
+
+            events.add(e);
+            delivered.countDown();
+
+            if (events.size() == 10) {
+
+                try {
+
+                    release.await();
+                }
+                catch(InterruptedException ie) {
+
+                    throw new IllegalStateException(ie);
+                }
+            }
+        });
+
+        d.setRingCapacity(16);
+
+        d.start(stream(lines(100000)));
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+
+        d.shutdown();
+        release.countDown();
+        d.await();
+
+        assertTrue(d.getFailure() == null);
+
+        //
+        // the consumer lagged, so the reader could not get far ahead
+        //
+
+        assertTrue(events.size() < 100000);
+        assertTrue(events.get(events.size() - 1) instanceof ShutdownEvent);
+
+        for(int i = 0; i < events.size() - 1; i ++) {
+
+            assertEquals(i + 1, events.get(i).getLineNumber().longValue());
+        }
+    }
+
+    @Test
+    public void parserEndOfStreamEventDoesNotStopTheConsumer() throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        ParserBase p = new ParserBase() {
+
+            @Override
+            protected List<Event> parse(long lineNumber, String line, Query query) {
+
+                return Collections.singletonList(new EndOfStreamEvent());
+            }
+
+            @Override
+            protected List<Event> close(long lineNumber) {
+
+                return Collections.emptyList();
+            }
+        };
+
+        new ParserDriver(p, null, events::add).run(stream("a\nb\n"));
+
+        assertEquals(3, events.size());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void run(ParserDriver.WaitStrategy waitStrategy) throws Exception {
+
+        final int count = 20000;
+
+        List<Event> events = new ArrayList<>();
+
+        ParserDriver d = new ParserDriver(new SingleLineParser(), null, events::add);
+
+        d.setWaitStrategy(waitStrategy);
+        d.setRingCapacity(64);
+        d.setBatchSize(16);
+
+        d.run(stream(lines(count)));
+
+        assertTrue(d.getFailure() == null);
+        assertEquals(count + 1, events.size());
+
+        for(int i = 0; i < count; i ++) {
+
+            GenericEvent e = (GenericEvent)events.get(i);
+            assertEquals(i + 1, e.getLineNumber().longValue());
+            assertEquals("line " + i, e.getStringProperty("text").getString());
+        }
+
+        assertTrue(events.get(count) instanceof EndOfStreamEvent);
+    }
+
+    private static String lines(int count) {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < count; i ++) {
+
+            sb.append("line ").append(i).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private static InputStream stream(String content) {
+
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -92,6 +92,121 @@ public abstract class ParserTest {
         }
     }
 
+    @Test
+    public void closeAnUnusedParser_Sink() throws Exception {
+
+        Parser p = getParserToTest();
+
+        EventListSink sink = new EventListSink();
+
+        p.close(sink);
+
+        assertEquals(1, sink.size());
+        assertTrue(sink.getEvents().get(0) instanceof EndOfStreamEvent);
+
+        //
+        // redundantly close the parser, the sink is not notified again
+        //
+
+        p.close(sink);
+
+        assertEquals(1, sink.size());
+        assertTrue(p.close().isEmpty());
+    }
+
+    @Test
+    public void closedParserCannotBeUsed_Sink() throws Exception {
+
+        Parser p = getParserToTest();
+
+        p.close(new EventListSink());
+
+        try {
+
+            p.parse("something", null, new EventListSink());
+            fail("Should thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("closed"));
+        }
+
+        try {
+
+            p.parse(new StringBuilder("something"), null, new EventListSink());
+            fail("Should thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("closed"));
+        }
+    }
+
+    @Test
+    public void nullSink() throws Exception {
+
+        Parser p = getParserToTest();
+
+        try {
+
+            p.parse("something", null, null);
+            fail("Should thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null sink"));
+        }
+
+        try {
+
+            p.close(null);
+            fail("Should thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null sink"));
+        }
+
+        //
+        // the failed invocations did not count lines
+        //
+
+        assertEquals(0L, p.getLineNumber());
+    }
+
+    @Test
+    public void lineNumber_Sink() throws Exception {
+
+        Parser p = getParserToTest();
+
+        EventListSink sink = new EventListSink();
+
+        p.parse("something", null, sink);
+
+        assertEquals(1L, p.getLineNumber());
+
+        p.parse(new StringBuilder("something else"), null, sink);
+
+        assertEquals(2L, p.getLineNumber());
+
+        p.close(sink);
+
+        assertEquals(2L, p.getLineNumber());
+
+        List<Event> events = sink.getEvents();
+
+        assertTrue(events.get(events.size() - 1) instanceof EndOfStreamEvent);
+
+        for(int i = 0; i < events.size() - 1; i ++) {
+
+            assertFalse(events.get(i) instanceof EndOfStreamEvent);
+        }
+    }
+
     @Test
     public void lineNumber() throws Exception {
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+
+/**
+ * Helpers for the tests that parse files with the SingleLineParser and MultiLineParser fixtures.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class ParserTestUtil {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the content, UTF-8 encoded, into "test.log" in the given directory, replacing the file if it exists.
+     */
+    public static File write(File directory, String content) throws Exception {
+
+        return write(directory, content, StandardCharsets.UTF_8);
+    }
+
+    public static File write(File directory, String content, Charset charset) throws Exception {
+
+        File f = new File(directory, "test.log");
+        Files.write(f.toPath(), content.getBytes(charset));
+        return f;
+    }
+
+    /**
+     * @return the events produced by the parser when fed the file line by line, including those produced on close(),
+     * which end with an EndOfStreamEvent.
+     */
+    public static List<Event> sequential(File f, ParserBase parser) throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        for(String line: Files.readAllLines(f.toPath(), StandardCharsets.UTF_8)) {
+
+            events.addAll(parser.parse(line, null));
+        }
+
+        events.addAll(parser.close());
+
+        return events;
+    }
+
+    /**
+     * @return "<line-number>: <text>" for each event, skipping the EndOfStreamEvents.
+     */
+    public static List<String> render(List<Event> events) {
+
+        List<String> result = new ArrayList<>();
+
+        for(Event e: events) {
+
+            if (!(e instanceof EndOfStreamEvent)) {
+
+                result.add(e.getLineNumber() + ": " + e.getStringProperty("text").getString());
+            }
+        }
+
+        return result;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private ParserTestUtil() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class RingBufferTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidArguments() throws Exception {
+
+        try {
+
+            new RingBuffer<String>(0, ParserDriver.WaitStrategy.BLOCKING);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid capacity"));
+        }
+
+        try {
+
+            new RingBuffer<String>(1, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null wait strategy"));
+        }
+    }
+
+    @Test
+    public void capacity_RoundedUpToPowerOfTwo() throws Exception {
+
+        assertEquals(1, new RingBuffer<String>(1, ParserDriver.WaitStrategy.BLOCKING).getCapacity());
+        assertEquals(8, new RingBuffer<String>(5, ParserDriver.WaitStrategy.BLOCKING).getCapacity());
+        assertEquals(8, new RingBuffer<String>(8, ParserDriver.WaitStrategy.SPINNING).getCapacity());
+    }
+
+    @Test
+    public void putAndTake_Batches() throws Exception {
+
+        RingBuffer<String> b = new RingBuffer<>(4, ParserDriver.WaitStrategy.BLOCKING);
+
+        b.put("a");
+        b.put("b");
+        b.put("c");
+
+        assertEquals(3, b.size());
+
+        String[] batch = new String[2];
+
+        assertEquals(2, b.take(batch));
+        assertEquals("a", batch[0]);
+        assertEquals("b", batch[1]);
+
+        //
+        // wrap around
+        //
+
+        b.put("d");
+        b.put("e");
+        b.put("f");
+
+        assertEquals(4, b.size());
+
+        String[] large = new String[10];
+
+        assertEquals(4, b.take(large));
+        assertEquals("c", large[0]);
+        assertEquals("f", large[3]);
+        assertEquals(0, b.size());
+    }
+
+    @Test
+    public void put_Null() throws Exception {
+
+        RingBuffer<String> b = new RingBuffer<>(4, ParserDriver.WaitStrategy.BLOCKING);
+
+        try {
+
+            b.put(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null element"));
+        }
+    }
+
+    @Test
+    public void producerConsumer_Blocking() throws Exception {
+
+        producerConsumer(ParserDriver.WaitStrategy.BLOCKING);
+    }
+
+    @Test
+    public void producerConsumer_Spinning() throws Exception {
+
+        producerConsumer(ParserDriver.WaitStrategy.SPINNING);
+    }
+
+    @Test
+    public void put_FullBufferBlocksUntilTaken() throws Exception {
+
+        final RingBuffer<Integer> b = new RingBuffer<>(2, ParserDriver.WaitStrategy.BLOCKING);
+
+        b.put(1);
+        b.put(2);
+
+        Thread producer = new Thread(() -> b.put(3));
+        producer.start();
+
+        producer.join(100);
+
+        assertTrue(producer.isAlive());
+        assertEquals(2, b.size());
+
+        Integer[] batch = new Integer[1];
+
+        assertEquals(1, b.take(batch));
+        assertEquals(1, batch[0].intValue());
+
+        producer.join(5000);
+
+        assertTrue(!producer.isAlive());
+        assertEquals(2, b.size());
+    }
+
+    @Test
+    public void take_EmptyBufferParksWithoutTimeoutUntilPut() throws Exception {
+
+        final RingBuffer<Integer> b = new RingBuffer<>(2, ParserDriver.WaitStrategy.BLOCKING);
+        final Integer[] batch = new Integer[2];
+
+        Thread consumer = new Thread(() -> b.take(batch));
+        consumer.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while(consumer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+
+            Thread.sleep(1);
+        }
+
+        //
+        // parked indefinitely, not polling
+        //
+
+        assertEquals(Thread.State.WAITING, consumer.getState());
+        assertSame(b, LockSupport.getBlocker(consumer));
+
+        b.put(1);
+
+        consumer.join(5000);
+
+        assertTrue(!consumer.isAlive());
+        assertEquals(1, batch[0].intValue());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void producerConsumer(ParserDriver.WaitStrategy waitStrategy) throws Exception {
+
+        final int count = 100000;
+
+        final RingBuffer<Integer> b = new RingBuffer<>(16, waitStrategy);
+
+        Thread producer = new Thread(() -> {
+
+            for(int i = 0; i < count; i ++) {
+
+                b.put(i);
+            }
+        });
+
+        producer.start();
+
+        Integer[] batch = new Integer[7];
+
+        int expected = 0;
+
+        while(expected < count) {
+
+            int n = b.take(batch);
+
+            assertTrue(n >= 1 && n <= batch.length);
+
+            for(int i = 0; i < n; i ++) {
+
+                assertEquals(expected ++, batch[i].intValue());
+            }
+        }
+
+        producer.join();
+
+        assertEquals(0, b.size());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
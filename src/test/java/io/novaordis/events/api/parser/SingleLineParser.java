@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.query.Query;
+import io.novaordis.utilities.parsing.ParsingException;
+
+/**
+ * One event per line, carrying the line as a "text" property. Fails on "fail" lines. Has no accumulated
+ * state, so it opts in for checkpoints.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class SingleLineParser extends ParserBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ParserBase overrides --------------------------------------------------------------------------------------------
+
+    @Override
+    protected List<Event> parse(long lineNumber, String line, Query query) throws ParsingException {
+
+        if ("fail".equals(line)) {
+
+            throw new ParsingException("failed to parse line " + lineNumber);
+        }
+
+        GenericEvent e = new GenericEvent(lineNumber);
+        e.setStringProperty("text", line);
+        return Collections.singletonList(e);
+    }
+
+    @Override
+    protected List<Event> close(long lineNumber) throws ParsingException {
+
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected byte[] saveState() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimeIndexTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+    }
+
+    @After
+    public void after() throws Exception {
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidGranularity() throws Exception {
+
+        try {
+
+            new TimeIndex(0L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid granularity"));
+        }
+    }
+
+    @Test
+    public void sidecarOf() throws Exception {
+
+        File f = new File(scratchDirectory, "test.log");
+
+        assertEquals(new File(scratchDirectory, "test.log.tidx").getAbsoluteFile(), TimeIndex.sidecarOf(f));
+    }
+
+    @Test
+    public void extend() throws Exception {
+
+        TimeIndex index = new TimeIndex(10L);
+
+        assertEquals(0, index.size());
+        assertEquals(0L, index.getLength());
+        assertEquals(0L, index.getLineCount());
+
+        //
+        // lines are 4 bytes long, the even ones carry timestamps
+        //
+
+        for(int i = 0; i < 10; i ++) {
+
+            index.extend(4L * i, i, 4L * (i + 1), i % 2 == 0 ? 100L * i : Long.MIN_VALUE);
+        }
+
+        assertEquals(40L, index.getLength());
+        assertEquals(10L, index.getLineCount());
+
+        //
+        // entries are at least 10 bytes apart: lines 0, 4 and 8 (line 2 is too close to line 0)
+        //
+
+        assertEquals(3, index.size());
+
+        assertEquals(0L, index.getTimestamp(0));
+        assertEquals(0L, index.getOffset(0));
+        assertEquals(0L, index.getLineNumber(0));
+
+        assertEquals(400L, index.getTimestamp(1));
+        assertEquals(16L, index.getOffset(1));
+        assertEquals(4L, index.getLineNumber(1));
+
+        assertEquals(800L, index.getTimestamp(2));
+        assertEquals(32L, index.getOffset(2));
+        assertEquals(8L, index.getLineNumber(2));
+
+        try {
+
+            index.getOffset(3);
+            fail("should have thrown exception");
+        }
+        catch(IndexOutOfBoundsException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid entry: 3"));
+        }
+    }
+
+    @Test
+    public void extend_NotContiguous() throws Exception {
+
+        TimeIndex index = new TimeIndex(10L);
+
+        index.extend(0L, 0L, 5L, 1L);
+
+        try {
+
+            index.extend(6L, 1L, 10L, 2L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("does not follow the indexed prefix"));
+        }
+
+        try {
+
+            index.extend(5L, 2L, 10L, 2L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("does not follow the indexed prefix"));
+        }
+    }
+
+    @Test
+    public void floor() throws Exception {
+
+        TimeIndex index = new TimeIndex(1L);
+
+        assertEquals(-1, index.floor(100L));
+
+        index.extend(0L, 0L, 10L, 10L);
+        index.extend(10L, 1L, 20L, 20L);
+        index.extend(20L, 2L, 30L, 20L);
+        index.extend(30L, 3L, 40L, 30L);
+
+        assertEquals(-1, index.floor(5L));
+        assertEquals(-1, index.floor(10L));
+        assertEquals(0, index.floor(11L));
+        assertEquals(0, index.floor(20L));
+        assertEquals(2, index.floor(21L));
+        assertEquals(2, index.floor(30L));
+        assertEquals(3, index.floor(31L));
+        assertEquals(3, index.floor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void growth() throws Exception {
+
+        TimeIndex index = new TimeIndex(1L);
+
+        for(int i = 0; i < 1000; i ++) {
+
+            index.extend(i, i, i + 1, i);
+        }
+
+        assertEquals(1000, index.size());
+        assertEquals(999L, index.getTimestamp(999));
+        assertEquals(500, index.floor(501L));
+    }
+
+    @Test
+    public void serialization() throws Exception {
+
+        TimeIndex index = new TimeIndex(7L);
+
+        for(int i = 0; i < 100; i ++) {
+
+            index.extend(5L * i, i, 5L * (i + 1), 1000L + i);
+        }
+
+        TimeIndex index2 = TimeIndex.fromByteArray(index.toByteArray());
+
+        assertEquals(7L, index2.getGranularity());
+        assertEquals(index.size(), index2.size());
+        assertEquals(index.getLength(), index2.getLength());
+        assertEquals(index.getLineCount(), index2.getLineCount());
+
+        for(int i = 0; i < index.size(); i ++) {
+
+            assertEquals(index.getTimestamp(i), index2.getTimestamp(i));
+            assertEquals(index.getOffset(i), index2.getOffset(i));
+            assertEquals(index.getLineNumber(i), index2.getLineNumber(i));
+        }
+
+        assertArrayEquals(index.toByteArray(), index2.toByteArray());
+
+        //
+        // an empty index
+        //
+
+        assertEquals(0, TimeIndex.fromByteArray(new TimeIndex(1L).toByteArray()).size());
+    }
+
+    @Test
+    public void fromByteArray_Invalid() throws Exception {
+
+        try {
+
+            TimeIndex.fromByteArray(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null byte array"));
+        }
+
+        byte[] valid = new TimeIndex(1L).toByteArray();
+
+        byte[] b = valid.clone();
+        b[0] = 0;
+
+        try {
+
+            TimeIndex.fromByteArray(b);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("bad header"));
+        }
+
+        b = valid.clone();
+        b[4] = 2;
+
+        try {
+
+            TimeIndex.fromByteArray(b);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("unsupported version 2"));
+        }
+
+        try {
+
+            TimeIndex.fromByteArray(Arrays.copyOf(valid, valid.length - 1));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("truncated"));
+        }
+
+        try {
+
+            TimeIndex.fromByteArray(Arrays.copyOf(valid, valid.length + 1));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("trailing bytes"));
+        }
+
+        //
+        // an entry count that does not fit
+        //
+
+        b = valid.clone();
+        b[b.length - 1] = 10;
+
+        try {
+
+            TimeIndex.fromByteArray(b);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid entry count 10"));
+        }
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+
+        File sidecar = new File(scratchDirectory, "test.log.tidx");
+
+        assertNull(TimeIndex.read(sidecar));
+
+        TimeIndex index = new TimeIndex(1L);
+        index.extend(0L, 0L, 10L, 10L);
+        index.extend(10L, 1L, 20L, 20L);
+
+        index.write(sidecar);
+
+        TimeIndex index2 = TimeIndex.read(sidecar);
+
+        assertArrayEquals(index.toByteArray(), index2.toByteArray());
+
+        //
+        // no temporary file left behind
+        //
+
+        assertFalse(new File(scratchDirectory, "test.log.tidx.tmp").exists());
+    }
+
+    @Test
+    public void isValidFor() throws Exception {
+
+        File f = new File(scratchDirectory, "test.log");
+        Files.write(f.toPath(), "a\nbb\nccc\n".getBytes(StandardCharsets.UTF_8));
+
+        TimeIndex index = new TimeIndex(1L);
+        index.extend(0L, 0L, 2L, 1L);
+        index.extend(2L, 1L, 5L, 2L);
+        index.stamp(f);
+
+        assertTrue(index.isValidFor(f));
+
+        //
+        // the file grows
+        //
+
+        Files.write(f.toPath(), "dddd\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertTrue(f.setLastModified(f.lastModified() + 2000L));
+
+        assertTrue(index.isValidFor(f));
+
+        //
+        // the file is replaced by a larger file with a different beginning
+        //
+
+        Files.write(f.toPath(), "x\nbb\nccc\ndddd\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(f.setLastModified(f.lastModified() + 4000L));
+
+        assertFalse(index.isValidFor(f));
+
+        //
+        // the file is re-written in place, with the same size
+        //
+
+        Files.write(f.toPath(), "a\nbb\nccc\n".getBytes(StandardCharsets.UTF_8));
+        index.stamp(f);
+        assertTrue(index.isValidFor(f));
+
+        Files.write(f.toPath(), "a\nbb\nccd\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(f.setLastModified(f.lastModified() + 6000L));
+
+        assertFalse(index.isValidFor(f));
+
+        //
+        // the file is truncated
+        //
+
+        Files.write(f.toPath(), "a\n".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(index.isValidFor(f));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
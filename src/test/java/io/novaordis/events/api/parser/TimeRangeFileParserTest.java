@@ -0,0 +1,648 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.query.MatchNone;
+import io.novaordis.events.query.MixedQuery;
+import io.novaordis.events.query.Query;
+import io.novaordis.events.query.TimeQuery;
+
+import static io.novaordis.events.api.parser.ParserTestUtil.render;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimeRangeFileParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int EVENT_COUNT = 100000;
+
+    //
+    // the timestamp of the first event
+    //
+    private static final long T0 = 1512151200000L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void before() throws Exception {
+
+        String projectBaseDirName = System.getProperty("basedir");
+        scratchDirectory = new File(projectBaseDirName, "target/test-scratch");
+        assertTrue(scratchDirectory.isDirectory());
+    }
+
+    @After
+    public void after() throws Exception {
+
+        //
+        // scratch directory cleanup
+        //
+
+        assertTrue(io.novaordis.utilities.Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void invalidArguments() throws Exception {
+
+        try {
+
+            new TimeRangeFileParser(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null parser factory"));
+        }
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        try {
+
+            p.setTolerance(-1L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid tolerance"));
+        }
+
+        try {
+
+            p.setCharset(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null charset"));
+        }
+
+        try {
+
+            p.setIndexGranularity(0L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid granularity"));
+        }
+
+        try {
+
+            p.parse(null, null, e -> {});
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null file"));
+        }
+
+        try {
+
+            p.parse(new File(scratchDirectory, "test.log"), null, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null consumer"));
+        }
+    }
+
+    @Test
+    public void parse_NoSuchFile() throws Exception {
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        try {
+
+            p.parse(new File(scratchDirectory, "no-such-file.log"), null, e -> {});
+            fail("should have thrown exception");
+        }
+        catch(java.io.IOException e) {
+
+            assertTrue(e.getMessage().contains("no such file"));
+        }
+    }
+
+    @Test
+    public void defaults() throws Exception {
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        assertEquals(TimeRangeFileParser.DEFAULT_TOLERANCE_MS, p.getTolerance());
+        assertFalse(p.isRelativeLineNumbers());
+        assertEquals(StandardCharsets.UTF_8, p.getCharset());
+        assertFalse(p.isIndexing());
+        assertEquals(TimeIndex.DEFAULT_GRANULARITY, p.getIndexGranularity());
+    }
+
+    @Test
+    public void nullQuery_WholeFile() throws Exception {
+
+        File f = write(false);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, null, events::add);
+
+        assertEquals(selected(f, null), render(events));
+        assertEquals(0L, p.getStartPosition());
+        assertEquals(f.length(), p.getEndPosition());
+        assertEquals(0, p.getSampleCount());
+    }
+
+    @Test
+    public void fromAndTo() throws Exception {
+
+        File f = write(false);
+
+        Query query = range(500000L, 501000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        List<String> selected = selected(f, query);
+        assertEquals(101, selected.size());
+        assertEquals(selected, render(query.filter(events)));
+
+        //
+        // only a small part of the file was read
+        //
+
+        long read = p.getEndPosition() - p.getStartPosition();
+
+        assertTrue(p.getStartPosition() > 0);
+        assertTrue(p.getEndPosition() < f.length());
+        assertTrue(read < 2 * TimeRangeFileParser.SEARCH_WINDOW + f.length() / 100);
+        assertTrue(p.getSampleCount() < 16);
+    }
+
+    @Test
+    public void from_AbsoluteLineNumbersByDefault() throws Exception {
+
+        File f = write(false);
+
+        Query query = new TimeQuery("from:", T0 + 900000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setTolerance(0L);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertTrue(p.getStartPosition() > 0);
+
+        //
+        // the skipped lines were counted, so the line numbers are the same as for a sequential parsing
+        //
+
+        List<Event> selected = query.filter(events);
+        assertEquals(90001L, selected.get(0).getLineNumber().longValue());
+        assertEquals((T0 + 900000L) + " event 90000", selected.get(0).getStringProperty("text").getString());
+        assertEquals(selected(f, query), render(selected));
+    }
+
+    @Test
+    public void from_RelativeLineNumbers() throws Exception {
+
+        File f = write(false);
+
+        Query query = new TimeQuery("from:", T0 + 900000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setTolerance(0L);
+        p.setRelativeLineNumbers(true);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertTrue(p.getStartPosition() > 0);
+        assertEquals(f.length(), p.getEndPosition());
+
+        //
+        // the time query does not apply to the EndOfStreamEvent, so it is selected
+        //
+
+        List<Event> selected = query.filter(events);
+        assertEquals(EVENT_COUNT - 90000 + 1, selected.size());
+
+        //
+        // the skipped lines were not counted
+        //
+
+        assertEquals(1L, events.get(0).getLineNumber().longValue());
+        assertTrue(selected.get(0).getLineNumber() < 90001L);
+        assertEquals((T0 + 900000L) + " event 90000", selected.get(0).getStringProperty("text").getString());
+    }
+
+    @Test
+    public void to() throws Exception {
+
+        File f = write(false);
+
+        Query query = new TimeQuery("to:", T0 + 1000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertEquals(0L, p.getStartPosition());
+        assertEquals(0, p.getSampleCount());
+        assertTrue(p.getEndPosition() < f.length() / 100);
+        assertEquals(selected(f, query), render(query.filter(events)));
+    }
+
+    @Test
+    public void multiLineEvents() throws Exception {
+
+        File f = write(true);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        Random random = new Random(7L);
+
+        for(int i = 0; i < 20; i ++) {
+
+            long from = 10L * random.nextInt(EVENT_COUNT);
+            long to = from + random.nextInt(10000);
+
+            Query query = range(from, to);
+
+            List<Event> events = new ArrayList<>();
+
+            p.parse(f, query, events::add);
+
+            assertEquals(selected(f, query), render(query.filter(events)));
+        }
+    }
+
+    @Test
+    public void tolerance() throws Exception {
+
+        //
+        // events out of order by at most 500 ms
+        //
+
+        StringBuilder sb = new StringBuilder();
+
+        Random random = new Random(11L);
+
+        for(int i = 0; i < EVENT_COUNT; i ++) {
+
+            long t = T0 + 10L * i - random.nextInt(500);
+            sb.append(t).append(" event ").append(i).append('\n');
+        }
+
+        File f = ParserTestUtil.write(scratchDirectory, sb.toString());
+
+        Query query = range(500000L, 501000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setTolerance(500L);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertEquals(selected(f, query), render(query.filter(events)));
+        assertTrue(p.getStartPosition() > 0);
+        assertTrue(p.getEndPosition() < f.length());
+    }
+
+    @Test
+    public void emptyRange() throws Exception {
+
+        File f = write(false);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, new MatchNone(), events::add);
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof EndOfStreamEvent);
+        assertEquals(0L, p.getEndPosition());
+    }
+
+    @Test
+    public void rangeAfterTheEndOfFile() throws Exception {
+
+        File f = write(false);
+
+        Query query = new TimeQuery("from:", T0 + 10L * EVENT_COUNT + 100000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertTrue(render(query.filter(events)).isEmpty());
+        assertTrue(f.length() - p.getStartPosition() <= TimeRangeFileParser.SEARCH_WINDOW);
+        assertTrue(events.get(events.size() - 1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void parserWithoutTimestamps_WholeFileParsed() throws Exception {
+
+        File f = write(false);
+
+        Query query = range(500000L, 501000L);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(UntimedParser::new);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertEquals(0L, p.getStartPosition());
+        assertEquals(f.length(), p.getEndPosition());
+        assertEquals(selected(f, query), render(query.filter(events)));
+    }
+
+    @Test
+    public void indexing_BuiltByTheFirstFullParse() throws Exception {
+
+        File f = write(true);
+        File sidecar = TimeIndex.sidecarOf(f);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setIndexing(true);
+        p.setIndexGranularity(16 * 1024);
+
+        assertTrue(p.isIndexing());
+        assertEquals(16 * 1024, p.getIndexGranularity());
+
+        //
+        // a seek does not build the index
+        //
+
+        p.parse(f, range(500000L, 501000L), e -> {});
+
+        assertFalse(sidecar.exists());
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, null, events::add);
+
+        assertEquals(selected(f, null), render(events));
+
+        assertTrue(sidecar.isFile());
+
+        TimeIndex index = TimeIndex.read(sidecar);
+
+        assertEquals(f.length(), index.getLength());
+        assertEquals(EVENT_COUNT + (EVENT_COUNT + 2) / 3, index.getLineCount());
+        assertEquals(16 * 1024, index.getGranularity());
+        assertTrue(index.size() > f.length() / (32 * 1024));
+        assertTrue(index.isValidFor(f));
+    }
+
+    @Test
+    public void indexing_Seek() throws Exception {
+
+        File f = write(true);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setIndexing(true);
+        p.setIndexGranularity(TimeRangeFileParser.SEARCH_WINDOW / 2);
+
+        p.parse(f, null, e -> {});
+
+        Random random = new Random(13L);
+
+        for(int i = 0; i < 20; i ++) {
+
+            long from = 10L * random.nextInt(EVENT_COUNT);
+            long to = from + random.nextInt(10000);
+
+            Query query = range(from, to);
+
+            List<Event> events = new ArrayList<>();
+
+            p.parse(f, query, events::add);
+
+            //
+            // the index locates the window, no sampling is needed, and the line numbers are absolute
+            //
+
+            assertEquals(0, p.getSampleCount());
+            assertEquals(selected(f, query), render(query.filter(events)));
+        }
+    }
+
+    @Test
+    public void indexing_FileGrows() throws Exception {
+
+        File f = write(false);
+        File sidecar = TimeIndex.sidecarOf(f);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setIndexing(true);
+
+        p.parse(f, null, e -> {});
+
+        long length = TimeIndex.read(sidecar).getLength();
+        assertEquals(f.length(), length);
+
+        //
+        // append events, the last one incomplete
+        //
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = EVENT_COUNT; i < 2 * EVENT_COUNT; i ++) {
+
+            sb.append(T0 + 10L * i).append(" event ").append(i).append('\n');
+        }
+
+        sb.append(T0 + 10L * 2 * EVENT_COUNT).append(" incomplete");
+
+        Files.write(f.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertTrue(f.setLastModified(f.lastModified() + 2000L));
+
+        //
+        // a parsing that starts in the indexed prefix and reads to the end of the file extends the index
+        //
+
+        Query query = new TimeQuery("from:", T0 + 10L * (EVENT_COUNT - 10));
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, query, events::add);
+
+        assertEquals(selected(f, query), render(query.filter(events)));
+
+        TimeIndex index = TimeIndex.read(sidecar);
+
+        assertTrue(index.isValidFor(f));
+        assertEquals(f.length() - (T0 + " incomplete").length(), index.getLength());
+        assertEquals(2L * EVENT_COUNT, index.getLineCount());
+        assertTrue(index.getTimestamp(index.size() - 1) > T0 + 10L * EVENT_COUNT);
+    }
+
+    @Test
+    public void indexing_StaleIndexIsRebuilt() throws Exception {
+
+        File f = write(false);
+        File sidecar = TimeIndex.sidecarOf(f);
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setIndexing(true);
+
+        p.parse(f, null, e -> {});
+
+        //
+        // the file is replaced with a shorter one
+        //
+
+        ParserTestUtil.write(scratchDirectory, "1 a\n2 b\n");
+
+        p.parse(f, null, e -> {});
+
+        assertTrue(p.getIndex().isValidFor(f));
+        assertEquals(8L, TimeIndex.read(sidecar).getLength());
+        assertEquals(2L, TimeIndex.read(sidecar).getLineCount());
+    }
+
+    @Test
+    public void indexing_CorruptIndexIsRebuilt() throws Exception {
+
+        File f = write(false);
+        File sidecar = TimeIndex.sidecarOf(f);
+
+        Files.write(sidecar.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+
+        TimeRangeFileParser p = new TimeRangeFileParser(TimedMultiLineParser::new);
+        p.setIndexing(true);
+
+        List<Event> events = new ArrayList<>();
+
+        p.parse(f, null, events::add);
+
+        assertEquals(selected(f, null), render(events));
+        assertEquals(f.length(), TimeIndex.read(sidecar).getLength());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Event i is stamped T0 + 10 * i. If multiLine is true, every third event has a continuation line.
+     */
+    private File write(boolean multiLine) throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < EVENT_COUNT; i ++) {
+
+            sb.append(T0 + 10L * i).append(" event ").append(i).append('\n');
+
+            if (multiLine && i % 3 == 0) {
+
+                sb.append(" continuation ").append(i).append('\n');
+            }
+        }
+
+        return ParserTestUtil.write(scratchDirectory, sb.toString());
+    }
+
+    /**
+     * @param from relative to T0.
+     * @param to relative to T0.
+     */
+    private static Query range(long from, long to) throws Exception {
+
+        SimpleDateFormat format = new SimpleDateFormat("MM/dd/yy HH:mm:ss,SSS");
+
+        MixedQuery q = new MixedQuery();
+        q.addExpressionElementLiteral("from:" + format.format(T0 + from));
+        q.addExpressionElementLiteral("and");
+        q.addExpressionElementLiteral("to:" + format.format(T0 + to));
+        q.compile();
+        return q;
+    }
+
+    /**
+     * @return the events selected by the query, when the whole file is parsed.
+     */
+    private static List<String> selected(File f, Query query) throws Exception {
+
+        List<Event> events = ParserTestUtil.sequential(f, new TimedMultiLineParser());
+
+        return render(query == null ? events : query.filter(events));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Does not implement timestampOf().
+     */
+    private static class UntimedParser extends TimedMultiLineParser {
+
+        @Override
+        public long timestampOf(String line) {
+
+            return Long.MIN_VALUE;
+        }
+    }
+
+}
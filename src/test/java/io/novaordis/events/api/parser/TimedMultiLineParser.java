@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.api.parser;
+
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+
+/**
+ * A MultiLineParser whose lines start with a millisecond timestamp, followed by a space. Produces timed events.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimedMultiLineParser extends MultiLineParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ParserBase overrides --------------------------------------------------------------------------------------------
+
+    @Override
+    public long timestampOf(String line) {
+
+        return timestamp(line);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected GenericEvent newEvent(long lineNumber, String text) {
+
+        GenericTimedEvent e = new GenericTimedEvent(timestamp(text));
+        e.setLineNumber(lineNumber);
+        return e;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static long timestamp(String line) {
+
+        int i = line.indexOf(' ');
+
+        if (i <= 0) {
+
+            return Long.MIN_VALUE;
+        }
+
+        return Long.parseLong(line.substring(0, i));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -16,15 +16,18 @@
 
 package io.novaordis.events.query;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
 
+import io.novaordis.events.api.event.ByteSliceStringProperty;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.MapProperty;
 import io.novaordis.events.api.event.StringProperty;
 
 import static org.junit.Assert.assertEquals;
@@ -283,6 +286,131 @@ public class FieldQueryTest extends QueryTest {
         assertFalse(q.selects(e));
     }
 
+    @Test
+    public void selects_ByteSlice() throws Exception {
+
+        byte[] line = "12:00:01 ERROR connection refused".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("message", line, 15, 18);
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(p);
+
+        assertTrue(new FieldQuery("message", "conn.*refused").selects(e));
+        assertFalse(new FieldQuery("message", "accepted").selects(e));
+
+        //
+        // matched on the bytes
+        //
+
+        assertTrue(p.isSlice());
+    }
+
+    // selects() "map.key" paths ---------------------------------------------------------------------------------------
+
+    @Test
+    public void selects_MapKey() throws Exception {
+
+        FieldQuery q = new FieldQuery("gc.cause", "Allocation");
+
+        GenericEvent e = new GenericEvent();
+        MapProperty mp = new MapProperty("gc");
+        mp.getMap().put("collector", "G1");
+        mp.getMap().put("cause", "Allocation Failure");
+        e.setProperty(mp);
+
+        assertTrue(q.selects(e));
+
+        //
+        // a different layout
+        //
+
+        GenericEvent e2 = new GenericEvent();
+        MapProperty mp2 = new MapProperty("gc");
+        mp2.getMap().put("cause", "System.gc()");
+        e2.setProperty(mp2);
+
+        assertFalse(q.selects(e2));
+
+        //
+        // back to the first layout
+        //
+
+        assertTrue(q.selects(e));
+    }
+
+    @Test
+    public void selects_MapKey_NoSuchKey() throws Exception {
+
+        FieldQuery q = new FieldQuery("gc.cause", "Allocation");
+
+        GenericEvent e = new GenericEvent();
+        MapProperty mp = new MapProperty("gc");
+        mp.getMap().put("collector", "G1");
+        e.setProperty(mp);
+
+        assertFalse(q.selects(e));
+    }
+
+    @Test
+    public void selects_MapKey_NoSuchMap() throws Exception {
+
+        FieldQuery q = new FieldQuery("gc.cause", "Allocation");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("gc", "Allocation");
+
+        assertFalse(q.selects(e));
+    }
+
+    @Test
+    public void selects_MapKey_LargeMap() throws Exception {
+
+        FieldQuery q = new FieldQuery("m.k20", "v20");
+
+        GenericEvent e = new GenericEvent();
+        MapProperty mp = new MapProperty("m");
+
+        for(int i = 0; i < 30; i ++) {
+
+            mp.getMap().put("k" + i, "v" + i);
+        }
+
+        e.setProperty(mp);
+
+        assertTrue(q.selects(e));
+    }
+
+    @Test
+    public void selects_MapKey_PropertyWithDottedNameTakesPrecedence() throws Exception {
+
+        FieldQuery q = new FieldQuery("a.b", "blue");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a.b", "blue");
+        MapProperty mp = new MapProperty("a");
+        mp.getMap().put("b", "red");
+        e.setProperty(mp);
+
+        assertTrue(q.selects(e));
+        assertFalse(q.negate().selects(e));
+    }
+
+    @Test
+    public void selects_MapKey_Literal() throws Exception {
+
+        FieldQuery q = new FieldQuery("gc.cause:Allocation");
+
+        assertEquals("gc.cause", q.getFieldName());
+
+        GenericEvent e = new GenericEvent();
+        MapProperty mp = new MapProperty("gc");
+        mp.getMap().put("cause", "Allocation Failure");
+        e.setProperty(mp);
+
+        assertTrue(q.selects(e));
+    }
+
     // selects() time // selects() -------------------------------------------------------------------------------------
 
     @Test
@@ -16,13 +16,17 @@
 
 package io.novaordis.events.query;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
 
+import io.novaordis.events.api.event.ByteSliceStringProperty;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
 import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.api.event.GenericTimedEvent;
 import io.novaordis.events.api.event.StringProperty;
@@ -133,6 +137,95 @@ public class KeywordQueryTest extends QueryTest {
         assertTrue(q.selects(e));
     }
 
+    @Test
+    public void selects_PropertiesExists_CaseMismatch_KeywordLongerThanValue() throws Exception {
+
+        KeywordQuery q = new KeywordQuery("BLUE SKY");
+
+        GenericTimedEvent e = new GenericTimedEvent();
+        e.setStringProperty("test1", "blue");
+        e.setStringProperty("test2", "the Blue Sky");
+
+        assertTrue(q.selects(e));
+
+        e.removeStringProperty("test2");
+
+        assertFalse(q.selects(e));
+    }
+
+    @Test
+    public void selects_ByteSlice() throws Exception {
+
+        byte[] line = "12:00:01 ERROR Connection Refused".getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteSliceStringProperty p = new ByteSliceStringProperty("message", line, 15, 18);
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(p);
+
+        assertTrue(new KeywordQuery("refused").selects(e));
+        assertFalse(new KeywordQuery("accepted").selects(e));
+
+        KeywordQuery q = new KeywordQuery("refused");
+        q.setCaseSensitive(true);
+        assertFalse(q.selects(e));
+
+        //
+        // matched on the bytes
+        //
+
+        assertTrue(p.isSlice());
+    }
+
+    @Test
+    public void filterAndRecycle() throws Exception {
+
+        KeywordQuery q = new KeywordQuery("blue");
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+        e.setStringProperty("test1", "blue");
+
+        GenericEvent e2 = pool.acquire();
+        e2.setStringProperty("test1", "red");
+
+        List<Event> result = q.filterAndRecycle(Arrays.asList(e, e2));
+
+        assertEquals(1, result.size());
+        assertTrue(e == result.get(0));
+
+        //
+        // the rejected event was returned to the pool
+        //
+
+        assertEquals(1, pool.size());
+        assertTrue(e2 == pool.acquire());
+    }
+
+    @Test
+    public void filterAndRecycle_FrozenEvent() throws Exception {
+
+        KeywordQuery q = new KeywordQuery("blue");
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e = pool.acquire();
+        e.setStringProperty("test1", "red");
+        e.freeze();
+
+        List<Event> result = q.filterAndRecycle(Collections.singletonList(e));
+
+        assertTrue(result.isEmpty());
+
+        //
+        // the rejected frozen event was not reset, and not returned to the pool
+        //
+
+        assertEquals(0, pool.size());
+        assertEquals("red", e.getStringProperty("test1").getString());
+    }
+
     @Test
     public void selects_PropertiesExists_CaseMismatch_ConfiguredForStrictCaseMatching() throws Exception {
 
@@ -78,6 +78,14 @@ public class MatchAllTest extends QueryTest {
         assertTrue(q.selects(Long.MAX_VALUE));
     }
 
+    @Test
+    public void getTimeRange_Unbounded() {
+
+        MatchAll q = new MatchAll();
+
+        assertTrue(q.getTimeRange().isUnbounded());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -23,6 +23,7 @@ import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.api.event.GenericTimedEvent;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -78,6 +79,14 @@ public class MatchNoneTest extends QueryTest {
         assertFalse(q.selects(Long.MAX_VALUE));
     }
 
+    @Test
+    public void getTimeRange_Empty() {
+
+        MatchNone q = new MatchNone();
+
+        assertTrue(q.getTimeRange().isEmpty());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
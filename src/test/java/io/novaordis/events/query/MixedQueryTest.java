@@ -621,6 +621,114 @@ public class MixedQueryTest extends QueryTest {
         assertTrue(q.selects(new SimpleDateFormat("MM/dd/yy HH:mm:ss,SSS").parse("12/01/17 10:00:00,002").getTime()));
     }
 
+    // getTimeRange() --------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getTimeRange_QueryNotCompiled() throws Exception {
+
+        MixedQuery q = new MixedQuery();
+
+        try {
+
+            q.getTimeRange();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("query not compiled"));
+        }
+    }
+
+    @Test
+    public void getTimeRange_NullQuery() throws Exception {
+
+        MixedQuery q = new MixedQuery();
+
+        q.compile();
+
+        assertTrue(q.getTimeRange().isUnbounded());
+    }
+
+    @Test
+    public void getTimeRange_SoleQuery() throws Exception {
+
+        MixedQuery q = new MixedQuery();
+
+        q.addExpressionElementLiteral("from:12/01/17 10:00:00,001");
+
+        q.compile();
+
+        long t = new SimpleDateFormat("MM/dd/yy HH:mm:ss,SSS").parse("12/01/17 10:00:00,001").getTime();
+        assertEquals(new TimeRange(t, Long.MAX_VALUE), q.getTimeRange());
+
+        q = new MixedQuery();
+
+        q.addExpressionElementLiteral("color:red");
+
+        q.compile();
+
+        assertTrue(q.getTimeRange().isUnbounded());
+    }
+
+    @Test
+    public void getTimeRange_AND() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "from:12/01/17 10:00:00,001", "and", "to:12/01/17 10:00:00,003", "and", "color:red"));
+
+        Query q = Query.fromArguments(args, 0);
+
+        long t1 = new SimpleDateFormat("MM/dd/yy HH:mm:ss,SSS").parse("12/01/17 10:00:00,001").getTime();
+        long t3 = new SimpleDateFormat("MM/dd/yy HH:mm:ss,SSS").parse("12/01/17 10:00:00,003").getTime();
+
+        assertEquals(new TimeRange(t1, t3), q.getTimeRange());
+    }
+
+    @Test
+    public void getTimeRange_AND_Disjoint() throws Exception {
+
+        MixedQuery q = new MixedQuery();
+
+        q.addExpressionElementLiteral("to:12/01/17 10:00:00,001");
+        q.addExpressionElementLiteral("and");
+        q.addExpressionElementLiteral("from:12/01/17 10:00:00,003");
+
+        q.compile();
+
+        assertTrue(q.getTimeRange().isEmpty());
+    }
+
+    @Test
+    public void getTimeRange_OR() throws Exception {
+
+        MixedQuery q = new MixedQuery();
+
+        q.addExpressionElementLiteral("to:12/01/17 10:00:00,001");
+        q.addExpressionElementLiteral("from:12/01/17 10:00:00,003");
+
+        q.compile();
+
+        //
+        // the span of (-inf, t1] and [t3, +inf)
+        //
+
+        assertTrue(q.getTimeRange().isUnbounded());
+
+        //
+        // a non-time query may select any time
+        //
+
+        q = new MixedQuery();
+
+        q.addExpressionElementLiteral("from:12/01/17 10:00:00,001");
+        q.addExpressionElementLiteral("color:red");
+
+        q.compile();
+
+        assertTrue(q.getTimeRange().isUnbounded());
+    }
+
     // offerLexicalToken -----------------------------------------------------------------------------------------------
 
     @Test
@@ -16,6 +16,7 @@
 
 package io.novaordis.events.query;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import io.novaordis.events.api.event.Event;
@@ -34,8 +35,15 @@ public class MockQuery implements Query {
 
     private boolean selectsBroken;
 
+    private List<Event> selected;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
+    public MockQuery() {
+
+        this.selected = new ArrayList<>();
+    }
+
     // Query implementation --------------------------------------------------------------------------------------------
 
     @Override
@@ -66,7 +74,15 @@ public class MockQuery implements Query {
             throw new RuntimeException("SYNTHETIC");
         }
 
-        throw new RuntimeException("selects() NOT YET IMPLEMENTED");
+        for(Event s: selected) {
+
+            if (s == e) {
+
+                return true;
+            }
+        }
+
+        return false;
     }
 
     @Override
@@ -76,7 +92,18 @@ public class MockQuery implements Query {
 
     @Override
     public List<Event> filter(List<Event> events) {
-        throw new RuntimeException("filter() NOT YET IMPLEMENTED");
+
+        List<Event> result = new ArrayList<>();
+
+        for(Event e: events) {
+
+            if (selects(e)) {
+
+                result.add(e);
+            }
+        }
+
+        return result;
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -86,6 +113,14 @@ public class MockQuery implements Query {
         this.selectsBroken = true;
     }
 
+    /**
+     * The query selects the given event instance, and only the instances added this way.
+     */
+    public void select(Event e) {
+
+        selected.add(e);
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -25,6 +25,7 @@ import java.util.List;
 import org.junit.Test;
 
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.EventPool;
 import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.api.event.GenericTimedEvent;
 import io.novaordis.events.api.event.StringProperty;
@@ -341,6 +342,41 @@ public class QueryStaticTest {
         assertFalse(q.selects(r6));
     }
 
+    // Query default methods -------------------------------------------------------------------------------------------
+
+    @Test
+    public void getTimeRange_Default() throws Exception {
+
+        assertEquals(TimeRange.UNBOUNDED, new MockQuery().getTimeRange());
+    }
+
+    @Test
+    public void filterAndRecycle_Default() throws Exception {
+
+        EventPool<GenericEvent> pool = new EventPool<>(GenericEvent::new);
+
+        GenericEvent e1 = pool.acquire();
+        GenericEvent e2 = pool.acquire();
+        GenericEvent e3 = pool.acquire();
+        GenericEvent e4 = pool.acquire();
+
+        MockQuery q = new MockQuery();
+        q.select(e2);
+        q.select(e4);
+
+        List<Event> result = q.filterAndRecycle(Arrays.asList(e1, e2, e3, e4));
+
+        assertEquals(2, result.size());
+        assertTrue(result.get(0) == e2);
+        assertTrue(result.get(1) == e4);
+
+        //
+        // the rejected events were returned to the pool
+        //
+
+        assertEquals(2, pool.size());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -342,6 +342,9 @@ public class TimeQueryTest extends QueryTest {
         assertEquals(timestamp, TimeQuery.SUPPORTED_FORMATS[1].format(q.getTime()));
 
         assertEquals(TimeQuery.SUPPORTED_FORMATS[1], q.getFormat());
+        assertTrue(TimeQuery.SUPPORTED_FORMATS[1] == q.getFormat());
+        assertTrue(TimeQuery.SUPPORTED_TIMESTAMP_FORMATS[1] == q.getTimestampFormat());
+        assertEquals(TimeQuery.SUPPORTED_FORMATS[1].toPattern(), q.getTimestampFormat().toPattern());
     }
 
     // setTimestamp_Long() ---------------------------------------------------------------------------------------------
@@ -518,6 +521,49 @@ public class TimeQueryTest extends QueryTest {
         assertFalse(q.selects(11L));
     }
 
+    // getTimeRange() --------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getTimeRange_From() throws Exception {
+
+        TimeQuery q = new TimeQuery("from:", 10L);
+
+        TimeRange r = q.getTimeRange();
+
+        assertEquals(new TimeRange(10L, Long.MAX_VALUE), r);
+        assertFalse(r.contains(9L));
+        assertTrue(r.contains(10L));
+    }
+
+    @Test
+    public void getTimeRange_To() throws Exception {
+
+        TimeQuery q = new TimeQuery("to:", 10L);
+
+        TimeRange r = q.getTimeRange();
+
+        assertEquals(new TimeRange(Long.MIN_VALUE, 10L), r);
+        assertTrue(r.contains(10L));
+        assertFalse(r.contains(11L));
+    }
+
+    @Test
+    public void getTimeRange_NotInitialized() throws Exception {
+
+        TimeQuery q = new TimeQuery("from:");
+
+        try {
+
+            q.getTimeRange();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null timestamp"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
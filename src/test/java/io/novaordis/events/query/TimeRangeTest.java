@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.query;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 12/6/17
+ */
+public class TimeRangeTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void unbounded() throws Exception {
+
+        TimeRange r = TimeRange.UNBOUNDED;
+
+        assertFalse(r.hasFrom());
+        assertFalse(r.hasTo());
+        assertTrue(r.isUnbounded());
+        assertFalse(r.isEmpty());
+        assertTrue(r.contains(Long.MIN_VALUE));
+        assertTrue(r.contains(0L));
+        assertTrue(r.contains(Long.MAX_VALUE));
+        assertEquals("[, ]", r.toString());
+    }
+
+    @Test
+    public void empty() throws Exception {
+
+        TimeRange r = TimeRange.EMPTY;
+
+        assertTrue(r.isEmpty());
+        assertFalse(r.isUnbounded());
+        assertFalse(r.contains(Long.MIN_VALUE));
+        assertFalse(r.contains(0L));
+        assertFalse(r.contains(Long.MAX_VALUE));
+        assertEquals("[]", r.toString());
+
+        //
+        // all empty intervals are equal
+        //
+
+        assertEquals(TimeRange.EMPTY, new TimeRange(10L, 9L));
+        assertEquals(TimeRange.EMPTY.hashCode(), new TimeRange(10L, 9L).hashCode());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+
+        TimeRange r = new TimeRange(10L, 20L);
+
+        assertTrue(r.hasFrom());
+        assertTrue(r.hasTo());
+        assertFalse(r.isUnbounded());
+        assertFalse(r.isEmpty());
+        assertEquals(10L, r.getFrom());
+        assertEquals(20L, r.getTo());
+
+        assertFalse(r.contains(9L));
+        assertTrue(r.contains(10L));
+        assertTrue(r.contains(20L));
+        assertFalse(r.contains(21L));
+
+        assertEquals("[10, 20]", r.toString());
+        assertEquals(new TimeRange(10L, 20L), r);
+        assertEquals(new TimeRange(10L, 20L).hashCode(), r.hashCode());
+        assertNotEquals(new TimeRange(10L, 21L), r);
+
+        //
+        // a single point
+        //
+
+        assertFalse(new TimeRange(10L, 10L).isEmpty());
+        assertTrue(new TimeRange(10L, 10L).contains(10L));
+    }
+
+    @Test
+    public void halfBounded() throws Exception {
+
+        TimeRange r = new TimeRange(10L, Long.MAX_VALUE);
+
+        assertTrue(r.hasFrom());
+        assertFalse(r.hasTo());
+        assertEquals("[10, ]", r.toString());
+
+        r = new TimeRange(Long.MIN_VALUE, 10L);
+
+        assertFalse(r.hasFrom());
+        assertTrue(r.hasTo());
+        assertEquals("[, 10]", r.toString());
+    }
+
+    @Test
+    public void intersect() throws Exception {
+
+        TimeRange from = new TimeRange(10L, Long.MAX_VALUE);
+        TimeRange to = new TimeRange(Long.MIN_VALUE, 20L);
+
+        assertEquals(new TimeRange(10L, 20L), from.intersect(to));
+        assertEquals(new TimeRange(10L, 20L), to.intersect(from));
+        assertEquals(from, from.intersect(TimeRange.UNBOUNDED));
+        assertTrue(from.intersect(TimeRange.EMPTY).isEmpty());
+
+        //
+        // disjoint
+        //
+
+        assertTrue(new TimeRange(1L, 5L).intersect(new TimeRange(6L, 10L)).isEmpty());
+        assertEquals(new TimeRange(5L, 5L), new TimeRange(1L, 5L).intersect(new TimeRange(5L, 10L)));
+    }
+
+    @Test
+    public void span() throws Exception {
+
+        assertEquals(new TimeRange(1L, 10L), new TimeRange(1L, 5L).span(new TimeRange(6L, 10L)));
+        assertEquals(new TimeRange(1L, 10L), new TimeRange(6L, 10L).span(new TimeRange(1L, 5L)));
+        assertEquals(TimeRange.UNBOUNDED, new TimeRange(1L, 5L).span(TimeRange.UNBOUNDED));
+
+        //
+        // the empty interval is the identity
+        //
+
+        assertEquals(new TimeRange(1L, 5L), TimeRange.EMPTY.span(new TimeRange(1L, 5L)));
+        assertEquals(new TimeRange(1L, 5L), new TimeRange(1L, 5L).span(TimeRange.EMPTY));
+        assertTrue(TimeRange.EMPTY.span(TimeRange.EMPTY).isEmpty());
+    }
+
+    @Test
+    public void nullArguments() throws Exception {
+
+        try {
+
+            TimeRange.UNBOUNDED.intersect(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null time range"));
+        }
+
+        try {
+
+            TimeRange.UNBOUNDED.span(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null time range"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}